@@ -15,21 +15,61 @@
  */
 package com.bsb.common.vaadin.embed;
 
+import com.bsb.common.vaadin.embed.compression.GzipFilter;
+import com.bsb.common.vaadin.embed.metrics.MetricsServlet;
+import com.bsb.common.vaadin.embed.metrics.RequestMetrics;
+import com.bsb.common.vaadin.embed.metrics.ResourceAccounting;
+import com.bsb.common.vaadin.embed.metrics.ServerTimingValve;
+import com.bsb.common.vaadin.embed.push.PushUtils;
+import com.bsb.common.vaadin.embed.resource.StaticResourceServlet;
 import com.bsb.common.vaadin.embed.util.BrowserUtils;
 import com.google.common.io.Files;
 import com.vaadin.server.VaadinServlet;
 import org.apache.catalina.Context;
+import org.apache.catalina.InstanceEvent;
+import org.apache.catalina.InstanceListener;
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleEvent;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.Manager;
 import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.deploy.FilterDef;
+import org.apache.catalina.deploy.FilterMap;
+import org.apache.catalina.session.ManagerBase;
+import org.apache.catalina.session.StandardManager;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.tomcat.util.scan.StandardJarScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletException;
+
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A base {@link EmbedVaadinServer} implementation based on Apache Tomcat.
@@ -40,8 +80,49 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
 
     public static final String PRODUCTION_MODE_PARAM = "productionMode";
 
+    /**
+     * The init parameter of the vaadin servlet holding the push mode.
+     */
+    public static final String PUSH_MODE_PARAM = "pushMode";
+
+    /**
+     * The init parameter of the vaadin servlet holding the identifier of the push transport.
+     */
+    public static final String PUSH_TRANSPORT_PARAM = "pushTransport";
+
+    /**
+     * The context parameter holding the number of seconds between the heartbeats of a page.
+     */
+    public static final String HEARTBEAT_INTERVAL_PARAM = "heartbeatInterval";
+
+    /**
+     * The context parameter holding whether sessions that only receive heartbeats are closed.
+     */
+    public static final String CLOSE_IDLE_SESSIONS_PARAM = "closeIdleSessions";
+
     private static final long serialVersionUID = 8211718040277785632L;
 
+    private static final String VAADIN_SERVLET_NAME = "vaadin";
+
+    private static final String STATIC_RESOURCE_SERVLET_NAME = "static";
+
+    private static final String GZIP_FILTER_NAME = "gzip";
+
+    private static final String METRICS_SERVLET_NAME = "metrics";
+
+    private static final String SESSIONS_DIRECTORY = "sessions";
+
+    private static final String SESSIONS_FILE = "sessions.ser.gz";
+
+    private static final String READY_PROBE_PATH = "VAADIN/vaadinBootstrap.js";
+
+    // The resource that atmosphere scans for handlers, /WEB-INF/classes/ by default
+    private static final String ATMOSPHERE_HANDLER_PATH_PARAM = "org.atmosphere.cpr.atmosphereHandlerPath";
+
+    private static final long READY_TIMEOUT = 30000;
+
+    private static final long READY_PROBE_INTERVAL = 50;
+
     private static final Logger logger = LoggerFactory.getLogger(AbstractEmbedVaadinTomcat.class);
 
     private final EmbedVaadinConfig config;
@@ -53,6 +134,14 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
     private final transient Thread shutdownThread;
     private final transient File baseDir;
     private transient Context context;
+    private transient StaticResourceServlet staticResourceServlet;
+    private transient GzipFilter gzipFilter;
+    private transient StartupReport startupReport = new StartupReport();
+    private final transient RequestMetrics requestMetrics = new RequestMetrics();
+    private final transient ServerStatistics statistics = new ServerStatistics(this);
+    private transient long startTime;
+    private transient ScheduledExecutorService metricsScheduler;
+    private transient SessionEvictionMonitor sessionEvictionMonitor;
 
     /**
      * Creates a new instance with the specified config.
@@ -64,7 +153,7 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
 
         this.tomcat = new Tomcat();
         this.shutdownThread = new TomcatShutdownHook(tomcat);
-        this.baseDir = Files.createTempDir();
+        this.baseDir = (config.getWorkDirectory() != null ? config.getWorkDirectory() : Files.createTempDir());
     }
 
     /**
@@ -83,15 +172,52 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
     protected abstract void configure();
 
     public void start() {
-        configure();
         try {
             doStart();
+            if (isWaiting()) {
+                tomcat.getServer().await();
+            }
             addShutdownHook();
         } catch (LifecycleException e) {
             throw new IllegalStateException("Failed to start tomcat", e);
         }
     }
 
+    public Future<EmbedVaadinServer> startAsync() {
+        final FutureTask<EmbedVaadinServer> task = new FutureTask<EmbedVaadinServer>(
+                new Callable<EmbedVaadinServer>() {
+                    public EmbedVaadinServer call() throws Exception {
+                        try {
+                            doStart();
+                        } catch (LifecycleException e) {
+                            throw new IllegalStateException("Failed to start tomcat", e);
+                        }
+                        waitUntilReady();
+                        return AbstractEmbedVaadinTomcat.this;
+                    }
+                });
+        final Thread thread = new Thread(new Runnable() {
+            public void run() {
+                task.run();
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    // Failure is available through the future
+                    return;
+                }
+                if (isWaiting()) {
+                    tomcat.getServer().await();
+                }
+                addShutdownHook();
+            }
+        }, "embed-vaadin-start");
+        thread.start();
+        return task;
+    }
+
     public boolean isWaiting() {
         return config.isWaiting();
     }
@@ -100,6 +226,22 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
         return config;
     }
 
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    public ResourceAccounting getResourceAccounting() {
+        return requestMetrics.getResourceAccounting();
+    }
+
+    public ServerStatistics getStatistics() {
+        return statistics;
+    }
+
+    public StartupReport getStartupReport() {
+        return startupReport;
+    }
+
     public void stop() {
         try {
             doStop();
@@ -115,6 +257,30 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
         return tomcat;
     }
 
+    /**
+     * Returns the {@link SessionEvictionMonitor} or <tt>null</tt> if sessions are not
+     * evicted under heap pressure.
+     */
+    SessionEvictionMonitor getSessionEvictionMonitor() {
+        return sessionEvictionMonitor;
+    }
+
+    /**
+     * Returns the {@link StaticResourceServlet} or <tt>null</tt> if static resources
+     * are served by the vaadin servlet.
+     */
+    protected StaticResourceServlet getStaticResourceServlet() {
+        return staticResourceServlet;
+    }
+
+    /**
+     * Returns the {@link GzipFilter} or <tt>null</tt> if the responses of the vaadin
+     * servlet are not compressed.
+     */
+    protected GzipFilter getGzipFilter() {
+        return gzipFilter;
+    }
+
     /**
      * Returns the {@link Context} to use for the webapp.
      */
@@ -122,6 +288,9 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
         if (context == null) {
             context = getTomcat().addContext(getConfig().getContextPath(),
                     getConfig().getContextRootDirectory().getAbsolutePath());
+            if (getConfig().isMinimalContainer()) {
+                initMinimalContainer(context);
+            }
         }
         return context;
     }
@@ -133,17 +302,205 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
      * Does not map any servlet, though. Sub-classes are responsible to do this
      */
     protected void initConfiguration() {
+        final long initStartTime = System.currentTimeMillis();
         getTomcat().setBaseDir(baseDir.getAbsolutePath());
 
         // Setup HTTP port listening
-        getTomcat().setPort(getConfig().getPort());
+        initConnector();
 
         // Setup vaadin production mode
         getContext().addParameter(PRODUCTION_MODE_PARAM, String.valueOf(getConfig().isProductionMode()));
+
+        // Setup vaadin heartbeats
+        if (getConfig().getHeartbeatInterval() != null) {
+            getContext().addParameter(HEARTBEAT_INTERVAL_PARAM, String.valueOf(getConfig().getHeartbeatInterval()));
+        }
+        getContext().addParameter(CLOSE_IDLE_SESSIONS_PARAM, String.valueOf(getConfig().isCloseIdleSessions()));
+
+        // Setup session passivation and persistence
+        if (getConfig().isSessionPersistent() && getConfig().getWorkDirectory() == null) {
+            logger.warn("Sessions are saved to a temporary work directory and will not be restored, "
+                    + "specify a work directory to restore them after a restart.");
+        }
+        if (getConfig().isSessionPassivation()) {
+            initSessionPassivation(getContext());
+        } else if (getConfig().isSessionPersistent()) {
+            initSessionPersistence(getContext());
+        } else {
+            // Tomcat saves the sessions in its work directory by default
+            final StandardManager manager = new StandardManager();
+            manager.setPathname(null);
+            getContext().setManager(manager);
+        }
+        initSessionLimits(getContext().getManager());
+        if (getConfig().getSessionEvictionThreshold() > 0) {
+            initSessionEviction(getContext().getManager());
+        }
+
+        // Setup statistics
+        getContext().getPipeline().addValve(new StatisticsValve());
+
+        startupReport.record(StartupReport.INIT_CONFIGURATION, System.currentTimeMillis() - initStartTime);
+    }
+
+    /**
+     * Initializes the HTTP connector according to the current {@link EmbedVaadinConfig config}.
+     * Creates a connector with the requested protocol, if any, and applies the thread pool,
+     * connection and socket settings that are set.
+     *
+     * @throws IllegalStateException if the requested protocol is not available
+     */
+    protected void initConnector() {
+        getTomcat().setPort(getConfig().getPort());
+        final ConnectorProtocol protocol = getConfig().getConnectorProtocol();
+        if (protocol != null) {
+            if (!protocol.isAvailable()) {
+                throw new IllegalStateException("Connector protocol [" + protocol + "] is not available with "
+                        + "this version of Tomcat.");
+            }
+            final Connector connector = new Connector(protocol.getProtocolHandlerClassName());
+            connector.setPort(getConfig().getPort());
+            getTomcat().getService().addConnector(connector);
+            getTomcat().setConnector(connector);
+        }
+
+        final Connector connector = getTomcat().getConnector();
+        setConnectorProperty(connector, "maxThreads", getConfig().getMaxThreads());
+        setConnectorProperty(connector, "minSpareThreads", getConfig().getMinSpareThreads());
+        setConnectorProperty(connector, "acceptCount", getConfig().getAcceptCount());
+        setConnectorProperty(connector, "maxConnections", getConfig().getMaxConnections());
+        setConnectorProperty(connector, "keepAliveTimeout", getConfig().getKeepAliveTimeout());
+        setConnectorProperty(connector, "maxKeepAliveRequests", getConfig().getMaxKeepAliveRequests());
+        setConnectorProperty(connector, "tcpNoDelay", getConfig().getTcpNoDelay());
+        setConnectorProperty(connector, "socket.rxBufSize", getConfig().getSocketReceiveBufferSize());
+        setConnectorProperty(connector, "socket.txBufSize", getConfig().getSocketSendBufferSize());
+        if (getConfig().isVirtualThreads()) {
+            initVirtualThreads(connector);
+        }
+    }
+
+    /**
+     * Registers an executor that processes each request of the specified {@link Connector}
+     * in a new virtual thread. Keeps the thread pool of the connector if the JVM does
+     * not support virtual threads.
+     *
+     * @param connector the connector to configure
+     */
+    protected void initVirtualThreads(Connector connector) {
+        if (!VirtualThreadExecutor.isSupported()) {
+            logger.info("Virtual threads are not supported by this JVM (" + System.getProperty("java.version")
+                    + "), using the thread pool of the connector. Java 24 or later is required.");
+            return;
+        }
+        if (!(connector.getProtocolHandler() instanceof AbstractProtocol)) {
+            logger.warn("Could not use virtual threads with " + connector.getProtocolHandler());
+            return;
+        }
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor("embed-vaadin-virtual");
+        getTomcat().getService().addExecutor(executor);
+        ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor);
     }
 
     /**
-     * Initializes the vaadin servlet and maps it to <tt>/*</tt>.
+     * Strips the specified {@link Context} from the features that are not required
+     * to run vaadin. The classpath is no longer scanned for jars and TLDs are not
+     * processed.
+     * <p/>
+     * Note that the context does not register the default and JSP servlets anyway
+     * since it is not configured from a <tt>web.xml</tt>.
+     *
+     * @param context the context to customize
+     * @see EmbedVaadinConfig#isMinimalContainer()
+     */
+    protected void initMinimalContainer(Context context) {
+        final StandardJarScanner jarScanner = new StandardJarScanner();
+        jarScanner.setScanClassPath(false);
+        jarScanner.setScanAllFiles(false);
+        jarScanner.setScanAllDirectories(false);
+        context.setJarScanner(jarScanner);
+        context.setTldValidation(false);
+        if (context instanceof StandardContext) {
+            ((StandardContext) context).setProcessTlds(false);
+        }
+    }
+
+    /**
+     * Swaps the sessions of the specified {@link Context} out to a directory of the
+     * base directory of Tomcat once they have been idle for the configured time. They
+     * are swapped back in when they are accessed. If the sessions are
+     * {@link EmbedVaadinConfig#isSessionPersistent() persistent}, all the sessions are
+     * swapped out when the server stops. Otherwise, the sessions that were swapped out
+     * are discarded when the server starts and stops.
+     *
+     * @param context the context to customize
+     * @see EmbedVaadinConfig#isSessionPassivation()
+     */
+    protected void initSessionPassivation(Context context) {
+        context.setManager(new PassivatingSessionManager(new File(baseDir, SESSIONS_DIRECTORY),
+                getConfig().getSessionPassivationIdleTime(), getConfig().isSessionPersistent()));
+    }
+
+    /**
+     * Applies the session timeout and the maximum number of active sessions of the
+     * configuration, if any, to the specified {@link Manager}. If a timeout is set, the
+     * expired sessions are looked up each time the background processor runs, that is
+     * every ten seconds by default, rather than every minute.
+     *
+     * @param manager the session manager of the context
+     * @see EmbedVaadinConfig#getSessionTimeout()
+     * @see EmbedVaadinConfig#getMaxActiveSessions()
+     */
+    protected void initSessionLimits(Manager manager) {
+        // In seconds, rather than in minutes as the session timeout of the context
+        if (getConfig().getSessionTimeout() != null) {
+            manager.setMaxInactiveInterval(getConfig().getSessionTimeout());
+            if (manager instanceof ManagerBase) {
+                ((ManagerBase) manager).setProcessExpiresFrequency(1);
+            }
+        }
+        if (getConfig().getMaxActiveSessions() != null) {
+            if (manager instanceof ManagerBase) {
+                ((ManagerBase) manager).setMaxActiveSessions(getConfig().getMaxActiveSessions());
+            } else {
+                logger.warn("Could not limit the number of active sessions of " + manager);
+            }
+        }
+    }
+
+    /**
+     * Evicts the sessions of the specified {@link Manager} that have been idle for the
+     * longest time when the usage of the old generation exceeds the configured threshold.
+     * The heap is checked every second.
+     *
+     * @param manager the session manager of the context
+     * @see EmbedVaadinConfig#getSessionEvictionThreshold()
+     */
+    protected void initSessionEviction(Manager manager) {
+        final SessionEvictionMonitor monitor = new SessionEvictionMonitor(manager,
+                getConfig().getSessionEvictionThreshold(), SessionEvictionMonitor.DEFAULT_MIN_IDLE_TIME);
+        if (monitor.isSupported()) {
+            sessionEvictionMonitor = monitor;
+        }
+    }
+
+    /**
+     * Saves the sessions of the specified {@link Context} to a compressed file of the
+     * base directory of Tomcat when the server stops, and restores them when it starts.
+     *
+     * @param context the context to customize
+     * @see EmbedVaadinConfig#isSessionPersistent()
+     */
+    protected void initSessionPersistence(Context context) {
+        context.setManager(new RestartableSessionManager(new File(baseDir, SESSIONS_FILE)));
+    }
+
+    /**
+     * Initializes the vaadin servlet and maps it to <tt>/*</tt>. If the
+     * {@link EmbedVaadinConfig#isStaticResourceServlet() static resource servlet} is
+     * enabled, also maps it to <tt>/VAADIN/*</tt>. If the
+     * {@link EmbedVaadinConfig#isCompression() compression} is enabled, the responses
+     * of the vaadin servlet are compressed. If {@link EmbedVaadinConfig#getPushMode() push}
+     * is enabled, the servlet supports asynchronous requests.
      * <p/>
      * Returns the associated {@link Wrapper} for further customization.
      *
@@ -154,15 +511,111 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
     protected <T extends VaadinServlet> Wrapper initializeVaadinServlet(T servlet) {
         // Setup vaadin servlet
         final Wrapper wrapper = Tomcat.addServlet(getContext(),
-                "vaadin", servlet);
+                VAADIN_SERVLET_NAME, servlet);
         if (getConfig().getWidgetSet() != null) {
             wrapper.addInitParameter("widgetset", getConfig().getWidgetSet());
         }
 
         wrapper.addMapping("/*");
+        if (PushUtils.isPushAvailable()) {
+            // Atmosphere is started even if push is disabled and fails if the resource does not exist
+            wrapper.addInitParameter(ATMOSPHERE_HANDLER_PATH_PARAM, "/");
+        }
+        if (getConfig().isStaticResourceServlet()) {
+            initializeStaticResourceServlet();
+        }
+        if (getConfig().isCompression()) {
+            initializeCompression();
+        }
+        if (getConfig().getPushMode().isEnabled()) {
+            initializePush(wrapper);
+        }
+        if (getConfig().isMetrics()) {
+            initializeMetricsServlet();
+        }
+        if (getConfig().isServerTiming()) {
+            wrapper.getPipeline().addValve(new ServerTimingValve());
+        }
+        requestMetrics.getResourceAccounting().setEnabled(getConfig().isResourceAccounting());
+        requestMetrics.getComponentTrees().setEnabled(getConfig().getComponentProfileInterval() > 0);
+
+        // Track the initialization of the servlet and the first response
+        final FirstRequestValve firstRequestValve = new FirstRequestValve();
+        wrapper.getPipeline().addValve(firstRequestValve);
+        wrapper.addInstanceListener(firstRequestValve);
+        return wrapper;
+    }
+
+    /**
+     * Initializes a {@link StaticResourceServlet} and maps it to <tt>/VAADIN/*</tt>. The
+     * servlet is loaded on startup so that its index is ready for the first request.
+     *
+     * @return the created wrapper for the servlet
+     */
+    protected Wrapper initializeStaticResourceServlet() {
+        staticResourceServlet = new StaticResourceServlet(getConfig().getContextRootDirectory(),
+                VAADIN_SERVLET_NAME, getConfig().getStaticResourceCacheSize(), getConfig().getSendfileThreshold());
+        final Wrapper wrapper = Tomcat.addServlet(getContext(), STATIC_RESOURCE_SERVLET_NAME,
+                staticResourceServlet);
+        wrapper.setLoadOnStartup(1);
+        wrapper.addMapping(StaticResourceServlet.MAPPING);
         return wrapper;
     }
 
+    /**
+     * Initializes a {@link MetricsServlet} and maps it to the metrics path of the
+     * configuration, and to the health check sub-path.
+     *
+     * @return the created wrapper for the servlet
+     */
+    protected Wrapper initializeMetricsServlet() {
+        final Wrapper wrapper = Tomcat.addServlet(getContext(), METRICS_SERVLET_NAME,
+                new MetricsServlet(statistics, requestMetrics));
+        wrapper.addMapping(getConfig().getMetricsPath());
+        wrapper.addMapping(getConfig().getMetricsPath() + MetricsServlet.HEALTH_PATH);
+        return wrapper;
+    }
+
+    /**
+     * Initializes a {@link GzipFilter} that compresses the responses of the vaadin
+     * servlet, according to the compression settings of the configuration.
+     */
+    protected void initializeCompression() {
+        gzipFilter = new GzipFilter(getConfig().getCompressionMinSize(), getConfig().getCompressionLevel(),
+                getConfig().getCompressionMimeTypes());
+        final FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName(GZIP_FILTER_NAME);
+        filterDef.setFilter(gzipFilter);
+        filterDef.setAsyncSupported("true");
+        getContext().addFilterDef(filterDef);
+
+        final FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(GZIP_FILTER_NAME);
+        filterMap.addServletName(VAADIN_SERVLET_NAME);
+        getContext().addFilterMap(filterMap);
+    }
+
+    /**
+     * Enables server push on the specified {@link Wrapper} of the vaadin servlet,
+     * according to the push settings of the configuration. Push is left disabled if
+     * it is not available.
+     *
+     * @param wrapper the wrapper of the vaadin servlet
+     * @see PushUtils#isPushAvailable()
+     */
+    protected void initializePush(Wrapper wrapper) {
+        if (!PushUtils.isPushAvailable()) {
+            logger.warn("Push mode [" + getConfig().getPushMode() + "] requires the vaadin-push module, "
+                    + "push is disabled.");
+            return;
+        }
+        wrapper.setAsyncSupported(true);
+        wrapper.addInitParameter(PUSH_MODE_PARAM, getConfig().getPushMode().name().toLowerCase(Locale.ENGLISH));
+        if (getConfig().getPushTransport() != null) {
+            wrapper.addInitParameter(PUSH_TRANSPORT_PARAM, getConfig().getPushTransport().getIdentifier());
+        }
+    }
+
     // private helpers
 
     /**
@@ -171,24 +624,99 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
      * @throws LifecycleException if tomcat failed to start
      */
     private void doStart() throws LifecycleException {
+        startupReport = new StartupReport();
+        startTime = System.currentTimeMillis();
+        configure();
+        startupReport.record(StartupReport.CONFIGURE, System.currentTimeMillis() - startTime);
+
         tomcat.getServer().addLifecycleListener(new TomcatLifecycleListener());
         logger.info("Deploying application to [" + getConfig().getDeployUrl() + "]");
+        final long tomcatStartTime = System.currentTimeMillis();
         tomcat.start();
+        startupReport.record(StartupReport.TOMCAT_START, System.currentTimeMillis() - tomcatStartTime);
 
         // Let's set the port that was used to actually start the application if necessary
         if (getConfig().getPort() == EmbedVaadinConfig.DEFAULT_PORT) {
             getConfig().setPort(getTomcat().getConnector().getLocalPort());
         }
 
-        logger.info("Application has been deployed to [" + getConfig().getDeployUrl() + "]");
         if (config.shouldOpenBrowser()) {
+            final long browserStartTime = System.currentTimeMillis();
             BrowserUtils.openBrowser(getConfig().getOpenBrowserUrl());
+            startupReport.record(StartupReport.BROWSER_LAUNCH, System.currentTimeMillis() - browserStartTime);
         }
-        if (isWaiting()) {
-            tomcat.getServer().await();
+        startupReport.setStartupTime(System.currentTimeMillis() - startTime);
+        writeStartupReport();
+        registerStatistics();
+        scheduleMetricsTasks();
+        logger.info("Application has been deployed to [" + getConfig().getDeployUrl() + "] in "
+                + startupReport.getStartupTime() + " ms.");
+    }
+
+    /**
+     * Blocks until the vaadin servlet answers a request for its bootstrap script. As
+     * the servlet is initialized lazily, this also makes sure that it is ready to
+     * handle the first actual request.
+     * <p/>
+     * If the {@link EmbedVaadinConfig#isStaticResourceServlet() static resource servlet}
+     * is enabled, the script is served without reaching the vaadin servlet so the latter
+     * is loaded explicitly once the probe has been answered.
+     *
+     * @throws IllegalStateException if the servlet did not answer in time
+     */
+    private void waitUntilReady() {
+        final String deployUrl = getConfig().getDeployUrl();
+        final String probeUrl = (deployUrl.endsWith("/") ? deployUrl : deployUrl + "/") + READY_PROBE_PATH;
+        final long timeout = System.currentTimeMillis() + READY_TIMEOUT;
+        while (true) {
+            try {
+                final HttpURLConnection connection = (HttpURLConnection) new URL(probeUrl).openConnection();
+                try {
+                    if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                        loadVaadinServlet();
+                        return;
+                    }
+                } finally {
+                    connection.disconnect();
+                }
+            } catch (IOException e) {
+                logger.trace("Probe at [" + probeUrl + "] failed", e);
+            }
+            if (System.currentTimeMillis() > timeout) {
+                throw new IllegalStateException("Vaadin servlet did not answer at [" + probeUrl + "] within "
+                        + READY_TIMEOUT + " ms.");
+            }
+            try {
+                Thread.sleep(READY_PROBE_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for [" + probeUrl + "]", e);
+            }
         }
     }
 
+    /**
+     * Loads the vaadin servlet if no request has initialized it yet.
+     *
+     * @throws IllegalStateException if the servlet could not be initialized
+     */
+    private void loadVaadinServlet() {
+        final Wrapper wrapper = (Wrapper) getContext().findChild(VAADIN_SERVLET_NAME);
+        if (wrapper == null || startupReport.getDuration(StartupReport.SERVLET_INIT) != null) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            wrapper.load();
+        } catch (ServletException e) {
+            throw new IllegalStateException("Failed to initialize the vaadin servlet", e);
+        }
+        if (wrapper.isUnavailable()) {
+            throw new IllegalStateException("Vaadin servlet is not available");
+        }
+        startupReport.record(StartupReport.SERVLET_INIT, System.currentTimeMillis() - start);
+    }
+
     /**
      * Stops the embedded tomcat.
      *
@@ -196,12 +724,148 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
      */
     private void doStop() throws LifecycleException {
         logger.info("Stopping tomcat.");
+        unregisterStatistics();
+        cancelMetricsTasks();
+        if (sessionEvictionMonitor != null) {
+            sessionEvictionMonitor.close();
+        }
         long startTime = System.currentTimeMillis();
         tomcat.stop();
         long duration = System.currentTimeMillis() - startTime;
         logger.info("Tomcat shutdown finished in " + duration + " ms.");
     }
 
+    /**
+     * Sets the specified property on the connector, if a value is set.
+     *
+     * @param connector the connector to configure
+     * @param name the name of the property
+     * @param value the value of the property or <tt>null</tt> to keep the default
+     */
+    private void setConnectorProperty(Connector connector, String name, Object value) {
+        if (value != null && !connector.setProperty(name, String.valueOf(value))) {
+            logger.warn("Property [" + name + "] is not supported by connector " + connector);
+        }
+    }
+
+    /**
+     * Writes the startup report to the configured file, if any.
+     *
+     * @see EmbedVaadinConfig#getStartupReportFile()
+     */
+    private void writeStartupReport() {
+        final File file = getConfig().getStartupReportFile();
+        if (file != null) {
+            try {
+                startupReport.writeTo(file);
+            } catch (IOException e) {
+                logger.warn("Failed to write startup report to [" + file.getAbsolutePath() + "]", e);
+            }
+        }
+    }
+
+    /**
+     * Registers the {@link ServerStatistics} of this instance as an MBean.
+     */
+    private void registerStatistics() {
+        final ObjectName objectName = statistics.getObjectName();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, objectName);
+        } catch (JMException e) {
+            logger.warn("Failed to register statistics MBean [" + objectName + "]", e);
+        }
+    }
+
+    /**
+     * Unregisters the {@link ServerStatistics} MBean of this instance, if necessary.
+     */
+    private void unregisterStatistics() {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = statistics.getObjectName();
+        try {
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            logger.warn("Failed to unregister statistics MBean [" + objectName + "]", e);
+        }
+    }
+
+    /**
+     * Schedules the periodic tasks of the metrics, such as the summary of the size of
+     * the UIDL responses, if necessary.
+     *
+     * @see EmbedVaadinConfig#getUidlSummaryInterval()
+     * @see EmbedVaadinConfig#getComponentProfileInterval()
+     * @see EmbedVaadinConfig#getSessionFootprintInterval()
+     * @see EmbedVaadinConfig#getSessionEvictionThreshold()
+     */
+    private void scheduleMetricsTasks() {
+        scheduleMetricsTask(getConfig().getUidlSummaryInterval(), new Runnable() {
+            public void run() {
+                requestMetrics.getUidlSizes().logSummary();
+            }
+        });
+        scheduleMetricsTask(getConfig().getComponentProfileInterval(), new Runnable() {
+            public void run() {
+                requestMetrics.getComponentTrees().profile(statistics.getVaadinSessions());
+            }
+        });
+        scheduleMetricsTask(getConfig().getSessionFootprintInterval(), new Runnable() {
+            public void run() {
+                requestMetrics.getSessionFootprints().sample(statistics.getVaadinSessions());
+            }
+        });
+        if (sessionEvictionMonitor != null) {
+            scheduleMetricsTask(1, new Runnable() {
+                public void run() {
+                    sessionEvictionMonitor.check();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the specified task at a fixed rate, unless the interval is not positive.
+     *
+     * @param interval the interval in seconds
+     * @param task the task to run
+     */
+    private void scheduleMetricsTask(int interval, final Runnable task) {
+        if (interval <= 0) {
+            return;
+        }
+        if (metricsScheduler == null) {
+            metricsScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "embed-vaadin-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        metricsScheduler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                // An exception would cancel the next executions
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to run metrics task", e);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic tasks of the metrics, if necessary.
+     */
+    private void cancelMetricsTasks() {
+        if (metricsScheduler != null) {
+            metricsScheduler.shutdownNow();
+            metricsScheduler = null;
+        }
+    }
+
     /**
      * Adds a  shutdown hook to stop the server when the JVM is stopped.
      */
@@ -230,6 +894,8 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
         public void run() {
             try {
                 tomcat.stop();
+                // The JVM does not wait for the sessions to be saved otherwise
+                RestartableSessionManager.awaitPendingWrites();
                 logger.info("Stopped Tomcat");
             } catch (LifecycleException e) {
                 logger.warn("Failed to stop Tomcat", e);
@@ -251,4 +917,61 @@ public abstract class AbstractEmbedVaadinTomcat implements EmbedVaadinServer, Se
             }
         }
     }
+
+    /**
+     * Records each request of the webapp in the {@link ServerStatistics}.
+     */
+    private final class StatisticsValve extends ValveBase {
+
+        private StatisticsValve() {
+            super(true);
+        }
+
+        @Override
+        public void invoke(Request request, Response response) throws IOException, ServletException {
+            try {
+                getNext().invoke(request, response);
+            } finally {
+                statistics.recordRequest(response.getStatus(), request.getCoyoteRequest().getBytesRead(),
+                        response.getContentWritten());
+            }
+        }
+    }
+
+    /**
+     * Records the initialization of the servlet and the completion of the first
+     * response in the startup report. The servlet is initialized once the request
+     * has entered the wrapper and before the servlet is actually invoked.
+     */
+    private final class FirstRequestValve extends ValveBase implements InstanceListener {
+
+        private final AtomicBoolean firstRequest = new AtomicBoolean(true);
+        private volatile long requestStartTime;
+
+        private FirstRequestValve() {
+            super(true);
+        }
+
+        @Override
+        public void invoke(Request request, Response response) throws IOException, ServletException {
+            if (!firstRequest.compareAndSet(true, false)) {
+                getNext().invoke(request, response);
+                return;
+            }
+            requestStartTime = System.currentTimeMillis();
+            try {
+                getNext().invoke(request, response);
+            } finally {
+                startupReport.record(StartupReport.FIRST_BYTE, System.currentTimeMillis() - startTime);
+                writeStartupReport();
+            }
+        }
+
+        public void instanceEvent(InstanceEvent event) {
+            if (event.getType().equals(InstanceEvent.BEFORE_SERVICE_EVENT) && requestStartTime != 0
+                    && startupReport.getDuration(StartupReport.SERVLET_INIT) == null) {
+                startupReport.record(StartupReport.SERVLET_INIT, System.currentTimeMillis() - requestStartTime);
+            }
+        }
+    }
 }
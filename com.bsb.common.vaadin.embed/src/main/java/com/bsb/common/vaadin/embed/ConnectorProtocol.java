@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The HTTP protocol implementations that the connector of the embedded server can use.
+ *
+ * @author Stephane Nicoll
+ * @see EmbedVaadinConfig#getConnectorProtocol()
+ */
+public enum ConnectorProtocol {
+
+    /**
+     * Blocking I/O, one thread per connection.
+     */
+    BIO("org.apache.coyote.http11.Http11Protocol"),
+
+    /**
+     * Non blocking I/O, based on a selector.
+     */
+    NIO("org.apache.coyote.http11.Http11NioProtocol"),
+
+    /**
+     * Asynchronous I/O, based on NIO.2. Requires a version of Tomcat that provides it.
+     */
+    NIO2("org.apache.coyote.http11.Http11Nio2Protocol");
+
+    private final String protocolHandlerClassName;
+
+    private ConnectorProtocol(String protocolHandlerClassName) {
+        this.protocolHandlerClassName = protocolHandlerClassName;
+    }
+
+    /**
+     * Returns the name of the class of the tomcat protocol handler implementing this protocol.
+     *
+     * @return the protocol handler class name
+     */
+    public String getProtocolHandlerClassName() {
+        return protocolHandlerClassName;
+    }
+
+    /**
+     * Specifies if this protocol is available with the version of Tomcat in the classpath.
+     *
+     * @return <tt>true</tt> if this protocol can be used
+     */
+    public boolean isAvailable() {
+        try {
+            Class.forName(protocolHandlerClassName, false, ConnectorProtocol.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the protocol matching the specified name, ignoring case.
+     *
+     * @param name the name of the protocol, i.e. <tt>bio</tt>, <tt>nio</tt> or <tt>nio2</tt>
+     * @return the matching protocol
+     * @throws IllegalArgumentException if no such protocol exists
+     */
+    public static ConnectorProtocol fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown connector protocol [" + name + "], supported values are "
+                    + Arrays.asList(values()));
+        }
+    }
+}
@@ -15,9 +15,12 @@
  */
 package com.bsb.common.vaadin.embed;
 
+import com.bsb.common.vaadin.embed.push.PushUtils;
 import com.bsb.common.vaadin.embed.util.PropertiesHelper;
 import com.google.common.base.Objects;
 import com.google.common.io.Files;
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.shared.ui.ui.Transport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +28,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -40,7 +46,55 @@ import java.util.Properties;
  * <li><tt>server.await</tt>: to specify if the thread should block when the server has started</li>
  * <li><tt>vaadin.widgetSet</tt>: to specify the widgetSet to use for the vaadin application</li>
  * <li><tt>vaadin.productionMode</tt>: to specify if the production mode should be enabled or not</li>
+ * <li><tt>vaadin.heartbeatInterval</tt>: to specify the number of seconds between the heartbeats of an
+ * open page</li>
+ * <li><tt>vaadin.closeIdleSessions</tt>: to specify if the sessions that only receive heartbeats should
+ * be closed once the session timeout has elapsed</li>
  * <li><tt>open.browser</tt>: to specify if the browser should be opened automatically</li>
+ * <li><tt>server.startupReport</tt>: to specify a file to write the startup report to</li>
+ * <li><tt>server.workDirectory</tt>: to specify the base directory of Tomcat rather than a new
+ * temporary directory</li>
+ * <li><tt>server.minimalContainer</tt>: to specify if the container should skip features that are
+ * not needed to run vaadin such as classpath and TLD scanning</li>
+ * <li><tt>connector.protocol</tt>: to specify the protocol of the HTTP connector (<tt>bio</tt>, <tt>nio</tt>
+ * or <tt>nio2</tt>)</li>
+ * <li><tt>connector.maxThreads</tt> and <tt>connector.minSpareThreads</tt>: to tune the request thread pool</li>
+ * <li><tt>connector.acceptCount</tt> and <tt>connector.maxConnections</tt>: to tune the number of
+ * connections that are queued and accepted</li>
+ * <li><tt>connector.keepAliveTimeout</tt> and <tt>connector.maxKeepAliveRequests</tt>: to tune
+ * keep-alive connections</li>
+ * <li><tt>connector.tcpNoDelay</tt>, <tt>connector.socketReceiveBufferSize</tt> and
+ * <tt>connector.socketSendBufferSize</tt>: to tune the sockets</li>
+ * <li><tt>connector.virtualThreads</tt>: to process each request in a new virtual thread, if
+ * supported by the JVM</li>
+ * <li><tt>server.staticResourceServlet</tt>: to serve the resources of the <tt>VAADIN</tt> directory with
+ * a dedicated servlet rather than with the vaadin servlet</li>
+ * <li><tt>server.staticResourceCacheSize</tt>: to specify the maximum number of bytes that the static
+ * resource servlet keeps in memory</li>
+ * <li><tt>compression.enabled</tt>: to compress the responses of the vaadin servlet with gzip</li>
+ * <li><tt>compression.minSize</tt>, <tt>compression.mimeTypes</tt> and <tt>compression.level</tt>: to tune
+ * which responses are compressed and how</li>
+ * <li><tt>server.sendfileThreshold</tt>: to specify the minimum size of a file of the root directory to
+ * serve it without copying it through the heap</li>
+ * <li><tt>push.mode</tt> and <tt>push.transport</tt>: to enable server push and to choose its transport</li>
+ * <li><tt>metrics.enabled</tt> and <tt>metrics.path</tt>: to serve the metrics of the server in the text
+ * exposition format of Prometheus</li>
+ * <li><tt>metrics.serverTiming</tt>: to report the phases of each request of the vaadin servlet in a
+ * <tt>Server-Timing</tt> response header</li>
+ * <li><tt>metrics.resourceAccounting</tt>: to charge the CPU time and the allocations of each request to
+ * its session, UI class and request type</li>
+ * <li><tt>metrics.uidlSummaryInterval</tt>: to log a summary of the size of the UIDL responses periodically</li>
+ * <li><tt>metrics.componentProfileInterval</tt>: to profile the component trees of the live UIs periodically</li>
+ * <li><tt>metrics.sessionFootprintInterval</tt>: to measure the footprint of the sessions periodically</li>
+ * <li><tt>session.passivation</tt> and <tt>session.passivationIdleTime</tt>: to swap the idle sessions
+ * out to disk</li>
+ * <li><tt>session.persistent</tt>: to save the sessions in the work directory when the server stops
+ * and to restore them when it starts</li>
+ * <li><tt>session.timeout</tt>: to specify the number of seconds of inactivity after which a session
+ * expires</li>
+ * <li><tt>session.maxActiveSessions</tt>: to specify the maximum number of sessions held in memory</li>
+ * <li><tt>session.evictionThreshold</tt>: to evict the sessions that have been idle for the longest time
+ * when the heap is under pressure</li>
  * </ul>
  *
  * @author Stephane Nicoll
@@ -107,6 +161,23 @@ public class EmbedVaadinConfig implements Serializable {
      */
     public static final boolean DEFAULT_PRODUCTION_MODE = false;
 
+    /**
+     * The key defining the number of seconds between the heartbeat requests of an open
+     * page. Holds an integer.
+     */
+    public static final String KEY_HEARTBEAT_INTERVAL = "vaadin.heartbeatInterval";
+
+    /**
+     * The key defining if the sessions that only receive heartbeat requests should be
+     * closed once the session timeout has elapsed. Holds a boolean.
+     */
+    public static final String KEY_CLOSE_IDLE_SESSIONS = "vaadin.closeIdleSessions";
+
+    /**
+     * Heartbeats keep the sessions alive by default.
+     */
+    public static final boolean DEFAULT_CLOSE_IDLE_SESSIONS = false;
+
     /**
      * The key defining if the browser should be opened once the server has started. Holds a boolean.
      */
@@ -123,6 +194,321 @@ public class EmbedVaadinConfig implements Serializable {
      */
     public static final String KEY_CUSTOM_BROWSER_URL = "browser.customUrl";
 
+    /**
+     * The key defining the file to write the {@link StartupReport startup report} to, as
+     * a JSON document. Does not write any file by default.
+     */
+    public static final String KEY_STARTUP_REPORT_FILE = "server.startupReport";
+
+    /**
+     * The key defining the base directory of Tomcat. A new temporary directory is
+     * used by default.
+     */
+    public static final String KEY_WORK_DIRECTORY = "server.workDirectory";
+
+    /**
+     * The key defining if a minimal container should be used. Holds a boolean.
+     */
+    public static final String KEY_MINIMAL_CONTAINER = "server.minimalContainer";
+
+    /**
+     * Use a standard container by default.
+     */
+    public static final boolean DEFAULT_MINIMAL_CONTAINER = false;
+
+    /**
+     * The key defining the protocol of the HTTP connector. Holds either <tt>bio</tt>, <tt>nio</tt>
+     * or <tt>nio2</tt>. Uses the default protocol of the container if not set.
+     */
+    public static final String KEY_CONNECTOR_PROTOCOL = "connector.protocol";
+
+    /**
+     * The key defining the maximum number of request processing threads. Holds an integer.
+     */
+    public static final String KEY_MAX_THREADS = "connector.maxThreads";
+
+    /**
+     * The key defining the minimum number of request processing threads kept alive. Holds an integer.
+     */
+    public static final String KEY_MIN_SPARE_THREADS = "connector.minSpareThreads";
+
+    /**
+     * The key defining the maximum queue length of incoming connections when all threads
+     * are busy. Holds an integer.
+     */
+    public static final String KEY_ACCEPT_COUNT = "connector.acceptCount";
+
+    /**
+     * The key defining the maximum number of connections that the server accepts and
+     * processes at any given time. Holds an integer.
+     */
+    public static final String KEY_MAX_CONNECTIONS = "connector.maxConnections";
+
+    /**
+     * The key defining the number of milliseconds to wait for another request on a
+     * keep-alive connection. Holds an integer.
+     */
+    public static final String KEY_KEEP_ALIVE_TIMEOUT = "connector.keepAliveTimeout";
+
+    /**
+     * The key defining the maximum number of requests on a keep-alive connection, <tt>1</tt>
+     * disables keep-alive and <tt>-1</tt> allows an unlimited number of requests. Holds an integer.
+     */
+    public static final String KEY_MAX_KEEP_ALIVE_REQUESTS = "connector.maxKeepAliveRequests";
+
+    /**
+     * The key defining if the TCP_NODELAY option should be set on sockets. Holds a boolean.
+     */
+    public static final String KEY_TCP_NO_DELAY = "connector.tcpNoDelay";
+
+    /**
+     * The key defining the size of the socket receive buffer, in bytes. Holds an integer.
+     */
+    public static final String KEY_SOCKET_RECEIVE_BUFFER_SIZE = "connector.socketReceiveBufferSize";
+
+    /**
+     * The key defining the size of the socket send buffer, in bytes. Holds an integer.
+     */
+    public static final String KEY_SOCKET_SEND_BUFFER_SIZE = "connector.socketSendBufferSize";
+
+    /**
+     * The key defining if each request should be processed in a new virtual thread rather
+     * than in the thread pool of the connector. Only applies if the JVM supports virtual
+     * threads. Holds a boolean.
+     */
+    public static final String KEY_VIRTUAL_THREADS = "connector.virtualThreads";
+
+    /**
+     * Do not use virtual threads by default.
+     */
+    public static final boolean DEFAULT_VIRTUAL_THREADS = false;
+
+    /**
+     * The key defining if the resources of the <tt>VAADIN</tt> directory should be served by a
+     * dedicated servlet rather than by the vaadin servlet. Holds a boolean.
+     */
+    public static final String KEY_STATIC_RESOURCE_SERVLET = "server.staticResourceServlet";
+
+    /**
+     * Let the vaadin servlet serve static resources by default.
+     */
+    public static final boolean DEFAULT_STATIC_RESOURCE_SERVLET = false;
+
+    /**
+     * The key defining the maximum number of bytes that the static resource servlet keeps
+     * in memory, including the gzip variants. <tt>0</tt> disables the cache. Holds an integer.
+     */
+    public static final String KEY_STATIC_RESOURCE_CACHE_SIZE = "server.staticResourceCacheSize";
+
+    /**
+     * Cache up to 16 MB of static resources by default.
+     */
+    public static final int DEFAULT_STATIC_RESOURCE_CACHE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The key defining if the responses of the vaadin servlet, such as UIDL and bootstrap
+     * responses, should be compressed with gzip. Holds a boolean.
+     */
+    public static final String KEY_COMPRESSION = "compression.enabled";
+
+    /**
+     * Do not compress responses by default.
+     */
+    public static final boolean DEFAULT_COMPRESSION = false;
+
+    /**
+     * The key defining the minimum size of a response to compress it, in bytes. Holds an integer.
+     */
+    public static final String KEY_COMPRESSION_MIN_SIZE = "compression.minSize";
+
+    /**
+     * Compress responses of at least 2 KB by default.
+     */
+    public static final int DEFAULT_COMPRESSION_MIN_SIZE = 2048;
+
+    /**
+     * The key defining the mime types of the responses to compress. Holds a comma separated
+     * list of mime types.
+     */
+    public static final String KEY_COMPRESSION_MIME_TYPES = "compression.mimeTypes";
+
+    /**
+     * Compress the bootstrap page and the UIDL responses by default.
+     */
+    public static final String DEFAULT_COMPRESSION_MIME_TYPES = "text/html,application/json";
+
+    /**
+     * The key defining the compression level, from 1 (fastest) to 9 (best compression).
+     * Holds an integer.
+     */
+    public static final String KEY_COMPRESSION_LEVEL = "compression.level";
+
+    /**
+     * Use the default level of gzip by default.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    /**
+     * The key defining the minimum size of a file of the root directory, in bytes, to serve it
+     * with <tt>sendfile</tt> rather than by copying it through heap buffers. Only used by
+     * the static resource servlet, <tt>0</tt> disables it. Holds an integer.
+     */
+    public static final String KEY_SENDFILE_THRESHOLD = "server.sendfileThreshold";
+
+    /**
+     * Always copy the content of a file by default.
+     */
+    public static final int DEFAULT_SENDFILE_THRESHOLD = 0;
+
+    /**
+     * The key defining the push mode of the UIs. Holds either <tt>disabled</tt>, <tt>manual</tt>
+     * or <tt>automatic</tt>. Requires the <tt>vaadin-push</tt> module to be enabled.
+     */
+    public static final String KEY_PUSH_MODE = "push.mode";
+
+    /**
+     * Push is disabled by default.
+     */
+    public static final PushMode DEFAULT_PUSH_MODE = PushMode.DISABLED;
+
+    /**
+     * The key defining the transport of server push. Holds either <tt>websocket</tt> or
+     * <tt>streaming</tt>. Uses the default transport of vaadin if not set.
+     */
+    public static final String KEY_PUSH_TRANSPORT = "push.transport";
+
+    /**
+     * The key defining if a servlet exposing the metrics of the server in the text exposition
+     * format of Prometheus should be registered. Holds a boolean.
+     */
+    public static final String KEY_METRICS = "metrics.enabled";
+
+    /**
+     * Do not expose metrics by default.
+     */
+    public static final boolean DEFAULT_METRICS = false;
+
+    /**
+     * The key defining the path of the metrics servlet, relative to the context. The health
+     * check is available at the <tt>/health</tt> sub-path. Holds a path starting with <tt>/</tt>.
+     */
+    public static final String KEY_METRICS_PATH = "metrics.path";
+
+    /**
+     * Expose metrics at <tt>/metrics</tt> by default.
+     */
+    public static final String DEFAULT_METRICS_PATH = "/metrics";
+
+    /**
+     * The key defining if the responses of the vaadin servlet should hold a <tt>Server-Timing</tt>
+     * header with the phases of the request. Holds a boolean.
+     */
+    public static final String KEY_SERVER_TIMING = "metrics.serverTiming";
+
+    /**
+     * Do not emit the <tt>Server-Timing</tt> header by default.
+     */
+    public static final boolean DEFAULT_SERVER_TIMING = false;
+
+    /**
+     * The key defining if the CPU time and the allocations of the requests should be charged to
+     * their session, UI class and request type from startup. Holds a boolean.
+     */
+    public static final String KEY_RESOURCE_ACCOUNTING = "metrics.resourceAccounting";
+
+    /**
+     * Do not account the resources of the requests by default.
+     */
+    public static final boolean DEFAULT_RESOURCE_ACCOUNTING = false;
+
+    /**
+     * The key defining the interval, in seconds, at which a summary of the size of the UIDL
+     * responses is logged. Holds an integer, <tt>0</tt> disables the summary.
+     */
+    public static final String KEY_UIDL_SUMMARY_INTERVAL = "metrics.uidlSummaryInterval";
+
+    /**
+     * Do not log the summary of the size of the UIDL responses by default.
+     */
+    public static final int DEFAULT_UIDL_SUMMARY_INTERVAL = 0;
+
+    /**
+     * The key defining the interval, in seconds, at which the component trees of the live
+     * UIs are profiled. Holds an integer, <tt>0</tt> disables the profiling.
+     */
+    public static final String KEY_COMPONENT_PROFILE_INTERVAL = "metrics.componentProfileInterval";
+
+    /**
+     * Do not profile the component trees by default.
+     */
+    public static final int DEFAULT_COMPONENT_PROFILE_INTERVAL = 0;
+
+    /**
+     * The key defining the interval, in seconds, at which the footprint of the sessions
+     * is measured. Holds an integer, <tt>0</tt> disables the measurement.
+     */
+    public static final String KEY_SESSION_FOOTPRINT_INTERVAL = "metrics.sessionFootprintInterval";
+
+    /**
+     * Do not measure the footprint of the sessions by default.
+     */
+    public static final int DEFAULT_SESSION_FOOTPRINT_INTERVAL = 0;
+
+    /**
+     * The key defining if the idle sessions should be swapped out to disk. Holds a boolean.
+     */
+    public static final String KEY_SESSION_PASSIVATION = "session.passivation";
+
+    /**
+     * Keep the sessions in memory by default.
+     */
+    public static final boolean DEFAULT_SESSION_PASSIVATION = false;
+
+    /**
+     * The key defining the number of seconds a session has to be idle before it is
+     * swapped out to disk. Holds an integer.
+     */
+    public static final String KEY_SESSION_PASSIVATION_IDLE_TIME = "session.passivationIdleTime";
+
+    /**
+     * Swap out the sessions that have been idle for two minutes by default, which is
+     * less than the default heartbeat interval of vaadin.
+     */
+    public static final int DEFAULT_SESSION_PASSIVATION_IDLE_TIME = 120;
+
+    /**
+     * The key defining if the sessions should be saved when the server stops and restored
+     * when it starts. Holds a boolean.
+     */
+    public static final String KEY_SESSION_PERSISTENT = "session.persistent";
+
+    /**
+     * Discard the sessions when the server stops by default.
+     */
+    public static final boolean DEFAULT_SESSION_PERSISTENT = false;
+
+    /**
+     * The key defining the number of seconds of inactivity after which a session
+     * expires. Holds an integer.
+     */
+    public static final String KEY_SESSION_TIMEOUT = "session.timeout";
+
+    /**
+     * The key defining the maximum number of sessions held in memory. Holds an integer.
+     */
+    public static final String KEY_MAX_ACTIVE_SESSIONS = "session.maxActiveSessions";
+
+    /**
+     * The key defining the percentage of the old generation that may be used after a
+     * collection before idle sessions are evicted. Holds an integer.
+     */
+    public static final String KEY_SESSION_EVICTION_THRESHOLD = "session.evictionThreshold";
+
+    /**
+     * Do not evict sessions under heap pressure by default.
+     */
+    public static final int DEFAULT_SESSION_EVICTION_THRESHOLD = 0;
+
     private int port;
     private String contextPath;
     private File contextRootDirectory;
@@ -130,10 +516,50 @@ public class EmbedVaadinConfig implements Serializable {
 
     private String widgetSet;
     private boolean productionMode;
+    private Integer heartbeatInterval;
+    private boolean closeIdleSessions;
 
     private boolean openBrowser;
     private String customBrowserUrl;
 
+    private File startupReportFile;
+    private File workDirectory;
+    private boolean minimalContainer;
+
+    private ConnectorProtocol connectorProtocol;
+    private Integer maxThreads;
+    private Integer minSpareThreads;
+    private Integer acceptCount;
+    private Integer maxConnections;
+    private Integer keepAliveTimeout;
+    private Integer maxKeepAliveRequests;
+    private Boolean tcpNoDelay;
+    private Integer socketReceiveBufferSize;
+    private Integer socketSendBufferSize;
+    private boolean virtualThreads;
+    private boolean staticResourceServlet;
+    private int staticResourceCacheSize;
+    private int sendfileThreshold;
+    private boolean compression;
+    private int compressionMinSize;
+    private List<String> compressionMimeTypes;
+    private int compressionLevel;
+    private PushMode pushMode;
+    private Transport pushTransport;
+    private boolean metrics;
+    private String metricsPath;
+    private boolean serverTiming;
+    private boolean resourceAccounting;
+    private int uidlSummaryInterval;
+    private int componentProfileInterval;
+    private int sessionFootprintInterval;
+    private boolean sessionPassivation;
+    private int sessionPassivationIdleTime;
+    private boolean sessionPersistent;
+    private Integer sessionTimeout;
+    private Integer maxActiveSessions;
+    private int sessionEvictionThreshold;
+
     /**
      * Creates a new instance using the configuration in the given {@link Properties}
      *
@@ -153,10 +579,70 @@ public class EmbedVaadinConfig implements Serializable {
 
         widgetSet = properties.getProperty(KEY_WIDGET_SET);
         productionMode = helper.getBooleanProperty(KEY_PRODUCTION_MODE, DEFAULT_PRODUCTION_MODE);
+        heartbeatInterval = helper.getIntProperty(KEY_HEARTBEAT_INTERVAL);
+        closeIdleSessions = helper.getBooleanProperty(KEY_CLOSE_IDLE_SESSIONS, DEFAULT_CLOSE_IDLE_SESSIONS);
 
         openBrowser = helper.getBooleanProperty(KEY_OPEN_BROWSER, DEFAULT_OPEN_BROWSER);
         customBrowserUrl = properties.getProperty(KEY_CUSTOM_BROWSER_URL);
 
+        final String startupReport = properties.getProperty(KEY_STARTUP_REPORT_FILE);
+        if (startupReport != null) {
+            startupReportFile = new File(startupReport);
+        }
+        final String workDirectoryPath = properties.getProperty(KEY_WORK_DIRECTORY);
+        if (workDirectoryPath != null) {
+            workDirectory = new File(workDirectoryPath);
+        }
+        minimalContainer = helper.getBooleanProperty(KEY_MINIMAL_CONTAINER, DEFAULT_MINIMAL_CONTAINER);
+
+        final String protocol = properties.getProperty(KEY_CONNECTOR_PROTOCOL);
+        if (protocol != null) {
+            connectorProtocol = ConnectorProtocol.fromName(protocol);
+        }
+        maxThreads = helper.getIntProperty(KEY_MAX_THREADS);
+        minSpareThreads = helper.getIntProperty(KEY_MIN_SPARE_THREADS);
+        acceptCount = helper.getIntProperty(KEY_ACCEPT_COUNT);
+        maxConnections = helper.getIntProperty(KEY_MAX_CONNECTIONS);
+        keepAliveTimeout = helper.getIntProperty(KEY_KEEP_ALIVE_TIMEOUT);
+        maxKeepAliveRequests = helper.getIntProperty(KEY_MAX_KEEP_ALIVE_REQUESTS);
+        tcpNoDelay = helper.getBooleanProperty(KEY_TCP_NO_DELAY);
+        socketReceiveBufferSize = helper.getIntProperty(KEY_SOCKET_RECEIVE_BUFFER_SIZE);
+        socketSendBufferSize = helper.getIntProperty(KEY_SOCKET_SEND_BUFFER_SIZE);
+        virtualThreads = helper.getBooleanProperty(KEY_VIRTUAL_THREADS, DEFAULT_VIRTUAL_THREADS);
+        staticResourceServlet = helper.getBooleanProperty(KEY_STATIC_RESOURCE_SERVLET,
+                DEFAULT_STATIC_RESOURCE_SERVLET);
+        staticResourceCacheSize = helper.getIntProperty(KEY_STATIC_RESOURCE_CACHE_SIZE,
+                DEFAULT_STATIC_RESOURCE_CACHE_SIZE);
+        sendfileThreshold = helper.getIntProperty(KEY_SENDFILE_THRESHOLD, DEFAULT_SENDFILE_THRESHOLD);
+        compression = helper.getBooleanProperty(KEY_COMPRESSION, DEFAULT_COMPRESSION);
+        compressionMinSize = helper.getIntProperty(KEY_COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE);
+        compressionMimeTypes = helper.getListProperty(KEY_COMPRESSION_MIME_TYPES,
+                DEFAULT_COMPRESSION_MIME_TYPES);
+        compressionLevel = helper.getIntProperty(KEY_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL);
+        final String mode = properties.getProperty(KEY_PUSH_MODE);
+        pushMode = (mode != null ? PushUtils.getPushMode(mode) : DEFAULT_PUSH_MODE);
+        final String transport = properties.getProperty(KEY_PUSH_TRANSPORT);
+        if (transport != null) {
+            pushTransport = PushUtils.getTransport(transport);
+        }
+        metrics = helper.getBooleanProperty(KEY_METRICS, DEFAULT_METRICS);
+        metricsPath = properties.getProperty(KEY_METRICS_PATH, DEFAULT_METRICS_PATH).trim();
+        serverTiming = helper.getBooleanProperty(KEY_SERVER_TIMING, DEFAULT_SERVER_TIMING);
+        resourceAccounting = helper.getBooleanProperty(KEY_RESOURCE_ACCOUNTING, DEFAULT_RESOURCE_ACCOUNTING);
+        uidlSummaryInterval = helper.getIntProperty(KEY_UIDL_SUMMARY_INTERVAL, DEFAULT_UIDL_SUMMARY_INTERVAL);
+        componentProfileInterval = helper.getIntProperty(KEY_COMPONENT_PROFILE_INTERVAL,
+                DEFAULT_COMPONENT_PROFILE_INTERVAL);
+        sessionFootprintInterval = helper.getIntProperty(KEY_SESSION_FOOTPRINT_INTERVAL,
+                DEFAULT_SESSION_FOOTPRINT_INTERVAL);
+        sessionPassivation = helper.getBooleanProperty(KEY_SESSION_PASSIVATION, DEFAULT_SESSION_PASSIVATION);
+        sessionPassivationIdleTime = helper.getIntProperty(KEY_SESSION_PASSIVATION_IDLE_TIME,
+                DEFAULT_SESSION_PASSIVATION_IDLE_TIME);
+        sessionPersistent = helper.getBooleanProperty(KEY_SESSION_PERSISTENT, DEFAULT_SESSION_PERSISTENT);
+        sessionTimeout = helper.getIntProperty(KEY_SESSION_TIMEOUT);
+        maxActiveSessions = helper.getIntProperty(KEY_MAX_ACTIVE_SESSIONS);
+        sessionEvictionThreshold = helper.getIntProperty(KEY_SESSION_EVICTION_THRESHOLD,
+                DEFAULT_SESSION_EVICTION_THRESHOLD);
+
         logger.debug("Using " + this);
 
         // Validate
@@ -175,8 +661,46 @@ public class EmbedVaadinConfig implements Serializable {
         this.waiting = clone.waiting;
         this.widgetSet = clone.widgetSet;
         this.productionMode = clone.productionMode;
+        this.heartbeatInterval = clone.heartbeatInterval;
+        this.closeIdleSessions = clone.closeIdleSessions;
         this.openBrowser = clone.openBrowser;
         this.customBrowserUrl = clone.customBrowserUrl;
+        this.startupReportFile = clone.startupReportFile;
+        this.workDirectory = clone.workDirectory;
+        this.minimalContainer = clone.minimalContainer;
+        this.connectorProtocol = clone.connectorProtocol;
+        this.maxThreads = clone.maxThreads;
+        this.minSpareThreads = clone.minSpareThreads;
+        this.acceptCount = clone.acceptCount;
+        this.maxConnections = clone.maxConnections;
+        this.keepAliveTimeout = clone.keepAliveTimeout;
+        this.maxKeepAliveRequests = clone.maxKeepAliveRequests;
+        this.tcpNoDelay = clone.tcpNoDelay;
+        this.socketReceiveBufferSize = clone.socketReceiveBufferSize;
+        this.socketSendBufferSize = clone.socketSendBufferSize;
+        this.virtualThreads = clone.virtualThreads;
+        this.staticResourceServlet = clone.staticResourceServlet;
+        this.staticResourceCacheSize = clone.staticResourceCacheSize;
+        this.sendfileThreshold = clone.sendfileThreshold;
+        this.compression = clone.compression;
+        this.compressionMinSize = clone.compressionMinSize;
+        this.compressionMimeTypes = new ArrayList<String>(clone.compressionMimeTypes);
+        this.compressionLevel = clone.compressionLevel;
+        this.pushMode = clone.pushMode;
+        this.pushTransport = clone.pushTransport;
+        this.metrics = clone.metrics;
+        this.metricsPath = clone.metricsPath;
+        this.serverTiming = clone.serverTiming;
+        this.resourceAccounting = clone.resourceAccounting;
+        this.uidlSummaryInterval = clone.uidlSummaryInterval;
+        this.componentProfileInterval = clone.componentProfileInterval;
+        this.sessionFootprintInterval = clone.sessionFootprintInterval;
+        this.sessionPassivation = clone.sessionPassivation;
+        this.sessionPassivationIdleTime = clone.sessionPassivationIdleTime;
+        this.sessionPersistent = clone.sessionPersistent;
+        this.sessionTimeout = clone.sessionTimeout;
+        this.maxActiveSessions = clone.maxActiveSessions;
+        this.sessionEvictionThreshold = clone.sessionEvictionThreshold;
     }
 
     /**
@@ -264,6 +788,29 @@ public class EmbedVaadinConfig implements Serializable {
         return productionMode;
     }
 
+    /**
+     * Returns the number of seconds between the heartbeat requests of an open page or
+     * <tt>null</tt> to use the default of vaadin, that is five minutes. A UI that missed
+     * three consecutive heartbeats is closed.
+     *
+     * @return the heartbeat interval in seconds or <tt>null</tt> if none is set
+     */
+    public Integer getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    /**
+     * Specifies if a session that only receives heartbeat requests is closed once the
+     * {@link #getSessionTimeout() session timeout} has elapsed since its last actual
+     * request. Otherwise the heartbeats of an abandoned page keep its session alive.
+     *
+     * @return <tt>true</tt> if idle sessions are closed
+     * @see #DEFAULT_CLOSE_IDLE_SESSIONS
+     */
+    public boolean isCloseIdleSessions() {
+        return closeIdleSessions;
+    }
+
     /**
      * Specifies if the browser should be opened on startup or not.
      *
@@ -283,6 +830,377 @@ public class EmbedVaadinConfig implements Serializable {
         return customBrowserUrl;
     }
 
+    /**
+     * Returns the file to write the {@link StartupReport startup report} to or
+     * <tt>null</tt> if the report should not be written.
+     *
+     * @return the startup report file or <tt>null</tt> if none is set
+     */
+    public File getStartupReportFile() {
+        return startupReportFile;
+    }
+
+    /**
+     * Returns the base directory of Tomcat or <tt>null</tt> if a new temporary directory
+     * should be used. A stable directory is required to restore the sessions that were
+     * saved by a previous run.
+     *
+     * @return the work directory or <tt>null</tt> if none is set
+     * @see #isSessionPersistent()
+     */
+    public File getWorkDirectory() {
+        return workDirectory;
+    }
+
+    /**
+     * Specifies if a minimal container should be used. A minimal container does
+     * not scan the classpath and does not process TLDs since only the vaadin
+     * servlet is deployed.
+     *
+     * @return <tt>true</tt> to use a minimal container
+     * @see #DEFAULT_MINIMAL_CONTAINER
+     */
+    public boolean isMinimalContainer() {
+        return minimalContainer;
+    }
+
+    /**
+     * Returns the protocol of the HTTP connector or <tt>null</tt> to use the
+     * default protocol of the container.
+     *
+     * @return the connector protocol or <tt>null</tt> if none is set
+     */
+    public ConnectorProtocol getConnectorProtocol() {
+        return connectorProtocol;
+    }
+
+    /**
+     * Returns the maximum number of request processing threads or <tt>null</tt>
+     * to use the default of the container.
+     *
+     * @return the maximum number of threads or <tt>null</tt> if none is set
+     */
+    public Integer getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Returns the minimum number of request processing threads that are kept alive
+     * or <tt>null</tt> to use the default of the container.
+     *
+     * @return the minimum number of spare threads or <tt>null</tt> if none is set
+     */
+    public Integer getMinSpareThreads() {
+        return minSpareThreads;
+    }
+
+    /**
+     * Returns the maximum queue length of incoming connections when all the request
+     * processing threads are busy or <tt>null</tt> to use the default of the container.
+     *
+     * @return the accept count or <tt>null</tt> if none is set
+     */
+    public Integer getAcceptCount() {
+        return acceptCount;
+    }
+
+    /**
+     * Returns the maximum number of connections that the server accepts and processes
+     * at any given time or <tt>null</tt> to use the default of the container.
+     *
+     * @return the maximum number of connections or <tt>null</tt> if none is set
+     */
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Returns the number of milliseconds to wait for another request on a keep-alive
+     * connection or <tt>null</tt> to use the default of the container.
+     *
+     * @return the keep-alive timeout or <tt>null</tt> if none is set
+     */
+    public Integer getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    /**
+     * Returns the maximum number of requests on a keep-alive connection or <tt>null</tt>
+     * to use the default of the container.
+     *
+     * @return the maximum number of keep-alive requests or <tt>null</tt> if none is set
+     */
+    public Integer getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    /**
+     * Specifies if the TCP_NODELAY option should be set on sockets. Returns <tt>null</tt>
+     * to use the default of the container.
+     *
+     * @return the TCP_NODELAY flag or <tt>null</tt> if none is set
+     */
+    public Boolean getTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Returns the size of the socket receive buffer, in bytes, or <tt>null</tt> to
+     * use the default of the container.
+     *
+     * @return the receive buffer size or <tt>null</tt> if none is set
+     */
+    public Integer getSocketReceiveBufferSize() {
+        return socketReceiveBufferSize;
+    }
+
+    /**
+     * Returns the size of the socket send buffer, in bytes, or <tt>null</tt> to
+     * use the default of the container.
+     *
+     * @return the send buffer size or <tt>null</tt> if none is set
+     */
+    public Integer getSocketSendBufferSize() {
+        return socketSendBufferSize;
+    }
+
+    /**
+     * Specifies if each request should be processed in a new virtual thread. Ignored,
+     * and the thread pool of the connector is used, if the JVM does not support
+     * virtual threads.
+     *
+     * @return <tt>true</tt> to use virtual threads if possible
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Specifies if the resources of the <tt>VAADIN</tt> directory should be served by a
+     * dedicated servlet. Such servlet indexes the resources of the classpath and of the
+     * webapp root directory on startup so that static requests do not compete with
+     * vaadin requests.
+     *
+     * @return <tt>true</tt> to use a dedicated servlet for static resources
+     */
+    public boolean isStaticResourceServlet() {
+        return staticResourceServlet;
+    }
+
+    /**
+     * Returns the maximum number of bytes that the static resource servlet keeps in
+     * memory. Only used if the {@link #isStaticResourceServlet() static resource servlet}
+     * is enabled.
+     *
+     * @return the size of the cache, in bytes, or <tt>0</tt> if it is disabled
+     */
+    public int getStaticResourceCacheSize() {
+        return staticResourceCacheSize;
+    }
+
+    /**
+     * Specifies if the responses of the vaadin servlet, such as UIDL and bootstrap
+     * responses, should be compressed with gzip.
+     *
+     * @return <tt>true</tt> to compress responses
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Returns the minimum size of a response to compress it, in bytes.
+     *
+     * @return the compression threshold
+     */
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    /**
+     * Returns the mime types of the responses to compress.
+     *
+     * @return the compressible mime types
+     */
+    public List<String> getCompressionMimeTypes() {
+        return Collections.unmodifiableList(compressionMimeTypes);
+    }
+
+    /**
+     * Returns the compression level, from 1 (fastest) to 9 (best compression).
+     *
+     * @return the compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Returns the minimum size of a file of the root directory, in bytes, to serve it
+     * with <tt>sendfile</tt> rather than by copying it through heap buffers. A value of
+     * <tt>0</tt> means that files are always copied.
+     *
+     * @return the sendfile threshold
+     */
+    public int getSendfileThreshold() {
+        return sendfileThreshold;
+    }
+
+    /**
+     * Returns the push mode of the UIs. Push is only enabled if the <tt>vaadin-push</tt>
+     * module is available.
+     *
+     * @return the push mode
+     */
+    public PushMode getPushMode() {
+        return pushMode;
+    }
+
+    /**
+     * Returns the transport of server push or <tt>null</tt> to use the default transport
+     * of vaadin.
+     *
+     * @return the push transport or <tt>null</tt> if none is set
+     */
+    public Transport getPushTransport() {
+        return pushTransport;
+    }
+
+    /**
+     * Specifies if a servlet exposing the metrics of the server in the text exposition
+     * format of Prometheus should be registered.
+     *
+     * @return <tt>true</tt> to expose metrics
+     */
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the path of the metrics servlet, relative to the context.
+     *
+     * @return the path of the metrics
+     */
+    public String getMetricsPath() {
+        return metricsPath;
+    }
+
+    /**
+     * Specifies if the responses of the vaadin servlet should hold a <tt>Server-Timing</tt>
+     * header with the time spent queued, waiting for the session lock, in the application
+     * and serializing the response.
+     *
+     * @return <tt>true</tt> to emit the <tt>Server-Timing</tt> header
+     */
+    public boolean isServerTiming() {
+        return serverTiming;
+    }
+
+    /**
+     * Specifies if the CPU time and the heap allocations of the requests should be charged
+     * to their session, UI class and request type when the server starts. The accounting
+     * can be switched at runtime regardless of this setting.
+     *
+     * @return <tt>true</tt> to account the resources of the requests from startup
+     */
+    public boolean isResourceAccounting() {
+        return resourceAccounting;
+    }
+
+    /**
+     * Returns the interval at which a summary of the size of the UIDL responses and of
+     * the largest ones is logged.
+     *
+     * @return the interval in seconds, or <tt>0</tt> if no summary should be logged
+     */
+    public int getUidlSummaryInterval() {
+        return uidlSummaryInterval;
+    }
+
+    /**
+     * Returns the interval at which the component trees of the live UIs are profiled. The
+     * dirty connectors of the round trips are only counted if the profiling is enabled.
+     *
+     * @return the interval in seconds, or <tt>0</tt> if the component trees should not be profiled
+     */
+    public int getComponentProfileInterval() {
+        return componentProfileInterval;
+    }
+
+    /**
+     * Returns the interval at which the footprint of the sessions is measured, using the
+     * size of their serialized form.
+     *
+     * @return the interval in seconds, or <tt>0</tt> if the footprint should not be measured
+     */
+    public int getSessionFootprintInterval() {
+        return sessionFootprintInterval;
+    }
+
+    /**
+     * Specifies if the sessions that have been idle for {@link #getSessionPassivationIdleTime()}
+     * are swapped out to disk, and swapped back in when they are accessed.
+     *
+     * @return <tt>true</tt> if the idle sessions are passivated
+     */
+    public boolean isSessionPassivation() {
+        return sessionPassivation;
+    }
+
+    /**
+     * Returns the number of seconds a session has to be idle before it is swapped out
+     * to disk, if {@link #isSessionPassivation() passivation} is enabled.
+     *
+     * @return the idle time in seconds
+     */
+    public int getSessionPassivationIdleTime() {
+        return sessionPassivationIdleTime;
+    }
+
+    /**
+     * Specifies if the sessions are saved in the {@link #getWorkDirectory() work directory}
+     * when the server stops and restored when it starts.
+     *
+     * @return <tt>true</tt> if the sessions survive a restart
+     */
+    public boolean isSessionPersistent() {
+        return sessionPersistent;
+    }
+
+    /**
+     * Returns the number of seconds of inactivity after which a session expires or
+     * <tt>null</tt> to use the default of the container, that is thirty minutes.
+     *
+     * @return the session timeout in seconds or <tt>null</tt> if none is set
+     */
+    public Integer getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Returns the maximum number of sessions held in memory or <tt>null</tt> for no
+     * limit. New sessions are rejected once the limit is reached, unless the sessions
+     * are {@link #isSessionPassivation() passivated} in which case the sessions in excess
+     * are swapped out.
+     *
+     * @return the maximum number of active sessions or <tt>null</tt> if none is set
+     */
+    public Integer getMaxActiveSessions() {
+        return maxActiveSessions;
+    }
+
+    /**
+     * Returns the percentage of the old generation that may be used after a collection
+     * before the sessions that have been idle for the longest time are evicted. Evicted
+     * sessions are swapped out if they are {@link #isSessionPassivation() passivated},
+     * invalidated otherwise.
+     *
+     * @return the threshold in percent, or <tt>0</tt> if sessions should not be evicted
+     */
+    public int getSessionEvictionThreshold() {
+        return sessionEvictionThreshold;
+    }
+
     /**
      * Returns the full url of the application, according to the port and
      * context path.
@@ -345,6 +1263,14 @@ public class EmbedVaadinConfig implements Serializable {
         this.productionMode = productionMode;
     }
 
+    void setHeartbeatInterval(Integer heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    void setCloseIdleSessions(boolean closeIdleSessions) {
+        this.closeIdleSessions = closeIdleSessions;
+    }
+
     void setOpenBrowser(boolean openBrowser) {
         this.openBrowser = openBrowser;
     }
@@ -353,6 +1279,150 @@ public class EmbedVaadinConfig implements Serializable {
         this.customBrowserUrl = customBrowserUrl;
     }
 
+    void setStartupReportFile(File startupReportFile) {
+        this.startupReportFile = startupReportFile;
+    }
+
+    void setWorkDirectory(File workDirectory) {
+        this.workDirectory = workDirectory;
+    }
+
+    void setMinimalContainer(boolean minimalContainer) {
+        this.minimalContainer = minimalContainer;
+    }
+
+    void setConnectorProtocol(ConnectorProtocol connectorProtocol) {
+        this.connectorProtocol = connectorProtocol;
+    }
+
+    void setMaxThreads(Integer maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    void setMinSpareThreads(Integer minSpareThreads) {
+        this.minSpareThreads = minSpareThreads;
+    }
+
+    void setAcceptCount(Integer acceptCount) {
+        this.acceptCount = acceptCount;
+    }
+
+    void setMaxConnections(Integer maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    void setKeepAliveTimeout(Integer keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    void setMaxKeepAliveRequests(Integer maxKeepAliveRequests) {
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+    }
+
+    void setTcpNoDelay(Boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    void setSocketReceiveBufferSize(Integer socketReceiveBufferSize) {
+        this.socketReceiveBufferSize = socketReceiveBufferSize;
+    }
+
+    void setSocketSendBufferSize(Integer socketSendBufferSize) {
+        this.socketSendBufferSize = socketSendBufferSize;
+    }
+
+    void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    void setStaticResourceServlet(boolean staticResourceServlet) {
+        this.staticResourceServlet = staticResourceServlet;
+    }
+
+    void setStaticResourceCacheSize(int staticResourceCacheSize) {
+        this.staticResourceCacheSize = staticResourceCacheSize;
+    }
+
+    void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    void setCompressionMinSize(int compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    void setCompressionMimeTypes(List<String> compressionMimeTypes) {
+        this.compressionMimeTypes = new ArrayList<String>(compressionMimeTypes);
+    }
+
+    void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    void setSendfileThreshold(int sendfileThreshold) {
+        this.sendfileThreshold = sendfileThreshold;
+    }
+
+    void setPushMode(PushMode pushMode) {
+        this.pushMode = pushMode;
+    }
+
+    void setPushTransport(Transport pushTransport) {
+        this.pushTransport = pushTransport;
+    }
+
+    void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    void setMetricsPath(String metricsPath) {
+        this.metricsPath = metricsPath;
+    }
+
+    void setServerTiming(boolean serverTiming) {
+        this.serverTiming = serverTiming;
+    }
+
+    void setResourceAccounting(boolean resourceAccounting) {
+        this.resourceAccounting = resourceAccounting;
+    }
+
+    void setUidlSummaryInterval(int uidlSummaryInterval) {
+        this.uidlSummaryInterval = uidlSummaryInterval;
+    }
+
+    void setComponentProfileInterval(int componentProfileInterval) {
+        this.componentProfileInterval = componentProfileInterval;
+    }
+
+    void setSessionFootprintInterval(int sessionFootprintInterval) {
+        this.sessionFootprintInterval = sessionFootprintInterval;
+    }
+
+    void setSessionPassivation(boolean sessionPassivation) {
+        this.sessionPassivation = sessionPassivation;
+    }
+
+    void setSessionPassivationIdleTime(int sessionPassivationIdleTime) {
+        this.sessionPassivationIdleTime = sessionPassivationIdleTime;
+    }
+
+    void setSessionPersistent(boolean sessionPersistent) {
+        this.sessionPersistent = sessionPersistent;
+    }
+
+    void setSessionTimeout(Integer sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    void setMaxActiveSessions(Integer maxActiveSessions) {
+        this.maxActiveSessions = maxActiveSessions;
+    }
+
+    void setSessionEvictionThreshold(int sessionEvictionThreshold) {
+        this.sessionEvictionThreshold = sessionEvictionThreshold;
+    }
+
     private void validate() {
         if (!contextRootDirectory.exists()) {
             throw new IllegalStateException("Cannot find file [" + contextRootDirectory.getAbsolutePath() + "]. "
@@ -449,7 +1519,31 @@ public class EmbedVaadinConfig implements Serializable {
                 .add("context", contextPath).add("webapp dir", contextRootDirectory)
                 .add("waiting", waiting).add("widgetSet", widgetSet)
                 .add("productionMode", productionMode)
-                .add("openBrowser", openBrowser).toString();
+                .add("heartbeatInterval", heartbeatInterval)
+                .add("closeIdleSessions", closeIdleSessions)
+                .add("openBrowser", openBrowser)
+                .add("startupReport", startupReportFile)
+                .add("workDirectory", workDirectory)
+                .add("minimalContainer", minimalContainer)
+                .add("connectorProtocol", connectorProtocol)
+                .add("virtualThreads", virtualThreads)
+                .add("staticResourceServlet", staticResourceServlet)
+                .add("staticResourceCacheSize", staticResourceCacheSize)
+                .add("compression", compression)
+                .add("sendfileThreshold", sendfileThreshold)
+                .add("pushMode", pushMode)
+                .add("metrics", metrics)
+                .add("serverTiming", serverTiming)
+                .add("resourceAccounting", resourceAccounting)
+                .add("uidlSummaryInterval", uidlSummaryInterval)
+                .add("componentProfileInterval", componentProfileInterval)
+                .add("sessionFootprintInterval", sessionFootprintInterval)
+                .add("sessionPassivation", sessionPassivation)
+                .add("sessionPassivationIdleTime", sessionPassivationIdleTime)
+                .add("sessionPersistent", sessionPersistent)
+                .add("sessionTimeout", sessionTimeout)
+                .add("maxActiveSessions", maxActiveSessions)
+                .add("sessionEvictionThreshold", sessionEvictionThreshold).toString();
     }
 
 }
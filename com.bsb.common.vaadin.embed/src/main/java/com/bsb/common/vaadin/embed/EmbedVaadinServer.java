@@ -15,6 +15,12 @@
  */
 package com.bsb.common.vaadin.embed;
 
+import com.bsb.common.vaadin.embed.metrics.RequestMetrics;
+import com.bsb.common.vaadin.embed.metrics.RequestType;
+import com.bsb.common.vaadin.embed.metrics.ResourceAccounting;
+
+import java.util.concurrent.Future;
+
 /**
  * An embedded server running a Vaadin application.
  *
@@ -27,6 +33,19 @@ public interface EmbedVaadinServer {
      */
     void start();
 
+    /**
+     * Starts the server in a background thread and returns immediately. The returned
+     * {@link Future} completes once the connector is bound and the vaadin servlet has
+     * answered a probe request, or fails if the server could not be started.
+     * <p/>
+     * This allows to start several servers concurrently. If the server should
+     * {@link #isWaiting() block}, the background thread blocks once the server has
+     * started.
+     *
+     * @return a future completed with this instance once the server is ready
+     */
+    Future<EmbedVaadinServer> startAsync();
+
     /**
      * Specifies if the server should block once it has started. This makes the
      * use of {@link #stop()} useless since the exit of the VM will actually
@@ -45,6 +64,43 @@ public interface EmbedVaadinServer {
      */
     EmbedVaadinConfig getConfig();
 
+    /**
+     * Returns the {@link StartupReport} of the last {@link #start()}. Phases that
+     * depend on the first request, such as the initialization of the vaadin
+     * servlet, are only available once that request has been served.
+     *
+     * @return the startup report
+     */
+    StartupReport getStartupReport();
+
+    /**
+     * Returns the {@link ServerStatistics} of this instance. Values are computed when
+     * they are requested. The same statistics are available through JMX while the
+     * server is running.
+     *
+     * @return the statistics of the server
+     */
+    ServerStatistics getStatistics();
+
+    /**
+     * Returns the {@link RequestMetrics} of the requests handled by the vaadin
+     * servlet, that is the latency of the requests per {@link RequestType type} and
+     * the size of the UIDL responses.
+     *
+     * @return the request metrics
+     */
+    RequestMetrics getRequestMetrics();
+
+    /**
+     * Returns the {@link ResourceAccounting} that charges the CPU time and the heap
+     * allocations of the requests to their session, UI class and request type. It
+     * can be switched on and off while the server is running.
+     *
+     * @return the resource accounting of the requests
+     * @see EmbedVaadinConfig#isResourceAccounting()
+     */
+    ResourceAccounting getResourceAccounting();
+
     /**
      * Stops the server.
      */
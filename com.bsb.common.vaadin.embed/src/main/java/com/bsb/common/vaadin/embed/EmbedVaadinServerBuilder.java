@@ -15,8 +15,13 @@
  */
 package com.bsb.common.vaadin.embed;
 
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.shared.ui.ui.Transport;
+
 import java.io.File;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.Future;
 
 /**
  * A basic builder for an {@link EmbedVaadinServer}.
@@ -161,6 +166,37 @@ public abstract class EmbedVaadinServerBuilder<B extends EmbedVaadinServerBuilde
         return self();
     }
 
+    /**
+     * Specifies the number of seconds between the heartbeat requests that an open page
+     * sends to keep its UI alive. A UI that missed three consecutive heartbeats is closed.
+     *
+     * @param heartbeatInterval the heartbeat interval in seconds
+     * @return this
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public B withHeartbeatInterval(int heartbeatInterval) {
+        if (heartbeatInterval < 0) {
+            throw new IllegalArgumentException("Invalid heartbeat interval [" + heartbeatInterval
+                    + "], must be positive");
+        }
+        getConfig().setHeartbeatInterval(heartbeatInterval);
+        return self();
+    }
+
+    /**
+     * Specifies if a session that only receives heartbeat requests should be closed once
+     * the session timeout has elapsed since its last actual request, rather than being
+     * kept alive by the heartbeats of an abandoned page.
+     *
+     * @param closeIdleSessions <tt>true</tt> to close the idle sessions
+     * @return this
+     * @see #withSessionTimeout(int)
+     */
+    public B withCloseIdleSessions(boolean closeIdleSessions) {
+        getConfig().setCloseIdleSessions(closeIdleSessions);
+        return self();
+    }
+
     /**
      * Specifies if the created server should block after startup. This is the
      * default and is suitable to quickly display something while prototyping.
@@ -216,6 +252,446 @@ public abstract class EmbedVaadinServerBuilder<B extends EmbedVaadinServerBuilde
         return self();
     }
 
+    /**
+     * Specifies if a minimal container should be used. A minimal container skips
+     * the scanning of the classpath and the processing of TLDs, which are not
+     * needed to run vaadin and can take a significant amount of time with a large
+     * classpath.
+     *
+     * @param minimalContainer <tt>true</tt> to use a minimal container
+     * @return this
+     */
+    public B withMinimalContainer(boolean minimalContainer) {
+        getConfig().setMinimalContainer(minimalContainer);
+        return self();
+    }
+
+    /**
+     * Specifies the protocol of the HTTP connector. Note that the availability of
+     * {@link ConnectorProtocol#NIO2} depends on the version of Tomcat.
+     *
+     * @param protocol the protocol to use
+     * @return this
+     */
+    public B withConnectorProtocol(ConnectorProtocol protocol) {
+        assertNotNull(protocol, "protocol could not be null.");
+        getConfig().setConnectorProtocol(protocol);
+        return self();
+    }
+
+    /**
+     * Specifies the maximum number of threads processing requests and the minimum
+     * number of threads that are always kept alive.
+     *
+     * @param maxThreads the maximum number of request processing threads
+     * @param minSpareThreads the minimum number of threads to keep alive
+     * @return this
+     */
+    public B withThreads(int maxThreads, int minSpareThreads) {
+        getConfig().setMaxThreads(maxThreads);
+        getConfig().setMinSpareThreads(minSpareThreads);
+        return self();
+    }
+
+    /**
+     * Specifies the maximum number of connections that the server accepts and processes
+     * at any given time and the maximum queue length of incoming connections once that
+     * number has been reached.
+     *
+     * @param maxConnections the maximum number of connections
+     * @param acceptCount the maximum queue length of incoming connections
+     * @return this
+     */
+    public B withConnections(int maxConnections, int acceptCount) {
+        getConfig().setMaxConnections(maxConnections);
+        getConfig().setAcceptCount(acceptCount);
+        return self();
+    }
+
+    /**
+     * Specifies how keep-alive connections are handled.
+     *
+     * @param keepAliveTimeout the number of milliseconds to wait for another request
+     * @param maxKeepAliveRequests the maximum number of requests per connection, <tt>1</tt>
+     * to disable keep-alive and <tt>-1</tt> for an unlimited number of requests
+     * @return this
+     */
+    public B withKeepAlive(int keepAliveTimeout, int maxKeepAliveRequests) {
+        getConfig().setKeepAliveTimeout(keepAliveTimeout);
+        getConfig().setMaxKeepAliveRequests(maxKeepAliveRequests);
+        return self();
+    }
+
+    /**
+     * Specifies if the TCP_NODELAY option should be set on sockets.
+     *
+     * @param tcpNoDelay <tt>true</tt> to disable Nagle's algorithm
+     * @return this
+     */
+    public B withTcpNoDelay(boolean tcpNoDelay) {
+        getConfig().setTcpNoDelay(tcpNoDelay);
+        return self();
+    }
+
+    /**
+     * Specifies the size of the socket buffers.
+     *
+     * @param receiveBufferSize the size of the receive buffer, in bytes
+     * @param sendBufferSize the size of the send buffer, in bytes
+     * @return this
+     */
+    public B withSocketBufferSizes(int receiveBufferSize, int sendBufferSize) {
+        getConfig().setSocketReceiveBufferSize(receiveBufferSize);
+        getConfig().setSocketSendBufferSize(sendBufferSize);
+        return self();
+    }
+
+    /**
+     * Specifies if each request should be processed in a new virtual thread rather than
+     * in the thread pool of the connector. Falls back on the thread pool if the JVM does
+     * not support virtual threads.
+     *
+     * @param virtualThreads <tt>true</tt> to use virtual threads if possible
+     * @return this
+     */
+    public B withVirtualThreads(boolean virtualThreads) {
+        getConfig().setVirtualThreads(virtualThreads);
+        return self();
+    }
+
+    /**
+     * Specifies if the resources of the <tt>VAADIN</tt> directory, such as themes and
+     * widgetsets, should be served by a dedicated servlet rather than by the vaadin
+     * servlet.
+     *
+     * @param staticResourceServlet <tt>true</tt> to use a dedicated servlet
+     * @return this
+     */
+    public B withStaticResourceServlet(boolean staticResourceServlet) {
+        getConfig().setStaticResourceServlet(staticResourceServlet);
+        return self();
+    }
+
+    /**
+     * Specifies the maximum number of bytes that the static resource servlet keeps in
+     * memory. Only used if the {@link #withStaticResourceServlet(boolean) static resource
+     * servlet} is enabled.
+     *
+     * @param cacheSize the size of the cache, in bytes, or <tt>0</tt> to disable it
+     * @return this
+     */
+    public B withStaticResourceCacheSize(int cacheSize) {
+        getConfig().setStaticResourceCacheSize(cacheSize);
+        return self();
+    }
+
+    /**
+     * Specifies the minimum size of a file of the root directory to serve it with
+     * <tt>sendfile</tt> rather than by copying it through heap buffers. Only used if the
+     * {@link #withStaticResourceServlet(boolean) static resource servlet} is enabled.
+     *
+     * @param sendfileThreshold the minimum size of a file, in bytes, or <tt>0</tt> to
+     * always copy files
+     * @return this
+     */
+    public B withSendfileThreshold(int sendfileThreshold) {
+        getConfig().setSendfileThreshold(sendfileThreshold);
+        return self();
+    }
+
+    /**
+     * Specifies if the responses of the vaadin servlet, such as UIDL and bootstrap
+     * responses, should be compressed with gzip for the clients that accept it.
+     *
+     * @param compression <tt>true</tt> to compress responses
+     * @return this
+     */
+    public B withCompression(boolean compression) {
+        getConfig().setCompression(compression);
+        return self();
+    }
+
+    /**
+     * Enables the compression of the responses of the vaadin servlet and specifies
+     * which responses are compressed and how.
+     *
+     * @param minSize the minimum size of a response to compress it, in bytes
+     * @param level the compression level, from 1 (fastest) to 9 (best compression)
+     * @param mimeTypes the mime types of the responses to compress
+     * @return this
+     * @see #withCompression(boolean)
+     */
+    public B withCompression(int minSize, int level, String... mimeTypes) {
+        getConfig().setCompression(true);
+        getConfig().setCompressionMinSize(minSize);
+        getConfig().setCompressionLevel(level);
+        getConfig().setCompressionMimeTypes(Arrays.asList(mimeTypes));
+        return self();
+    }
+
+    /**
+     * Specifies the push mode of the UIs. Enabling push requires the <tt>vaadin-push</tt>
+     * module to be available on the classpath, push is left disabled otherwise.
+     *
+     * @param pushMode the push mode to use
+     * @return this
+     */
+    public B withPushMode(PushMode pushMode) {
+        getConfig().setPushMode(pushMode);
+        return self();
+    }
+
+    /**
+     * Enables server push with the specified mode and transport.
+     *
+     * @param pushMode the push mode to use
+     * @param transport the transport to use or <tt>null</tt> to use the default transport
+     * @return this
+     * @see #withPushMode(PushMode)
+     */
+    public B withPush(PushMode pushMode, Transport transport) {
+        getConfig().setPushMode(pushMode);
+        getConfig().setPushTransport(transport);
+        return self();
+    }
+
+    /**
+     * Specifies if a servlet exposing the metrics of the server in the text exposition
+     * format of Prometheus should be registered next to the vaadin servlet.
+     *
+     * @param metrics <tt>true</tt> to expose metrics
+     * @return this
+     */
+    public B withMetricsServlet(boolean metrics) {
+        getConfig().setMetrics(metrics);
+        return self();
+    }
+
+    /**
+     * Registers a servlet exposing the metrics of the server in the text exposition format
+     * of Prometheus at the specified path. The health check is available at the
+     * <tt>/health</tt> sub-path.
+     *
+     * @param path the path of the metrics, relative to the context
+     * @return this
+     * @throws IllegalArgumentException if the path does not start with <tt>/</tt>
+     * @see #withMetricsServlet(boolean)
+     */
+    public B withMetricsServlet(String path) {
+        if (path == null || !path.startsWith("/") || path.length() == 1) {
+            throw new IllegalArgumentException("Invalid metrics path [" + path + "], must start with /");
+        }
+        getConfig().setMetrics(true);
+        getConfig().setMetricsPath(path);
+        return self();
+    }
+
+    /**
+     * Specifies if the responses of the vaadin servlet should hold a <tt>Server-Timing</tt>
+     * header with the phases of the request, so that they show up in the developer tools
+     * of the browser.
+     *
+     * @param serverTiming <tt>true</tt> to emit the <tt>Server-Timing</tt> header
+     * @return this
+     */
+    public B withServerTiming(boolean serverTiming) {
+        getConfig().setServerTiming(serverTiming);
+        return self();
+    }
+
+    /**
+     * Specifies if the CPU time and the heap allocations of the requests should be charged
+     * to their session, UI class and request type from startup. The accounting can also be
+     * switched on and off on the {@link EmbedVaadinServer#getResourceAccounting() running server}.
+     *
+     * @param resourceAccounting <tt>true</tt> to account the resources of the requests
+     * @return this
+     */
+    public B withResourceAccounting(boolean resourceAccounting) {
+        getConfig().setResourceAccounting(resourceAccounting);
+        return self();
+    }
+
+    /**
+     * Specifies the interval at which a summary of the size of the UIDL responses and of
+     * the largest ones is logged.
+     *
+     * @param seconds the interval in seconds, <tt>0</tt> to disable the summary
+     * @return this
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public B withUidlSummaryInterval(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid UIDL summary interval [" + seconds + "], must be positive");
+        }
+        getConfig().setUidlSummaryInterval(seconds);
+        return self();
+    }
+
+    /**
+     * Specifies the interval at which the component trees of the live UIs are profiled.
+     * Enabling the profiling also counts the dirty connectors of each round trip.
+     *
+     * @param seconds the interval in seconds, <tt>0</tt> to disable the profiling
+     * @return this
+     * @throws IllegalArgumentException if the interval is negative
+     * @see com.bsb.common.vaadin.embed.metrics.ComponentTreeProfiler
+     */
+    public B withComponentProfileInterval(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid component profile interval [" + seconds
+                    + "], must be positive");
+        }
+        getConfig().setComponentProfileInterval(seconds);
+        return self();
+    }
+
+    /**
+     * Specifies the interval at which the footprint of the sessions is measured.
+     *
+     * @param seconds the interval in seconds, <tt>0</tt> to disable the measurement
+     * @return this
+     * @throws IllegalArgumentException if the interval is negative
+     * @see com.bsb.common.vaadin.embed.metrics.SessionFootprintSampler
+     */
+    public B withSessionFootprintInterval(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid session footprint interval [" + seconds
+                    + "], must be positive");
+        }
+        getConfig().setSessionFootprintInterval(seconds);
+        return self();
+    }
+
+    /**
+     * Specifies if the idle sessions should be swapped out to disk, and swapped back
+     * in when they are accessed. The UIs of the application and the attributes of the
+     * sessions must be serializable.
+     *
+     * @param sessionPassivation <tt>true</tt> to passivate the idle sessions
+     * @return this
+     */
+    public B withSessionPassivation(boolean sessionPassivation) {
+        getConfig().setSessionPassivation(sessionPassivation);
+        return self();
+    }
+
+    /**
+     * Enables the passivation of the idle sessions and specifies how long a session
+     * has to be idle before it is swapped out to disk.
+     *
+     * @param idleTime the idle time in seconds
+     * @return this
+     * @throws IllegalArgumentException if the idle time is negative
+     * @see #withSessionPassivation(boolean)
+     */
+    public B withSessionPassivation(int idleTime) {
+        if (idleTime < 0) {
+            throw new IllegalArgumentException("Invalid session passivation idle time [" + idleTime
+                    + "], must be positive");
+        }
+        getConfig().setSessionPassivation(true);
+        getConfig().setSessionPassivationIdleTime(idleTime);
+        return self();
+    }
+
+    /**
+     * Specifies if the sessions should be saved when the server stops and restored
+     * the next time it starts. The sessions are saved in the work directory, which
+     * should be {@link #withWorkDirectory(File) set} to a stable location.
+     *
+     * @param sessionPersistent <tt>true</tt> to restore the sessions after a restart
+     * @return this
+     */
+    public B withSessionPersistent(boolean sessionPersistent) {
+        getConfig().setSessionPersistent(sessionPersistent);
+        return self();
+    }
+
+    /**
+     * Specifies the number of seconds of inactivity after which a session expires. A
+     * timeout of <tt>0</tt> means that sessions never expire.
+     *
+     * @param sessionTimeout the session timeout in seconds
+     * @return this
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public B withSessionTimeout(int sessionTimeout) {
+        if (sessionTimeout < 0) {
+            throw new IllegalArgumentException("Invalid session timeout [" + sessionTimeout
+                    + "], must be positive");
+        }
+        getConfig().setSessionTimeout(sessionTimeout);
+        return self();
+    }
+
+    /**
+     * Specifies the maximum number of sessions held in memory. New sessions are rejected
+     * once the limit is reached, unless the sessions are passivated in which case the
+     * sessions in excess are swapped out.
+     *
+     * @param maxActiveSessions the maximum number of active sessions
+     * @return this
+     * @throws IllegalArgumentException if the number is not strictly positive
+     * @see #withSessionPassivation(boolean)
+     */
+    public B withMaxActiveSessions(int maxActiveSessions) {
+        if (maxActiveSessions <= 0) {
+            throw new IllegalArgumentException("Invalid max active sessions [" + maxActiveSessions
+                    + "], must be strictly positive");
+        }
+        getConfig().setMaxActiveSessions(maxActiveSessions);
+        return self();
+    }
+
+    /**
+     * Specifies the percentage of the old generation that may be used after a garbage
+     * collection before the sessions that have been idle for the longest time are
+     * evicted. Evicted sessions are swapped out if they are passivated, invalidated
+     * otherwise. A threshold of <tt>0</tt> disables the eviction.
+     *
+     * @param threshold the threshold in percent
+     * @return this
+     * @throws IllegalArgumentException if the threshold is not between 0 and 100
+     * @see #withSessionPassivation(boolean)
+     */
+    public B withSessionEviction(int threshold) {
+        if (threshold < 0 || threshold > 100) {
+            throw new IllegalArgumentException("Invalid session eviction threshold [" + threshold
+                    + "], must be a percentage");
+        }
+        getConfig().setSessionEvictionThreshold(threshold);
+        return self();
+    }
+
+    /**
+     * Specifies a file to write the {@link StartupReport startup report} to, as
+     * a JSON document. The file is written once the server has started and updated
+     * once the first request has been served. The specified <tt>file</tt> can be
+     * <tt>null</tt> to mention that no report should be written.
+     *
+     * @param file the file to write the startup report to
+     * @return this
+     * @see EmbedVaadinServer#getStartupReport()
+     */
+    public B withStartupReportFile(File file) {
+        getConfig().setStartupReportFile(file);
+        return self();
+    }
+
+    /**
+     * Specifies the base directory of Tomcat. The specified <tt>directory</tt> can be
+     * <tt>null</tt> to mention that a new temporary directory should be used.
+     *
+     * @param directory the work directory
+     * @return this
+     * @see #withSessionPersistent(boolean)
+     */
+    public B withWorkDirectory(File directory) {
+        getConfig().setWorkDirectory(directory);
+        return self();
+    }
+
     /**
      * Builds an {@link EmbedVaadinServer} and starts it immediately.
      *
@@ -227,6 +703,17 @@ public abstract class EmbedVaadinServerBuilder<B extends EmbedVaadinServerBuilde
         return server;
     }
 
+    /**
+     * Builds an {@link EmbedVaadinServer} and starts it in the background. The
+     * returned {@link Future} completes once the server is ready to handle requests.
+     *
+     * @return a future completed with the created server once it is ready
+     * @see EmbedVaadinServer#startAsync()
+     */
+    public Future<EmbedVaadinServer> startAsync() {
+        return build().startAsync();
+    }
+
     /**
      * Returns the underling {@link EmbedVaadinConfig} that this instance is managing.
      * Must be implemented by a concrete builder because the type of configuration can be different.
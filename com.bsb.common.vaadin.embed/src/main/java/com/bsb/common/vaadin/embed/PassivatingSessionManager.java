@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import com.bsb.common.vaadin.embed.metrics.LatencyHistogram;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Session;
+import org.apache.catalina.session.FileStore;
+import org.apache.catalina.session.PersistentManagerBase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link PersistentManagerBase persistent manager} that swaps the idle sessions out to a {@link FileStore}
+ * and swaps them back in when they are accessed. Records the number of sessions that
+ * were swapped out and the latency of swapping a session in.
+ * <p/>
+ * The idle sessions are looked up each time the background processor of the container
+ * runs, that is every ten seconds by default. Sessions are only saved to the store
+ * when the server stops if they should survive a restart, in which case they are
+ * swapped back in from the store on their next request. Otherwise, the store is
+ * cleared when the manager starts and stops so that a session that was swapped out
+ * during a previous run is never restored.
+ *
+ * @author Stephane Nicoll
+ */
+class PassivatingSessionManager extends PersistentManagerBase {
+
+    private final LatencyHistogram swapInLatency = new LatencyHistogram();
+    private final AtomicLong swapOutCount = new AtomicLong();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory the directory to store the passivated sessions into
+     * @param idleTime the number of seconds a session has to be idle before it is swapped out
+     * @param saveOnRestart whether all the sessions are swapped out when the server stops
+     */
+    PassivatingSessionManager(File directory, int idleTime, boolean saveOnRestart) {
+        final FileStore store = new FileStore();
+        store.setDirectory(directory.getAbsolutePath());
+        setStore(store);
+        setMaxIdleSwap(idleTime);
+        setMaxIdleBackup(-1);
+        setSaveOnRestart(saveOnRestart);
+        // Look for idle sessions each time the background processor runs
+        setProcessExpiresFrequency(1);
+    }
+
+    @Override
+    public String getName() {
+        return "PassivatingSessionManager";
+    }
+
+    /**
+     * Returns the latency of swapping a session back in, in microseconds.
+     *
+     * @return the histogram of the swap-in latency
+     */
+    LatencyHistogram getSwapInLatency() {
+        return swapInLatency;
+    }
+
+    /**
+     * Returns the number of sessions that have been swapped out so far.
+     *
+     * @return the number of swapped out sessions
+     */
+    long getSwapOutCount() {
+        return swapOutCount.get();
+    }
+
+    /**
+     * Returns the number of sessions that are currently swapped out.
+     *
+     * @return the number of sessions in the store, or <tt>-1</tt> if the store could not be read
+     */
+    int getPassivatedSessions() {
+        try {
+            return getStore().getSize();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Swaps the specified session out to the store right away.
+     *
+     * @param session the session to swap out
+     * @throws IOException if the session could not be saved
+     */
+    void passivate(Session session) throws IOException {
+        swapOut(session);
+    }
+
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        super.startInternal();
+        // The previous run may not have stopped gracefully
+        if (!getSaveOnRestart()) {
+            clearStore();
+        }
+    }
+
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        super.stopInternal();
+        if (!getSaveOnRestart()) {
+            clearStore();
+        }
+    }
+
+    @Override
+    protected Session swapIn(String id) throws IOException {
+        final long start = System.nanoTime();
+        final Session session = super.swapIn(id);
+        // Also invoked for unknown ids, such as the cookie of an expired session
+        if (session != null) {
+            // The store keeps its copy of the session, which is stale as soon as it is used
+            getStore().remove(id);
+            swapInLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return session;
+    }
+
+    @Override
+    protected void swapOut(Session session) throws IOException {
+        super.swapOut(session);
+        swapOutCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import org.apache.catalina.Loader;
+import org.apache.catalina.Session;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.session.StandardSession;
+import org.apache.catalina.util.CustomObjectInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link StandardManager} that saves the sessions to a gzip file when the server
+ * stops and restores them when it starts again.
+ * <p/>
+ * The sessions are serialized in memory when the server stops, the compression and
+ * the write of the file happen in the background so that stopping the server does
+ * not wait for the disk. The file is only visible once it has been fully written,
+ * a server that starts with the same file waits for the pending write if necessary.
+ * Sessions that have expired while the server was stopped are discarded when they
+ * are restored.
+ * <p/>
+ * The file is deleted once its sessions have been restored. If it cannot be read,
+ * for instance because a class of a session attribute has been renamed, no session is
+ * restored and the file is renamed with a {@link #FAILED_SUFFIX} suffix.
+ *
+ * @author Stephane Nicoll
+ */
+class RestartableSessionManager extends StandardManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(RestartableSessionManager.class);
+
+    /**
+     * The suffix of a sessions file that could not be restored.
+     */
+    static final String FAILED_SUFFIX = ".failed";
+
+    private static final ConcurrentMap<File, Future<Long>> pendingWrites = new ConcurrentHashMap<File, Future<Long>>();
+
+    private final File file;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file the file to save the sessions into
+     */
+    RestartableSessionManager(File file) {
+        this.file = file.getAbsoluteFile();
+    }
+
+    @Override
+    public String getName() {
+        return "RestartableSessionManager";
+    }
+
+    /**
+     * Returns the file holding the saved sessions.
+     *
+     * @return the sessions file
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Blocks until the sessions that are being saved to the specified file, if any,
+     * have been written.
+     *
+     * @param file the sessions file
+     */
+    static void awaitPendingWrite(File file) {
+        final Future<Long> write = pendingWrites.get(file.getAbsoluteFile());
+        if (write == null) {
+            return;
+        }
+        try {
+            write.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Failure has been logged already
+        }
+    }
+
+    /**
+     * Blocks until all the sessions that are being saved have been written. Invoked
+     * before the JVM exits since the write would be lost otherwise.
+     */
+    static void awaitPendingWrites() {
+        for (File pending : pendingWrites.keySet()) {
+            awaitPendingWrite(pending);
+        }
+    }
+
+    @Override
+    protected void doLoad() throws ClassNotFoundException, IOException {
+        awaitPendingWrite(file);
+        if (!file.exists()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final Loader loader = getContainer().getLoader();
+        final ClassLoader classLoader = (loader != null ? loader.getClassLoader() : null);
+        ObjectInputStream in = null;
+        int count = 0;
+        boolean restored = false;
+        try {
+            in = new CustomObjectInputStream(new BufferedInputStream(
+                    new GZIPInputStream(new FileInputStream(file))), classLoader);
+            final int total = (Integer) in.readObject();
+            for (int i = 0; i < total; i++) {
+                final StandardSession session = getNewSession();
+                session.readObjectData(in);
+                session.setManager(this);
+                sessions.put(session.getIdInternal(), session);
+                session.activate();
+                // Expires the session if it timed out while the server was stopped
+                if (session.isValid()) {
+                    count++;
+                }
+                sessionCounter++;
+            }
+            restored = true;
+        } catch (ClassNotFoundException e) {
+            sessions.clear();
+            throw e;
+        } catch (IOException e) {
+            sessions.clear();
+            throw e;
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+            if (restored) {
+                // Do not restore the same sessions twice
+                if (!file.delete()) {
+                    logger.warn("Failed to delete sessions file [" + file + "]");
+                }
+            } else {
+                keepFailedFile();
+            }
+        }
+        logger.info("Restored " + count + " session(s) from [" + file + "] in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Moves a sessions file that could not be restored aside, so that it can be
+     * diagnosed and is not overwritten when the server stops.
+     */
+    private void keepFailedFile() {
+        final File failed = new File(file.getPath() + FAILED_SUFFIX);
+        if ((failed.exists() && !failed.delete()) || !file.renameTo(failed)) {
+            logger.warn("Failed to restore sessions from [" + file + "], could not move it to [" + failed + "]");
+        } else {
+            logger.warn("Failed to restore sessions from [" + file + "], kept as [" + failed + "]");
+        }
+    }
+
+    @Override
+    protected void doUnload() throws IOException {
+        final Session[] toSave = findSessions();
+        final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(snapshot);
+        out.writeObject(toSave.length);
+        for (Session session : toSave) {
+            final StandardSession standardSession = (StandardSession) session;
+            standardSession.passivate();
+            standardSession.writeObjectData(out);
+        }
+        out.close();
+
+        // The sessions are saved, discard them without notifying the listeners
+        for (Session session : toSave) {
+            ((StandardSession) session).expire(false);
+        }
+        write(snapshot.toByteArray(), toSave.length);
+    }
+
+    /**
+     * Compresses the serialized sessions and writes them to the sessions file in
+     * the background.
+     *
+     * @param data the serialized sessions
+     * @param count the number of sessions
+     */
+    private void write(final byte[] data, final int count) {
+        final FutureTask<Long> task = new FutureTask<Long>(new Callable<Long>() {
+            public Long call() throws Exception {
+                final long start = System.currentTimeMillis();
+                final File tmp = new File(file.getPath() + ".tmp");
+                final OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+                try {
+                    out.write(data);
+                } finally {
+                    out.close();
+                }
+                if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+                    throw new IOException("Failed to move [" + tmp + "] to [" + file + "]");
+                }
+                logger.info("Saved " + count + " session(s) to [" + file + "] (" + file.length() / 1024
+                        + " KB) in " + (System.currentTimeMillis() - start) + " ms");
+                return file.length();
+            }
+        });
+        awaitPendingWrite(file);
+        pendingWrites.put(file, task);
+        final Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to save sessions to [" + file + "]", e.getCause());
+                } finally {
+                    pendingWrites.remove(file, task);
+                }
+            }
+        }, "embed-vaadin-session-writer");
+        thread.start();
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import com.bsb.common.vaadin.embed.metrics.ComponentTreeProfiler;
+import com.bsb.common.vaadin.embed.metrics.MeteredVaadinSession;
+import com.bsb.common.vaadin.embed.metrics.SessionFootprintSampler;
+import com.bsb.common.vaadin.embed.metrics.UidlSizeMetrics;
+import com.vaadin.server.VaadinSession;
+import org.apache.catalina.Manager;
+import org.apache.catalina.Session;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpSession;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live statistics of an {@link EmbedVaadinServer}. Each value is computed when it
+ * is requested.
+ * <p/>
+ * An instance is registered as an MBean for each running server, using the
+ * {@link #getObjectName() object name} that holds its deploy url. This allows to
+ * watch several servers running in the same JVM.
+ * <p/>
+ * Requests that are processed asynchronously, such as push requests, are counted
+ * when they are started so the bytes that they send afterwards are not included.
+ *
+ * @author Stephane Nicoll
+ */
+public class ServerStatistics implements ServerStatisticsMBean {
+
+    /**
+     * The domain of the object name of the statistics MBean.
+     */
+    public static final String OBJECT_NAME_DOMAIN = "com.bsb.common.vaadin.embed";
+
+    private final AbstractEmbedVaadinTomcat server;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    ServerStatistics(AbstractEmbedVaadinTomcat server) {
+        this.server = server;
+    }
+
+    /**
+     * Returns the {@link ObjectName} that this instance is registered with.
+     *
+     * @return the object name of the MBean
+     */
+    public ObjectName getObjectName() {
+        try {
+            return new ObjectName(OBJECT_NAME_DOMAIN + ":type=EmbedVaadinServer,name="
+                    + ObjectName.quote(getDeployUrl()));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Invalid object name for [" + getDeployUrl() + "]", e);
+        }
+    }
+
+    public String getDeployUrl() {
+        return server.getConfig().getDeployUrl();
+    }
+
+    public int getActiveSessions() {
+        final Manager manager = server.getContext().getManager();
+        return (manager != null ? manager.getActiveSessions() : 0);
+    }
+
+    public int getActiveUIs() {
+        int count = 0;
+        for (VaadinSession session : getVaadinSessions()) {
+            // Reading the UIs of the session would require its lock
+            if (session instanceof MeteredVaadinSession) {
+                count += ((MeteredVaadinSession) session).getUICount();
+            }
+        }
+        return count;
+    }
+
+    public int getPassivatedSessions() {
+        final PassivatingSessionManager manager = getPassivatingSessionManager();
+        return (manager != null ? manager.getPassivatedSessions() : 0);
+    }
+
+    public long getSessionSwapOutCount() {
+        final PassivatingSessionManager manager = getPassivatingSessionManager();
+        return (manager != null ? manager.getSwapOutCount() : 0);
+    }
+
+    public long getSessionSwapInCount() {
+        final PassivatingSessionManager manager = getPassivatingSessionManager();
+        return (manager != null ? manager.getSwapInLatency().getCount() : 0);
+    }
+
+    public long getSessionSwapInP99() {
+        final PassivatingSessionManager manager = getPassivatingSessionManager();
+        return (manager != null ? manager.getSwapInLatency().getP99() : 0);
+    }
+
+    public long getSessionEvictionCount() {
+        final SessionEvictionMonitor monitor = server.getSessionEvictionMonitor();
+        return (monitor != null ? monitor.getEvictionCount() : 0);
+    }
+
+    public long getEvictedSessionCount() {
+        final SessionEvictionMonitor monitor = server.getSessionEvictionMonitor();
+        return (monitor != null ? monitor.getEvictedSessionCount() : 0);
+    }
+
+    public long getEvictionReclaimedHeap() {
+        final SessionEvictionMonitor monitor = server.getSessionEvictionMonitor();
+        return (monitor != null ? monitor.getReclaimedHeap() : 0);
+    }
+
+    public int getBusyThreads() {
+        final Executor executor = getExecutor();
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getActiveCount();
+        }
+        if (executor instanceof VirtualThreadExecutor) {
+            return ((VirtualThreadExecutor) executor).getActiveCount();
+        }
+        return -1;
+    }
+
+    public int getIdleThreads() {
+        final Executor executor = getExecutor();
+        if (executor instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor threadPool = (ThreadPoolExecutor) executor;
+            return Math.max(0, threadPool.getPoolSize() - threadPool.getActiveCount());
+        }
+        if (executor instanceof VirtualThreadExecutor) {
+            // A virtual thread is created per request
+            return 0;
+        }
+        return -1;
+    }
+
+    public int getMaxThreads() {
+        final Connector connector = server.getTomcat().getConnector();
+        if (connector.getProtocolHandler() instanceof AbstractProtocol) {
+            return ((AbstractProtocol<?>) connector.getProtocolHandler()).getMaxThreads();
+        }
+        return -1;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getUidlResponseCount() {
+        return getUidlSizes().getHistogram().getCount();
+    }
+
+    public long getUidlSizeP50() {
+        return getUidlSizes().getHistogram().getP50();
+    }
+
+    public long getUidlSizeP99() {
+        return getUidlSizes().getHistogram().getP99();
+    }
+
+    public long getUidlSizeMax() {
+        return getUidlSizes().getHistogram().getMax();
+    }
+
+    public String getUidlSizeReport() {
+        return getUidlSizes().getSummary();
+    }
+
+    public boolean isResourceAccounting() {
+        return server.getResourceAccounting().isEnabled();
+    }
+
+    public void setResourceAccounting(boolean resourceAccounting) {
+        server.getResourceAccounting().setEnabled(resourceAccounting);
+    }
+
+    public String getResourceReport() {
+        return server.getResourceAccounting().getReport(10);
+    }
+
+    public String getComponentTreeReport() {
+        return getComponentTrees().getReport();
+    }
+
+    public String profileComponentTrees() {
+        getComponentTrees().profile(getVaadinSessions());
+        return getComponentTrees().getReport();
+    }
+
+    public long getSessionSizeMean() {
+        return getSessionFootprints().getHistogram().getMean();
+    }
+
+    public long getSessionSizeMax() {
+        return getSessionFootprints().getHistogram().getMax();
+    }
+
+    public long getEstimatedSessionsSize() {
+        return getSessionFootprints().getEstimatedTotalSize();
+    }
+
+    public String getSessionFootprintReport() {
+        return getSessionFootprints().getReport();
+    }
+
+    public String sampleSessionFootprints() {
+        getSessionFootprints().sample(getVaadinSessions());
+        return getSessionFootprints().getReport();
+    }
+
+    public long getStartupTime() {
+        return server.getStartupReport().getStartupTime();
+    }
+
+    /**
+     * Records a request that has been processed.
+     *
+     * @param status the status of the response
+     * @param received the number of bytes of the request body that were read
+     * @param sent the number of bytes of the response body that were sent
+     */
+    void recordRequest(int status, long received, long sent) {
+        requestCount.incrementAndGet();
+        if (status >= 400) {
+            errorCount.incrementAndGet();
+        }
+        bytesReceived.addAndGet(received);
+        bytesSent.addAndGet(sent);
+    }
+
+    /**
+     * Returns the {@link VaadinSession vaadin sessions} of the active http sessions.
+     *
+     * @return the live vaadin sessions
+     */
+    public List<VaadinSession> getVaadinSessions() {
+        final List<VaadinSession> result = new ArrayList<VaadinSession>();
+        final Manager manager = server.getContext().getManager();
+        if (manager != null) {
+            for (Session session : manager.findSessions()) {
+                addVaadinSessions(session.getSession(), result);
+            }
+        }
+        return result;
+    }
+
+    private UidlSizeMetrics getUidlSizes() {
+        return server.getRequestMetrics().getUidlSizes();
+    }
+
+    private ComponentTreeProfiler getComponentTrees() {
+        return server.getRequestMetrics().getComponentTrees();
+    }
+
+    private SessionFootprintSampler getSessionFootprints() {
+        return server.getRequestMetrics().getSessionFootprints();
+    }
+
+    @Override
+    public String toString() {
+        return "ServerStatistics[deployUrl=" + getDeployUrl() + ", sessions=" + getActiveSessions()
+                + ", uis=" + getActiveUIs() + ", busyThreads=" + getBusyThreads()
+                + ", idleThreads=" + getIdleThreads() + ", maxThreads=" + getMaxThreads()
+                + ", requests=" + getRequestCount() + ", errors=" + getErrorCount()
+                + ", bytesReceived=" + getBytesReceived()
+                + ", bytesSent=" + getBytesSent() + ", startupTime=" + getStartupTime() + "ms]";
+    }
+
+    private PassivatingSessionManager getPassivatingSessionManager() {
+        final Manager manager = server.getContext().getManager();
+        return (manager instanceof PassivatingSessionManager ? (PassivatingSessionManager) manager : null);
+    }
+
+    private Executor getExecutor() {
+        final Connector connector = server.getTomcat().getConnector();
+        if (connector.getProtocolHandler() instanceof AbstractProtocol) {
+            return ((AbstractProtocol<?>) connector.getProtocolHandler()).getExecutor();
+        }
+        return null;
+    }
+
+    private static void addVaadinSessions(HttpSession session, List<VaadinSession> vaadinSessions) {
+        try {
+            final Enumeration<String> names = session.getAttributeNames();
+            while (names.hasMoreElements()) {
+                final Object attribute = session.getAttribute(names.nextElement());
+                if (attribute instanceof VaadinSession) {
+                    vaadinSessions.add((VaadinSession) attribute);
+                }
+            }
+        } catch (IllegalStateException e) {
+            // Session has been invalidated in the meantime
+        }
+    }
+}
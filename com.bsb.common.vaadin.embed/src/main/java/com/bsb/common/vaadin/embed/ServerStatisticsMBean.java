@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+/**
+ * The management interface of the {@link ServerStatistics} of a running server.
+ *
+ * @author Stephane Nicoll
+ */
+public interface ServerStatisticsMBean {
+
+    /**
+     * Returns the url the application is deployed to.
+     */
+    String getDeployUrl();
+
+    /**
+     * Returns the number of active http sessions.
+     */
+    int getActiveSessions();
+
+    /**
+     * Returns the number of UIs attached to the active sessions. The sessions are not
+     * locked, so this never waits for a request to complete.
+     */
+    int getActiveUIs();
+
+    /**
+     * Returns the number of sessions that are swapped out to disk, <tt>0</tt> if the
+     * sessions are not passivated.
+     */
+    int getPassivatedSessions();
+
+    /**
+     * Returns the number of sessions that have been swapped out to disk so far.
+     */
+    long getSessionSwapOutCount();
+
+    /**
+     * Returns the number of sessions that have been swapped back in so far.
+     */
+    long getSessionSwapInCount();
+
+    /**
+     * Returns the 99th percentile of the latency of swapping a session back in, in microseconds.
+     */
+    long getSessionSwapInP99();
+
+    /**
+     * Returns the number of times sessions have been evicted because the heap was under
+     * pressure, <tt>0</tt> if sessions are not evicted.
+     */
+    long getSessionEvictionCount();
+
+    /**
+     * Returns the number of sessions that have been evicted because the heap was under
+     * pressure.
+     */
+    long getEvictedSessionCount();
+
+    /**
+     * Returns the heap reclaimed by evicting sessions so far, in bytes.
+     */
+    long getEvictionReclaimedHeap();
+
+    /**
+     * Returns the number of connector threads processing a request or <tt>-1</tt> if
+     * the executor of the connector does not provide it.
+     */
+    int getBusyThreads();
+
+    /**
+     * Returns the number of idle connector threads or <tt>-1</tt> if the executor of
+     * the connector does not provide it.
+     */
+    int getIdleThreads();
+
+    /**
+     * Returns the maximum number of connector threads or <tt>-1</tt> if the executor of
+     * the connector does not provide it.
+     */
+    int getMaxThreads();
+
+    /**
+     * Returns the number of requests processed by the application.
+     */
+    long getRequestCount();
+
+    /**
+     * Returns the number of requests that completed with a status of <tt>400</tt>
+     * or higher.
+     */
+    long getErrorCount();
+
+    /**
+     * Returns the number of bytes of the request bodies read by the application.
+     */
+    long getBytesReceived();
+
+    /**
+     * Returns the number of bytes of the response bodies sent by the application.
+     */
+    long getBytesSent();
+
+    /**
+     * Returns the time that the server took to start, in milliseconds.
+     */
+    long getStartupTime();
+
+    /**
+     * Returns the number of UIDL responses whose size has been recorded.
+     */
+    long getUidlResponseCount();
+
+    /**
+     * Returns the median size of the UIDL responses, in bytes.
+     */
+    long getUidlSizeP50();
+
+    /**
+     * Returns the 99th percentile of the size of the UIDL responses, in bytes.
+     */
+    long getUidlSizeP99();
+
+    /**
+     * Returns the size of the largest UIDL response, in bytes.
+     */
+    long getUidlSizeMax();
+
+    /**
+     * Returns a summary of the size of the UIDL responses and of the connectors that
+     * contributed the most to the largest ones.
+     */
+    String getUidlSizeReport();
+
+    /**
+     * Specifies if the CPU time and the allocations of the requests are charged to
+     * their session, UI class and request type.
+     */
+    boolean isResourceAccounting();
+
+    /**
+     * Enables or disables the accounting of the CPU time and the allocations of the requests.
+     */
+    void setResourceAccounting(boolean resourceAccounting);
+
+    /**
+     * Returns a report of the ten top consumers of CPU time and heap.
+     */
+    String getResourceReport();
+
+    /**
+     * Returns a report of the component trees of the live UIs per UI class, as of their
+     * last profiling.
+     */
+    String getComponentTreeReport();
+
+    /**
+     * Profiles the component trees of the live UIs now.
+     *
+     * @return the report of the component trees
+     */
+    String profileComponentTrees();
+
+    /**
+     * Returns the mean serialized size of a session, in bytes, as of the last measurement.
+     */
+    long getSessionSizeMean();
+
+    /**
+     * Returns the serialized size of the largest session, in bytes, as of the last measurement.
+     */
+    long getSessionSizeMax();
+
+    /**
+     * Returns the estimated footprint of all the sessions, in bytes, as of the last measurement.
+     */
+    long getEstimatedSessionsSize();
+
+    /**
+     * Returns a report of the footprint of the sessions per UI class, as of the last
+     * measurement.
+     */
+    String getSessionFootprintReport();
+
+    /**
+     * Measures the footprint of the sessions now.
+     *
+     * @return the report of the footprint of the sessions
+     */
+    String sampleSessionFootprints();
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import org.apache.catalina.Manager;
+import org.apache.catalina.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evicts the sessions that have been idle for the longest time when the heap is under
+ * pressure, that is when the usage of the old generation after a garbage collection
+ * exceeds a percentage of its maximum size.
+ * <p/>
+ * The threshold is set as the {@link MemoryPoolMXBean#setCollectionUsageThreshold(long)
+ * collection usage threshold} of the pool, which is shared by the whole JVM. Each
+ * {@link #check()} evicts a tenth of the active sessions, among the ones that have been
+ * idle for at least the minimum idle time. The sessions are swapped out to disk if the
+ * manager passivates sessions, they are invalidated otherwise. No other session is
+ * evicted until a collection has run, the drop of the usage of the pool at that point
+ * is recorded as the heap reclaimed by the eviction.
+ *
+ * @author Stephane Nicoll
+ */
+class SessionEvictionMonitor {
+
+    /**
+     * The default number of seconds a session has to be idle before it can be evicted.
+     */
+    static final int DEFAULT_MIN_IDLE_TIME = 30;
+
+    private static final double EVICTION_RATIO = 0.1;
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionEvictionMonitor.class);
+
+    private final Manager manager;
+    private final int threshold;
+    private final int minIdleTime;
+    private final MemoryPoolMXBean pool;
+
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong evictedSessionCount = new AtomicLong();
+    private final AtomicLong reclaimedHeap = new AtomicLong();
+
+    private long pendingUsage = -1;
+    private long pendingCollectionCount;
+
+    /**
+     * Creates a new instance and sets the collection usage threshold of the old
+     * generation, if the JVM supports it.
+     *
+     * @param manager the manager of the sessions to evict
+     * @param threshold the percentage of the old generation above which sessions are evicted
+     * @param minIdleTime the number of seconds a session has to be idle before it can be evicted
+     */
+    SessionEvictionMonitor(Manager manager, int threshold, int minIdleTime) {
+        this.manager = manager;
+        this.threshold = threshold;
+        this.minIdleTime = minIdleTime;
+        this.pool = findOldGeneration();
+        if (pool != null) {
+            pool.setCollectionUsageThreshold(getMaxSize() * threshold / 100);
+        } else {
+            logger.warn("No heap memory pool supports a collection usage threshold, sessions will not be "
+                    + "evicted under heap pressure.");
+        }
+    }
+
+    /**
+     * Specifies if the heap pressure can be monitored on this JVM.
+     *
+     * @return <tt>true</tt> if a collection usage threshold has been set
+     */
+    boolean isSupported() {
+        return pool != null;
+    }
+
+    /**
+     * Returns the percentage of the old generation above which sessions are evicted.
+     *
+     * @return the threshold, in percent
+     */
+    int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns the number of times sessions have been evicted.
+     *
+     * @return the number of evictions
+     */
+    long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the number of sessions that have been evicted so far.
+     *
+     * @return the number of evicted sessions
+     */
+    long getEvictedSessionCount() {
+        return evictedSessionCount.get();
+    }
+
+    /**
+     * Returns the heap reclaimed by the evictions so far, as measured by the usage
+     * of the old generation after the collection that followed each eviction.
+     *
+     * @return the reclaimed heap, in bytes
+     */
+    long getReclaimedHeap() {
+        return reclaimedHeap.get();
+    }
+
+    /**
+     * Records the heap reclaimed by the last eviction if a collection has run since,
+     * then evicts sessions if the usage of the old generation exceeds the threshold.
+     */
+    synchronized void check() {
+        if (pool == null) {
+            return;
+        }
+        if (pendingUsage >= 0) {
+            if (getCollectionCount() == pendingCollectionCount) {
+                // Wait for a collection to release the evicted sessions
+                return;
+            }
+            final long reclaimed = pendingUsage - pool.getCollectionUsage().getUsed();
+            if (reclaimed > 0) {
+                reclaimedHeap.addAndGet(reclaimed);
+            }
+            pendingUsage = -1;
+        }
+        if (pool.isCollectionUsageThresholdExceeded()) {
+            evict();
+        }
+    }
+
+    /**
+     * Evicts a tenth of the active sessions, and at least one, starting with the ones
+     * that have been idle for the longest time.
+     *
+     * @return the number of evicted sessions
+     */
+    synchronized int evict() {
+        final long now = System.currentTimeMillis();
+        final List<Session> candidates = new ArrayList<Session>();
+        for (Session session : manager.findSessions()) {
+            if (now - session.getThisAccessedTimeInternal() >= minIdleTime * 1000L) {
+                candidates.add(session);
+            }
+        }
+        Collections.sort(candidates, new Comparator<Session>() {
+            public int compare(Session first, Session second) {
+                final long firstAccess = first.getThisAccessedTimeInternal();
+                final long secondAccess = second.getThisAccessedTimeInternal();
+                return (firstAccess < secondAccess ? -1 : (firstAccess == secondAccess ? 0 : 1));
+            }
+        });
+        final int count = Math.min(candidates.size(),
+                Math.max(1, (int) (manager.getActiveSessions() * EVICTION_RATIO)));
+        if (count == 0) {
+            logger.debug("Heap above " + threshold + "% but no session idle for " + minIdleTime + " seconds");
+            return 0;
+        }
+        if (pool != null) {
+            pendingUsage = pool.getCollectionUsage().getUsed();
+            pendingCollectionCount = getCollectionCount();
+        }
+        for (Session session : candidates.subList(0, count)) {
+            evict(session);
+        }
+        evictionCount.incrementAndGet();
+        evictedSessionCount.addAndGet(count);
+        logger.info("Heap above " + threshold + "%, evicted " + count + " of " + candidates.size()
+                + " idle session(s)");
+        return count;
+    }
+
+    /**
+     * Removes the collection usage threshold of the old generation.
+     */
+    void close() {
+        if (pool != null) {
+            pool.setCollectionUsageThreshold(0);
+        }
+    }
+
+    private void evict(Session session) {
+        if (manager instanceof PassivatingSessionManager) {
+            try {
+                ((PassivatingSessionManager) manager).passivate(session);
+                return;
+            } catch (IOException e) {
+                logger.warn("Failed to swap out session, invalidating it", e);
+            }
+        }
+        session.expire();
+    }
+
+    private long getMaxSize() {
+        final long max = pool.getUsage().getMax();
+        return (max > 0 ? max : Runtime.getRuntime().maxMemory());
+    }
+
+    /**
+     * Returns the number of collections that have processed the old generation.
+     */
+    private long getCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (Arrays.asList(collector.getMemoryPoolNames()).contains(pool.getName())) {
+                count += Math.max(0, collector.getCollectionCount());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the heap pool that supports a collection usage threshold and that can
+     * grow the most, that is the old generation for generational collectors.
+     */
+    private static MemoryPoolMXBean findOldGeneration() {
+        MemoryPoolMXBean result = null;
+        for (MemoryPoolMXBean candidate : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (candidate.getType() == MemoryType.HEAP && candidate.isCollectionUsageThresholdSupported()
+                    && (result == null || candidate.getUsage().getMax() > result.getUsage().getMax())) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long the different phases of the startup of an {@link EmbedVaadinServer}
+ * took, in milliseconds.
+ * <p/>
+ * Phases are recorded in the order they complete. Some phases, such as the
+ * initialization of the vaadin servlet or the first response being served, only
+ * complete when the first request hits the server so they may be recorded after
+ * {@link EmbedVaadinServer#start()} has returned.
+ *
+ * @author Stephane Nicoll
+ * @see EmbedVaadinServer#getStartupReport()
+ */
+public class StartupReport implements Serializable {
+
+    private static final long serialVersionUID = -2786236469307409816L;
+
+    /**
+     * The configuration of the server, including {@link #INIT_CONFIGURATION}.
+     */
+    public static final String CONFIGURE = "configure";
+
+    /**
+     * The basic configuration of the server, i.e. port and context.
+     */
+    public static final String INIT_CONFIGURATION = "initConfiguration";
+
+    /**
+     * The start of tomcat itself, until the connector is bound.
+     */
+    public static final String TOMCAT_START = "tomcatStart";
+
+    /**
+     * The initialization of the vaadin servlet, which happens on the first request.
+     */
+    public static final String SERVLET_INIT = "servletInit";
+
+    /**
+     * The time elapsed between the start of the server and the completion of the first response.
+     */
+    public static final String FIRST_BYTE = "firstByte";
+
+    /**
+     * The launch of the browser, if requested.
+     */
+    public static final String BROWSER_LAUNCH = "browserLaunch";
+
+    private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+    private long startupTime = -1;
+
+    /**
+     * Returns the duration of each phase that has completed so far, in the order they completed.
+     *
+     * @return the duration in milliseconds of each completed phase
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(phases));
+    }
+
+    /**
+     * Returns the duration of the specified phase or <tt>null</tt> if that
+     * phase has not completed yet.
+     *
+     * @param phase the name of the phase
+     * @return the duration of the phase in milliseconds or <tt>null</tt>
+     */
+    public synchronized Long getDuration(String phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * Returns the time it took for {@link EmbedVaadinServer#start()} to complete, not
+     * taking into account the time spent waiting if the server blocks. Returns <tt>-1</tt>
+     * if the server has not started yet.
+     *
+     * @return the startup time in milliseconds or <tt>-1</tt>
+     */
+    public synchronized long getStartupTime() {
+        return startupTime;
+    }
+
+    /**
+     * Returns a JSON representation of this report.
+     *
+     * @return this report as a JSON document
+     */
+    public synchronized String toJson() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\"startupTime\":").append(startupTime).append(",\"phases\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            if (!first) {
+                sb.append(",");
+            }
+            sb.append("\"").append(entry.getKey()).append("\":").append(entry.getValue());
+            first = false;
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the {@link #toJson() JSON representation} of this report to the specified file.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file could not be written
+     */
+    public void writeTo(File file) throws IOException {
+        Files.write(toJson(), file, Charsets.UTF_8);
+    }
+
+    synchronized void record(String phase, long duration) {
+        phases.put(phase, duration);
+    }
+
+    synchronized void setStartupTime(long startupTime) {
+        this.startupTime = startupTime;
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import org.apache.catalina.Executor;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.util.LifecycleBase;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link Executor} that runs each request in a new virtual thread.
+ * <p/>
+ * Virtual threads are only available as of Java 21 so the executor is
+ * created by reflection. The connectors of Tomcat 7 process each request
+ * while holding the monitor of the socket and a virtual thread blocking
+ * in a <tt>synchronized</tt> block pins its carrier thread up to Java 24.
+ * With earlier versions, a handful of blocked requests would stall every
+ * other request so virtual threads are only considered as supported as of
+ * Java 24. Check {@link #isSupported()} before registering this executor.
+ *
+ * @author Stephane Nicoll
+ */
+class VirtualThreadExecutor extends LifecycleBase implements Executor {
+
+    private static final int MINIMUM_JAVA_VERSION = 24;
+
+    private static final Method FACTORY_METHOD = findFactoryMethod();
+
+    private final String name;
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private volatile ExecutorService executor;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name the name of the executor
+     */
+    VirtualThreadExecutor(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Specifies if virtual threads are supported by the current JVM.
+     *
+     * @return <tt>true</tt> if virtual threads can be used
+     */
+    static boolean isSupported() {
+        return FACTORY_METHOD != null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of virtual threads that are currently processing a request.
+     *
+     * @return the number of active threads
+     */
+    int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public void execute(final Runnable command) {
+        final ExecutorService current = executor;
+        if (current == null) {
+            throw new RejectedExecutionException("Executor [" + name + "] is not started");
+        }
+        current.execute(new Runnable() {
+            public void run() {
+                activeCount.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    activeCount.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    public void execute(Runnable command, long timeout, TimeUnit unit) {
+        // Starting a virtual thread never blocks so the timeout is irrelevant
+        execute(command);
+    }
+
+    @Override
+    protected void initInternal() throws LifecycleException {
+    }
+
+    @Override
+    protected void startInternal() throws LifecycleException {
+        if (FACTORY_METHOD == null) {
+            throw new LifecycleException("Virtual threads are not supported by this JVM");
+        }
+        try {
+            executor = (ExecutorService) FACTORY_METHOD.invoke(null);
+        } catch (Exception e) {
+            throw new LifecycleException("Failed to create virtual thread executor", e);
+        }
+        setState(LifecycleState.STARTING);
+    }
+
+    @Override
+    protected void stopInternal() throws LifecycleException {
+        setState(LifecycleState.STOPPING);
+        final ExecutorService current = executor;
+        executor = null;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    @Override
+    protected void destroyInternal() throws LifecycleException {
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualThreadExecutor[" + name + "]";
+    }
+
+    private static Method findFactoryMethod() {
+        try {
+            // Runtime.version().feature() is available as of Java 10
+            final Object version = Runtime.class.getMethod("version").invoke(null);
+            final Integer feature = (Integer) version.getClass().getMethod("feature").invoke(version);
+            if (feature < MINIMUM_JAVA_VERSION) {
+                return null;
+            }
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -17,7 +17,8 @@ package com.bsb.common.vaadin.embed.application;
 
 import com.bsb.common.vaadin.embed.AbstractEmbedVaadinTomcat;
 import com.bsb.common.vaadin.embed.EmbedVaadinConfig;
-import com.vaadin.server.VaadinServlet;
+import com.bsb.common.vaadin.embed.metrics.MeteredVaadinServlet;
+import com.bsb.common.vaadin.embed.push.PushUIProvider;
 import com.vaadin.ui.UI;
 import org.apache.catalina.Wrapper;
 
@@ -50,7 +51,13 @@ public class ApplicationBasedEmbedVaadinTomcat extends AbstractEmbedVaadinTomcat
     protected void configure() {
         initConfiguration();
         // Setup vaadin servlet
-        final Wrapper wrapper = initializeVaadinServlet(new VaadinServlet());
+        final MeteredVaadinServlet servlet = new MeteredVaadinServlet(getRequestMetrics(),
+                getConfig().isServerTiming());
+        final Wrapper wrapper = initializeVaadinServlet(servlet);
         wrapper.addInitParameter("UI", uiClass.getName());
+        if (getConfig().getPushTransport() != null) {
+            // Overrides the transport of the @Push annotation, if any
+            wrapper.addInitParameter("UIProvider", PushUIProvider.class.getName());
+        }
     }
 }
@@ -22,7 +22,9 @@ import com.vaadin.ui.Component;
  * A {@link com.bsb.common.vaadin.embed.EmbedVaadinServer} implementation that
  * deploys a initialized component.
  * <p/>
- * To be used for quick prototyping. Does not handle session or multi-tabs.
+ * To be used for quick prototyping. Does not handle session or multi-tabs unless
+ * a {@link ComponentFactory} is used, in which case a new component is created for
+ * each UI.
  *
  * @author Stephane Nicoll
  */
@@ -32,6 +34,7 @@ public class ComponentBasedEmbedVaadinTomcat extends AbstractEmbedVaadinTomcat i
 
     private final EmbedComponentConfig config;
     private final Component component;
+    private final ComponentFactory componentFactory;
 
     /**
      * Creates a new instance.
@@ -43,6 +46,20 @@ public class ComponentBasedEmbedVaadinTomcat extends AbstractEmbedVaadinTomcat i
         super(config);
         this.config = config;
         this.component = component;
+        this.componentFactory = null;
+    }
+
+    /**
+     * Creates a new instance that creates a new component for each UI.
+     *
+     * @param config the config to use
+     * @param componentFactory the factory to use to create the component to display
+     */
+    public ComponentBasedEmbedVaadinTomcat(EmbedComponentConfig config, ComponentFactory componentFactory) {
+        super(config);
+        this.config = config;
+        this.component = null;
+        this.componentFactory = componentFactory;
     }
 
     public EmbedComponentConfig getConfig() {
@@ -54,6 +71,26 @@ public class ComponentBasedEmbedVaadinTomcat extends AbstractEmbedVaadinTomcat i
         initConfiguration();
 
         // Setup vaadin servlet
-        initializeVaadinServlet(new DevApplicationServlet(this, component));
+        if (componentFactory != null) {
+            initializeVaadinServlet(new DevApplicationServlet(this, createComponentFactory()));
+        } else {
+            initializeVaadinServlet(new DevApplicationServlet(this, component));
+        }
+    }
+
+    /**
+     * Returns the {@link ComponentFactory} to use. Starts creating a first component
+     * in the background if warm-up is enabled.
+     *
+     * @return the component factory to use
+     * @see EmbedComponentConfig#isWarmUp()
+     */
+    private ComponentFactory createComponentFactory() {
+        if (!getConfig().isWarmUp()) {
+            return componentFactory;
+        }
+        final WarmUpComponentFactory warmUpFactory = new WarmUpComponentFactory(componentFactory);
+        warmUpFactory.warmUp();
+        return warmUpFactory;
     }
 }
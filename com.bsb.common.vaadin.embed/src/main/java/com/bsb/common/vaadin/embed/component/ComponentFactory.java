@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.component;
+
+import com.vaadin.ui.Component;
+
+import java.io.Serializable;
+
+/**
+ * Creates the {@link Component} to display.
+ * <p/>
+ * Invoked each time a new UI is requested so that every session, and every
+ * browser tab, gets its own component tree. Implementations should therefore
+ * return a new instance on each invocation and must be thread-safe.
+ *
+ * @author Stephane Nicoll
+ */
+public interface ComponentFactory extends Serializable {
+
+    /**
+     * Creates a new {@link Component} to be wrapped in a UI.
+     *
+     * @return a new component instance
+     */
+    Component createComponent();
+
+}
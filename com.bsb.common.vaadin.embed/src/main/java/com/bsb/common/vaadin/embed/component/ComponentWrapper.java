@@ -25,12 +25,15 @@ import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.VerticalSplitPanel;
 import com.vaadin.ui.Window;
 
+import java.io.Serializable;
+
 /**
  * Wraps a component into an actual application.
  *
  * @author Stephane Nicoll
  */
-public class ComponentWrapper {
+@SuppressWarnings("serial")
+public class ComponentWrapper implements Serializable {
 
     private static final int SPLIT_POSITION = 20;
 
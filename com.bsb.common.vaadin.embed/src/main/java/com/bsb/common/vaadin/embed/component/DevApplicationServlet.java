@@ -15,10 +15,12 @@
  */
 package com.bsb.common.vaadin.embed.component;
 
+import com.bsb.common.vaadin.embed.metrics.MeteredVaadinServlet;
 import com.vaadin.server.DeploymentConfiguration;
 import com.vaadin.server.ServiceException;
 import com.vaadin.server.SessionInitEvent;
 import com.vaadin.server.SessionInitListener;
+import com.vaadin.server.UIProvider;
 import com.vaadin.server.VaadinServlet;
 import com.vaadin.server.VaadinServletService;
 import com.vaadin.ui.Component;
@@ -28,17 +30,23 @@ import com.vaadin.ui.UI;
  * A simple development {@link VaadinServlet} that takes the component
  * to display.
  * <p/>
- * Since this cannot create a new instance of the component, this mode does
- * not support session, multi tabs or application refresh. Will show
- * that component only.
+ * When an initialized component is specified, this cannot create a new instance
+ * of the component so this mode does not support session, multi tabs or application
+ * refresh. Will show that component only.
+ * <p/>
+ * When a {@link ComponentFactory} is specified instead, a new component is created
+ * and wrapped for each UI that is requested.
  *
  * @author Stephane Nicoll
  */
 @SuppressWarnings("serial")
-public class DevApplicationServlet extends VaadinServlet {
+public class DevApplicationServlet extends MeteredVaadinServlet {
 
-    private final UI ui;
+    private final Component component;
+    private final ComponentFactory componentFactory;
+    private final ComponentWrapper componentWrapper;
     private final String theme;
+    private UI ui;
 
     /**
      * Creates a new instance.
@@ -47,7 +55,24 @@ public class DevApplicationServlet extends VaadinServlet {
      * @param component the component to display
      */
     public DevApplicationServlet(ComponentBasedVaadinServer server, Component component) {
-        this.ui = new ComponentWrapper(server).wrap(component);
+        super(server.getRequestMetrics(), server.getConfig().isServerTiming());
+        this.componentWrapper = new ComponentWrapper(server);
+        this.component = component;
+        this.componentFactory = null;
+        this.theme = server.getConfig().getTheme();
+    }
+
+    /**
+     * Creates a new instance that creates a new component for each UI.
+     *
+     * @param server the server handling this application
+     * @param componentFactory the factory to use to create the component to display
+     */
+    public DevApplicationServlet(ComponentBasedVaadinServer server, ComponentFactory componentFactory) {
+        super(server.getRequestMetrics(), server.getConfig().isServerTiming());
+        this.componentWrapper = new ComponentWrapper(server);
+        this.component = null;
+        this.componentFactory = componentFactory;
         this.theme = server.getConfig().getTheme();
     }
 
@@ -56,9 +81,34 @@ public class DevApplicationServlet extends VaadinServlet {
         final VaadinServletService service = super.createServletService(deploymentConfiguration);
         service.addSessionInitListener(new SessionInitListener() {
             public void sessionInit(SessionInitEvent event) throws ServiceException {
-                event.getSession().addUIProvider(new DevUIProvider(ui, theme));
+                event.getSession().addUIProvider(createUIProvider());
             }
         });
         return service;
     }
+
+    /**
+     * Creates the {@link UIProvider} to register for a new session.
+     *
+     * @return the ui provider to use
+     */
+    protected UIProvider createUIProvider() {
+        if (componentFactory != null) {
+            return new DevUIProvider(componentFactory, componentWrapper, theme);
+        }
+        return new DevUIProvider(getUI(), theme);
+    }
+
+    /**
+     * Returns the UI wrapping the component to display. The component is only
+     * wrapped when the first session is initialized.
+     *
+     * @return the ui to use for all sessions
+     */
+    private synchronized UI getUI() {
+        if (ui == null) {
+            ui = componentWrapper.wrap(component);
+        }
+        return ui;
+    }
 }
@@ -15,13 +15,18 @@
  */
 package com.bsb.common.vaadin.embed.component;
 
+import com.bsb.common.vaadin.embed.push.PushUtils;
 import com.vaadin.server.UIClassSelectionEvent;
 import com.vaadin.server.UICreateEvent;
 import com.vaadin.server.UIProvider;
+import com.vaadin.shared.ui.ui.Transport;
 import com.vaadin.ui.UI;
 
 /**
  * A specialized {@link UIProvider} that returns a configurable UI and theme.
+ * <p/>
+ * Either returns the same UI instance regardless of the event or creates a
+ * new one for each event using a {@link ComponentFactory}.
  *
  * @author Stephane Nicoll
  */
@@ -29,6 +34,8 @@ import com.vaadin.ui.UI;
 final class DevUIProvider extends UIProvider {
 
     private final UI ui;
+    private final ComponentFactory componentFactory;
+    private final ComponentWrapper componentWrapper;
     private final String theme;
 
     /**
@@ -39,12 +46,31 @@ final class DevUIProvider extends UIProvider {
      */
     DevUIProvider(UI ui, String theme) {
         this.ui = ui;
+        this.componentFactory = null;
+        this.componentWrapper = null;
+        this.theme = theme;
+    }
+
+    /**
+     * Creates a new instance that creates a new UI for each event.
+     *
+     * @param componentFactory the factory to use to create the component to display
+     * @param componentWrapper the wrapper to use to turn the component into a UI
+     * @param theme the theme to use, regardless of the event
+     */
+    DevUIProvider(ComponentFactory componentFactory, ComponentWrapper componentWrapper, String theme) {
+        this.ui = null;
+        this.componentFactory = componentFactory;
+        this.componentWrapper = componentWrapper;
         this.theme = theme;
     }
 
     @Override
     public UI createInstance(UICreateEvent event) {
-        return ui;
+        if (ui != null) {
+            return ui;
+        }
+        return componentWrapper.wrap(componentFactory.createComponent());
     }
 
     @Override
@@ -52,8 +78,17 @@ final class DevUIProvider extends UIProvider {
         return theme;
     }
 
+    @Override
+    public Transport getPushTransport(UICreateEvent event) {
+        return PushUtils.getTransport(event.getService());
+    }
+
     @Override
     public Class<? extends UI> getUIClass(UIClassSelectionEvent event) {
-        return ui.getClass();
+        if (ui != null) {
+            return ui.getClass();
+        }
+        // The actual type is only known once the component has been created
+        return UI.class;
     }
 }
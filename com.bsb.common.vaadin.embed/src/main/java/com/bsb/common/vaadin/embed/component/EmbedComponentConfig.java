@@ -28,6 +28,8 @@ import java.util.Properties;
  * <ul>
  * <li><tt>vaadin.theme</tt>: to specify the theme to use for the vaadin application</li>
  * <li><tt>development.header</tt>: to specify if a development header should be added to the application</li>
+ * <li><tt>component.warmUp</tt>: to specify if the component should be created in the background while
+ * the server starts</li>
  * </ul>
  *
  * @author Wouter Coekaerts
@@ -56,20 +58,34 @@ public final class EmbedComponentConfig extends EmbedVaadinConfig {
      */
     public static final boolean DEFAULT_DEVELOPMENT_HEADER = false;
 
+    /**
+     * The key defining if a first component should be created in the background while the
+     * server starts. Only taken into account when a {@link ComponentFactory} is used. Holds a boolean.
+     */
+    public static final String KEY_WARM_UP = "component.warmUp";
+
+    /**
+     * By default the component is created when the first UI is requested.
+     */
+    public static final boolean DEFAULT_WARM_UP = false;
+
     private String theme;
     private boolean developmentHeader;
+    private boolean warmUp;
 
     protected EmbedComponentConfig(Properties properties) {
         super(properties);
         theme = properties.getProperty(KEY_THEME, DEFAULT_THEME);
         developmentHeader = Boolean.valueOf(properties.getProperty(KEY_DEVELOPMENT_HEADER,
                 String.valueOf(DEFAULT_DEVELOPMENT_HEADER)));
+        warmUp = Boolean.valueOf(properties.getProperty(KEY_WARM_UP, String.valueOf(DEFAULT_WARM_UP)));
     }
 
     protected EmbedComponentConfig(EmbedComponentConfig clone) {
         super(clone);
         theme = clone.theme;
         developmentHeader = clone.developmentHeader;
+        warmUp = clone.warmUp;
     }
 
     /**
@@ -101,6 +117,22 @@ public final class EmbedComponentConfig extends EmbedVaadinConfig {
         this.developmentHeader = developmentHeader;
     }
 
+    /**
+     * Specifies if a first component should be created in the background while
+     * the server starts, rather than when the first UI is requested. Only taken
+     * into account when a {@link ComponentFactory} is used.
+     *
+     * @return <tt>true</tt> to create the component in the background on startup
+     * @see #DEFAULT_WARM_UP
+     */
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
     /**
      * Creates a new instance with the default settings, i.e. does not attempt
      * to load customized settings from the {@link #CONFIG_LOCATION config location}.
@@ -30,6 +30,7 @@ import java.util.Properties;
 public class EmbedVaadinComponent extends EmbedVaadinServerBuilder<EmbedVaadinComponent, EmbedVaadinServer> {
 
     private final Component component;
+    private final ComponentFactory componentFactory;
     private EmbedComponentConfig config;
 
     /**
@@ -41,6 +42,22 @@ public class EmbedVaadinComponent extends EmbedVaadinServerBuilder<EmbedVaadinCo
         super();
         assertNotNull(component, "component could not be null.");
         this.component = component;
+        this.componentFactory = null;
+        initializeConfig(EmbedVaadinConfig.loadProperties());
+    }
+
+    /**
+     * Creates a new instance for the specified {@link ComponentFactory}. A new
+     * component is created for each UI, which allows to handle several sessions
+     * concurrently.
+     *
+     * @param componentFactory the factory to use to create the component to deploy
+     */
+    public EmbedVaadinComponent(ComponentFactory componentFactory) {
+        super();
+        assertNotNull(componentFactory, "componentFactory could not be null.");
+        this.component = null;
+        this.componentFactory = componentFactory;
         initializeConfig(EmbedVaadinConfig.loadProperties());
     }
 
@@ -69,15 +86,37 @@ public class EmbedVaadinComponent extends EmbedVaadinServerBuilder<EmbedVaadinCo
     }
 
 
+    /**
+     * Specifies if a first component should be created in the background while the
+     * server starts. The first UI request then uses that component instead of
+     * creating one. Only taken into account when a {@link ComponentFactory} is used.
+     *
+     * @param warmUp <tt>true</tt> to create the component in the background on startup
+     * @return this
+     */
+    public EmbedVaadinComponent withWarmUp(boolean warmUp) {
+        getConfig().setWarmUp(warmUp);
+        return self();
+    }
+
     /**
      * Returns the {@link Component} that was used to initialize this instance, if any.
      *
-     * @return the component or <tt>null</tt> if an application was set
+     * @return the component or <tt>null</tt> if a component factory was set
      */
     protected Component getComponent() {
         return component;
     }
 
+    /**
+     * Returns the {@link ComponentFactory} that was used to initialize this instance, if any.
+     *
+     * @return the component factory or <tt>null</tt> if a component was set
+     */
+    protected ComponentFactory getComponentFactory() {
+        return componentFactory;
+    }
+
     @Override
     protected EmbedVaadinComponent self() {
         return this;
@@ -85,6 +124,9 @@ public class EmbedVaadinComponent extends EmbedVaadinServerBuilder<EmbedVaadinCo
 
     @Override
     public ComponentBasedVaadinServer build() {
+        if (getComponentFactory() != null) {
+            return new ComponentBasedEmbedVaadinTomcat(config, getComponentFactory());
+        }
         return new ComponentBasedEmbedVaadinTomcat(config, getComponent());
     }
 
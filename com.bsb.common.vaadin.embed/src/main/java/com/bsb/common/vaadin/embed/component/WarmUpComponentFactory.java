@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.component;
+
+import com.vaadin.ui.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link ComponentFactory} that creates a first component in the background
+ * so that it is ready, or at least in progress, when the first UI is requested.
+ * <p/>
+ * Further invocations delegate to the actual factory.
+ *
+ * @author Stephane Nicoll
+ */
+@SuppressWarnings("serial")
+final class WarmUpComponentFactory implements ComponentFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmUpComponentFactory.class);
+
+    private final ComponentFactory delegate;
+
+    private final transient AtomicReference<FutureTask<Component>> warmUpTask;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate the factory to use to actually create the components
+     */
+    WarmUpComponentFactory(ComponentFactory delegate) {
+        this.delegate = delegate;
+        this.warmUpTask = new AtomicReference<FutureTask<Component>>();
+    }
+
+    /**
+     * Starts the creation of a first component in a background thread.
+     */
+    void warmUp() {
+        final FutureTask<Component> task = new FutureTask<Component>(new Callable<Component>() {
+            public Component call() throws Exception {
+                final long startTime = System.currentTimeMillis();
+                final Component component = delegate.createComponent();
+                logger.debug("Component created in the background in "
+                        + (System.currentTimeMillis() - startTime) + " ms.");
+                return component;
+            }
+        });
+        if (warmUpTask.compareAndSet(null, task)) {
+            final Thread thread = new Thread(task, "embed-vaadin-warm-up");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public Component createComponent() {
+        final FutureTask<Component> task = warmUpTask != null ? warmUpTask.getAndSet(null) : null;
+        if (task != null) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.warn("Failed to create component in the background, trying again.", e.getCause());
+            }
+        }
+        return delegate.createComponent();
+    }
+}
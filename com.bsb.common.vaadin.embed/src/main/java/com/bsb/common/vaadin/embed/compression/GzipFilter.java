@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.compression;
+
+import com.bsb.common.vaadin.embed.util.HttpUtils;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link Filter} that compresses responses with gzip, such as the UIDL and the
+ * bootstrap responses of the vaadin servlet.
+ * <p/>
+ * A response is compressed if the client accepts gzip, its content type is one of
+ * the configured mime types and its size reaches a threshold. The content is buffered
+ * until that threshold is reached so that small responses are sent as is. Responses
+ * of a compressible content type are sent with <tt>Vary: Accept-Encoding</tt>, whether
+ * they are compressed or not.
+ * <p/>
+ * Push requests are never compressed as their responses are streamed.
+ *
+ * @author Stephane Nicoll
+ */
+public class GzipFilter implements Filter {
+
+    private static final String PUSH_PATH = "/PUSH";
+
+    private final int minSize;
+    private final int level;
+    private final Set<String> mimeTypes;
+
+    private final AtomicLong compressedResponseCount = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressionTime = new AtomicLong();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param minSize the minimum size of a response to compress it, in bytes
+     * @param level the compression level, from 1 (fastest) to 9 (best compression)
+     * @param mimeTypes the mime types of the responses to compress
+     */
+    public GzipFilter(int minSize, int level, Collection<String> mimeTypes) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level [" + level + "], must be between "
+                    + Deflater.BEST_SPEED + " and " + Deflater.BEST_COMPRESSION);
+        }
+        this.minSize = minSize;
+        this.level = level;
+        final Set<String> types = new HashSet<String>();
+        for (String mimeType : mimeTypes) {
+            types.add(mimeType.trim().toLowerCase(Locale.ENGLISH));
+        }
+        this.mimeTypes = Collections.unmodifiableSet(types);
+    }
+
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest) || isPushRequest((HttpServletRequest) request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // Responses that are not compressed still need the Vary header
+        final GzipResponseWrapper wrapper = new GzipResponseWrapper((HttpServletResponse) response, this,
+                shouldCompress((HttpServletRequest) request));
+        try {
+            chain.doFilter(request, wrapper);
+        } finally {
+            wrapper.finish();
+        }
+    }
+
+    public void destroy() {
+    }
+
+    /**
+     * Returns the minimum size of a response to compress it, in bytes.
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Returns the compression level.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the mime types of the responses to compress.
+     */
+    public Set<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    /**
+     * Returns the number of responses that have been compressed.
+     */
+    public long getCompressedResponseCount() {
+        return compressedResponseCount.get();
+    }
+
+    /**
+     * Returns the number of bytes of the compressed responses, before compression.
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes of the compressed responses, after compression.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * Returns the time spent compressing responses, in nanoseconds.
+     */
+    public long getCompressionTime() {
+        return compressionTime.get();
+    }
+
+    /**
+     * Specifies if a response of the specified content type should be compressed.
+     *
+     * @param contentType the content type of the response, possibly with parameters
+     * @return <tt>true</tt> if the mime type is one of the configured mime types
+     */
+    boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        final int index = contentType.indexOf(';');
+        final String mimeType = (index == -1 ? contentType : contentType.substring(0, index));
+        return mimeTypes.contains(mimeType.trim().toLowerCase(Locale.ENGLISH));
+    }
+
+    void recordCompression(long uncompressed, long compressed, long time) {
+        compressedResponseCount.incrementAndGet();
+        uncompressedBytes.addAndGet(uncompressed);
+        compressedBytes.addAndGet(compressed);
+        compressionTime.addAndGet(time);
+    }
+
+    private boolean shouldCompress(HttpServletRequest request) {
+        return !"HEAD".equals(request.getMethod()) && HttpUtils.acceptsGzip(request);
+    }
+
+    private boolean isPushRequest(HttpServletRequest request) {
+        final String pathInfo = request.getPathInfo();
+        return pathInfo != null && pathInfo.startsWith(PUSH_PATH);
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.compression;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link HttpServletResponseWrapper} that buffers the content until the threshold of
+ * the {@link GzipFilter} is reached and then compresses it, if its content type allows.
+ * <p/>
+ * If the client does not accept gzip, the content is written as is right away. In
+ * both cases, a response whose content type could be compressed gets a
+ * <tt>Vary: Accept-Encoding</tt> header so that a shared cache does not send one
+ * variant to a client that asked for the other.
+ *
+ * @author Stephane Nicoll
+ */
+class GzipResponseWrapper extends HttpServletResponseWrapper {
+
+    private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+
+    private static final String VARY_HEADER = "Vary";
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    private final GzipFilter filter;
+    private final boolean gzipAccepted;
+    private CompressingOutputStream stream;
+    private PrintWriter writer;
+    private long contentLength = -1;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param response the response to wrap
+     * @param filter the filter holding the compression settings
+     * @param gzipAccepted whether the content may be compressed for this request
+     */
+    GzipResponseWrapper(HttpServletResponse response, GzipFilter filter, boolean gzipAccepted) {
+        super(response);
+        this.filter = filter;
+        this.gzipAccepted = gzipAccepted;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        if (stream == null) {
+            stream = new CompressingOutputStream();
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            stream = new CompressingOutputStream();
+            writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // Only known once it has been decided to send the content as is
+        this.contentLength = len;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (CONTENT_LENGTH_HEADER.equalsIgnoreCase(name)) {
+            setContentLength(Integer.parseInt(value));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (CONTENT_LENGTH_HEADER.equalsIgnoreCase(name)) {
+            setContentLength(Integer.parseInt(value));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.commit();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (stream != null) {
+            stream.resetBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        contentLength = -1;
+        if (stream != null) {
+            stream.resetBuffer();
+        }
+    }
+
+    /**
+     * Completes the response, writing the remaining content if any.
+     *
+     * @throws IOException if the content could not be written
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.close();
+        } else if (stream != null) {
+            stream.close();
+        } else {
+            addVaryHeader((HttpServletResponse) getResponse());
+            if (contentLength >= 0) {
+                getResponse().setContentLength((int) contentLength);
+            }
+        }
+    }
+
+    /**
+     * Adds <tt>Vary: Accept-Encoding</tt> to the specified response if its content
+     * type could be compressed and the header is not present yet.
+     */
+    private void addVaryHeader(HttpServletResponse response) {
+        if (!filter.isCompressible(response.getContentType())) {
+            return;
+        }
+        for (String vary : response.getHeaders(VARY_HEADER)) {
+            if (vary.toLowerCase(Locale.ENGLISH).contains(ACCEPT_ENCODING.toLowerCase(Locale.ENGLISH))) {
+                return;
+            }
+        }
+        response.addHeader(VARY_HEADER, ACCEPT_ENCODING);
+    }
+
+    /**
+     * Buffers the content until the threshold is reached, then either compresses
+     * it or writes it as is.
+     */
+    private final class CompressingOutputStream extends ServletOutputStream {
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream target;
+        private GZIPOutputStream gzip;
+        private CountingOutputStream compressed;
+        private long uncompressedLength;
+        private long compressionTime;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream has already been closed");
+            }
+            if (target == null) {
+                if (gzipAccepted && buffer.size() + len < filter.getMinSize()) {
+                    buffer.write(b, off, len);
+                    return;
+                }
+                initTarget(gzipAccepted);
+            }
+            writeToTarget(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Content below the threshold stays buffered so that its length is known
+            if (closed || target == null) {
+                return;
+            }
+            target.flush();
+        }
+
+        /**
+         * Writes the buffered content, if any, and flushes it to the client.
+         */
+        private void commit() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (target == null) {
+                initTarget(false);
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (target == null) {
+                // The whole content is buffered, send it with its length
+                contentLength = buffer.size();
+                initTarget(false);
+            }
+            closed = true;
+            if (gzip != null) {
+                final long start = System.nanoTime();
+                gzip.finish();
+                compressionTime += System.nanoTime() - start;
+                filter.recordCompression(uncompressedLength, compressed.getCount(), compressionTime);
+            }
+            target.close();
+        }
+
+        private void resetBuffer() {
+            if (target == null) {
+                buffer.reset();
+            }
+        }
+
+        private void initTarget(boolean thresholdReached) throws IOException {
+            final HttpServletResponse response = (HttpServletResponse) getResponse();
+            addVaryHeader(response);
+            final boolean compress = thresholdReached && filter.isCompressible(response.getContentType())
+                    && !response.containsHeader("Content-Encoding");
+            if (compress) {
+                response.setHeader("Content-Encoding", "gzip");
+                compressed = new CountingOutputStream(response.getOutputStream());
+                gzip = new LevelGZIPOutputStream(compressed, filter.getLevel());
+                target = gzip;
+            } else {
+                if (contentLength >= 0) {
+                    response.setContentLength((int) contentLength);
+                }
+                target = response.getOutputStream();
+            }
+            final byte[] buffered = buffer.toByteArray();
+            buffer = null;
+            if (buffered.length > 0) {
+                writeToTarget(buffered, 0, buffered.length);
+            }
+        }
+
+        private void writeToTarget(byte[] b, int off, int len) throws IOException {
+            if (gzip != null) {
+                final long start = System.nanoTime();
+                gzip.write(b, off, len);
+                compressionTime += System.nanoTime() - start;
+                uncompressedLength += len;
+            } else {
+                target.write(b, off, len);
+            }
+        }
+    }
+
+    private static final class LevelGZIPOutputStream extends GZIPOutputStream {
+
+        private LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+}
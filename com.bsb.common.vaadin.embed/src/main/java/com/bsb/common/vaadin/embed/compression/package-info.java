@@ -0,0 +1,4 @@
+/**
+ * Compression of the responses of the vaadin servlet.
+ */
+package com.bsb.common.vaadin.embed.compression;
\ No newline at end of file
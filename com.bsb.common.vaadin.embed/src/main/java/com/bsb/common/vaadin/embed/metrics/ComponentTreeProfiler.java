@@ -0,0 +1,306 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.vaadin.server.AbstractClientConnector;
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.ConnectorTracker;
+import com.vaadin.ui.UI;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Profiles the component trees of the live UIs, per UI class: the number of connectors,
+ * the depth of the tree and the estimated size of their state. When enabled, also
+ * records the number of dirty connectors that each UIDL round trip sends to the client.
+ * <p/>
+ * The trees are walked on demand, see {@link #profile(Collection)}. Each walk replaces
+ * the figures of the previous one while the round trips are accumulated. The state
+ * size of a connector is estimated with the length of the JSON state that was last
+ * sent to the client, which does not involve encoding the state again.
+ *
+ * @author Stephane Nicoll
+ * @see UiProfile
+ */
+public class ComponentTreeProfiler implements Serializable {
+
+    private static final long serialVersionUID = -2697180534873411125L;
+
+    /**
+     * The request attribute flagging a request whose round trip has been recorded.
+     */
+    static final String ROUND_TRIP_ATTRIBUTE = ComponentTreeProfiler.class.getName() + ".roundTrip";
+
+    private static final Logger logger = LoggerFactory.getLogger(ComponentTreeProfiler.class);
+
+    private static final Comparator<UiProfile> BY_STATE_SIZE = new Comparator<UiProfile>() {
+        public int compare(UiProfile o1, UiProfile o2) {
+            return o1.getStateSize() < o2.getStateSize() ? 1 : (o1.getStateSize() == o2.getStateSize()
+                    ? o1.getUiClass().compareTo(o2.getUiClass()) : -1);
+        }
+    };
+
+    private volatile boolean enabled;
+    private volatile Map<String, Trees> trees = Collections.emptyMap();
+    private volatile long lastWalkDuration;
+    private final ConcurrentMap<String, RoundTrips> roundTrips = new ConcurrentHashMap<String, RoundTrips>();
+
+    /**
+     * Specifies if the dirty connectors of the round trips are counted.
+     *
+     * @return <tt>true</tt> if the round trips are recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the recording of the round trips. Counting the dirty connectors
+     * that are visible involves a check of each of them, which is why this is disabled by
+     * default. Walking the trees does not depend on this flag.
+     *
+     * @param enabled <tt>true</tt> to record the round trips
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Walks the component trees of the UIs of the specified sessions. Each session is
+     * locked while its UIs are walked.
+     *
+     * @param sessions the live sessions
+     */
+    public void profile(Collection<VaadinSession> sessions) {
+        final long start = System.nanoTime();
+        final Map<String, Trees> result = new HashMap<String, Trees>();
+        for (VaadinSession session : sessions) {
+            session.lock();
+            try {
+                for (UI ui : session.getUIs()) {
+                    final String uiClass = ui.getClass().getName();
+                    Trees uiTrees = result.get(uiClass);
+                    if (uiTrees == null) {
+                        uiTrees = new Trees();
+                        result.put(uiClass, uiTrees);
+                    }
+                    uiTrees.add(ui);
+                }
+            } finally {
+                session.unlock();
+            }
+        }
+        this.trees = result;
+        this.lastWalkDuration = System.nanoTime() - start;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Walked the component trees of " + sessions.size() + " session(s) in "
+                    + TimeUnit.NANOSECONDS.toMicros(lastWalkDuration) + " us");
+        }
+    }
+
+    /**
+     * Returns the duration of the last walk of the component trees.
+     *
+     * @return the duration, in nanoseconds, or <tt>0</tt> if the trees have not been walked
+     */
+    public long getLastWalkDuration() {
+        return lastWalkDuration;
+    }
+
+    /**
+     * Returns the profile of each UI class, the UI classes whose state is the largest first.
+     * A UI class whose UIs are all gone is still listed if its round trips were recorded.
+     *
+     * @return the profiles of the UI classes
+     */
+    public List<UiProfile> getProfiles() {
+        final Map<String, Trees> currentTrees = this.trees;
+        final Set<String> uiClasses = new TreeSet<String>(currentTrees.keySet());
+        uiClasses.addAll(roundTrips.keySet());
+        final List<UiProfile> result = new ArrayList<UiProfile>(uiClasses.size());
+        for (String uiClass : uiClasses) {
+            final Trees uiTrees = currentTrees.get(uiClass);
+            final RoundTrips uiRoundTrips = roundTrips.get(uiClass);
+            result.add(new UiProfile(uiClass, uiTrees != null ? uiTrees.uiCount : 0,
+                    uiTrees != null ? uiTrees.connectorCount : 0, uiTrees != null ? uiTrees.maxConnectorCount : 0,
+                    uiTrees != null ? uiTrees.maxDepth : 0, uiTrees != null ? uiTrees.stateSize : 0,
+                    uiTrees != null ? uiTrees.maxStateSize : 0,
+                    uiRoundTrips != null ? uiRoundTrips.count.get() : 0,
+                    uiRoundTrips != null ? uiRoundTrips.dirtyConnectors.get() : 0,
+                    uiRoundTrips != null ? (int) uiRoundTrips.maxDirtyConnectors.get() : 0));
+        }
+        Collections.sort(result, BY_STATE_SIZE);
+        return result;
+    }
+
+    /**
+     * Returns a human readable report of the profile of each UI class.
+     *
+     * @return the report
+     */
+    public String getReport() {
+        final List<UiProfile> profiles = getProfiles();
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Component trees (last walk ").append(TimeUnit.NANOSECONDS.toMicros(lastWalkDuration))
+                .append(" us):\n");
+        if (profiles.isEmpty()) {
+            sb.append("  (none)\n");
+        }
+        for (UiProfile profile : profiles) {
+            sb.append("  ").append(profile.getUiClass()).append(": ").append(profile.getUiCount())
+                    .append(" UIs, ").append(profile.getConnectorCountPerUi()).append(" connectors/UI (max ")
+                    .append(profile.getMaxConnectorCount()).append("), depth ").append(profile.getMaxDepth())
+                    .append(", state ").append(profile.getStateSize()).append(" chars (max ")
+                    .append(profile.getMaxStateSize()).append("/UI), ").append(profile.getRoundTripCount())
+                    .append(" round trips, ").append(profile.getDirtyConnectorCountPerRoundTrip())
+                    .append(" dirty connectors/round trip (max ").append(profile.getMaxDirtyConnectorCount())
+                    .append(")\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Forgets the figures of the last walk and the round trips recorded so far.
+     */
+    public void reset() {
+        this.trees = Collections.emptyMap();
+        this.lastWalkDuration = 0;
+        this.roundTrips.clear();
+    }
+
+    /**
+     * Records the dirty connectors of the specified UI if the current request is a
+     * UIDL request whose round trip has not been recorded yet. Must be invoked once
+     * the pending access tasks have run, right before the changes are written.
+     *
+     * @param request the current request, or <tt>null</tt>
+     * @param ui the current UI, or <tt>null</tt>
+     */
+    void recordRoundTrip(VaadinRequest request, UI ui) {
+        if (!enabled || ui == null || !(request instanceof HttpServletRequest)
+                || request.getAttribute(ROUND_TRIP_ATTRIBUTE) != null
+                || RequestType.of((HttpServletRequest) request) != RequestType.UIDL) {
+            return;
+        }
+        request.setAttribute(ROUND_TRIP_ATTRIBUTE, Boolean.TRUE);
+        final int dirtyConnectors = ui.getConnectorTracker().getDirtyVisibleConnectors().size();
+        final String uiClass = ui.getClass().getName();
+        RoundTrips uiRoundTrips = roundTrips.get(uiClass);
+        if (uiRoundTrips == null) {
+            final RoundTrips candidate = new RoundTrips();
+            uiRoundTrips = roundTrips.putIfAbsent(uiClass, candidate);
+            if (uiRoundTrips == null) {
+                uiRoundTrips = candidate;
+            }
+        }
+        uiRoundTrips.record(dirtyConnectors);
+    }
+
+    /**
+     * The component trees of the UIs of a given class, as of the last walk.
+     */
+    private static final class Trees implements Serializable {
+
+        private static final long serialVersionUID = 4571097839102751213L;
+
+        private int uiCount;
+        private long connectorCount;
+        private int maxConnectorCount;
+        private int maxDepth;
+        private long stateSize;
+        private long maxStateSize;
+
+        private void add(UI ui) {
+            final Tree tree = new Tree(ui.getConnectorTracker());
+            tree.walk(ui, 1);
+            uiCount++;
+            connectorCount += tree.connectorCount;
+            maxConnectorCount = Math.max(maxConnectorCount, tree.connectorCount);
+            maxDepth = Math.max(maxDepth, tree.depth);
+            stateSize += tree.stateSize;
+            maxStateSize = Math.max(maxStateSize, tree.stateSize);
+        }
+    }
+
+    /**
+     * Walks the connectors of a UI.
+     */
+    private static final class Tree {
+
+        private final ConnectorTracker connectorTracker;
+        private int connectorCount;
+        private int depth;
+        private long stateSize;
+
+        private Tree(ConnectorTracker connectorTracker) {
+            this.connectorTracker = connectorTracker;
+        }
+
+        private void walk(ClientConnector connector, int level) {
+            connectorCount++;
+            depth = Math.max(depth, level);
+            final JSONObject state = connectorTracker.getDiffState(connector);
+            if (state != null) {
+                stateSize += state.toString().length();
+            }
+            for (ClientConnector child : AbstractClientConnector.getAllChildrenIterable(connector)) {
+                // Extensions do not add a level to the tree
+                walk(child, child instanceof Component ? level + 1 : level);
+            }
+        }
+    }
+
+    /**
+     * The round trips of the UIs of a given class.
+     */
+    private static final class RoundTrips implements Serializable {
+
+        private static final long serialVersionUID = -6110254780530262954L;
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong dirtyConnectors = new AtomicLong();
+        private final AtomicLong maxDirtyConnectors = new AtomicLong();
+
+        private void record(int dirty) {
+            count.incrementAndGet();
+            dirtyConnectors.addAndGet(dirty);
+            long currentMax = maxDirtyConnectors.get();
+            while (dirty > currentMax && !maxDirtyConnectors.compareAndSet(currentMax, dirty)) {
+                currentMax = maxDirtyConnectors.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of positive values.
+ * <p/>
+ * Values are recorded in buckets with a relative precision of 12.5%, the maximum is
+ * exact. Recording a value only involves atomic increments so that concurrent
+ * recorders never block each other. Sub-classes define the unit of the values.
+ *
+ * @author Stephane Nicoll
+ * @see LatencyHistogram
+ * @see SizeHistogram
+ */
+public abstract class Histogram implements Serializable {
+
+    private static final long serialVersionUID = 7406382960237135071L;
+
+    // Values lower than this are recorded exactly
+    private static final int LINEAR_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MIN_EXPONENT = 4;
+
+    // About 12 days in microseconds or 2 TB, higher values are recorded in the last bucket
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records the specified value, in the unit of the histogram. Negative values are
+     * recorded as <tt>0</tt>.
+     *
+     * @param value the value to record
+     */
+    protected void recordValue(long value) {
+        final long positive = Math.max(0, value);
+        buckets.incrementAndGet(indexOf(positive));
+        count.incrementAndGet();
+        total.addAndGet(positive);
+        long currentMax = max.get();
+        while (positive > currentMax && !max.compareAndSet(currentMax, positive)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the highest recorded value, in the unit of the histogram, or <tt>0</tt>
+     * if no value has been recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the sum of the recorded values, in the unit of the histogram.
+     */
+    public long getSum() {
+        return total.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values, in the unit of the histogram, or
+     * <tt>0</tt> if no value has been recorded.
+     */
+    public long getMean() {
+        final long currentCount = count.get();
+        return (currentCount == 0 ? 0 : total.get() / currentCount);
+    }
+
+    /**
+     * Returns the value, in the unit of the histogram, that the specified percentage
+     * of the recorded values do not exceed.
+     *
+     * @param percentile the percentile, between <tt>0</tt> and <tt>100</tt>
+     * @return the value at the specified percentile or <tt>0</tt> if no value has been
+     * recorded
+     */
+    public long getPercentile(double percentile) {
+        final long currentCount = count.get();
+        if (currentCount == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100 * currentCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return (i == BUCKETS - 1 ? max.get() : Math.min(upperBoundOf(i), max.get()));
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns the median of the recorded values, in the unit of the histogram.
+     *
+     * @see #getPercentile(double)
+     */
+    public long getP50() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Returns the 99th percentile of the recorded values, in the unit of the histogram.
+     *
+     * @see #getPercentile(double)
+     */
+    public long getP99() {
+        return getPercentile(99);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int subBucket = (int) (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        final int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + MIN_EXPONENT;
+        final int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
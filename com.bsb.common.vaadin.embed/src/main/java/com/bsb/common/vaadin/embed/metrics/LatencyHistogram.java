@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lock-free {@link Histogram} of latencies, in microseconds.
+ *
+ * @author Stephane Nicoll
+ */
+public class LatencyHistogram extends Histogram {
+
+    private static final long serialVersionUID = -3571958338163585497L;
+
+    /**
+     * Records the specified duration.
+     *
+     * @param duration the duration
+     * @param unit the unit of the duration
+     */
+    public void record(long duration, TimeUnit unit) {
+        recordValue(unit.toMicros(duration));
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", p50=" + getP50() + "us, p99=" + getP99() + "us, max=" + getMax() + "us";
+    }
+}
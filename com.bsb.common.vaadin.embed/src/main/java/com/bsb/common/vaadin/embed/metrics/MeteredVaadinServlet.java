@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.vaadin.server.DeploymentConfiguration;
+import com.vaadin.server.ServiceException;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * A {@link VaadinServlet} that records the latency of the requests in a
+ * {@link RequestMetrics}.
+ * <p/>
+ * Requests are recorded by a {@link MeteredVaadinServletService}, except the static
+ * resources that the servlet serves itself. The size of the UIDL responses is recorded
+ * in the {@link UidlSizeMetrics} of the request metrics. If server timing is enabled, the
+ * responses hold a <tt>Server-Timing</tt> header with the phases of the request,
+ * see {@link ServerTiming}.
+ *
+ * @author Stephane Nicoll
+ */
+@SuppressWarnings("serial")
+public class MeteredVaadinServlet extends VaadinServlet {
+
+    private final RequestMetrics requestMetrics;
+    private final boolean serverTiming;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param requestMetrics the metrics to record the requests into
+     */
+    public MeteredVaadinServlet(RequestMetrics requestMetrics) {
+        this(requestMetrics, false);
+    }
+
+    /**
+     * Creates a new instance that optionally emits a <tt>Server-Timing</tt> header with
+     * the phases of each request.
+     *
+     * @param requestMetrics the metrics to record the requests into
+     * @param serverTiming <tt>true</tt> to emit the <tt>Server-Timing</tt> header
+     * @see ServerTiming
+     */
+    public MeteredVaadinServlet(RequestMetrics requestMetrics, boolean serverTiming) {
+        this.requestMetrics = requestMetrics;
+        this.serverTiming = serverTiming;
+    }
+
+    /**
+     * Returns the {@link RequestMetrics} that requests are recorded into.
+     */
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    @Override
+    protected VaadinServletService createServletService(DeploymentConfiguration deploymentConfiguration)
+            throws ServiceException {
+        final VaadinServletService service = new MeteredVaadinServletService(this, deploymentConfiguration,
+                requestMetrics, serverTiming);
+        service.init();
+        return service;
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!isStaticResourceRequest(request)) {
+            final UidlSizeResponseWrapper uidlResponse = (isUidlRequest(request)
+                    ? new UidlSizeResponseWrapper(response, requestMetrics.getUidlSizes()) : null);
+            final HttpServletResponse target = (uidlResponse != null ? uidlResponse : response);
+            try {
+                if (serverTiming && !isPushRequest(request)) {
+                    serviceWithServerTiming(request, target);
+                } else {
+                    super.service(request, target);
+                }
+            } finally {
+                if (uidlResponse != null) {
+                    uidlResponse.record();
+                }
+            }
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            super.service(request, response);
+        } finally {
+            requestMetrics.record(request, System.nanoTime() - start);
+        }
+    }
+
+    private void serviceWithServerTiming(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        final Long requestStart = (Long) request.getAttribute(ServerTiming.REQUEST_START_ATTRIBUTE);
+        final ServerTiming current = new ServerTiming(requestStart);
+        final ServerTimingResponseWrapper wrapper = new ServerTimingResponseWrapper(response, current);
+        ServerTiming.setCurrent(current);
+        try {
+            super.service(request, wrapper);
+            wrapper.addHeader();
+        } finally {
+            ServerTiming.setCurrent(null);
+        }
+    }
+
+    private static boolean isUidlRequest(HttpServletRequest request) {
+        return request.getPathInfo() != null && request.getPathInfo().startsWith("/UIDL");
+    }
+
+    // Push connections are kept open, the header would only report the handshake
+    private static boolean isPushRequest(HttpServletRequest request) {
+        return request.getPathInfo() != null && request.getPathInfo().startsWith("/PUSH");
+    }
+}
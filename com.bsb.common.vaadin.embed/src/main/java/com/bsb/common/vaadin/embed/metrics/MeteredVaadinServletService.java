@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.vaadin.server.DeploymentConfiguration;
+import com.vaadin.server.ServiceException;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletRequest;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.WrappedSession;
+import com.vaadin.ui.UI;
+
+/**
+ * A {@link VaadinServletService} that records the latency of the requests that it
+ * handles in a {@link RequestMetrics} and charges them to its {@link ResourceAccounting}
+ * when it is enabled. Can also report the phases of each request to its {@link ServerTiming}
+ * and the dirty connectors of each round trip to its {@link ComponentTreeProfiler}.
+ * Creates {@link MeteredVaadinSession metered sessions} so that their number of UIs
+ * can be read without locking them.
+ *
+ * @author Stephane Nicoll
+ */
+@SuppressWarnings("serial")
+public class MeteredVaadinServletService extends VaadinServletService {
+
+    private final RequestMetrics requestMetrics;
+    private final boolean serverTiming;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param servlet the servlet using this service
+     * @param deploymentConfiguration the deployment configuration
+     * @param requestMetrics the metrics to record the requests into
+     * @throws ServiceException if the service could not be created
+     */
+    public MeteredVaadinServletService(VaadinServlet servlet, DeploymentConfiguration deploymentConfiguration,
+                                       RequestMetrics requestMetrics) throws ServiceException {
+        this(servlet, deploymentConfiguration, requestMetrics, false);
+    }
+
+    /**
+     * Creates a new instance that optionally reports the phases of each request to
+     * the {@link ServerTiming} of the current request.
+     *
+     * @param servlet the servlet using this service
+     * @param deploymentConfiguration the deployment configuration
+     * @param requestMetrics the metrics to record the requests into
+     * @param serverTiming <tt>true</tt> to report the phases of the requests
+     * @throws ServiceException if the service could not be created
+     */
+    public MeteredVaadinServletService(VaadinServlet servlet, DeploymentConfiguration deploymentConfiguration,
+                                       RequestMetrics requestMetrics, boolean serverTiming) throws ServiceException {
+        super(servlet, deploymentConfiguration);
+        this.requestMetrics = requestMetrics;
+        this.serverTiming = serverTiming;
+    }
+
+    @Override
+    public void handleRequest(VaadinRequest request, VaadinResponse response) throws ServiceException {
+        final ResourceAccounting resourceAccounting = requestMetrics.getResourceAccounting();
+        final long[] counters = resourceAccounting.start();
+        final long start = System.nanoTime();
+        try {
+            super.handleRequest(request, response);
+        } finally {
+            final RequestType type = RequestType.of((VaadinServletRequest) request);
+            requestMetrics.record(type, System.nanoTime() - start);
+            if (counters != null) {
+                resourceAccounting.charge(counters,
+                        (String) request.getAttribute(ResourceAccounting.SESSION_ID_ATTRIBUTE),
+                        (String) request.getAttribute(ResourceAccounting.UI_CLASS_ATTRIBUTE), type);
+            }
+        }
+    }
+
+    @Override
+    public void requestEnd(VaadinRequest request, VaadinResponse response, VaadinSession session) {
+        // The current UI is cleared once the request has ended
+        if (requestMetrics.getResourceAccounting().isEnabled()) {
+            final WrappedSession wrappedSession = session != null ? session.getSession() : null;
+            if (wrappedSession != null) {
+                request.setAttribute(ResourceAccounting.SESSION_ID_ATTRIBUTE, wrappedSession.getId());
+            }
+            final UI ui = UI.getCurrent();
+            if (ui != null) {
+                request.setAttribute(ResourceAccounting.UI_CLASS_ATTRIBUTE, ui.getClass().getName());
+            }
+        }
+        super.requestEnd(request, response, session);
+    }
+
+    @Override
+    protected VaadinSession createVaadinSession(VaadinRequest request) throws ServiceException {
+        if (serverTiming) {
+            return new ServerTimingVaadinSession(this);
+        }
+        return new MeteredVaadinSession(this);
+    }
+
+    @Override
+    protected void lockSession(WrappedSession wrappedSession) {
+        final ServerTiming current = ServerTiming.current();
+        if (current == null) {
+            super.lockSession(wrappedSession);
+            return;
+        }
+        final long start = System.nanoTime();
+        super.lockSession(wrappedSession);
+        current.lockAcquired(System.nanoTime() - start);
+    }
+
+    @Override
+    protected void unlockSession(WrappedSession wrappedSession) {
+        final ServerTiming current = ServerTiming.current();
+        if (current != null) {
+            current.lockReleased();
+        }
+        super.unlockSession(wrappedSession);
+    }
+
+    @Override
+    public void runPendingAccessTasks(VaadinSession session) {
+        // Invoked first thing when the changes of a UI are serialized
+        final ServerTiming current = ServerTiming.current();
+        super.runPendingAccessTasks(session);
+        final ComponentTreeProfiler componentTrees = requestMetrics.getComponentTrees();
+        if (componentTrees.isEnabled()) {
+            componentTrees.recordRoundTrip(VaadinService.getCurrentRequest(), UI.getCurrent());
+        }
+        if (current != null) {
+            current.serializationStarted();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+
+/**
+ * A {@link VaadinSession} that keeps track of its number of UIs so that it can be
+ * read without holding the session lock, typically by a monitoring thread.
+ * <p/>
+ * The count is updated while the lock is held, each time a UI is added or removed.
+ * It is serialized with the session and is therefore still accurate once the session
+ * has been restored from disk.
+ *
+ * @author Stephane Nicoll
+ */
+@SuppressWarnings("serial")
+public class MeteredVaadinSession extends VaadinSession {
+
+    private volatile int uiCount;
+
+    MeteredVaadinSession(VaadinService service) {
+        super(service);
+    }
+
+    /**
+     * Returns the number of UIs of this session, without locking it.
+     *
+     * @return the number of UIs
+     */
+    public int getUICount() {
+        return uiCount;
+    }
+
+    @Override
+    public void addUI(UI ui) {
+        super.addUI(ui);
+        uiCount = getUIs().size();
+    }
+
+    @Override
+    public void removeUI(UI ui) {
+        super.removeUI(ui);
+        uiCount = getUIs().size();
+    }
+}
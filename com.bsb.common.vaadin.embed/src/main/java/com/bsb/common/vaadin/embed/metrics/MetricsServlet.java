@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.bsb.common.vaadin.embed.ServerStatistics;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Exposes the metrics of the server in the text exposition format of Prometheus,
+ * and a health check at the {@link #HEALTH_PATH health} sub-path.
+ * <p/>
+ * This servlet is registered next to the vaadin servlet so that a scrape never
+ * goes through vaadin. Only values that are available without locking are
+ * exposed: the Vaadin session lock is never taken. The output is formatted in a
+ * buffer that is reused by each thread.
+ *
+ * @author Stephane Nicoll
+ */
+@SuppressWarnings("serial")
+public class MetricsServlet extends HttpServlet {
+
+    /**
+     * The sub-path of the health check.
+     */
+    public static final String HEALTH_PATH = "/health";
+
+    /**
+     * The content type of the text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final RequestType[] REQUEST_TYPES = RequestType.values();
+
+    private static final String[] REQUEST_TYPE_LABELS = new String[REQUEST_TYPES.length];
+
+    static {
+        for (int i = 0; i < REQUEST_TYPES.length; i++) {
+            REQUEST_TYPE_LABELS[i] = REQUEST_TYPES[i].name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(4096);
+        }
+    };
+
+    private static final ThreadLocal<char[]> OUTPUT = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[4096];
+        }
+    };
+
+    private final transient ServerStatistics statistics;
+    private final transient RequestMetrics requestMetrics;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param statistics the statistics of the server
+     * @param requestMetrics the latency of the requests of the vaadin servlet
+     */
+    public MetricsServlet(ServerStatistics statistics, RequestMetrics requestMetrics) {
+        this.statistics = statistics;
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        if (request.getServletPath().endsWith(HEALTH_PATH)) {
+            response.getWriter().write("UP\n");
+            return;
+        }
+        final StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        writeMetrics(sb);
+        write(sb, response.getWriter());
+    }
+
+    /**
+     * Writes the metrics in the text exposition format to the specified buffer.
+     *
+     * @param sb the buffer to write to
+     */
+    protected void writeMetrics(StringBuilder sb) {
+        counter(sb, "vaadin_requests_total", "Requests processed by the application.",
+                statistics.getRequestCount());
+        counter(sb, "vaadin_request_errors_total", "Requests that completed with a status of 400 or higher.",
+                statistics.getErrorCount());
+        counter(sb, "vaadin_received_bytes_total", "Bytes of the request bodies read by the application.",
+                statistics.getBytesReceived());
+        counter(sb, "vaadin_sent_bytes_total", "Bytes of the response bodies sent by the application.",
+                statistics.getBytesSent());
+
+        header(sb, "vaadin_request_duration_seconds", "summary", "Latency of the requests of the vaadin servlet.");
+        for (int i = 0; i < REQUEST_TYPES.length; i++) {
+            final LatencyHistogram histogram = requestMetrics.getHistogram(REQUEST_TYPES[i]);
+            quantile(sb, REQUEST_TYPE_LABELS[i], "0.5");
+            appendSeconds(sb, histogram.getP50());
+            quantile(sb, REQUEST_TYPE_LABELS[i], "0.99");
+            appendSeconds(sb, histogram.getP99());
+            sample(sb, "vaadin_request_duration_seconds_sum", REQUEST_TYPE_LABELS[i]);
+            appendSeconds(sb, histogram.getSum());
+            sample(sb, "vaadin_request_duration_seconds_count", REQUEST_TYPE_LABELS[i]);
+            sb.append(histogram.getCount()).append('\n');
+        }
+        header(sb, "vaadin_request_duration_seconds_max", "gauge",
+                "Highest latency of the requests of the vaadin servlet.");
+        for (int i = 0; i < REQUEST_TYPES.length; i++) {
+            sample(sb, "vaadin_request_duration_seconds_max", REQUEST_TYPE_LABELS[i]);
+            appendSeconds(sb, requestMetrics.getHistogram(REQUEST_TYPES[i]).getMax());
+        }
+
+        final SizeHistogram uidlSizes = requestMetrics.getUidlSizes().getHistogram();
+        header(sb, "vaadin_uidl_response_bytes", "summary", "Size of the UIDL responses of the vaadin servlet.");
+        sb.append("vaadin_uidl_response_bytes{quantile=\"0.5\"} ").append(uidlSizes.getP50()).append('\n');
+        sb.append("vaadin_uidl_response_bytes{quantile=\"0.99\"} ").append(uidlSizes.getP99()).append('\n');
+        sb.append("vaadin_uidl_response_bytes_sum ").append(uidlSizes.getSum()).append('\n');
+        sb.append("vaadin_uidl_response_bytes_count ").append(uidlSizes.getCount()).append('\n');
+        gauge(sb, "vaadin_uidl_response_bytes_max", "Size of the largest UIDL response of the vaadin servlet.",
+                uidlSizes.getMax());
+
+        gauge(sb, "vaadin_sessions_active", "Active http sessions.", statistics.getActiveSessions());
+        gauge(sb, "vaadin_uis_active", "UIs attached to the active sessions.", statistics.getActiveUIs());
+        counter(sb, "vaadin_sessions_evicted_total", "Sessions evicted because the heap was under pressure.",
+                statistics.getEvictedSessionCount());
+        counter(sb, "vaadin_sessions_eviction_reclaimed_bytes_total", "Heap reclaimed by evicting sessions.",
+                statistics.getEvictionReclaimedHeap());
+        threadGauge(sb, "tomcat_threads_busy", "Connector threads processing a request.",
+                statistics.getBusyThreads());
+        threadGauge(sb, "tomcat_threads_idle", "Idle connector threads.", statistics.getIdleThreads());
+        threadGauge(sb, "tomcat_threads_max", "Maximum number of connector threads.", statistics.getMaxThreads());
+
+        final Runtime runtime = Runtime.getRuntime();
+        final long committed = runtime.totalMemory();
+        gauge(sb, "jvm_memory_heap_used_bytes", "Used heap memory.", committed - runtime.freeMemory());
+        gauge(sb, "jvm_memory_heap_committed_bytes", "Committed heap memory.", committed);
+        gauge(sb, "jvm_memory_heap_max_bytes", "Maximum heap memory.", runtime.maxMemory());
+
+        header(sb, "vaadin_startup_seconds", "gauge", "Time the server took to start.");
+        sb.append("vaadin_startup_seconds ");
+        appendSeconds(sb, statistics.getStartupTime() * 1000);
+    }
+
+    private void write(StringBuilder sb, PrintWriter writer) {
+        char[] output = OUTPUT.get();
+        if (output.length < sb.length()) {
+            output = new char[sb.capacity()];
+            OUTPUT.set(output);
+        }
+        sb.getChars(0, sb.length(), output, 0);
+        writer.write(output, 0, sb.length());
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, "counter", help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, "gauge", help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void threadGauge(StringBuilder sb, String name, String help, int value) {
+        // Not available with every executor
+        if (value >= 0) {
+            gauge(sb, name, help, value);
+        }
+    }
+
+    private static void quantile(StringBuilder sb, String type, String quantile) {
+        sb.append("vaadin_request_duration_seconds{type=\"").append(type)
+                .append("\",quantile=\"").append(quantile).append("\"} ");
+    }
+
+    private static void sample(StringBuilder sb, String name, String type) {
+        sb.append(name).append("{type=\"").append(type).append("\"} ");
+    }
+
+    private static void appendSeconds(StringBuilder sb, long micros) {
+        sb.append(micros / 1000000).append('.');
+        final long fraction = micros % 1000000;
+        for (long divisor = 100000; divisor > 1 && fraction < divisor; divisor /= 10) {
+            sb.append('0');
+        }
+        sb.append(fraction).append('\n');
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds a {@link LatencyHistogram} per {@link RequestType}, the {@link ResourceAccounting}
+ * of the requests, the {@link UidlSizeMetrics size of the UIDL responses}, the
+ * {@link ComponentTreeProfiler profile of the component trees} and the
+ * {@link SessionFootprintSampler footprint of the sessions}.
+ *
+ * @author Stephane Nicoll
+ */
+public class RequestMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1467356012945357812L;
+
+    private final Map<RequestType, LatencyHistogram> histograms;
+
+    private final ResourceAccounting resourceAccounting = new ResourceAccounting();
+
+    private final UidlSizeMetrics uidlSizes = new UidlSizeMetrics();
+
+    private final ComponentTreeProfiler componentTrees = new ComponentTreeProfiler();
+
+    private final SessionFootprintSampler sessionFootprints = new SessionFootprintSampler();
+
+    /**
+     * Creates a new instance with empty histograms.
+     */
+    public RequestMetrics() {
+        final Map<RequestType, LatencyHistogram> map = new EnumMap<RequestType, LatencyHistogram>(RequestType.class);
+        for (RequestType type : RequestType.values()) {
+            map.put(type, new LatencyHistogram());
+        }
+        this.histograms = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Records the duration of a request.
+     *
+     * @param type the type of the request
+     * @param duration the duration of the request, in nanoseconds
+     */
+    public void record(RequestType type, long duration) {
+        histograms.get(type).record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the duration of a request, using its {@link RequestType type}.
+     *
+     * @param request the request
+     * @param duration the duration of the request, in nanoseconds
+     * @see RequestType#of(HttpServletRequest)
+     */
+    public void record(HttpServletRequest request, long duration) {
+        record(RequestType.of(request), duration);
+    }
+
+    /**
+     * Returns the {@link LatencyHistogram} of the specified {@link RequestType}.
+     *
+     * @param type the type of the requests
+     * @return the histogram of these requests
+     */
+    public LatencyHistogram getHistogram(RequestType type) {
+        return histograms.get(type);
+    }
+
+    /**
+     * Returns the histograms of all the request types.
+     *
+     * @return a read-only view of the histograms
+     */
+    public Map<RequestType, LatencyHistogram> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * Returns the {@link ResourceAccounting} that charges the CPU time and the allocations
+     * of the requests. Disabled unless it is switched on.
+     *
+     * @return the resource accounting of the requests
+     */
+    public ResourceAccounting getResourceAccounting() {
+        return resourceAccounting;
+    }
+
+    /**
+     * Returns the {@link UidlSizeMetrics} that records the size of the UIDL responses.
+     *
+     * @return the size of the UIDL responses
+     */
+    public UidlSizeMetrics getUidlSizes() {
+        return uidlSizes;
+    }
+
+    /**
+     * Returns the {@link ComponentTreeProfiler} that profiles the component trees of the
+     * live UIs and the dirty connectors of their round trips.
+     *
+     * @return the profiler of the component trees
+     */
+    public ComponentTreeProfiler getComponentTrees() {
+        return componentTrees;
+    }
+
+    /**
+     * Returns the {@link SessionFootprintSampler} that estimates the memory footprint of
+     * the sessions per UI class.
+     *
+     * @return the footprint of the sessions
+     */
+    public SessionFootprintSampler getSessionFootprints() {
+        return sessionFootprints;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<RequestType, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                sb.append(sb.length() > 0 ? ", " : "").append(entry.getKey()).append("[")
+                        .append(entry.getValue()).append("]");
+            }
+        }
+        return "RequestMetrics[" + sb + "]";
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The categories of the requests handled by the vaadin servlet.
+ *
+ * @author Stephane Nicoll
+ */
+public enum RequestType {
+
+    /**
+     * The bootstrap page and the request initializing a new UI.
+     */
+    BOOTSTRAP,
+
+    /**
+     * A UIDL request, that is a client-server round trip of a UI.
+     */
+    UIDL,
+
+    /**
+     * A heartbeat request keeping a UI alive.
+     */
+    HEARTBEAT,
+
+    /**
+     * A static resource of the <tt>VAADIN</tt> directory.
+     */
+    STATIC,
+
+    /**
+     * A push request. Only the time to establish the connection is measured.
+     */
+    PUSH,
+
+    /**
+     * Any other request, such as a file upload or a connector resource.
+     */
+    OTHER;
+
+    /**
+     * Returns the type of the specified request. The body of the request is not read.
+     *
+     * @param request the request
+     * @return the type of the request
+     */
+    public static RequestType of(HttpServletRequest request) {
+        final String path = getPath(request);
+        if (path.startsWith("/VAADIN/")) {
+            return STATIC;
+        }
+        if (path.startsWith("/UIDL/")) {
+            return UIDL;
+        }
+        if (path.startsWith("/HEARTBEAT/")) {
+            return HEARTBEAT;
+        }
+        if (path.startsWith("/PUSH")) {
+            return PUSH;
+        }
+        if (path.startsWith("/APP/")) {
+            return OTHER;
+        }
+        final String queryString = request.getQueryString();
+        if ("GET".equals(request.getMethod())
+                || (queryString != null && queryString.contains("v-browserDetails"))) {
+            return BOOTSTRAP;
+        }
+        return OTHER;
+    }
+
+    private static String getPath(HttpServletRequest request) {
+        final String pathInfo = request.getPathInfo();
+        if (pathInfo == null) {
+            return request.getServletPath();
+        }
+        return request.getServletPath() + pathInfo;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Charges the CPU time and the heap allocations of each request to its session, to the
+ * class of its UI and to its {@link RequestType}, using the per-thread counters of the
+ * {@link ThreadMXBean}.
+ * <p/>
+ * The accounting is disabled by default and can be switched at runtime. The usage is
+ * aggregated over a rolling window: the figures cover the current window and the
+ * previous one, older requests are forgotten.
+ *
+ * @author Stephane Nicoll
+ * @see ResourceUsage
+ */
+public class ResourceAccounting implements Serializable {
+
+    private static final long serialVersionUID = 6154722410372866519L;
+
+    /**
+     * The default duration of a window, in seconds.
+     */
+    public static final long DEFAULT_WINDOW = 60;
+
+    /**
+     * The request attribute holding the id of the session a request is charged to.
+     */
+    static final String SESSION_ID_ATTRIBUTE = ResourceAccounting.class.getName() + ".sessionId";
+
+    /**
+     * The request attribute holding the UI class a request is charged to.
+     */
+    static final String UI_CLASS_ATTRIBUTE = ResourceAccounting.class.getName() + ".uiClass";
+
+    private static final String NONE = "none";
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceAccounting.class);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+            THREADS instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) THREADS : null;
+
+    private static final Comparator<ResourceUsage> BY_CPU_TIME = new Comparator<ResourceUsage>() {
+        public int compare(ResourceUsage o1, ResourceUsage o2) {
+            return compareDescending(o1.getCpuTime(), o2.getCpuTime());
+        }
+    };
+
+    private static final Comparator<ResourceUsage> BY_ALLOCATED_BYTES = new Comparator<ResourceUsage>() {
+        public int compare(ResourceUsage o1, ResourceUsage o2) {
+            return compareDescending(o1.getAllocatedBytes(), o2.getAllocatedBytes());
+        }
+    };
+
+    private final long window;
+    private volatile boolean enabled;
+    private volatile Window current;
+    private volatile Window previous;
+
+    /**
+     * Creates a disabled instance using the {@link #DEFAULT_WINDOW default window}.
+     */
+    public ResourceAccounting() {
+        this(DEFAULT_WINDOW, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a disabled instance.
+     *
+     * @param window the duration of a window
+     * @param unit the unit of the window
+     */
+    public ResourceAccounting(long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive but was [" + window + "]");
+        }
+        this.window = unit.toNanos(window);
+        this.current = new Window(System.nanoTime());
+    }
+
+    /**
+     * Specifies if the JVM can measure the CPU time of the current thread.
+     *
+     * @return <tt>true</tt> if the accounting can be enabled
+     */
+    public static boolean isSupported() {
+        return THREADS.isCurrentThreadCpuTimeSupported();
+    }
+
+    /**
+     * Specifies if the requests are currently charged.
+     *
+     * @return <tt>true</tt> if the accounting is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the accounting. Requests that are being handled when the
+     * accounting is switched are not charged. Enabling the accounting also enables the
+     * CPU time and allocation counters of the JVM if necessary.
+     *
+     * @param enabled <tt>true</tt> to charge the requests
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            if (!isSupported()) {
+                logger.warn("CPU time of the current thread is not supported by this JVM, not accounting requests");
+                return;
+            }
+            if (!THREADS.isThreadCpuTimeEnabled()) {
+                THREADS.setThreadCpuTimeEnabled(true);
+            }
+            if (ALLOCATIONS != null && ALLOCATIONS.isThreadAllocatedMemorySupported()
+                    && !ALLOCATIONS.isThreadAllocatedMemoryEnabled()) {
+                ALLOCATIONS.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the usage of the UI classes and request types that consumed the most CPU
+     * time, such as <tt>com.acme.MyUI UIDL</tt>. Requests that are not bound to a UI,
+     * such as the bootstrap of a page, are charged to <tt>none</tt>.
+     *
+     * @param limit the maximum number of entries
+     * @return the top consumers, the most expensive first
+     */
+    public List<ResourceUsage> getTopByCpuTime(int limit) {
+        return top(snapshot(true), BY_CPU_TIME, limit);
+    }
+
+    /**
+     * Returns the usage of the UI classes and request types that allocated the most bytes.
+     *
+     * @param limit the maximum number of entries
+     * @return the top consumers, the most expensive first
+     * @see #getTopByCpuTime(int)
+     */
+    public List<ResourceUsage> getTopByAllocatedBytes(int limit) {
+        return top(snapshot(true), BY_ALLOCATED_BYTES, limit);
+    }
+
+    /**
+     * Returns the usage of the sessions that consumed the most CPU time, named after
+     * their id. Requests without a session are charged to <tt>none</tt>.
+     *
+     * @param limit the maximum number of entries
+     * @return the top sessions, the most expensive first
+     */
+    public List<ResourceUsage> getTopSessions(int limit) {
+        return top(snapshot(false), BY_CPU_TIME, limit);
+    }
+
+    /**
+     * Returns a human readable report of the top consumers of CPU time and heap.
+     *
+     * @param limit the maximum number of entries of each section
+     * @return the report
+     */
+    public String getReport(int limit) {
+        final List<ResourceUsage> requests = snapshot(true);
+        final StringBuilder sb = new StringBuilder();
+        appendSection(sb, "Top requests by CPU time", top(requests, BY_CPU_TIME, limit));
+        appendSection(sb, "Top requests by allocated bytes", top(requests, BY_ALLOCATED_BYTES, limit));
+        appendSection(sb, "Top sessions by CPU time", getTopSessions(limit));
+        return sb.toString();
+    }
+
+    /**
+     * Forgets the usage that has been charged so far.
+     */
+    public synchronized void reset() {
+        this.previous = null;
+        this.current = new Window(System.nanoTime());
+    }
+
+    /**
+     * Starts the accounting of a request on the current thread.
+     *
+     * @return the counters of the current thread, or <tt>null</tt> if the accounting is disabled
+     */
+    long[] start() {
+        if (!enabled) {
+            return null;
+        }
+        return new long[]{THREADS.getCurrentThreadCpuTime(), getCurrentThreadAllocatedBytes()};
+    }
+
+    /**
+     * Charges the resources consumed by the current thread since the request
+     * {@link #start() started}.
+     *
+     * @param start the counters returned by {@link #start()}
+     * @param sessionId the id of the session of the request, or <tt>null</tt>
+     * @param uiClass the class of the UI of the request, or <tt>null</tt>
+     * @param type the type of the request
+     */
+    void charge(long[] start, String sessionId, String uiClass, RequestType type) {
+        final long cpuTime = THREADS.getCurrentThreadCpuTime() - start[0];
+        final long allocatedBytes = Math.max(0, getCurrentThreadAllocatedBytes() - start[1]);
+        final Window window = getCurrentWindow(System.nanoTime());
+        window.charge(window.requests, (uiClass != null ? uiClass : NONE) + " " + type, cpuTime, allocatedBytes);
+        window.charge(window.sessions, sessionId != null ? sessionId : NONE, cpuTime, allocatedBytes);
+    }
+
+    private static long getCurrentThreadAllocatedBytes() {
+        if (ALLOCATIONS == null) {
+            return 0;
+        }
+        final long bytes = ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        return bytes < 0 ? 0 : bytes;
+    }
+
+    private Window getCurrentWindow(long now) {
+        final Window window = current;
+        if (now - window.start < this.window) {
+            return window;
+        }
+        synchronized (this) {
+            if (now - current.start >= this.window) {
+                previous = now - current.start < 2 * this.window ? current : null;
+                current = new Window(now);
+            }
+            return current;
+        }
+    }
+
+    private List<ResourceUsage> snapshot(boolean requests) {
+        final Window latest = getCurrentWindow(System.nanoTime());
+        final Window older = previous;
+        final Map<String, long[]> totals = new HashMap<String, long[]>();
+        if (older != null) {
+            older.addTo(requests ? older.requests : older.sessions, totals);
+        }
+        latest.addTo(requests ? latest.requests : latest.sessions, totals);
+        final List<ResourceUsage> result = new ArrayList<ResourceUsage>(totals.size());
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            final long[] values = entry.getValue();
+            result.add(new ResourceUsage(entry.getKey(), values[0], values[1], values[2]));
+        }
+        return result;
+    }
+
+    private static List<ResourceUsage> top(List<ResourceUsage> usages, Comparator<ResourceUsage> order, int limit) {
+        final List<ResourceUsage> sorted = new ArrayList<ResourceUsage>(usages);
+        Collections.sort(sorted, order);
+        return sorted.size() > limit ? new ArrayList<ResourceUsage>(sorted.subList(0, limit)) : sorted;
+    }
+
+    private static void appendSection(StringBuilder sb, String title, List<ResourceUsage> usages) {
+        sb.append(title).append(":\n");
+        if (usages.isEmpty()) {
+            sb.append("  (none)\n");
+        }
+        for (ResourceUsage usage : usages) {
+            sb.append("  ").append(usage.getName()).append(": ").append(usage.getRequestCount())
+                    .append(" requests, cpu ").append(TimeUnit.NANOSECONDS.toMicros(usage.getCpuTime()))
+                    .append(" us (").append(TimeUnit.NANOSECONDS.toMicros(usage.getCpuTimePerRequest()))
+                    .append(" us/request), allocated ").append(usage.getAllocatedBytes() / 1024)
+                    .append(" KB (").append(usage.getAllocatedBytesPerRequest() / 1024).append(" KB/request)\n");
+        }
+    }
+
+    private static int compareDescending(long first, long second) {
+        return first < second ? 1 : (first == second ? 0 : -1);
+    }
+
+    /**
+     * The usage charged during a window.
+     */
+    private static final class Window implements Serializable {
+
+        private static final long serialVersionUID = -4290883616101958740L;
+
+        private final long start;
+        private final ConcurrentMap<String, Usage> requests = new ConcurrentHashMap<String, Usage>();
+        private final ConcurrentMap<String, Usage> sessions = new ConcurrentHashMap<String, Usage>();
+
+        private Window(long start) {
+            this.start = start;
+        }
+
+        private void charge(ConcurrentMap<String, Usage> usages, String key, long cpuTime, long allocatedBytes) {
+            Usage usage = usages.get(key);
+            if (usage == null) {
+                final Usage candidate = new Usage();
+                usage = usages.putIfAbsent(key, candidate);
+                if (usage == null) {
+                    usage = candidate;
+                }
+            }
+            usage.count.incrementAndGet();
+            usage.cpuTime.addAndGet(cpuTime);
+            usage.allocatedBytes.addAndGet(allocatedBytes);
+        }
+
+        private void addTo(ConcurrentMap<String, Usage> usages, Map<String, long[]> totals) {
+            for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+                long[] values = totals.get(entry.getKey());
+                if (values == null) {
+                    values = new long[3];
+                    totals.put(entry.getKey(), values);
+                }
+                final Usage usage = entry.getValue();
+                values[0] += usage.count.get();
+                values[1] += usage.cpuTime.get();
+                values[2] += usage.allocatedBytes.get();
+            }
+        }
+    }
+
+    /**
+     * The rolling counters of a key.
+     */
+    private static final class Usage implements Serializable {
+
+        private static final long serialVersionUID = 3316582931870528049L;
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong cpuTime = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import java.io.Serializable;
+
+/**
+ * A snapshot of the resources consumed by the requests charged to a given key, either
+ * a UI class and a {@link RequestType} or a session.
+ *
+ * @author Stephane Nicoll
+ * @see ResourceAccounting
+ */
+public class ResourceUsage implements Serializable {
+
+    private static final long serialVersionUID = -2870416238455032411L;
+
+    private final String name;
+    private final long requestCount;
+    private final long cpuTime;
+    private final long allocatedBytes;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name the name of the key the requests were charged to
+     * @param requestCount the number of requests
+     * @param cpuTime the CPU time of these requests, in nanoseconds
+     * @param allocatedBytes the bytes allocated by these requests
+     */
+    public ResourceUsage(String name, long requestCount, long cpuTime, long allocatedBytes) {
+        this.name = name;
+        this.requestCount = requestCount;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Returns the name of the key the requests were charged to, such as
+     * <tt>com.acme.MyUI UIDL</tt> or the id of a session.
+     *
+     * @return the name of the key
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of requests that were charged to this key.
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the CPU time that the threads handling the requests have consumed.
+     *
+     * @return the CPU time, in nanoseconds
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Returns the number of bytes that the threads handling the requests have allocated
+     * on the heap.
+     *
+     * @return the allocated bytes, or <tt>0</tt> if the JVM does not track them
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the mean CPU time of a request.
+     *
+     * @return the mean CPU time, in nanoseconds
+     */
+    public long getCpuTimePerRequest() {
+        return requestCount == 0 ? 0 : cpuTime / requestCount;
+    }
+
+    /**
+     * Returns the mean number of bytes allocated by a request.
+     *
+     * @return the mean allocated bytes
+     */
+    public long getAllocatedBytesPerRequest() {
+        return requestCount == 0 ? 0 : allocatedBytes / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return name + "[requests=" + requestCount + ", cpu=" + (cpuTime / 1000) + "us, allocated="
+                + allocatedBytes + "B]";
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+/**
+ * The phases of a request handled by the vaadin servlet, as reported by the
+ * <tt>Server-Timing</tt> response header:
+ * <ul>
+ * <li><tt>queue</tt>: from the moment the connector started to read the request until
+ * the vaadin servlet is invoked, with a precision of a millisecond</li>
+ * <li><tt>lock</tt>: the time spent waiting for the lock of the Vaadin session</li>
+ * <li><tt>app</tt>: from the last acquisition of the session lock until the response
+ * is serialized, that is the invocation of the RPCs and of the listeners of the
+ * application</li>
+ * <li><tt>serialize</tt>: the serialization of the changes of the UI, until the
+ * response is written or the lock is released</li>
+ * <li><tt>total</tt>: the time spent in the vaadin servlet</li>
+ * </ul>
+ * The header is emitted when the body of the response is first requested. Phases
+ * that did not occur, such as <tt>serialize</tt> for a heartbeat, are omitted.
+ * <p/>
+ * An instance is bound to the thread processing the request, see {@link #current()}.
+ *
+ * @author Stephane Nicoll
+ */
+public class ServerTiming {
+
+    /**
+     * The name of the response header.
+     */
+    public static final String HEADER_NAME = "Server-Timing";
+
+    /**
+     * The name of the request attribute holding the time, in milliseconds, at which the
+     * connector started to read the request.
+     */
+    public static final String REQUEST_START_ATTRIBUTE = ServerTiming.class.getName() + ".requestStart";
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<ServerTiming>();
+
+    private final long queueTime;
+    private final long startTime;
+    private long lockWaitTime;
+    private long lockAcquiredTime;
+    private long lockReleasedTime;
+    private long serializationStartTime;
+
+    /**
+     * Creates a new instance for a request that the vaadin servlet starts to handle.
+     *
+     * @param requestStart the time at which the connector started to read the request,
+     * in milliseconds, or <tt>null</tt> if it is not known
+     */
+    public ServerTiming(Long requestStart) {
+        this.queueTime = (requestStart != null ? Math.max(0, System.currentTimeMillis() - requestStart) : -1);
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the {@link ServerTiming} of the request processed by the current thread.
+     *
+     * @return the current instance or <tt>null</tt> if the current thread is not
+     * processing a request or if server timing is disabled
+     */
+    public static ServerTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the specified instance to the current thread.
+     *
+     * @param serverTiming the instance to bind or <tt>null</tt> to clear it
+     */
+    static void setCurrent(ServerTiming serverTiming) {
+        if (serverTiming == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(serverTiming);
+        }
+    }
+
+    /**
+     * Records that the lock of the session has been acquired.
+     *
+     * @param waitTime the time spent waiting for the lock, in nanoseconds
+     */
+    void lockAcquired(long waitTime) {
+        lockWaitTime += waitTime;
+        lockAcquiredTime = System.nanoTime();
+        lockReleasedTime = 0;
+        serializationStartTime = 0;
+    }
+
+    /**
+     * Records that the lock of the session is about to be released.
+     */
+    void lockReleased() {
+        if (lockAcquiredTime != 0) {
+            lockReleasedTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records that the serialization of the response starts, unless it has already
+     * started or the lock has been released since the lock of the session was acquired.
+     */
+    void serializationStarted() {
+        if (lockAcquiredTime != 0 && lockReleasedTime == 0 && serializationStartTime == 0) {
+            serializationStartTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns the value of the <tt>Server-Timing</tt> header for the phases that have
+     * completed so far.
+     *
+     * @return the value of the header
+     */
+    public String toHeaderValue() {
+        final long now = System.nanoTime();
+        final StringBuilder sb = new StringBuilder(128);
+        if (queueTime >= 0) {
+            append(sb, "queue", queueTime * 1000000);
+        }
+        if (lockAcquiredTime != 0) {
+            final long end = (lockReleasedTime != 0 ? lockReleasedTime : now);
+            append(sb, "lock", lockWaitTime);
+            if (serializationStartTime != 0) {
+                append(sb, "app", serializationStartTime - lockAcquiredTime);
+                append(sb, "serialize", end - serializationStartTime);
+            } else {
+                append(sb, "app", end - lockAcquiredTime);
+            }
+        }
+        append(sb, "total", now - startTime);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String name, long nanos) {
+        if (sb.length() > 0) {
+            sb.append(", ");
+        }
+        final long micros = nanos / 1000;
+        sb.append(name).append(";dur=").append(micros / 1000).append('.');
+        final long fraction = micros % 1000;
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Adds the <tt>Server-Timing</tt> header to the response when its body is first
+ * requested, that is once the response has been serialized.
+ *
+ * @author Stephane Nicoll
+ */
+class ServerTimingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final ServerTiming serverTiming;
+    private boolean headerAdded;
+
+    ServerTimingResponseWrapper(HttpServletResponse response, ServerTiming serverTiming) {
+        super(response);
+        this.serverTiming = serverTiming;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        addHeader();
+        return super.getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        addHeader();
+        return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        addHeader();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        addHeader();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        addHeader();
+        super.sendError(sc);
+    }
+
+    /**
+     * Adds the header unless it has already been added or the response is committed.
+     * Invoked as well once the request has been handled, for responses without body.
+     */
+    void addHeader() {
+        if (!headerAdded && !isCommitted()) {
+            headerAdded = true;
+            setHeader(ServerTiming.HEADER_NAME, serverTiming.toHeaderValue());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.vaadin.server.VaadinService;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link MeteredVaadinSession} that reports the time spent waiting for its lock, and
+ * the moment it is released, to the {@link ServerTiming} of the current request.
+ *
+ * @author Stephane Nicoll
+ */
+@SuppressWarnings("serial")
+class ServerTimingVaadinSession extends MeteredVaadinSession {
+
+    ServerTimingVaadinSession(VaadinService service) {
+        super(service);
+    }
+
+    @Override
+    public void lock() {
+        final ServerTiming serverTiming = ServerTiming.current();
+        if (serverTiming == null) {
+            super.lock();
+            return;
+        }
+        final long start = System.nanoTime();
+        super.lock();
+        serverTiming.lockAcquired(System.nanoTime() - start);
+    }
+
+    @Override
+    public void unlock() {
+        final ServerTiming serverTiming = ServerTiming.current();
+        if (serverTiming != null && ((ReentrantLock) getLockInstance()).getHoldCount() == 1) {
+            serverTiming.lockReleased();
+        }
+        super.unlock();
+    }
+}
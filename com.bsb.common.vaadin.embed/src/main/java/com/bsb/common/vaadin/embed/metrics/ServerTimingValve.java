@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+
+/**
+ * Exposes the time at which the connector started to read the request as a
+ * {@link ServerTiming#REQUEST_START_ATTRIBUTE request attribute}, so that the
+ * time the request was queued can be reported.
+ *
+ * @author Stephane Nicoll
+ */
+public class ServerTimingValve extends ValveBase {
+
+    /**
+     * Creates a new instance.
+     */
+    public ServerTimingValve() {
+        super(true);
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        request.setAttribute(ServerTiming.REQUEST_START_ATTRIBUTE, request.getCoyoteRequest().getStartTime());
+        getNext().invoke(request, response);
+    }
+}
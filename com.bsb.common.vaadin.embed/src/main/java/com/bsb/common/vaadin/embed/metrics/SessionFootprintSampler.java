@@ -0,0 +1,293 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the memory footprint of the vaadin sessions with the size of their serialized
+ * form, and records the distribution of these sizes per UI class in a {@link SizeHistogram}.
+ * <p/>
+ * A session is charged to each class of the UIs that it holds, a session without UI
+ * is charged to <tt>none</tt>. The serialized form is more compact than the heap
+ * representation of the session, but it is proportional to it and it only involves
+ * the state that the session retains, not the classes and resources that the sessions
+ * share.
+ * <p/>
+ * Serializing a session is expensive and the session is locked in the meantime so at
+ * most {@link #getMaxSampledSessions()} sessions, picked at random, are measured by
+ * {@link #sample(Collection)}. Each sample replaces the figures of the previous one.
+ *
+ * @author Stephane Nicoll
+ */
+public class SessionFootprintSampler implements Serializable {
+
+    private static final long serialVersionUID = 3840917252296014573L;
+
+    /**
+     * The default maximum number of sessions measured by a sample.
+     */
+    public static final int DEFAULT_MAX_SAMPLED_SESSIONS = 100;
+
+    private static final String NONE = "none";
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionFootprintSampler.class);
+
+    private final int maxSampledSessions;
+    private volatile Sample lastSample = new Sample(Collections.<String, SizeHistogram>emptyMap(),
+            new SizeHistogram(), 0, 0, 0);
+
+    /**
+     * Creates a new instance that measures at most the specified number of sessions per sample.
+     *
+     * @param maxSampledSessions the maximum number of sessions to measure
+     */
+    public SessionFootprintSampler(int maxSampledSessions) {
+        if (maxSampledSessions <= 0) {
+            throw new IllegalArgumentException("Max sampled sessions must be positive but was ["
+                    + maxSampledSessions + "]");
+        }
+        this.maxSampledSessions = maxSampledSessions;
+    }
+
+    /**
+     * Creates a new instance that measures at most the {@link #DEFAULT_MAX_SAMPLED_SESSIONS
+     * default} number of sessions per sample.
+     */
+    public SessionFootprintSampler() {
+        this(DEFAULT_MAX_SAMPLED_SESSIONS);
+    }
+
+    /**
+     * Returns the maximum number of sessions measured by a sample.
+     *
+     * @return the maximum number of sampled sessions
+     */
+    public int getMaxSampledSessions() {
+        return maxSampledSessions;
+    }
+
+    /**
+     * Measures the serialized size of the specified sessions, or of a random subset of
+     * them if there are more than {@link #getMaxSampledSessions()}. Each session is
+     * locked while it is serialized.
+     *
+     * @param sessions the live sessions
+     */
+    public void sample(Collection<VaadinSession> sessions) {
+        final long start = System.nanoTime();
+        final List<VaadinSession> sampled = new ArrayList<VaadinSession>(sessions);
+        if (sampled.size() > maxSampledSessions) {
+            Collections.shuffle(sampled);
+            sampled.subList(maxSampledSessions, sampled.size()).clear();
+        }
+        final Map<String, SizeHistogram> histograms = new TreeMap<String, SizeHistogram>();
+        final SizeHistogram all = new SizeHistogram();
+        int failures = 0;
+        for (VaadinSession session : sampled) {
+            final Set<String> uiClasses = new TreeSet<String>();
+            final long size;
+            session.lock();
+            try {
+                for (UI ui : session.getUIs()) {
+                    uiClasses.add(ui.getClass().getName());
+                }
+                size = measure(session);
+            } catch (IOException e) {
+                failures++;
+                logger.debug("Failed to serialize session with UIs " + uiClasses, e);
+                continue;
+            } finally {
+                session.unlock();
+            }
+            all.record(size);
+            if (uiClasses.isEmpty()) {
+                uiClasses.add(NONE);
+            }
+            for (String uiClass : uiClasses) {
+                SizeHistogram histogram = histograms.get(uiClass);
+                if (histogram == null) {
+                    histogram = new SizeHistogram();
+                    histograms.put(uiClass, histogram);
+                }
+                histogram.record(size);
+            }
+        }
+        final long duration = System.nanoTime() - start;
+        this.lastSample = new Sample(Collections.unmodifiableMap(histograms), all, sessions.size(), failures,
+                duration);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Measured " + sampled.size() + " of " + sessions.size() + " session(s) in "
+                    + TimeUnit.NANOSECONDS.toMicros(duration) + " us");
+        }
+    }
+
+    /**
+     * Returns the distribution of the serialized size of the sessions, per UI class,
+     * as of the last sample.
+     *
+     * @return a read-only view of the histograms, in bytes, per UI class
+     */
+    public Map<String, SizeHistogram> getHistograms() {
+        return lastSample.histograms;
+    }
+
+    /**
+     * Returns the distribution of the serialized size of all the sampled sessions.
+     *
+     * @return the histogram of the session sizes, in bytes
+     */
+    public SizeHistogram getHistogram() {
+        return lastSample.all;
+    }
+
+    /**
+     * Returns the number of live sessions when the last sample was taken.
+     *
+     * @return the number of sessions
+     */
+    public int getSessionCount() {
+        return lastSample.sessionCount;
+    }
+
+    /**
+     * Returns the number of sessions of the last sample that could not be serialized,
+     * typically because they hold an attribute that is not serializable.
+     *
+     * @return the number of failures
+     */
+    public int getFailureCount() {
+        return lastSample.failureCount;
+    }
+
+    /**
+     * Returns the duration of the last sample.
+     *
+     * @return the duration, in nanoseconds, or <tt>0</tt> if no sample has been taken
+     */
+    public long getLastSampleDuration() {
+        return lastSample.duration;
+    }
+
+    /**
+     * Estimates the footprint of all the live sessions, extrapolating the mean size of
+     * the sampled sessions.
+     *
+     * @return the estimated footprint, in bytes
+     */
+    public long getEstimatedTotalSize() {
+        final Sample sample = lastSample;
+        return sample.all.getMean() * sample.sessionCount;
+    }
+
+    /**
+     * Returns a human readable report of the footprint of the sessions per UI class.
+     *
+     * @return the report
+     */
+    public String getReport() {
+        final Sample sample = lastSample;
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Session footprint (").append(sample.all.getCount()).append(" of ").append(sample.sessionCount)
+                .append(" sessions sampled in ").append(TimeUnit.NANOSECONDS.toMillis(sample.duration))
+                .append(" ms, ").append(sample.failureCount).append(" failures, estimated total ")
+                .append(getEstimatedTotalSize() / 1024).append(" KB):\n");
+        if (sample.histograms.isEmpty()) {
+            sb.append("  (none)\n");
+        }
+        for (Map.Entry<String, SizeHistogram> entry : sample.histograms.entrySet()) {
+            final SizeHistogram histogram = entry.getValue();
+            sb.append("  ").append(entry.getKey()).append(": ").append(histogram.getCount())
+                    .append(" sessions, mean ").append(histogram.getMean()).append("B, p50=")
+                    .append(histogram.getP50()).append("B, p99=").append(histogram.getP99()).append("B, max=")
+                    .append(histogram.getMax()).append("B\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the size of the serialized form of the specified session.
+     *
+     * @param session the session, locked by the current thread
+     * @return the size in bytes
+     * @throws IOException if the session could not be serialized
+     */
+    static long measure(VaadinSession session) throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(session);
+        oos.close();
+        return out.count;
+    }
+
+    /**
+     * The figures of a sample.
+     */
+    private static final class Sample implements Serializable {
+
+        private static final long serialVersionUID = -1094836722058815213L;
+
+        private final Map<String, SizeHistogram> histograms;
+        private final SizeHistogram all;
+        private final int sessionCount;
+        private final int failureCount;
+        private final long duration;
+
+        private Sample(Map<String, SizeHistogram> histograms, SizeHistogram all, int sessionCount,
+                       int failureCount, long duration) {
+            this.histograms = histograms;
+            this.all = all;
+            this.sessionCount = sessionCount;
+            this.failureCount = failureCount;
+            this.duration = duration;
+        }
+    }
+
+    /**
+     * Discards the bytes that are written, only counting them.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
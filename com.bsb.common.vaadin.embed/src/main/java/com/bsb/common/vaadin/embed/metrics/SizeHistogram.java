@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+/**
+ * A lock-free {@link Histogram} of sizes, in bytes.
+ *
+ * @author Stephane Nicoll
+ */
+public class SizeHistogram extends Histogram {
+
+    private static final long serialVersionUID = 2195867403128805117L;
+
+    /**
+     * Records the specified size.
+     *
+     * @param bytes the size, in bytes
+     */
+    public void record(long bytes) {
+        recordValue(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", p50=" + getP50() + "B, p99=" + getP99() + "B, max=" + getMax() + "B";
+    }
+}
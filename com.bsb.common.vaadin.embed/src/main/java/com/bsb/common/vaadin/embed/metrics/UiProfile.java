@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import java.io.Serializable;
+
+/**
+ * A snapshot of the component trees of the live UIs of a given class, as well as
+ * the number of connectors that their round trips have sent to the client.
+ *
+ * @author Stephane Nicoll
+ * @see ComponentTreeProfiler
+ */
+public class UiProfile implements Serializable {
+
+    private static final long serialVersionUID = 8523079145265814731L;
+
+    private final String uiClass;
+    private final int uiCount;
+    private final long connectorCount;
+    private final int maxConnectorCount;
+    private final int maxDepth;
+    private final long stateSize;
+    private final long maxStateSize;
+    private final long roundTripCount;
+    private final long dirtyConnectorCount;
+    private final int maxDirtyConnectorCount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param uiClass the class of the UIs
+     * @param uiCount the number of live UIs of that class
+     * @param connectorCount the number of connectors of these UIs
+     * @param maxConnectorCount the number of connectors of the largest UI
+     * @param maxDepth the depth of the deepest component tree
+     * @param stateSize the estimated size of the state of these UIs, in characters
+     * @param maxStateSize the estimated size of the state of the largest UI, in characters
+     * @param roundTripCount the number of round trips of the UIs of that class
+     * @param dirtyConnectorCount the number of dirty connectors that these round trips sent
+     * @param maxDirtyConnectorCount the highest number of dirty connectors of a round trip
+     */
+    public UiProfile(String uiClass, int uiCount, long connectorCount, int maxConnectorCount, int maxDepth,
+                     long stateSize, long maxStateSize, long roundTripCount, long dirtyConnectorCount,
+                     int maxDirtyConnectorCount) {
+        this.uiClass = uiClass;
+        this.uiCount = uiCount;
+        this.connectorCount = connectorCount;
+        this.maxConnectorCount = maxConnectorCount;
+        this.maxDepth = maxDepth;
+        this.stateSize = stateSize;
+        this.maxStateSize = maxStateSize;
+        this.roundTripCount = roundTripCount;
+        this.dirtyConnectorCount = dirtyConnectorCount;
+        this.maxDirtyConnectorCount = maxDirtyConnectorCount;
+    }
+
+    /**
+     * Returns the class of the UIs.
+     *
+     * @return the fully qualified name of the UI class
+     */
+    public String getUiClass() {
+        return uiClass;
+    }
+
+    /**
+     * Returns the number of live UIs of that class when the trees were last walked.
+     *
+     * @return the number of UIs
+     */
+    public int getUiCount() {
+        return uiCount;
+    }
+
+    /**
+     * Returns the number of connectors, that is the components and their extensions,
+     * of all the UIs of that class, including the UIs themselves.
+     *
+     * @return the number of connectors
+     */
+    public long getConnectorCount() {
+        return connectorCount;
+    }
+
+    /**
+     * Returns the mean number of connectors of a UI.
+     *
+     * @return the mean number of connectors
+     */
+    public long getConnectorCountPerUi() {
+        return uiCount == 0 ? 0 : connectorCount / uiCount;
+    }
+
+    /**
+     * Returns the number of connectors of the largest UI of that class.
+     *
+     * @return the highest number of connectors
+     */
+    public int getMaxConnectorCount() {
+        return maxConnectorCount;
+    }
+
+    /**
+     * Returns the depth of the deepest component tree, a UI without content having a
+     * depth of <tt>1</tt>.
+     *
+     * @return the highest depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the estimated size of the state of all the UIs of that class, that is
+     * the length of the JSON state that was last sent to the client for each connector.
+     *
+     * @return the size of the state, in characters
+     */
+    public long getStateSize() {
+        return stateSize;
+    }
+
+    /**
+     * Returns the estimated size of the state of the largest UI of that class.
+     *
+     * @return the size of the state, in characters
+     * @see #getStateSize()
+     */
+    public long getMaxStateSize() {
+        return maxStateSize;
+    }
+
+    /**
+     * Returns the number of UIDL round trips of the UIs of that class.
+     *
+     * @return the number of round trips
+     */
+    public long getRoundTripCount() {
+        return roundTripCount;
+    }
+
+    /**
+     * Returns the mean number of dirty connectors that a round trip sent to the client.
+     *
+     * @return the mean number of dirty connectors
+     */
+    public long getDirtyConnectorCountPerRoundTrip() {
+        return roundTripCount == 0 ? 0 : dirtyConnectorCount / roundTripCount;
+    }
+
+    /**
+     * Returns the highest number of dirty connectors that a round trip sent to the client.
+     *
+     * @return the highest number of dirty connectors
+     */
+    public int getMaxDirtyConnectorCount() {
+        return maxDirtyConnectorCount;
+    }
+
+    @Override
+    public String toString() {
+        return uiClass + "[uis=" + uiCount + ", connectors=" + connectorCount + ", maxConnectors="
+                + maxConnectorCount + ", maxDepth=" + maxDepth + ", state=" + stateSize + ", maxState="
+                + maxStateSize + ", roundTrips=" + roundTripCount + ", dirtyPerRoundTrip="
+                + getDirtyConnectorCountPerRoundTrip() + ", maxDirty=" + maxDirtyConnectorCount + "]";
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.ui.UI;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes a large UIDL response: its size, the size of each of its sections and the
+ * connectors that contributed the most to it.
+ * <p/>
+ * The size of the sections and of the connectors are the length of their JSON
+ * representation, the size of the response is the number of bytes that were written.
+ *
+ * @author Stephane Nicoll
+ * @see UidlSizeMetrics
+ */
+public class UidlPayload implements Serializable {
+
+    private static final long serialVersionUID = 5219032215961047214L;
+
+    /**
+     * The maximum number of contributors that are kept per response.
+     */
+    public static final int MAX_CONTRIBUTORS = 10;
+
+    private static final String PREFIX = "for(;;);";
+
+    private static final Comparator<Contributor> BY_SIZE = new Comparator<Contributor>() {
+        public int compare(Contributor o1, Contributor o2) {
+            return o1.size < o2.size ? 1 : (o1.size == o2.size ? 0 : -1);
+        }
+    };
+
+    private final long size;
+    private final long timestamp;
+    private final String uiClass;
+    private final Map<String, Integer> sections;
+    private final List<Contributor> contributors;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param size the size of the response, in bytes
+     * @param timestamp the time the response was written
+     * @param uiClass the class of the UI the response is for, or <tt>null</tt>
+     * @param sections the size of each section of the response, the largest first
+     * @param contributors the top contributors, the largest first
+     */
+    public UidlPayload(long size, long timestamp, String uiClass, Map<String, Integer> sections,
+                       List<Contributor> contributors) {
+        this.size = size;
+        this.timestamp = timestamp;
+        this.uiClass = uiClass;
+        this.sections = Collections.unmodifiableMap(sections);
+        this.contributors = Collections.unmodifiableList(contributors);
+    }
+
+    /**
+     * Analyzes the specified UIDL response.
+     *
+     * @param uidl the content of the response
+     * @param size the number of bytes of the response
+     * @param ui the UI the response is for, used to resolve the type of the connectors,
+     * or <tt>null</tt>. Its session must be locked
+     * @return the description of the response
+     */
+    static UidlPayload analyze(String uidl, long size, UI ui) {
+        final Map<String, Integer> sections = new HashMap<String, Integer>();
+        final Map<String, Integer> connectors = new HashMap<String, Integer>();
+        try {
+            final String json = uidl.startsWith(PREFIX) ? uidl.substring(PREFIX.length()) : uidl;
+            final JSONObject root = new JSONArray(json).getJSONObject(0);
+            final Iterator<?> keys = root.keys();
+            while (keys.hasNext()) {
+                final String key = (String) keys.next();
+                sections.put(key, root.get(key).toString().length());
+            }
+            final JSONObject state = root.optJSONObject("state");
+            if (state != null) {
+                final Iterator<?> ids = state.keys();
+                while (ids.hasNext()) {
+                    final String id = (String) ids.next();
+                    add(connectors, id, state.get(id).toString().length());
+                }
+            }
+            // [connectorId, interface, method, parameters]
+            final JSONArray rpc = root.optJSONArray("rpc");
+            for (int i = 0; rpc != null && i < rpc.length(); i++) {
+                final JSONArray invocation = rpc.getJSONArray(i);
+                add(connectors, invocation.getString(0), invocation.toString().length());
+            }
+            // ["change", {"pid": connectorId}, uidl]
+            final JSONArray changes = root.optJSONArray("changes");
+            for (int i = 0; changes != null && i < changes.length(); i++) {
+                final JSONArray change = changes.getJSONArray(i);
+                add(connectors, change.getJSONObject(1).getString("pid"), change.toString().length());
+            }
+        } catch (JSONException e) {
+            // Not a regular UIDL response, only keep its size
+            sections.clear();
+            connectors.clear();
+        }
+        final List<Contributor> contributors = new ArrayList<Contributor>(connectors.size());
+        for (Map.Entry<String, Integer> entry : connectors.entrySet()) {
+            contributors.add(new Contributor(entry.getKey(), getType(ui, entry.getKey()), entry.getValue()));
+        }
+        Collections.sort(contributors, BY_SIZE);
+        return new UidlPayload(size, System.currentTimeMillis(), ui != null ? ui.getClass().getName() : null,
+                sortBySize(sections), contributors.size() > MAX_CONTRIBUTORS
+                ? new ArrayList<Contributor>(contributors.subList(0, MAX_CONTRIBUTORS)) : contributors);
+    }
+
+    /**
+     * Returns the size of the response, in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the time the response was written, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the class of the UI the response is for, or <tt>null</tt> if it is not known.
+     */
+    public String getUiClass() {
+        return uiClass;
+    }
+
+    /**
+     * Returns the size of each top-level section of the response, such as <tt>state</tt>,
+     * <tt>changes</tt> or <tt>rpc</tt>, the largest first.
+     */
+    public Map<String, Integer> getSections() {
+        return sections;
+    }
+
+    /**
+     * Returns the connectors whose state, RPC calls and legacy changes take the most
+     * space in the response, the largest first.
+     */
+    public List<Contributor> getContributors() {
+        return contributors;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(size).append(" bytes for ").append(uiClass != null ? uiClass : "unknown UI");
+        if (!sections.isEmpty()) {
+            sb.append(", sections ").append(sections);
+        }
+        if (!contributors.isEmpty()) {
+            sb.append(", top contributors ").append(contributors);
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Integer> sortBySize(Map<String, Integer> sections) {
+        final List<Map.Entry<String, Integer>> entries =
+                new ArrayList<Map.Entry<String, Integer>>(sections.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+            public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        final Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static void add(Map<String, Integer> connectors, String id, int size) {
+        final Integer current = connectors.get(id);
+        connectors.put(id, current != null ? current + size : size);
+    }
+
+    private static String getType(UI ui, String connectorId) {
+        final ClientConnector connector = (ui != null ? ui.getConnectorTracker().getConnector(connectorId) : null);
+        return (connector != null ? connector.getClass().getName() : null);
+    }
+
+    /**
+     * A connector that contributed to a UIDL response.
+     */
+    public static class Contributor implements Serializable {
+
+        private static final long serialVersionUID = -1570542297340926437L;
+
+        private final String connectorId;
+        private final String type;
+        private final int size;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param connectorId the id of the connector
+         * @param type the class of the connector, or <tt>null</tt> if it is not known
+         * @param size the size of its contribution, in characters
+         */
+        public Contributor(String connectorId, String type, int size) {
+            this.connectorId = connectorId;
+            this.type = type;
+            this.size = size;
+        }
+
+        /**
+         * Returns the id of the connector.
+         */
+        public String getConnectorId() {
+            return connectorId;
+        }
+
+        /**
+         * Returns the class of the connector, or <tt>null</tt> if the connector is no
+         * longer attached or the UI is not known.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the size of the state, RPC calls and legacy changes of the connector,
+         * in characters.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return (type != null ? type : "unknown") + "#" + connectorId + "=" + size;
+        }
+    }
+}
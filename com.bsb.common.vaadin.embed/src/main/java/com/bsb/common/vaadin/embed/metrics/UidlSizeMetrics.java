@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Records the size of the UIDL responses in a {@link SizeHistogram} and keeps a
+ * description of the largest ones.
+ * <p/>
+ * Only the responses that are large enough to be among the largest ones are analyzed,
+ * see {@link UidlPayload}.
+ *
+ * @author Stephane Nicoll
+ */
+public class UidlSizeMetrics implements Serializable {
+
+    private static final long serialVersionUID = -6231868402159385713L;
+
+    /**
+     * The default number of largest responses that are kept.
+     */
+    public static final int DEFAULT_LARGEST_RESPONSES = 10;
+
+    /**
+     * Responses smaller than this, in bytes, are never analyzed.
+     */
+    public static final long MIN_ANALYZED_SIZE = 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(UidlSizeMetrics.class);
+
+    private final SizeHistogram histogram = new SizeHistogram();
+    private final int capacity;
+    private final LinkedList<UidlPayload> largestResponses = new LinkedList<UidlPayload>();
+    private volatile long threshold = MIN_ANALYZED_SIZE;
+
+    /**
+     * Creates a new instance that keeps the specified number of largest responses.
+     *
+     * @param capacity the number of largest responses to keep
+     */
+    public UidlSizeMetrics(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive but was [" + capacity + "]");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a new instance that keeps the {@link #DEFAULT_LARGEST_RESPONSES default}
+     * number of largest responses.
+     */
+    public UidlSizeMetrics() {
+        this(DEFAULT_LARGEST_RESPONSES);
+    }
+
+    /**
+     * Returns the histogram of the size of the UIDL responses, in bytes.
+     *
+     * @return the size histogram
+     */
+    public SizeHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Returns the description of the largest UIDL responses, the largest first.
+     *
+     * @return a copy of the largest responses
+     */
+    public synchronized List<UidlPayload> getLargestResponses() {
+        return new ArrayList<UidlPayload>(largestResponses);
+    }
+
+    /**
+     * Returns a summary of the size of the UIDL responses and of the largest ones.
+     *
+     * @return a human readable summary
+     */
+    public String getSummary() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("UIDL responses: ").append(histogram);
+        final List<UidlPayload> payloads = getLargestResponses();
+        for (int i = 0; i < payloads.size(); i++) {
+            sb.append("\n  #").append(i + 1).append(": ").append(payloads.get(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Logs the {@link #getSummary() summary}, unless no UIDL response has been recorded.
+     */
+    public void logSummary() {
+        if (histogram.getCount() > 0 && logger.isInfoEnabled()) {
+            logger.info(getSummary());
+        }
+    }
+
+    /**
+     * Records the size of a UIDL response.
+     *
+     * @param size the size of the response, in bytes
+     */
+    void record(long size) {
+        histogram.record(size);
+    }
+
+    /**
+     * Specifies if a response of the specified size would be among the largest ones.
+     *
+     * @param size the size of the response, in bytes
+     * @return <tt>true</tt> if the response should be analyzed
+     */
+    boolean isLargest(long size) {
+        return size >= threshold;
+    }
+
+    /**
+     * Keeps the specified response if it is among the largest ones.
+     *
+     * @param payload the description of the response
+     */
+    synchronized void offer(UidlPayload payload) {
+        final ListIterator<UidlPayload> it = largestResponses.listIterator();
+        while (it.hasNext()) {
+            if (it.next().getSize() < payload.getSize()) {
+                it.previous();
+                break;
+            }
+        }
+        it.add(payload);
+        if (largestResponses.size() > capacity) {
+            largestResponses.removeLast();
+        }
+        if (largestResponses.size() == capacity) {
+            threshold = Math.max(MIN_ANALYZED_SIZE, largestResponses.getLast().getSize() + 1);
+        }
+    }
+}
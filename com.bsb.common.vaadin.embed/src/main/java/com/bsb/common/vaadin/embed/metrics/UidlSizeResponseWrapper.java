@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.vaadin.ui.UI;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Records the size of a UIDL response in a {@link UidlSizeMetrics}. The bytes of the
+ * response are copied to a buffer of the current thread so that the response can be
+ * analyzed if it is among the largest ones.
+ * <p/>
+ * Vaadin closes the output stream of a UIDL response while the session is still locked
+ * and the UI still current, which is when the response is recorded.
+ *
+ * @author Stephane Nicoll
+ */
+class UidlSizeResponseWrapper extends HttpServletResponseWrapper {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Larger buffers are not kept for the next response of the thread
+    private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8192];
+        }
+    };
+
+    private final UidlSizeMetrics uidlSizes;
+    private CapturingOutputStream outputStream;
+    private boolean recorded;
+
+    UidlSizeResponseWrapper(HttpServletResponse response, UidlSizeMetrics uidlSizes) {
+        super(response);
+        this.uidlSizes = uidlSizes;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    /**
+     * Records the size of the response unless it has already been recorded or nothing
+     * was written. Invoked as well once the request has been handled, in case the output
+     * stream was not closed.
+     */
+    void record() {
+        if (recorded || outputStream == null) {
+            return;
+        }
+        recorded = true;
+        final int size = outputStream.count;
+        if (size > 0) {
+            uidlSizes.record(size);
+            if (uidlSizes.isLargest(size)) {
+                final String uidl = new String(outputStream.buffer, 0, size, UTF_8);
+                uidlSizes.offer(UidlPayload.analyze(uidl, size, UI.getCurrent()));
+            }
+        }
+        if (outputStream.buffer.length <= MAX_RETAINED_BUFFER) {
+            BUFFER.set(outputStream.buffer);
+        }
+    }
+
+    private final class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private byte[] buffer;
+        private int count;
+
+        private CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+            this.buffer = BUFFER.get();
+            // The next wrapper of the thread gets its own buffer until this one is released
+            BUFFER.remove();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buffer[count++] = (byte) b;
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+            delegate.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+            record();
+        }
+
+        private void ensureCapacity(int length) {
+            if (count + length > buffer.length) {
+                final byte[] larger = new byte[Math.max(buffer.length * 2, count + length)];
+                System.arraycopy(buffer, 0, larger, 0, count);
+                buffer = larger;
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Metrics of the embedded server, such as the latency of the requests.
+ */
+package com.bsb.common.vaadin.embed.metrics;
\ No newline at end of file
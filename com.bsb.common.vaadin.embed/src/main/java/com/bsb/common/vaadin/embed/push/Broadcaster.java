@@ -0,0 +1,363 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.push;
+
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broadcasts events to many UIs in batches.
+ * <p/>
+ * Events are coalesced over a time window that starts with the first pending event.
+ * Once the window has elapsed, the batch of events is delivered to each registered
+ * UI with a single {@link UI#access(Runnable)} that invokes all the listeners of
+ * that UI. This limits the number of session lock acquisitions and push writes to
+ * one per UI and per window, regardless of the number of events.
+ * <p/>
+ * Producers are never blocked. At most <tt>maxPendingEvents</tt> events wait for the
+ * next window; once that capacity is reached, each new event drops the oldest pending
+ * one. The same capacity applies to the events waiting for a given UI.
+ * <p/>
+ * Deliveries run on a bounded executor and do not wait for the accesses they request.
+ * Each UI has at most one access in flight: the batches of the windows that elapse
+ * while the session of the UI is locked, for instance by a long request, are merged
+ * and delivered by that access once the lock is released. A UI that does not keep up
+ * therefore receives larger batches and, ultimately, drops events rather than stalling
+ * the deliveries to the other UIs. Dropped events are counted, see
+ * {@link #getDroppedEventCount()}.
+ * <p/>
+ * UIs that are detached are unregistered on the next delivery.
+ *
+ * @param <T> the type of the events
+ * @author Stephane Nicoll
+ */
+public class Broadcaster<T> {
+
+    /**
+     * The default time window to coalesce events, in milliseconds.
+     */
+    public static final long DEFAULT_WINDOW = 100;
+
+    /**
+     * The default maximum number of events waiting to be delivered.
+     */
+    public static final int DEFAULT_MAX_PENDING_EVENTS = 10000;
+
+    private static final Logger logger = LoggerFactory.getLogger(Broadcaster.class);
+
+    private static final AtomicInteger instanceCount = new AtomicInteger();
+
+    private final long window;
+    private final int maxPendingEvents;
+    private final ConcurrentMap<UI, Target> targets = new ConcurrentHashMap<UI, Target>();
+    private final LinkedList<T> pendingEvents = new LinkedList<T>();
+    private boolean flushScheduled;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong droppedEventCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong accessCount = new AtomicLong();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param window the time window to coalesce events, in milliseconds
+     * @param threads the number of threads delivering batches to UIs
+     * @param queueCapacity the maximum number of deliveries waiting for a thread
+     * @param maxPendingEvents the maximum number of events waiting for the next window,
+     * and for a given UI
+     * @throws IllegalArgumentException if one of the arguments is not strictly positive
+     */
+    public Broadcaster(long window, int threads, int queueCapacity, int maxPendingEvents) {
+        if (window <= 0 || threads <= 0 || queueCapacity <= 0 || maxPendingEvents <= 0) {
+            throw new IllegalArgumentException("window, threads, queueCapacity and maxPendingEvents "
+                    + "must be strictly positive.");
+        }
+        this.window = window;
+        this.maxPendingEvents = maxPendingEvents;
+        final int id = instanceCount.incrementAndGet();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new BroadcasterThreadFactory(id, "flush"));
+        // Deliveries do not block so running one on the flush thread is fine
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new BroadcasterThreadFactory(id, "delivery"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Creates a new instance that keeps at most {@link #DEFAULT_MAX_PENDING_EVENTS}
+     * pending events.
+     *
+     * @param window the time window to coalesce events, in milliseconds
+     * @param threads the number of threads delivering batches to UIs
+     * @param queueCapacity the maximum number of deliveries waiting for a thread
+     * @throws IllegalArgumentException if one of the arguments is not strictly positive
+     */
+    public Broadcaster(long window, int threads, int queueCapacity) {
+        this(window, threads, queueCapacity, DEFAULT_MAX_PENDING_EVENTS);
+    }
+
+    /**
+     * Creates a new instance with the {@link #DEFAULT_WINDOW default window} and one
+     * thread per processor.
+     */
+    public Broadcaster() {
+        this(DEFAULT_WINDOW, Runtime.getRuntime().availableProcessors(), 1000);
+    }
+
+    /**
+     * Registers a listener for the specified {@link UI}. The listener is invoked with
+     * the session of the UI locked.
+     *
+     * @param ui the ui to deliver events to
+     * @param listener the listener to invoke
+     */
+    public void register(UI ui, BroadcastListener<T> listener) {
+        Target target = targets.get(ui);
+        if (target == null) {
+            final Target newTarget = new Target(ui);
+            target = targets.putIfAbsent(ui, newTarget);
+            if (target == null) {
+                target = newTarget;
+            }
+        }
+        target.listeners.add(listener);
+    }
+
+    /**
+     * Unregisters all the listeners of the specified {@link UI}.
+     *
+     * @param ui the ui to unregister
+     */
+    public void unregister(UI ui) {
+        targets.remove(ui);
+    }
+
+    /**
+     * Broadcasts the specified event. The event is delivered with the other events
+     * broadcast within the same window. Never blocks: if {@code maxPendingEvents}
+     * events are pending already, the oldest one is dropped.
+     *
+     * @param event the event to broadcast
+     */
+    public void broadcast(T event) {
+        eventCount.incrementAndGet();
+        synchronized (pendingEvents) {
+            addPendingEvents(pendingEvents, Collections.singletonList(event));
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(new Runnable() {
+                    public void run() {
+                        flush();
+                    }
+                }, window, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stops delivering events. Pending events are discarded.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the number of UIs that are registered.
+     */
+    public int getUICount() {
+        return targets.size();
+    }
+
+    /**
+     * Returns the number of events that have been broadcast.
+     */
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    /**
+     * Returns the number of events that have been dropped because too many events
+     * were pending. An event that is dropped for several UIs is counted once per UI.
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    /**
+     * Returns the number of batches that have been delivered.
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the number of {@link UI#access(Runnable) accesses} that have been
+     * requested to deliver batches.
+     */
+    public long getAccessCount() {
+        return accessCount.get();
+    }
+
+    private void flush() {
+        final List<T> batch;
+        synchronized (pendingEvents) {
+            batch = new ArrayList<T>(pendingEvents);
+            pendingEvents.clear();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchCount.incrementAndGet();
+        for (Map.Entry<UI, Target> entry : targets.entrySet()) {
+            final UI ui = entry.getKey();
+            if (ui.getSession() == null) {
+                targets.remove(ui);
+                continue;
+            }
+            final Target target = entry.getValue();
+            if (target.offer(batch)) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        deliver(target);
+                    }
+                });
+            }
+        }
+    }
+
+    private void deliver(final Target target) {
+        try {
+            accessCount.incrementAndGet();
+            target.ui.access(new Runnable() {
+                public void run() {
+                    final List<T> events = target.take();
+                    try {
+                        for (BroadcastListener<T> listener : target.listeners) {
+                            listener.onBroadcast(events);
+                        }
+                    } catch (RuntimeException e) {
+                        logger.warn("Failed to deliver " + events.size() + " event(s) to " + target.ui, e);
+                    }
+                }
+            });
+        } catch (UIDetachedException e) {
+            targets.remove(target.ui);
+        }
+    }
+
+    /**
+     * Adds the specified events to the pending ones, dropping the oldest events if the
+     * capacity is exceeded. The caller holds the lock of the pending events.
+     */
+    private void addPendingEvents(LinkedList<T> pending, List<T> events) {
+        pending.addAll(events);
+        while (pending.size() > maxPendingEvents) {
+            pending.removeFirst();
+            droppedEventCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Receives the events of a {@link Broadcaster}.
+     *
+     * @param <T> the type of the events
+     */
+    public interface BroadcastListener<T> {
+
+        /**
+         * Invoked with a batch of events, in the order they were broadcast. The session
+         * of the UI is locked.
+         *
+         * @param events the events
+         */
+        void onBroadcast(List<T> events);
+    }
+
+    /**
+     * The listeners of a {@link UI} and the events waiting for its access.
+     */
+    private final class Target {
+        private final UI ui;
+        private final List<BroadcastListener<T>> listeners = new CopyOnWriteArrayList<BroadcastListener<T>>();
+        private final LinkedList<T> pending = new LinkedList<T>();
+        private boolean accessRequested;
+
+        private Target(UI ui) {
+            this.ui = ui;
+        }
+
+        /**
+         * Adds the specified batch to the pending events. Returns <tt>true</tt> if an
+         * access should be requested, that is if none is in flight.
+         */
+        private synchronized boolean offer(List<T> batch) {
+            addPendingEvents(pending, batch);
+            if (accessRequested) {
+                return false;
+            }
+            accessRequested = true;
+            return true;
+        }
+
+        /**
+         * Returns the pending events and allows the next batch to request an access.
+         */
+        private synchronized List<T> take() {
+            final List<T> events = Collections.unmodifiableList(new ArrayList<T>(pending));
+            pending.clear();
+            accessRequested = false;
+            return events;
+        }
+    }
+
+    private static final class BroadcasterThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private BroadcasterThreadFactory(int id, String name) {
+            this.prefix = "broadcaster-" + id + "-" + name + "-";
+        }
+
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
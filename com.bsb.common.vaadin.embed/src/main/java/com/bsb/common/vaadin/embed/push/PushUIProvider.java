@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.push;
+
+import com.vaadin.server.DefaultUIProvider;
+import com.vaadin.server.UICreateEvent;
+import com.vaadin.shared.ui.ui.Transport;
+
+/**
+ * A {@link DefaultUIProvider} that applies the push transport of the embedded server
+ * rather than the one of the {@link com.vaadin.annotations.Push} annotation.
+ *
+ * @author Stephane Nicoll
+ * @see PushUtils#getTransport(com.vaadin.server.VaadinService)
+ */
+@SuppressWarnings("serial")
+public class PushUIProvider extends DefaultUIProvider {
+
+    @Override
+    public Transport getPushTransport(UICreateEvent event) {
+        final Transport transport = PushUtils.getTransport(event.getService());
+        return (transport != null ? transport : super.getPushTransport(event));
+    }
+}
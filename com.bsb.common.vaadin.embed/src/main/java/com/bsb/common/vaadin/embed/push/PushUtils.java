@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.push;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedVaadinTomcat;
+import com.vaadin.server.VaadinService;
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.shared.ui.ui.Transport;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Push related utilities.
+ *
+ * @author Stephane Nicoll
+ */
+public final class PushUtils {
+
+    // The framework that vaadin-push relies on
+    private static final String ATMOSPHERE_CLASS = "org.atmosphere.cpr.AtmosphereFramework";
+
+    private PushUtils() {
+    }
+
+    /**
+     * Specifies if server push is available, that is if the <tt>vaadin-push</tt> module
+     * is present on the classpath.
+     *
+     * @return <tt>true</tt> if push is available
+     */
+    public static boolean isPushAvailable() {
+        try {
+            Class.forName(ATMOSPHERE_CLASS, false, PushUtils.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the {@link PushMode} matching the specified name, ignoring case.
+     *
+     * @param name the name of a push mode, i.e. <tt>disabled</tt>, <tt>manual</tt> or <tt>automatic</tt>
+     * @return the matching push mode
+     * @throws IllegalArgumentException if no such push mode exists
+     */
+    public static PushMode getPushMode(String name) {
+        try {
+            return PushMode.valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown push mode [" + name + "], supported values are "
+                    + Arrays.asList(PushMode.values()));
+        }
+    }
+
+    /**
+     * Returns the {@link Transport} matching the specified name. The name can either be
+     * the identifier of the transport, such as <tt>websocket</tt>, or the name of the
+     * constant.
+     *
+     * @param name the name of a transport
+     * @return the matching transport
+     * @throws IllegalArgumentException if no such transport exists
+     */
+    public static Transport getTransport(String name) {
+        final String value = name.trim();
+        for (Transport transport : Transport.values()) {
+            if (transport.getIdentifier().equalsIgnoreCase(value)
+                    || transport.name().equals(value.toUpperCase(Locale.ENGLISH))) {
+                return transport;
+            }
+        }
+        throw new IllegalArgumentException("Unknown push transport [" + name + "], supported values are "
+                + Arrays.asList(Transport.values()));
+    }
+
+    /**
+     * Returns the {@link Transport} that the specified service is configured with or
+     * <tt>null</tt> if the default transport should be used.
+     *
+     * @param service the vaadin service
+     * @return the transport to use or <tt>null</tt>
+     * @see AbstractEmbedVaadinTomcat#PUSH_TRANSPORT_PARAM
+     */
+    public static Transport getTransport(VaadinService service) {
+        final String transport = service.getDeploymentConfiguration().getApplicationOrSystemProperty(
+                AbstractEmbedVaadinTomcat.PUSH_TRANSPORT_PARAM, null);
+        return (transport != null ? getTransport(transport) : null);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Server push support for the embedded applications.
+ */
+package com.bsb.common.vaadin.embed.push;
\ No newline at end of file
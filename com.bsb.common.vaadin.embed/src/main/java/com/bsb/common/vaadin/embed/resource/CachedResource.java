@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.resource;
+
+import java.io.Serializable;
+
+/**
+ * The content of a {@link StaticResource} held by a {@link StaticResourceCache}, with
+ * its gzip variant if the resource is worth compressing.
+ *
+ * @author Stephane Nicoll
+ */
+final class CachedResource implements Serializable {
+
+    private static final long serialVersionUID = 3076462738810553046L;
+
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    private final StaticResource resource;
+    private final byte[] content;
+    private final byte[] gzipContent;
+    private final String etag;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param resource the cached resource
+     * @param content the content of the resource
+     * @param gzipContent the gzip variant of the content or <tt>null</tt> if there is none
+     * @param hash a hash of the content
+     */
+    CachedResource(StaticResource resource, byte[] content, byte[] gzipContent, String hash) {
+        this.resource = resource;
+        this.content = content;
+        this.gzipContent = gzipContent;
+        this.etag = hash;
+    }
+
+    StaticResource getResource() {
+        return resource;
+    }
+
+    /**
+     * Returns the content to send.
+     *
+     * @param gzip <tt>true</tt> to return the gzip variant
+     * @return the content
+     */
+    byte[] getContent(boolean gzip) {
+        return gzip ? gzipContent : content;
+    }
+
+    /**
+     * Specifies if a gzip variant is available.
+     */
+    boolean hasGzipContent() {
+        return gzipContent != null;
+    }
+
+    /**
+     * Returns the strong entity tag of the specified variant, quoted.
+     *
+     * @param gzip <tt>true</tt> to return the tag of the gzip variant
+     * @return the entity tag
+     */
+    String getETag(boolean gzip) {
+        return "\"" + etag + (gzip ? GZIP_ETAG_SUFFIX : "") + "\"";
+    }
+
+    /**
+     * Returns the number of bytes held by this instance.
+     */
+    long getSize() {
+        return content.length + (gzipContent != null ? gzipContent.length : 0);
+    }
+}
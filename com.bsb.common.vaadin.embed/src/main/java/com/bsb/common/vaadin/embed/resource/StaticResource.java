@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.resource;
+
+import java.io.File;
+import java.io.Serializable;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * A static resource held by a {@link StaticResourceIndex}.
+ *
+ * @author Stephane Nicoll
+ */
+final class StaticResource implements Serializable {
+
+    private static final long serialVersionUID = -2893457715438916735L;
+
+    private final String path;
+    private final URL url;
+    private final long length;
+    private final long lastModified;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param path the path of the resource, starting with <tt>/VAADIN/</tt>
+     * @param url the url to use to read the content of the resource
+     * @param length the length of the resource, in bytes, or <tt>-1</tt> if unknown
+     * @param lastModified the modification timestamp of the resource or <tt>0</tt> if unknown
+     */
+    StaticResource(String path, URL url, long length, long lastModified) {
+        this.path = path;
+        this.url = url;
+        this.length = length;
+        // Remove milliseconds as the If-Modified-Since header does not hold them
+        this.lastModified = lastModified - lastModified % 1000;
+    }
+
+    /**
+     * Returns the path of the resource, starting with <tt>/VAADIN/</tt>.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the url to use to read the content of the resource.
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the file holding the content of the resource or <tt>null</tt> if the
+     * resource is not a file of the file system, such as an entry of a jar file.
+     */
+    public File getFile() {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the length of the resource, in bytes, or <tt>-1</tt> if it is unknown.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the modification timestamp of the resource, without the milliseconds,
+     * or <tt>0</tt> if it is unknown.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns this resource with the current length and modification timestamp of its
+     * file, as the file may have been edited since the resource was indexed.
+     *
+     * @return this instance if the resource is not a file or if the file has not changed,
+     * an up-to-date instance otherwise, or <tt>null</tt> if the file no longer exists
+     */
+    public StaticResource refresh() {
+        final File file = getFile();
+        if (file == null) {
+            return this;
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+        final StaticResource current = new StaticResource(path, url, file.length(), file.lastModified());
+        return (current.length == length && current.lastModified == lastModified ? this : current);
+    }
+
+    @Override
+    public String toString() {
+        return "StaticResource[" + path + " -> " + url + "]";
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.resource;
+
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded, in-memory cache of the content of {@link StaticResource static resources}.
+ * <p/>
+ * The cache holds at most {@link #getMaxSize()} bytes, including the gzip variants,
+ * and evicts the least recently used resources first. A resource that is larger than
+ * a quarter of the cache is never cached so that it does not evict everything else.
+ * <p/>
+ * The gzip variant of a resource is computed once, when the resource is loaded, and
+ * kept only if it is actually smaller.
+ * <p/>
+ * An entry is reloaded if the length or the modification timestamp of the requested
+ * resource differs from the ones of the cached resource, so that a file of the root
+ * directory that is edited while the server runs is not served stale.
+ *
+ * @author Stephane Nicoll
+ */
+public class StaticResourceCache implements Serializable {
+
+    private static final long serialVersionUID = -3985618239012398725L;
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticResourceCache.class);
+
+    private static final int MIN_GZIP_SIZE = 256;
+
+    private final long maxSize;
+    private final Map<String, CachedResource> entries = new LinkedHashMap<String, CachedResource>(64, 0.75f, true);
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxSize the maximum number of bytes to hold
+     */
+    StaticResourceCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the maximum number of bytes that this cache holds.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of bytes currently held by this cache.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of resources currently held by this cache.
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of requests that were served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of requests for which the resource had to be loaded.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of resources that were evicted to make room for others.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the {@link CachedResource} for the specified resource, loading it if
+     * necessary or if the cached content is outdated. Returns <tt>null</tt> if the
+     * resource is too large to be cached or could not be loaded.
+     *
+     * @param resource the resource, as {@link StaticResource#refresh() refreshed}
+     * @param compressible whether a gzip variant should be computed
+     * @return the cached resource or <tt>null</tt>
+     */
+    CachedResource get(StaticResource resource, boolean compressible) {
+        synchronized (this) {
+            final CachedResource cached = entries.get(resource.getPath());
+            if (cached != null) {
+                if (isUpToDate(cached, resource)) {
+                    hitCount.incrementAndGet();
+                    return cached;
+                }
+                // The file has been edited since it was cached
+                entries.remove(resource.getPath());
+                size -= cached.getSize();
+            }
+        }
+        missCount.incrementAndGet();
+        if (!isCacheable(resource)) {
+            return null;
+        }
+        final CachedResource cached;
+        try {
+            cached = load(resource, compressible);
+        } catch (IOException e) {
+            logger.warn("Failed to load " + resource, e);
+            return null;
+        }
+        if (cached.getSize() > maxSize / 4) {
+            return null;
+        }
+        put(cached);
+        return cached;
+    }
+
+    @Override
+    public String toString() {
+        return "StaticResourceCache[size=" + getSize() + "/" + maxSize + ", entries=" + getEntryCount()
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+                + getEvictionCount() + "]";
+    }
+
+    private static boolean isUpToDate(CachedResource cached, StaticResource resource) {
+        return cached.getResource().getLength() == resource.getLength()
+                && cached.getResource().getLastModified() == resource.getLastModified();
+    }
+
+    private boolean isCacheable(StaticResource resource) {
+        return resource.getLength() >= 0 && resource.getLength() <= maxSize / 4;
+    }
+
+    private synchronized void put(CachedResource cached) {
+        final CachedResource previous = entries.put(cached.getResource().getPath(), cached);
+        if (previous != null) {
+            size -= previous.getSize();
+        }
+        size += cached.getSize();
+        final Iterator<CachedResource> it = entries.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            final CachedResource eldest = it.next();
+            if (eldest == cached) {
+                continue;
+            }
+            it.remove();
+            size -= eldest.getSize();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private static CachedResource load(StaticResource resource, boolean compressible) throws IOException {
+        final InputStream in = resource.getUrl().openStream();
+        final byte[] content;
+        try {
+            content = ByteStreams.toByteArray(in);
+        } finally {
+            in.close();
+        }
+        byte[] gzipContent = null;
+        if (compressible && content.length >= MIN_GZIP_SIZE) {
+            gzipContent = gzip(content);
+            if (gzipContent.length >= content.length) {
+                gzipContent = null;
+            }
+        }
+        return new CachedResource(resource, content, gzipContent, hash(content));
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4);
+        final GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(content);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            return String.format("%032x", new BigInteger(1, digest.digest(content)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
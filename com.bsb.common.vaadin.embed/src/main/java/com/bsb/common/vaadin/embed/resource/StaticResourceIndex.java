@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * An in-memory index of the resources available in the <tt>VAADIN</tt> directory
+ * of the webapp root directory and of the classpath, such as the themes of
+ * <tt>vaadin-themes</tt> and the widgetset of <tt>vaadin-client-compiled</tt>.
+ * <p/>
+ * As for the vaadin servlet, a resource of the webapp root directory takes
+ * precedence over a resource with the same path on the classpath.
+ *
+ * @author Stephane Nicoll
+ */
+final class StaticResourceIndex implements Serializable {
+
+    static final String VAADIN_DIRECTORY = "VAADIN";
+
+    private static final long serialVersionUID = -5542064788302946434L;
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticResourceIndex.class);
+
+    private final Map<String, StaticResource> resources;
+
+    private StaticResourceIndex(Map<String, StaticResource> resources) {
+        this.resources = Collections.unmodifiableMap(resources);
+    }
+
+    /**
+     * Builds an index of the resources of the <tt>VAADIN</tt> directory of the specified
+     * root directory and of the specified class loader.
+     *
+     * @param rootDirectory the webapp root directory
+     * @param classLoader the class loader to use to find resources on the classpath
+     * @return the index
+     */
+    static StaticResourceIndex build(File rootDirectory, ClassLoader classLoader) {
+        final Map<String, StaticResource> resources = new HashMap<String, StaticResource>();
+        if (rootDirectory != null) {
+            indexDirectory(resources, new File(rootDirectory, VAADIN_DIRECTORY), "/" + VAADIN_DIRECTORY);
+        }
+        try {
+            final Enumeration<URL> urls = classLoader.getResources(VAADIN_DIRECTORY);
+            while (urls.hasMoreElements()) {
+                indexUrl(resources, urls.nextElement());
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to index static resources from the classpath", e);
+        }
+        return new StaticResourceIndex(resources);
+    }
+
+    /**
+     * Returns the {@link StaticResource} for the specified path or <tt>null</tt> if
+     * no such resource exists.
+     *
+     * @param path the path of the resource, starting with <tt>/VAADIN/</tt>
+     * @return the resource or <tt>null</tt>
+     */
+    StaticResource get(String path) {
+        return resources.get(path);
+    }
+
+    /**
+     * Returns the number of indexed resources.
+     */
+    int size() {
+        return resources.size();
+    }
+
+    private static void indexUrl(Map<String, StaticResource> resources, URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                indexDirectory(resources, new File(url.toURI()), "/" + VAADIN_DIRECTORY);
+            } catch (URISyntaxException e) {
+                logger.warn("Could not index static resources of [" + url + "]", e);
+            }
+        } else if ("jar".equals(url.getProtocol())) {
+            final URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection) {
+                final JarURLConnection jarConnection = (JarURLConnection) connection;
+                indexJar(resources, jarConnection.getJarFileURL(), jarConnection.getJarFile());
+            }
+        } else {
+            logger.debug("Not indexing static resources of [" + url + "], unsupported protocol.");
+        }
+    }
+
+    private static void indexDirectory(Map<String, StaticResource> resources, File directory, String path) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            final String filePath = path + "/" + file.getName();
+            if (file.isDirectory()) {
+                indexDirectory(resources, file, filePath);
+            } else if (!resources.containsKey(filePath)) {
+                try {
+                    resources.put(filePath, new StaticResource(filePath, file.toURI().toURL(),
+                            file.length(), file.lastModified()));
+                } catch (IOException e) {
+                    logger.warn("Could not index static resource [" + file + "]", e);
+                }
+            }
+        }
+    }
+
+    private static void indexJar(Map<String, StaticResource> resources, URL jarFileUrl, JarFile jarFile)
+            throws IOException {
+        final String prefix = VAADIN_DIRECTORY + "/";
+        final Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            final JarEntry entry = entries.nextElement();
+            if (entry.isDirectory() || !entry.getName().startsWith(prefix)) {
+                continue;
+            }
+            final String filePath = "/" + entry.getName();
+            if (!resources.containsKey(filePath)) {
+                final URL url = new URL("jar:" + jarFileUrl.toExternalForm() + "!/" + entry.getName());
+                resources.put(filePath, new StaticResource(filePath, url, entry.getSize(), entry.getTime()));
+            }
+        }
+    }
+}
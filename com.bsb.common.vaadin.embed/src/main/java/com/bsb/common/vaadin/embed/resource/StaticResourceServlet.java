@@ -0,0 +1,384 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.resource;
+
+import com.bsb.common.vaadin.embed.util.HttpUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves the static resources of the <tt>VAADIN</tt> directory, such as themes and
+ * widgetsets, without going through the vaadin servlet.
+ * <p/>
+ * Resources are looked up in an in-memory {@link StaticResourceIndex index} that is
+ * built when the servlet initializes. A request for a resource that is not indexed,
+ * such as a theme that is compiled on the fly, is forwarded to the vaadin servlet.
+ * The length and modification timestamp of a resource that is a file are read again
+ * for each request so that a file edited while the server runs is served as it is now.
+ * <p/>
+ * Response headers are consistent with the ones of the vaadin servlet. If a
+ * {@link StaticResourceCache cache} is enabled, the content of the resources is kept
+ * in memory and served with a strong <tt>ETag</tt>. A gzip variant of text resources
+ * is also sent to clients that accept it.
+ * <p/>
+ * Files of the webapp root directory that are larger than a configurable threshold are
+ * not cached. They are written with <tt>sendfile</tt> if the connector supports it, and
+ * with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * otherwise, so that their content is not copied through heap buffers.
+ *
+ * @author Stephane Nicoll
+ */
+public class StaticResourceServlet extends HttpServlet {
+
+    /**
+     * The path mapping of this servlet.
+     */
+    public static final String MAPPING = "/" + StaticResourceIndex.VAADIN_DIRECTORY + "/*";
+
+    /**
+     * The number of seconds that browsers may cache a resource, same as vaadin's default.
+     */
+    public static final int CACHE_TIME = 3600;
+
+    private static final long serialVersionUID = 7618206325813479453L;
+
+    // Request attributes used by the connector to send a file with sendfile
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_FILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticResourceServlet.class);
+
+    // The embedded context does not define any mime mapping
+    private static final Map<String, String> DEFAULT_MIME_TYPES = new HashMap<String, String>();
+
+    static {
+        DEFAULT_MIME_TYPES.put("css", "text/css");
+        DEFAULT_MIME_TYPES.put("eot", "application/vnd.ms-fontobject");
+        DEFAULT_MIME_TYPES.put("gif", "image/gif");
+        DEFAULT_MIME_TYPES.put("htm", "text/html");
+        DEFAULT_MIME_TYPES.put("html", "text/html");
+        DEFAULT_MIME_TYPES.put("ico", "image/x-icon");
+        DEFAULT_MIME_TYPES.put("jpeg", "image/jpeg");
+        DEFAULT_MIME_TYPES.put("jpg", "image/jpeg");
+        DEFAULT_MIME_TYPES.put("js", "application/javascript");
+        DEFAULT_MIME_TYPES.put("json", "application/json");
+        DEFAULT_MIME_TYPES.put("otf", "font/opentype");
+        DEFAULT_MIME_TYPES.put("png", "image/png");
+        DEFAULT_MIME_TYPES.put("svg", "image/svg+xml");
+        DEFAULT_MIME_TYPES.put("ttf", "application/x-font-ttf");
+        DEFAULT_MIME_TYPES.put("txt", "text/plain");
+        DEFAULT_MIME_TYPES.put("woff", "application/font-woff");
+    }
+
+    private final File rootDirectory;
+    private final String fallbackServletName;
+    private final StaticResourceCache cache;
+    private final long sendfileThreshold;
+    private transient StaticResourceIndex index;
+
+    /**
+     * Creates a new instance that does not cache the content of resources.
+     *
+     * @param rootDirectory the webapp root directory
+     * @param fallbackServletName the name of the servlet to forward a request to if
+     * the resource is not indexed
+     */
+    public StaticResourceServlet(File rootDirectory, String fallbackServletName) {
+        this(rootDirectory, fallbackServletName, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rootDirectory the webapp root directory
+     * @param fallbackServletName the name of the servlet to forward a request to if
+     * the resource is not indexed
+     * @param cacheSize the maximum number of bytes to cache or <tt>0</tt> to disable
+     * the cache
+     */
+    public StaticResourceServlet(File rootDirectory, String fallbackServletName, long cacheSize) {
+        this(rootDirectory, fallbackServletName, cacheSize, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rootDirectory the webapp root directory
+     * @param fallbackServletName the name of the servlet to forward a request to if
+     * the resource is not indexed
+     * @param cacheSize the maximum number of bytes to cache or <tt>0</tt> to disable
+     * the cache
+     * @param sendfileThreshold the minimum size of a file to write it without copying
+     * its content through the heap or <tt>0</tt> to always copy it
+     */
+    public StaticResourceServlet(File rootDirectory, String fallbackServletName, long cacheSize,
+                                 long sendfileThreshold) {
+        this.rootDirectory = rootDirectory;
+        this.fallbackServletName = fallbackServletName;
+        this.cache = (cacheSize > 0 ? new StaticResourceCache(cacheSize) : null);
+        this.sendfileThreshold = sendfileThreshold;
+    }
+
+    /**
+     * Returns the {@link StaticResourceCache} or <tt>null</tt> if the content of
+     * the resources is not cached.
+     */
+    public StaticResourceCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void init() throws ServletException {
+        final long start = System.currentTimeMillis();
+        index = StaticResourceIndex.build(rootDirectory, Thread.currentThread().getContextClassLoader());
+        logger.debug("Indexed " + index.size() + " static resource(s) in "
+                + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        final String path = request.getServletPath() + (request.getPathInfo() != null ? request.getPathInfo() : "");
+        // The files of the root directory may have been edited since they were indexed
+        StaticResource resource = index.get(path);
+        if (resource != null) {
+            resource = resource.refresh();
+        }
+        if (resource == null) {
+            forward(request, response);
+            return;
+        }
+        final String mimeType = getMimeType(path);
+        final File file = getLargeFile(resource);
+        final CachedResource cached = (cache != null && file == null
+                ? cache.get(resource, isCompressible(mimeType)) : null);
+        if (cached != null) {
+            serveCachedResource(cached, mimeType, request, response);
+            return;
+        }
+        if (resource.getLastModified() > 0) {
+            if (request.getDateHeader("If-Modified-Since") >= resource.getLastModified()) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            response.setDateHeader("Last-Modified", resource.getLastModified());
+            response.setHeader("Cache-Control", getCacheControl(path));
+        }
+        if (mimeType != null) {
+            response.setContentType(mimeType);
+        }
+        if (file != null) {
+            writeFile(file, request, response);
+        } else {
+            writeResource(resource, response);
+        }
+    }
+
+    @Override
+    protected long getLastModified(HttpServletRequest req) {
+        // If-Modified-Since is handled explicitly
+        return -1;
+    }
+
+    /**
+     * Writes the content of the specified {@link StaticResource} to the response.
+     *
+     * @param resource the resource to write
+     * @param response the response
+     * @throws IOException if the resource could not be written
+     */
+    protected void writeResource(StaticResource resource, HttpServletResponse response) throws IOException {
+        if (resource.getLength() >= 0 && resource.getLength() <= Integer.MAX_VALUE) {
+            response.setContentLength((int) resource.getLength());
+        }
+        final InputStream in = resource.getUrl().openStream();
+        try {
+            final OutputStream out = response.getOutputStream();
+            final byte[] buffer = new byte[8192];
+            // Never write more than the announced length if the file grows in the meantime
+            long remaining = (resource.getLength() >= 0 ? resource.getLength() : Long.MAX_VALUE);
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the content of the specified file to the response without copying it
+     * through heap buffers. Uses <tt>sendfile</tt> if the connector supports it and
+     * if the response is not wrapped, {@link FileChannel#transferTo(long, long,
+     * java.nio.channels.WritableByteChannel) transferTo} otherwise.
+     *
+     * @param file the file to write
+     * @param request the request
+     * @param response the response
+     * @throws IOException if the file could not be written
+     */
+    protected void writeFile(File file, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        final long length = file.length();
+        if (length <= Integer.MAX_VALUE) {
+            response.setContentLength((int) length);
+        }
+        // A wrapped response, such as the one of a HEAD request, does not write to the connector
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))
+                && !(response instanceof ServletResponseWrapper) && length <= Integer.MAX_VALUE) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_FILE_START_ATTR, 0L);
+            request.setAttribute(SENDFILE_FILE_END_ATTR, length);
+            return;
+        }
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            final WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < length) {
+                final long count = channel.transferTo(position, length - position, out);
+                if (count <= 0) {
+                    // The file has been truncated in the meantime
+                    break;
+                }
+                position += count;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private File getLargeFile(StaticResource resource) {
+        if (sendfileThreshold <= 0 || resource.getLength() < sendfileThreshold) {
+            return null;
+        }
+        return resource.getFile();
+    }
+
+    private void serveCachedResource(CachedResource cached, String mimeType, HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        final StaticResource resource = cached.getResource();
+        final boolean gzip = cached.hasGzipContent() && HttpUtils.acceptsGzip(request);
+        final String etag = cached.getETag(gzip);
+        response.setHeader("ETag", etag);
+        if (cached.hasGzipContent()) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        if (resource.getLastModified() > 0) {
+            response.setDateHeader("Last-Modified", resource.getLastModified());
+        }
+        response.setHeader("Cache-Control", getCacheControl(resource.getPath()));
+
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        final boolean notModified = (ifNoneMatch != null ? matches(ifNoneMatch, etag)
+                : resource.getLastModified() > 0
+                && request.getDateHeader("If-Modified-Since") >= resource.getLastModified());
+        if (notModified) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        if (mimeType != null) {
+            response.setContentType(mimeType);
+        }
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        final byte[] content = cached.getContent(gzip);
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+    }
+
+    private void forward(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        final RequestDispatcher dispatcher = getServletContext().getNamedDispatcher(fallbackServletName);
+        if (dispatcher == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        } else {
+            dispatcher.forward(request, response);
+        }
+    }
+
+    /**
+     * Returns the mime type of the specified path, as defined by the servlet context
+     * or by a default mapping for the common types of static resources.
+     *
+     * @param path the path of the resource
+     * @return the mime type or <tt>null</tt> if it is unknown
+     */
+    protected String getMimeType(String path) {
+        final String mimeType = getServletContext().getMimeType(path);
+        if (mimeType != null) {
+            return mimeType;
+        }
+        final int index = path.lastIndexOf('.');
+        if (index == -1) {
+            return null;
+        }
+        return DEFAULT_MIME_TYPES.get(path.substring(index + 1).toLowerCase(Locale.ENGLISH));
+    }
+
+    private static boolean isCompressible(String mimeType) {
+        return mimeType != null && (mimeType.startsWith("text/") || mimeType.contains("javascript")
+                || mimeType.contains("json") || mimeType.contains("xml"));
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            // If-None-Match uses the weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getCacheControl(String path) {
+        if (path.contains("nocache")) {
+            return "public, max-age=0, must-revalidate";
+        }
+        return "max-age=" + CACHE_TIME;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Serving of the static resources of the <tt>VAADIN</tt> directory.
+ */
+package com.bsb.common.vaadin.embed.resource;
\ No newline at end of file
@@ -16,6 +16,7 @@
 package com.bsb.common.vaadin.embed.support;
 
 import com.bsb.common.vaadin.embed.application.EmbedVaadinApplication;
+import com.bsb.common.vaadin.embed.component.ComponentFactory;
 import com.bsb.common.vaadin.embed.component.EmbedVaadinComponent;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.UI;
@@ -50,6 +51,21 @@ public final class EmbedVaadin {
         return new EmbedVaadinComponent(component);
     }
 
+    /**
+     * Creates a new instance to display the components created by the specified
+     * {@link ComponentFactory}.
+     * <p/>
+     * The component is not created before the first UI is requested and a new component
+     * is created for each UI, which makes it possible to use several sessions or tabs.
+     * Components are wrapped the same way as {@link #forComponent(Component)}.
+     *
+     * @param componentFactory the factory to use to create the component of each UI
+     * @return an instance handling the components created by that factory
+     */
+    public static EmbedVaadinComponent forComponent(ComponentFactory componentFactory) {
+        return new EmbedVaadinComponent(componentFactory);
+    }
+
     /**
      * Creates a new instance to manage a vaadin {@link UI} defined by the
      * specified class.
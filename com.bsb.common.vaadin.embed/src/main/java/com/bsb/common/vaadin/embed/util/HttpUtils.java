@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.util;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * HTTP related utilities.
+ *
+ * @author Stephane Nicoll
+ */
+public final class HttpUtils {
+
+    private HttpUtils() {
+    }
+
+    /**
+     * Specifies if the client that sent the specified request accepts a response
+     * that is compressed with gzip.
+     *
+     * @param request the request
+     * @return <tt>true</tt> if the <tt>Accept-Encoding</tt> header allows gzip
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        final String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String token : acceptEncoding.split(",")) {
+            final String[] parts = token.split(";");
+            final String coding = parts[0].trim();
+            if (coding.equalsIgnoreCase("gzip") || coding.equals("*")) {
+                return parts.length == 1 || !parts[1].trim().matches("q\\s*=\\s*0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.bsb.common.vaadin.embed.util;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -67,5 +69,52 @@ public class PropertiesHelper {
         return Integer.valueOf(value);
     }
 
+    /**
+     * Returns the boolean value for the specified property or <tt>null</tt> if
+     * no such key is found.
+     *
+     * @param key the key of the property
+     * @return a boolean value or <tt>null</tt>
+     * @see Properties#getProperty(String)
+     */
+    public Boolean getBooleanProperty(String key) {
+        final String value = properties.getProperty(key);
+        return (value != null ? Boolean.valueOf(value) : null);
+    }
+
+    /**
+     * Returns the int value for the specified property or <tt>null</tt> if
+     * no such key is found.
+     *
+     * @param key the key of the property
+     * @return an int value or <tt>null</tt>
+     * @see Properties#getProperty(String)
+     */
+    public Integer getIntProperty(String key) {
+        final String value = properties.getProperty(key);
+        return (value != null ? Integer.valueOf(value) : null);
+    }
+
+    /**
+     * Returns the comma separated values of the specified property. If no such key is
+     * found, returns the values of <tt>defaultValue</tt> instead. Values are trimmed
+     * and empty values are ignored.
+     *
+     * @param key the key of the property
+     * @param defaultValue the default comma separated value if no such property is found
+     * @return the list of values
+     * @see Properties#getProperty(String, String)
+     */
+    public List<String> getListProperty(String key, String defaultValue) {
+        final String value = properties.getProperty(key, defaultValue);
+        final List<String> result = new ArrayList<String>();
+        for (String item : value.split(",")) {
+            final String trimmed = item.trim();
+            if (trimmed.length() > 0) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
 
 }
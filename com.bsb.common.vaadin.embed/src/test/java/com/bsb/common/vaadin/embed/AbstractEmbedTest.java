@@ -19,18 +19,28 @@ import com.bsb.common.vaadin.embed.component.EmbedComponentConfig;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * @author Stephane Nicoll
  */
 public abstract class AbstractEmbedTest {
 
+    private static final Pattern SECURITY_KEY = Pattern.compile("Vaadin-Security-Key\\\\?\":\\\\?\"([^\"\\\\]+)");
+
+    private static final String POLL_RPC = "[[\"0\",\"com.vaadin.shared.ui.ui.UIServerRpc\",\"poll\",[]]]";
+
     protected void assertServerConfig(EmbedVaadinConfig config, int port, String contextPath, boolean waiting) {
         assertConfigIsNotNull(config);
         assertEquals("Wrong http port", port, config.getPort());
@@ -60,14 +70,7 @@ public abstract class AbstractEmbedTest {
 
 
     protected void checkVaadinIsDeployed(int port, String context) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("http://localhost:").append(port);
-        if (context.trim().isEmpty() || context.equals("/")) {
-            sb.append("/");
-        } else {
-            sb.append(context);
-        }
-        final String url = sb.toString();
+        final String url = buildUrl(port, context);
 
         final HttpClient client = new HttpClient();
         client.getParams().setConnectionManagerTimeout(2000);
@@ -80,6 +83,62 @@ public abstract class AbstractEmbedTest {
         }
     }
 
+    /**
+     * Requests the initialization of a new UI, as the bootstrap javascript of Vaadin would
+     * do. The specified <tt>client</tt> holds the session that the UI is attached to.
+     *
+     * @param client the client to use
+     * @param port the http port
+     * @param context the context of the application
+     * @return the initial UIDL of the created UI
+     */
+    protected String initVaadinUI(HttpClient client, int port, String context) {
+        final String url = buildUrl(port, context);
+        final PostMethod method = new PostMethod(url);
+        method.setQueryString("v-browserDetails=1");
+        try {
+            assertEquals("Wrong return code initializing UI at [" + url + "]", HttpStatus.SC_OK,
+                    client.executeMethod(method));
+            return method.getResponseBodyAsString();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to invoke url [" + url + "]", e);
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * Creates a UIDL request that polls the first UI of the session, as the client side
+     * of Vaadin would do.
+     *
+     * @param url the deploy url of the application
+     * @param initialUidl the UIDL returned when the UI was {@link #initVaadinUI initialized}
+     * @return the request to execute
+     */
+    protected PostMethod createPollRequest(String url, String initialUidl) {
+        final Matcher matcher = SECURITY_KEY.matcher(initialUidl);
+        assertTrue("No security key in " + initialUidl, matcher.find());
+        final PostMethod method = new PostMethod(url + "UIDL/?v-uiId=0");
+        try {
+            method.setRequestEntity(new StringRequestEntity(matcher.group(1) + '\u001d' + POLL_RPC,
+                    "text/plain", "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported", e);
+        }
+        return method;
+    }
+
+    protected String buildUrl(int port, String context) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("http://localhost:").append(port);
+        if (context.trim().isEmpty() || context.equals("/")) {
+            sb.append("/");
+        } else {
+            sb.append(context);
+        }
+        return sb.toString();
+    }
+
     protected void assertConfigIsNotNull(EmbedVaadinConfig config) {
         assertNotNull("config could not be null.", config);
     }
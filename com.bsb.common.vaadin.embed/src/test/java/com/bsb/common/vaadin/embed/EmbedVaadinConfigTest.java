@@ -15,11 +15,16 @@
  */
 package com.bsb.common.vaadin.embed;
 
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.shared.ui.ui.Transport;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author Stephane Nicoll
@@ -35,6 +40,54 @@ public class EmbedVaadinConfigTest extends AbstractEmbedTest {
         assertVaadinConfig(config, null, EmbedVaadinConfig.DEFAULT_PRODUCTION_MODE);
         assertBrowserConfig(config, EmbedVaadinConfig.DEFAULT_OPEN_BROWSER, null);
         assertOpenBrowserUrl(config, "http://localhost:[auto]/");
+        assertNull("No startup report file by default", config.getStartupReportFile());
+        assertEquals("Wrong minimal container flag", EmbedVaadinConfig.DEFAULT_MINIMAL_CONTAINER,
+                config.isMinimalContainer());
+        assertNull("No connector protocol by default", config.getConnectorProtocol());
+        assertNull("No max threads by default", config.getMaxThreads());
+        assertNull("No tcp no delay flag by default", config.getTcpNoDelay());
+        assertEquals("Wrong virtual threads flag", EmbedVaadinConfig.DEFAULT_VIRTUAL_THREADS,
+                config.isVirtualThreads());
+        assertEquals("Wrong static resource servlet flag", EmbedVaadinConfig.DEFAULT_STATIC_RESOURCE_SERVLET,
+                config.isStaticResourceServlet());
+        assertEquals("Wrong static resource cache size", EmbedVaadinConfig.DEFAULT_STATIC_RESOURCE_CACHE_SIZE,
+                config.getStaticResourceCacheSize());
+        assertEquals("Wrong sendfile threshold", EmbedVaadinConfig.DEFAULT_SENDFILE_THRESHOLD,
+                config.getSendfileThreshold());
+        assertEquals("Wrong compression flag", EmbedVaadinConfig.DEFAULT_COMPRESSION, config.isCompression());
+        assertEquals("Wrong push mode", EmbedVaadinConfig.DEFAULT_PUSH_MODE, config.getPushMode());
+        assertNull("No push transport by default", config.getPushTransport());
+        assertEquals("Wrong metrics flag", EmbedVaadinConfig.DEFAULT_METRICS, config.isMetrics());
+        assertEquals("Wrong metrics path", EmbedVaadinConfig.DEFAULT_METRICS_PATH, config.getMetricsPath());
+        assertEquals("Wrong server timing flag", EmbedVaadinConfig.DEFAULT_SERVER_TIMING, config.isServerTiming());
+        assertEquals("Wrong resource accounting flag", EmbedVaadinConfig.DEFAULT_RESOURCE_ACCOUNTING,
+                config.isResourceAccounting());
+        assertEquals("Wrong UIDL summary interval", EmbedVaadinConfig.DEFAULT_UIDL_SUMMARY_INTERVAL,
+                config.getUidlSummaryInterval());
+        assertEquals("Wrong component profile interval", EmbedVaadinConfig.DEFAULT_COMPONENT_PROFILE_INTERVAL,
+                config.getComponentProfileInterval());
+        assertEquals("Wrong session footprint interval", EmbedVaadinConfig.DEFAULT_SESSION_FOOTPRINT_INTERVAL,
+                config.getSessionFootprintInterval());
+        assertEquals("Wrong session passivation flag", EmbedVaadinConfig.DEFAULT_SESSION_PASSIVATION,
+                config.isSessionPassivation());
+        assertEquals("Wrong session passivation idle time", EmbedVaadinConfig.DEFAULT_SESSION_PASSIVATION_IDLE_TIME,
+                config.getSessionPassivationIdleTime());
+        assertNull("No work directory expected", config.getWorkDirectory());
+        assertEquals("Wrong session persistent flag", EmbedVaadinConfig.DEFAULT_SESSION_PERSISTENT,
+                config.isSessionPersistent());
+        assertNull("No session timeout by default", config.getSessionTimeout());
+        assertNull("No max active sessions by default", config.getMaxActiveSessions());
+        assertEquals("Wrong session eviction threshold", EmbedVaadinConfig.DEFAULT_SESSION_EVICTION_THRESHOLD,
+                config.getSessionEvictionThreshold());
+        assertNull("No heartbeat interval by default", config.getHeartbeatInterval());
+        assertEquals("Wrong close idle sessions flag", EmbedVaadinConfig.DEFAULT_CLOSE_IDLE_SESSIONS,
+                config.isCloseIdleSessions());
+        assertEquals("Wrong compression min size", EmbedVaadinConfig.DEFAULT_COMPRESSION_MIN_SIZE,
+                config.getCompressionMinSize());
+        assertEquals("Wrong compression mime types", Arrays.asList("text/html", "application/json"),
+                config.getCompressionMimeTypes());
+        assertEquals("Wrong compression level", EmbedVaadinConfig.DEFAULT_COMPRESSION_LEVEL,
+                config.getCompressionLevel());
     }
 
     @Test(expected = IllegalStateException.class)
@@ -51,6 +104,61 @@ public class EmbedVaadinConfigTest extends AbstractEmbedTest {
         assertVaadinConfig(config, "com.bsb.foo.MyWidgetSet", true);
         assertBrowserConfig(config, true, "/foo/bar");
         assertOpenBrowserUrl(config, "http://localhost:12345/foo/bar");
+        assertEquals("Wrong startup report file", new File("target/startup-report.json"),
+                config.getStartupReportFile());
+        assertEquals("Wrong minimal container flag", true, config.isMinimalContainer());
+        assertEquals("Wrong connector protocol", ConnectorProtocol.NIO, config.getConnectorProtocol());
+        assertEquals("Wrong max threads", Integer.valueOf(50), config.getMaxThreads());
+        assertEquals("Wrong min spare threads", Integer.valueOf(5), config.getMinSpareThreads());
+        assertEquals("Wrong accept count", Integer.valueOf(20), config.getAcceptCount());
+        assertEquals("Wrong max connections", Integer.valueOf(500), config.getMaxConnections());
+        assertEquals("Wrong keep alive timeout", Integer.valueOf(3000), config.getKeepAliveTimeout());
+        assertEquals("Wrong max keep alive requests", Integer.valueOf(25), config.getMaxKeepAliveRequests());
+        assertEquals("Wrong tcp no delay flag", Boolean.FALSE, config.getTcpNoDelay());
+        assertEquals("Wrong socket receive buffer size", Integer.valueOf(16384),
+                config.getSocketReceiveBufferSize());
+        assertEquals("Wrong socket send buffer size", Integer.valueOf(32768), config.getSocketSendBufferSize());
+        assertEquals("Wrong virtual threads flag", true, config.isVirtualThreads());
+        assertEquals("Wrong static resource servlet flag", true, config.isStaticResourceServlet());
+        assertEquals("Wrong static resource cache size", 1048576, config.getStaticResourceCacheSize());
+        assertEquals("Wrong sendfile threshold", 524288, config.getSendfileThreshold());
+        assertEquals("Wrong compression flag", true, config.isCompression());
+        assertEquals("Wrong push mode", PushMode.AUTOMATIC, config.getPushMode());
+        assertEquals("Wrong push transport", Transport.STREAMING, config.getPushTransport());
+        assertEquals("Wrong metrics flag", true, config.isMetrics());
+        assertEquals("Wrong metrics path", "/stats", config.getMetricsPath());
+        assertEquals("Wrong server timing flag", true, config.isServerTiming());
+        assertEquals("Wrong resource accounting flag", true, config.isResourceAccounting());
+        assertEquals("Wrong UIDL summary interval", 60, config.getUidlSummaryInterval());
+        assertEquals("Wrong component profile interval", 120, config.getComponentProfileInterval());
+        assertEquals("Wrong session footprint interval", 300, config.getSessionFootprintInterval());
+        assertEquals("Wrong session passivation flag", true, config.isSessionPassivation());
+        assertEquals("Wrong session passivation idle time", 60, config.getSessionPassivationIdleTime());
+        assertEquals("Wrong work directory", new File("target/work"), config.getWorkDirectory());
+        assertEquals("Wrong session persistent flag", true, config.isSessionPersistent());
+        assertEquals("Wrong session timeout", Integer.valueOf(600), config.getSessionTimeout());
+        assertEquals("Wrong max active sessions", Integer.valueOf(1000), config.getMaxActiveSessions());
+        assertEquals("Wrong session eviction threshold", 85, config.getSessionEvictionThreshold());
+        assertEquals("Wrong heartbeat interval", Integer.valueOf(60), config.getHeartbeatInterval());
+        assertEquals("Wrong close idle sessions flag", true, config.isCloseIdleSessions());
+        assertEquals("Wrong compression min size", 1024, config.getCompressionMinSize());
+        assertEquals("Wrong compression mime types", Arrays.asList("text/html", "application/json", "text/plain"),
+                config.getCompressionMimeTypes());
+        assertEquals("Wrong compression level", 9, config.getCompressionLevel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loadWithUnknownConnectorProtocol() {
+        final Properties properties = new Properties();
+        properties.put(EmbedVaadinConfig.KEY_CONNECTOR_PROTOCOL, "foo");
+        new EmbedVaadinConfig(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loadWithUnknownPushMode() {
+        final Properties properties = new Properties();
+        properties.put(EmbedVaadinConfig.KEY_PUSH_MODE, "foo");
+        new EmbedVaadinConfig(properties);
     }
 
     @Test(expected = IllegalStateException.class)
@@ -16,12 +16,24 @@
 package com.bsb.common.vaadin.embed;
 
 import com.bsb.common.vaadin.embed.component.EmbedComponentConfig;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardContext;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.apache.coyote.http11.Http11Protocol;
+import org.apache.tomcat.util.net.SocketProperties;
+import org.apache.tomcat.util.scan.StandardJarScanner;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 
 import static junit.framework.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Stephane Nicoll
@@ -60,6 +72,90 @@ public class EmbedVaadinServerTest extends AbstractEmbedTest {
         assertContextParameter(server, AbstractEmbedVaadinTomcat.PRODUCTION_MODE_PARAM, "true");
     }
 
+    @Test
+    public void standardContainerWithDefaultSettings() {
+        final TestableEmbedVaadinServer server = createConfiguredServer(EmbedComponentConfig.defaultConfig());
+        final StandardContext context = (StandardContext) server.getContext();
+        assertTrue("TLDs should be processed by default", context.getProcessTlds());
+        assertTrue("Classpath should be scanned by default",
+                ((StandardJarScanner) context.getJarScanner()).isScanClassPath());
+    }
+
+    @Test
+    public void minimalContainerEnabled() {
+        final Properties properties = new Properties();
+        properties.put(EmbedVaadinConfig.KEY_MINIMAL_CONTAINER, "true");
+        final TestableEmbedVaadinServer server = createConfiguredServer(new EmbedVaadinConfig(properties));
+        final StandardContext context = (StandardContext) server.getContext();
+        assertFalse("TLDs should not be processed", context.getProcessTlds());
+        final StandardJarScanner jarScanner = (StandardJarScanner) context.getJarScanner();
+        assertFalse("Classpath should not be scanned", jarScanner.isScanClassPath());
+        assertFalse("Directories should not be scanned", jarScanner.isScanAllDirectories());
+    }
+
+    @Test
+    public void defaultConnector() {
+        final TestableEmbedVaadinServer server = createConfiguredServer(EmbedComponentConfig.defaultConfig());
+        assertEquals("Wrong protocol handler", Http11Protocol.class,
+                server.getTomcat().getConnector().getProtocolHandler().getClass());
+    }
+
+    @Test
+    public void connectorWithCustomSettings() {
+        final Properties properties = new Properties();
+        properties.put(EmbedVaadinConfig.KEY_CONNECTOR_PROTOCOL, "nio");
+        properties.put(EmbedVaadinConfig.KEY_MAX_THREADS, "42");
+        properties.put(EmbedVaadinConfig.KEY_MIN_SPARE_THREADS, "4");
+        properties.put(EmbedVaadinConfig.KEY_ACCEPT_COUNT, "12");
+        properties.put(EmbedVaadinConfig.KEY_MAX_CONNECTIONS, "256");
+        properties.put(EmbedVaadinConfig.KEY_KEEP_ALIVE_TIMEOUT, "2000");
+        properties.put(EmbedVaadinConfig.KEY_MAX_KEEP_ALIVE_REQUESTS, "10");
+        properties.put(EmbedVaadinConfig.KEY_TCP_NO_DELAY, "false");
+        properties.put(EmbedVaadinConfig.KEY_SOCKET_RECEIVE_BUFFER_SIZE, "16384");
+        properties.put(EmbedVaadinConfig.KEY_SOCKET_SEND_BUFFER_SIZE, "32768");
+        final TestableEmbedVaadinServer server = createConfiguredServer(new EmbedVaadinConfig(properties));
+
+        final Connector connector = server.getTomcat().getConnector();
+        assertEquals("Wrong protocol handler", Http11NioProtocol.class, connector.getProtocolHandler().getClass());
+        final Http11NioProtocol protocol = (Http11NioProtocol) connector.getProtocolHandler();
+        assertEquals("Wrong max threads", 42, protocol.getMaxThreads());
+        assertEquals("Wrong min spare threads", 4, protocol.getMinSpareThreads());
+        assertEquals("Wrong accept count", 12, protocol.getBacklog());
+        assertEquals("Wrong max connections", 256, protocol.getMaxConnections());
+        assertEquals("Wrong keep alive timeout", 2000, protocol.getKeepAliveTimeout());
+        assertEquals("Wrong max keep alive requests", 10, protocol.getMaxKeepAliveRequests());
+        assertFalse("Wrong tcp no delay flag", protocol.getTcpNoDelay());
+        final SocketProperties socketProperties = protocol.getEndpoint().getSocketProperties();
+        assertEquals("Wrong socket receive buffer size", 16384, socketProperties.getRxBufSize());
+        assertEquals("Wrong socket send buffer size", 32768, socketProperties.getTxBufSize());
+        assertTrue("Connector should be registered with the service",
+                Arrays.asList(server.getTomcat().getService().findConnectors()).contains(connector));
+    }
+
+    @Test
+    public void connectorWithVirtualThreads() {
+        final Properties properties = new Properties();
+        properties.put(EmbedVaadinConfig.KEY_VIRTUAL_THREADS, "true");
+        final TestableEmbedVaadinServer server = createConfiguredServer(new EmbedVaadinConfig(properties));
+        final Executor executor = ((AbstractProtocol<?>) server.getTomcat().getConnector()
+                .getProtocolHandler()).getExecutor();
+        if (VirtualThreadExecutor.isSupported()) {
+            assertEquals("Wrong executor", VirtualThreadExecutor.class, executor.getClass());
+            assertTrue("Executor should be registered with the service",
+                    Arrays.asList(server.getTomcat().getService().findExecutors()).contains(executor));
+        } else {
+            assertNull("Should have fallen back on the thread pool of the connector", executor);
+        }
+    }
+
+    @Test
+    public void connectorWithoutVirtualThreads() {
+        final TestableEmbedVaadinServer server = createConfiguredServer(EmbedComponentConfig.defaultConfig());
+        assertNull("No executor by default", ((AbstractProtocol<?>) server.getTomcat().getConnector()
+                .getProtocolHandler()).getExecutor());
+        assertEquals("No executor by default", 0, server.getTomcat().getService().findExecutors().length);
+    }
+
     private void assertContextParameter(TestableEmbedVaadinServer server, String key, String expectedValue) {
         final String actual = server.getContext().findParameter(key);
         assertNotNull("Context parameter [" + key + "] should have been found", actual);
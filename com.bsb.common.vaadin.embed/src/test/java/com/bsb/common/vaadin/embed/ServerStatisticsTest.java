@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.vaadin.server.VaadinSession;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class ServerStatisticsTest extends AbstractEmbedTest {
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void statisticsOfRunningServer() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final ServerStatistics statistics = server.getStatistics();
+        assertEquals("Wrong deploy url", server.getConfig().getDeployUrl(), statistics.getDeployUrl());
+        assertEquals("Wrong startup time", server.getStartupReport().getStartupTime(), statistics.getStartupTime());
+        assertEquals("No session expected", 0, statistics.getActiveSessions());
+
+        final String initialUidl = initVaadinUI(client, server.getConfig().getPort(),
+                server.getConfig().getContextPath());
+        final PostMethod uidl = createPollRequest(getUrl(""), initialUidl);
+        final long bodyLength = uidl.getRequestEntity().getContentLength();
+        assertEquals("Wrong status", 200, execute(uidl));
+        assertEquals("Wrong status", 404, execute(new GetMethod(getUrl("VAADIN/missing.js"))));
+
+        awaitRequestCount(statistics, 3);
+        assertEquals("Wrong number of sessions", 1, statistics.getActiveSessions());
+        assertEquals("Wrong number of UIs", 1, statistics.getActiveUIs());
+        assertEquals("Wrong number of requests", 3, statistics.getRequestCount());
+        assertEquals("Wrong number of errors", 1, statistics.getErrorCount());
+        assertEquals("Wrong number of bytes received", bodyLength, statistics.getBytesReceived());
+        assertTrue("Wrong number of bytes sent", statistics.getBytesSent() > initialUidl.length());
+        assertTrue("Wrong number of busy threads", statistics.getBusyThreads() >= 0);
+        assertTrue("Wrong number of idle threads", statistics.getIdleThreads() >= 0);
+    }
+
+    @Test
+    public void activeUIsDoNotWaitForTheSessionLock() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        initVaadinUI(client, server.getConfig().getPort(), server.getConfig().getContextPath());
+        final ServerStatistics statistics = server.getStatistics();
+        final VaadinSession session = statistics.getVaadinSessions().get(0);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        // Hold the lock as a long request would do
+        session.lock();
+        try {
+            final Future<Integer> activeUIs = executor.submit(new Callable<Integer>() {
+                public Integer call() {
+                    return statistics.getActiveUIs();
+                }
+            });
+            assertEquals("Wrong number of UIs", Integer.valueOf(1), activeUIs.get(2, TimeUnit.SECONDS));
+        } finally {
+            session.unlock();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void statisticsRegisteredAsMBean() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = server.getStatistics().getObjectName();
+        assertTrue("MBean not registered", mBeanServer.isRegistered(objectName));
+
+        execute(new GetMethod(getUrl("")));
+        awaitRequestCount(server.getStatistics(), 1);
+        assertEquals("Wrong request count", 1L, mBeanServer.getAttribute(objectName, "RequestCount"));
+        assertEquals("Wrong deploy url", server.getConfig().getDeployUrl(),
+                mBeanServer.getAttribute(objectName, "DeployUrl"));
+
+        server.stop();
+        server = null;
+        assertFalse("MBean should have been unregistered", mBeanServer.isRegistered(objectName));
+    }
+
+    @Test
+    public void statisticsOfSeveralServers() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final EmbedVaadinServer other = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            assertFalse("Servers must have distinct names",
+                    server.getStatistics().getObjectName().equals(other.getStatistics().getObjectName()));
+            assertTrue(mBeanServer.isRegistered(server.getStatistics().getObjectName()));
+            assertTrue(mBeanServer.isRegistered(other.getStatistics().getObjectName()));
+        } finally {
+            other.stop();
+        }
+    }
+
+    // The response may be received before the request is recorded
+    private void awaitRequestCount(ServerStatistics statistics, long expected) {
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (statistics.getRequestCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+    }
+
+    private String getUrl(String path) {
+        return server.getConfig().getDeployUrl() + path;
+    }
+
+    private int execute(HttpMethod method) throws IOException {
+        try {
+            final int status = client.executeMethod(method);
+            method.getResponseBody();
+            return status;
+        } finally {
+            method.releaseConnection();
+        }
+    }
+}
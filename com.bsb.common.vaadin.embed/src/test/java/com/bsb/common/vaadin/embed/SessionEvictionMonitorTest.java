@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import org.apache.catalina.Manager;
+import org.apache.catalina.Session;
+import org.apache.commons.httpclient.HttpClient;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class SessionEvictionMonitorTest extends AbstractEmbedTest {
+
+    private EmbedVaadinServer server;
+
+    private SessionEvictionMonitor monitor;
+
+    @After
+    public void stopServer() {
+        if (monitor != null) {
+            monitor.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void monitorRegisteredWithThreshold() {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withSessionEviction(90).start();
+        final SessionEvictionMonitor serverMonitor = ((AbstractEmbedVaadinTomcat) server).getSessionEvictionMonitor();
+        assertNotNull("Monitor should have been registered", serverMonitor);
+        assertEquals("Wrong threshold", 90, serverMonitor.getThreshold());
+        assertEquals("No eviction expected", 0, server.getStatistics().getSessionEvictionCount());
+    }
+
+    @Test
+    public void noMonitorByDefault() {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        assertNull("No monitor expected", ((AbstractEmbedVaadinTomcat) server).getSessionEvictionMonitor());
+        assertEquals("No eviction expected", 0, server.getStatistics().getEvictedSessionCount());
+    }
+
+    @Test
+    public void evictLongestIdleSession() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final List<String> sessionIds = openSessions(3);
+        monitor = new SessionEvictionMonitor(getManager(), 90, 0);
+
+        assertEquals("Wrong number of evicted sessions", 1, monitor.evict());
+        assertNull("Longest idle session should have been evicted", getManager().findSession(sessionIds.get(0)));
+        assertNotNull("Session should have been kept", getManager().findSession(sessionIds.get(1)));
+        assertEquals("Wrong number of sessions", 2, server.getStatistics().getActiveSessions());
+        assertEquals("Wrong eviction count", 1, monitor.getEvictionCount());
+        assertEquals("Wrong evicted session count", 1, monitor.getEvictedSessionCount());
+    }
+
+    @Test
+    public void keepSessionsIdleForLessThanMinIdleTime() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        openSessions(2);
+        monitor = new SessionEvictionMonitor(getManager(), 90, 60);
+
+        assertEquals("No session should have been evicted", 0, monitor.evict());
+        assertEquals("Wrong number of sessions", 2, server.getStatistics().getActiveSessions());
+        assertEquals("No eviction expected", 0, monitor.getEvictionCount());
+    }
+
+    @Test
+    public void passivateEvictedSessions() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withSessionPassivation(true).start();
+        openSessions(2);
+        monitor = new SessionEvictionMonitor(getManager(), 90, 0);
+
+        assertEquals("Wrong number of evicted sessions", 1, monitor.evict());
+        assertEquals("Wrong number of sessions", 1, server.getStatistics().getActiveSessions());
+        assertEquals("Wrong number of passivated sessions", 1, server.getStatistics().getPassivatedSessions());
+    }
+
+    @Test
+    public void evictWhenThresholdExceededAndRecordReclaimedHeap() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        openSessions(2);
+        monitor = new SessionEvictionMonitor(getManager(), 1, 0);
+        if (!monitor.isSupported()) {
+            return;
+        }
+        // Retain more than 1% of the heap in the old generation
+        byte[] ballast = new byte[(int) Math.min(Runtime.getRuntime().maxMemory() / 50, Integer.MAX_VALUE - 8)];
+        System.gc();
+        monitor.check();
+        assertEquals("Wrong eviction count", 1, monitor.getEvictionCount());
+        assertEquals("Wrong number of sessions", 1, server.getStatistics().getActiveSessions());
+
+        // No other eviction until a collection has run
+        monitor.check();
+        assertEquals("Wrong eviction count", 1, monitor.getEvictionCount());
+
+        ballast = null;
+        System.gc();
+        monitor.check();
+        assertTrue("Reclaimed heap should have been recorded", monitor.getReclaimedHeap() > 0);
+    }
+
+    /**
+     * Opens the specified number of sessions, one after the other.
+     *
+     * @return the ids of the sessions, by order of creation
+     */
+    private List<String> openSessions(int count) throws InterruptedException {
+        final List<String> sessionIds = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            initVaadinUI(new HttpClient(), server.getConfig().getPort(), server.getConfig().getContextPath());
+            for (Session session : getManager().findSessions()) {
+                if (!sessionIds.contains(session.getId())) {
+                    sessionIds.add(session.getId());
+                }
+            }
+            Thread.sleep(20);
+        }
+        return sessionIds;
+    }
+
+    private Manager getManager() {
+        return ((AbstractEmbedVaadinTomcat) server).getContext().getManager();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class SessionLimitsTest extends AbstractEmbedTest {
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void expireSessionsAfterTimeout() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withSessionTimeout(1).start();
+        initVaadinUI(client);
+        assertEquals("Wrong session timeout", 1,
+                server.getStatistics().getVaadinSessions().get(0).getSession().getMaxInactiveInterval());
+
+        Thread.sleep(1500);
+        // Do not wait for the background processor
+        getContext().getManager().backgroundProcess();
+        assertEquals("Session should have expired", 0, server.getStatistics().getActiveSessions());
+    }
+
+    @Test
+    public void rejectSessionsOverLimit() {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withMaxActiveSessions(1).start();
+        initVaadinUI(client);
+        final PostMethod method = new PostMethod(server.getConfig().getDeployUrl());
+        method.setQueryString("v-browserDetails=1");
+        try {
+            assertTrue("New session should have been rejected",
+                    new HttpClient().executeMethod(method) != HttpStatus.SC_OK);
+        } catch (IOException e) {
+            // Rejected as well
+        } finally {
+            method.releaseConnection();
+        }
+        assertEquals("Wrong number of sessions", 1, server.getStatistics().getActiveSessions());
+    }
+
+    @Test
+    public void heartbeatsKeepIdleSessionsByDefault() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withSessionTimeout(2).withHeartbeatInterval(1).start();
+        initVaadinUI(client);
+        sendHeartbeats(3000);
+        assertEquals("Wrong number of vaadin sessions", 1, server.getStatistics().getVaadinSessions().size());
+        assertEquals("Wrong number of UIs", 1, server.getStatistics().getActiveUIs());
+    }
+
+    @Test
+    public void closeIdleSessions() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withSessionTimeout(2).withHeartbeatInterval(1)
+                .withCloseIdleSessions(true).start();
+        initVaadinUI(client);
+        sendHeartbeats(3000);
+        assertEquals("Idle vaadin session should have been closed", 0,
+                server.getStatistics().getVaadinSessions().size());
+        assertEquals("No UI expected", 0, server.getStatistics().getActiveUIs());
+    }
+
+    private void initVaadinUI(HttpClient client) {
+        initVaadinUI(client, server.getConfig().getPort(), server.getConfig().getContextPath());
+    }
+
+    /**
+     * Sends the heartbeats of the first UI of the session for the specified duration,
+     * as an abandoned page would do.
+     */
+    private void sendHeartbeats(long duration) throws Exception {
+        final long end = System.currentTimeMillis() + duration;
+        while (System.currentTimeMillis() < end) {
+            final PostMethod heartbeat = new PostMethod(server.getConfig().getDeployUrl() + "HEARTBEAT/");
+            heartbeat.setQueryString("v-uiId=0");
+            try {
+                client.executeMethod(heartbeat);
+            } finally {
+                heartbeat.releaseConnection();
+            }
+            Thread.sleep(250);
+        }
+    }
+
+    private org.apache.catalina.Context getContext() {
+        return ((AbstractEmbedVaadinTomcat) server).getContext();
+    }
+}
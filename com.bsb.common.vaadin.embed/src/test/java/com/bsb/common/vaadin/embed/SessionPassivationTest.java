@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class SessionPassivationTest extends AbstractEmbedTest {
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void passivationDisabledByDefault() {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        assertFalse("Wrong session manager", getContext().getManager() instanceof PassivatingSessionManager);
+        assertEquals("No passivated session expected", 0, server.getStatistics().getPassivatedSessions());
+    }
+
+    @Test
+    public void swapOutIdleSessionsAndSwapThemBackIn() throws Exception {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withSessionPassivation(1).start();
+        final ServerStatistics statistics = server.getStatistics();
+        final int port = server.getConfig().getPort();
+        final String contextPath = server.getConfig().getContextPath();
+        final HttpClient client = new HttpClient();
+        final String initialUidl = initVaadinUI(client, port, contextPath);
+        initVaadinUI(new HttpClient(), port, contextPath);
+        initVaadinUI(new HttpClient(), port, contextPath);
+        assertEquals("Wrong number of sessions", 3, statistics.getActiveSessions());
+
+        // Do not wait for the background processor
+        Thread.sleep(1500);
+        getPassivatingSessionManager().processPersistenceChecks();
+        assertEquals("All sessions should have been swapped out", 0, statistics.getActiveSessions());
+        assertEquals("Wrong number of passivated sessions", 3, statistics.getPassivatedSessions());
+        assertEquals("Wrong swap out count", 3, statistics.getSessionSwapOutCount());
+        assertEquals("No swap in expected", 0, statistics.getSessionSwapInCount());
+
+        // The UI of the session is still usable
+        final PostMethod poll = createPollRequest(buildUrl(port, contextPath), initialUidl);
+        try {
+            assertEquals("Wrong return code polling passivated UI", HttpStatus.SC_OK, client.executeMethod(poll));
+            final String response = poll.getResponseBodyAsString();
+            assertFalse("Session should not have expired " + response, response.contains("Session Expired"));
+        } finally {
+            poll.releaseConnection();
+        }
+        assertEquals("Wrong swap in count", 1, statistics.getSessionSwapInCount());
+        assertTrue("Wrong swap in latency", statistics.getSessionSwapInP99() > 0);
+        assertEquals("Wrong number of sessions", 1, statistics.getActiveSessions());
+        assertEquals("Wrong number of passivated sessions", 2, statistics.getPassivatedSessions());
+        assertEquals("Wrong number of UIs", 1, statistics.getActiveUIs());
+    }
+
+    private org.apache.catalina.Context getContext() {
+        return ((AbstractEmbedVaadinTomcat) server).getContext();
+    }
+
+    private PassivatingSessionManager getPassivatingSessionManager() {
+        return (PassivatingSessionManager) getContext().getManager();
+    }
+}
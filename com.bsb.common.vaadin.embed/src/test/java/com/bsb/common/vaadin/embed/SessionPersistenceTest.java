@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed;
+
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.google.common.io.Files;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class SessionPersistenceTest extends AbstractEmbedTest {
+
+    // The caption of the error sent for a request of an unknown session
+    private static final String SESSION_EXPIRED = "Session Expired";
+
+    private final File workDirectory = Files.createTempDir();
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void restoreSessionsAfterRestart() throws IOException {
+        server = startServer(false, true);
+        final String initialUidl = initVaadinUI(client);
+        initVaadinUI(new HttpClient());
+        server.stop();
+
+        final File file = new File(workDirectory, "sessions.ser.gz");
+        RestartableSessionManager.awaitPendingWrite(file);
+        assertTrue("Sessions were not saved to " + file, file.exists());
+        final InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            assertTrue("Sessions file is empty", in.read() != -1);
+        } finally {
+            in.close();
+        }
+
+        server = startServer(false, true);
+        assertEquals("Wrong number of restored sessions", 2, server.getStatistics().getActiveSessions());
+        assertFalse("Sessions file should have been deleted", file.exists());
+        assertPollSucceeds(initialUidl);
+        assertEquals("Wrong number of sessions", 2, server.getStatistics().getActiveSessions());
+    }
+
+    @Test
+    public void restorePassivatedSessionsAfterRestart() throws IOException {
+        server = startServer(true, true);
+        final String initialUidl = initVaadinUI(client);
+        server.stop();
+
+        server = startServer(true, true);
+        assertEquals("Wrong number of passivated sessions", 1, server.getStatistics().getPassivatedSessions());
+        assertPollSucceeds(initialUidl);
+        assertEquals("Wrong swap in count", 1, server.getStatistics().getSessionSwapInCount());
+    }
+
+    @Test
+    public void keepSessionsFileThatCannotBeRestored() throws IOException {
+        final File file = new File(workDirectory, "sessions.ser.gz");
+        final OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            out.write("not a session".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        final long length = file.length();
+
+        server = startServer(false, true);
+        assertEquals("No session should have been restored", 0, server.getStatistics().getActiveSessions());
+        assertFalse("Sessions file should have been moved", file.exists());
+        final File failed = new File(workDirectory, "sessions.ser.gz" + RestartableSessionManager.FAILED_SUFFIX);
+        assertTrue("Sessions file should have been kept as " + failed, failed.exists());
+        assertEquals("Wrong content of kept file", length, failed.length());
+
+        // The server is usable and saves its own sessions
+        initVaadinUI(client);
+        server.stop();
+        RestartableSessionManager.awaitPendingWrite(file);
+        assertTrue("Sessions were not saved to " + file, file.exists());
+        assertEquals("Kept file should not have been touched", length, failed.length());
+    }
+
+    @Test
+    public void discardSessionsByDefault() throws IOException {
+        server = startServer(false, false);
+        initVaadinUI(client);
+        server.stop();
+
+        server = startServer(false, false);
+        assertEquals("No session should have been restored", 0, server.getStatistics().getActiveSessions());
+    }
+
+    @Test
+    public void discardPassivatedSessionsByDefault() throws IOException {
+        server = startServer(true, false);
+        final String initialUidl = initVaadinUI(client);
+        final PassivatingSessionManager manager = (PassivatingSessionManager) getContext().getManager();
+        manager.passivate(manager.findSessions()[0]);
+        assertEquals("Wrong number of passivated sessions", 1, server.getStatistics().getPassivatedSessions());
+        server.stop();
+        final File[] files = new File(workDirectory, "sessions").listFiles();
+        assertEquals("Passivated session should have been deleted", 0, (files != null ? files.length : 0));
+
+        server = startServer(true, false);
+        assertEquals("No session should have been restored", 0, server.getStatistics().getPassivatedSessions());
+        final PostMethod poll = createPollRequest(
+                buildUrl(server.getConfig().getPort(), server.getConfig().getContextPath()), initialUidl);
+        try {
+            client.executeMethod(poll);
+            final String response = poll.getResponseBodyAsString();
+            assertTrue("Session should have expired " + response, response.contains(SESSION_EXPIRED));
+        } finally {
+            poll.releaseConnection();
+        }
+    }
+
+    private EmbedVaadinServer startServer(boolean passivation, boolean persistent) {
+        return EmbedVaadin.forUI(TestUI.class).wait(false).withWorkDirectory(workDirectory)
+                .withSessionPassivation(passivation).withSessionPersistent(persistent).start();
+    }
+
+    private org.apache.catalina.Context getContext() {
+        return ((AbstractEmbedVaadinTomcat) server).getContext();
+    }
+
+    private String initVaadinUI(HttpClient client) {
+        return initVaadinUI(client, server.getConfig().getPort(), server.getConfig().getContextPath());
+    }
+
+    private void assertPollSucceeds(String initialUidl) throws IOException {
+        final PostMethod poll = createPollRequest(
+                buildUrl(server.getConfig().getPort(), server.getConfig().getContextPath()), initialUidl);
+        try {
+            assertEquals("Wrong return code polling restored UI", HttpStatus.SC_OK, client.executeMethod(poll));
+            final String response = poll.getResponseBodyAsString();
+            assertFalse("Session should not have expired " + response, response.contains(SESSION_EXPIRED));
+        } finally {
+            poll.releaseConnection();
+        }
+    }
+}
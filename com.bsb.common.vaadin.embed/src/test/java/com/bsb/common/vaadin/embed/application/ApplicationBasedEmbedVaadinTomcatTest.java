@@ -17,10 +17,22 @@ package com.bsb.common.vaadin.embed.application;
 
 import com.bsb.common.vaadin.embed.AbstractEmbedTest;
 import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.StartupReport;
 import com.bsb.common.vaadin.embed.support.EmbedVaadin;
 import com.bsb.common.vaadin.embed.test.TestUI;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 /**
  * @author Stephane Nicoll
  */
@@ -36,4 +48,71 @@ public class ApplicationBasedEmbedVaadinTomcatTest extends AbstractEmbedTest {
         server.stop();
     }
 
+    @Test
+    public void startAsyncSeveralServers() throws Exception {
+        final Future<EmbedVaadinServer> first = EmbedVaadin.forUI(TestUI.class).wait(false).startAsync();
+        final Future<EmbedVaadinServer> second = EmbedVaadin.forUI(TestUI.class).wait(false).startAsync();
+
+        final EmbedVaadinServer firstServer = first.get(30, TimeUnit.SECONDS);
+        final EmbedVaadinServer secondServer = second.get(30, TimeUnit.SECONDS);
+        try {
+            assertTrue("Servers should use different ports",
+                    firstServer.getConfig().getPort() != secondServer.getConfig().getPort());
+            assertNotNull("Servlet should have been initialized by the probe",
+                    firstServer.getStartupReport().getDuration(StartupReport.SERVLET_INIT));
+            checkVaadinIsDeployed(firstServer.getConfig().getPort(), "");
+            checkVaadinIsDeployed(secondServer.getConfig().getPort(), "");
+        } finally {
+            firstServer.stop();
+            secondServer.stop();
+        }
+    }
+
+    @Test
+    public void startAsyncWithStaticResourceServlet() throws Exception {
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                .withStaticResourceServlet(true).startAsync().get(30, TimeUnit.SECONDS);
+        try {
+            assertNotNull("Vaadin servlet should have been initialized although the probe is a static resource",
+                    server.getStartupReport().getDuration(StartupReport.SERVLET_INIT));
+            checkVaadinIsDeployed(server.getConfig().getPort(), "");
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void startRecordsStartupReport() throws Exception {
+        final File reportFile = new File(Files.createTempDir(), "startup.json");
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                .withStartupReportFile(reportFile).start();
+        try {
+            final StartupReport report = server.getStartupReport();
+            assertTrue("Startup time should have been recorded", report.getStartupTime() >= 0);
+            assertNotNull("configure should have been recorded", report.getDuration(StartupReport.CONFIGURE));
+            assertNotNull("initConfiguration should have been recorded",
+                    report.getDuration(StartupReport.INIT_CONFIGURATION));
+            assertNotNull("tomcat start should have been recorded", report.getDuration(StartupReport.TOMCAT_START));
+            assertNull("Browser was not launched", report.getDuration(StartupReport.BROWSER_LAUNCH));
+            assertNull("No request has been served yet", report.getDuration(StartupReport.FIRST_BYTE));
+            assertTrue("Report should have been written to [" + reportFile + "]", reportFile.exists());
+
+            checkVaadinIsDeployed(server.getConfig().getPort(), "");
+            // The response may have reached the client before the valve has recorded it
+            final long timeout = System.currentTimeMillis() + 2000;
+            while ((report.getDuration(StartupReport.FIRST_BYTE) == null
+                    || !report.toJson().equals(Files.toString(reportFile, Charsets.UTF_8)))
+                    && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+
+            assertNotNull("Servlet init should have been recorded", report.getDuration(StartupReport.SERVLET_INIT));
+            assertNotNull("First byte should have been recorded", report.getDuration(StartupReport.FIRST_BYTE));
+            assertEquals("Report file should have been updated", report.toJson(),
+                    Files.toString(reportFile, Charsets.UTF_8));
+        } finally {
+            server.stop();
+        }
+    }
+
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Base class for the benchmarks. Benchmarks are plain main classes that are
+ * not run as part of the build, run them from the IDE with the working
+ * directory set to this module.
+ *
+ * @author Stephane Nicoll
+ */
+public abstract class AbstractBenchmark {
+
+    /**
+     * Invokes the specified url and reads the whole response.
+     *
+     * @param url the url to invoke
+     * @return the number of bytes of the response body
+     */
+    protected static long get(String url) {
+        return get(url, false);
+    }
+
+    /**
+     * Invokes the specified url and reads the whole response.
+     *
+     * @param url the url to invoke
+     * @param gzip whether the client accepts a gzip response
+     * @return the number of bytes of the response body, as sent over the wire
+     */
+    protected static long get(String url, boolean gzip) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            if (gzip) {
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+            }
+            return read(connection);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to invoke url [" + url + "]", e);
+        }
+    }
+
+    /**
+     * Invokes the specified url with a <tt>POST</tt> and reads the whole response.
+     *
+     * @param url the url to invoke
+     * @return the number of bytes of the response body
+     */
+    protected static long post(String url) {
+        return post(url, false);
+    }
+
+    /**
+     * Invokes the specified url with a <tt>POST</tt> and reads the whole response.
+     *
+     * @param url the url to invoke
+     * @param gzip whether the client accepts a gzip response
+     * @return the number of bytes of the response body, as sent over the wire
+     */
+    protected static long post(String url, boolean gzip) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod("POST");
+            if (gzip) {
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+            }
+            return read(connection);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to invoke url [" + url + "]", e);
+        }
+    }
+
+    /**
+     * Invokes the specified url concurrently and measures the latency of each request.
+     *
+     * @param url the url to invoke
+     * @param threads the number of concurrent clients
+     * @param requestsPerThread the number of requests that each client sends
+     * @return the result of the load
+     */
+    protected static LoadResult load(final String url, int threads, int requestsPerThread) {
+        return load(new Runnable() {
+            public void run() {
+                get(url);
+            }
+        }, threads, requestsPerThread);
+    }
+
+    /**
+     * Runs the specified request concurrently and measures the latency of each invocation.
+     *
+     * @param request the request to run
+     * @param threads the number of concurrent clients
+     * @param requestsPerThread the number of requests that each client sends
+     * @return the result of the load
+     */
+    protected static LoadResult load(final Runnable request, int threads, final int requestsPerThread) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+            final long start = System.nanoTime();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<List<Long>>() {
+                    public List<Long> call() throws Exception {
+                        final List<Long> latencies = new ArrayList<Long>(requestsPerThread);
+                        for (int j = 0; j < requestsPerThread; j++) {
+                            final long requestStart = System.nanoTime();
+                            request.run();
+                            latencies.add((System.nanoTime() - requestStart) / 1000);
+                        }
+                        return latencies;
+                    }
+                }));
+            }
+            final List<Long> latencies = new ArrayList<Long>(threads * requestsPerThread);
+            for (Future<List<Long>> future : futures) {
+                latencies.addAll(future.get());
+            }
+            return new LoadResult(latencies, (System.nanoTime() - start) / 1000000);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to run load", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the specified percentile of the specified values.
+     *
+     * @param values the values
+     * @param percentile the percentile, between 0 and 100
+     * @return the value at that percentile or <tt>0</tt> if there is no value
+     */
+    protected static long percentile(List<Long> values, double percentile) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        final List<Long> sorted = new ArrayList<Long>(values);
+        Collections.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    /**
+     * Returns the median of the specified values.
+     *
+     * @param values the values
+     * @return the median or <tt>0</tt> if there is no value
+     */
+    protected static long median(List<Long> values) {
+        return percentile(values, 50);
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by each thread of the connector.
+     *
+     * @return the allocated bytes per thread id
+     * @see #getAllocatedBytesSince(Map)
+     */
+    protected static Map<Long, Long> getConnectorAllocatedBytes() {
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final Map<Long, Long> result = new HashMap<Long, Long>();
+        for (ThreadInfo info : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+            // Threads of the connector, such as http-nio-auto-1-exec-1
+            if (info != null && info.getThreadName().startsWith("http-")) {
+                result.put(info.getThreadId(), threadMXBean.getThreadAllocatedBytes(info.getThreadId()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the threads of the connector since the
+     * specified {@link #getConnectorAllocatedBytes() snapshot}.
+     *
+     * @param start the allocated bytes per thread id at the start
+     * @return the number of bytes allocated since then
+     */
+    protected static long getAllocatedBytesSince(Map<Long, Long> start) {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : getConnectorAllocatedBytes().entrySet()) {
+            final Long initial = start.get(entry.getKey());
+            total += entry.getValue() - (initial != null ? initial : 0);
+        }
+        return total;
+    }
+
+    private static long read(HttpURLConnection connection) throws IOException {
+        final InputStream in = connection.getInputStream();
+        try {
+            final byte[] buffer = new byte[8192];
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+            return total;
+        } finally {
+            in.close();
+        }
+    }
+
+    protected static void report(String format, Object... args) {
+        System.out.println(String.format(format, args));
+    }
+
+    /**
+     * The result of a {@link #load(String, int, int) load}.
+     */
+    protected static final class LoadResult {
+        private final List<Long> latencies;
+        private final long elapsedTime;
+
+        private LoadResult(List<Long> latencies, long elapsedTime) {
+            this.latencies = latencies;
+            this.elapsedTime = elapsedTime;
+        }
+
+        /**
+         * Returns the number of requests per second.
+         */
+        public long getThroughput() {
+            return elapsedTime == 0 ? 0 : latencies.size() * 1000L / elapsedTime;
+        }
+
+        /**
+         * Returns the specified percentile of the latencies, in microseconds.
+         */
+        public long getLatency(double percentile) {
+            return percentile(latencies, percentile);
+        }
+    }
+}
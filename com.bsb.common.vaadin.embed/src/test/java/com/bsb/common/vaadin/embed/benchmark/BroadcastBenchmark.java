@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.push.Broadcaster;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the fan-out of events to hundreds of UIs, either with one
+ * {@link UI#access(Runnable)} per UI and per event or with a {@link Broadcaster}.
+ * <p/>
+ * A producer broadcasts an event every millisecond. The run ends once every UI
+ * has received every event. The CPU time is the one of the whole process.
+ * <p/>
+ * Arguments: the number of UIs and the number of events.
+ *
+ * @author Stephane Nicoll
+ */
+public class BroadcastBenchmark extends AbstractBenchmark {
+
+    private static final int UIS = 500;
+
+    private static final int EVENTS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        final int uis = args.length > 0 ? Integer.parseInt(args[0]) : UIS;
+        final int events = args.length > 1 ? Integer.parseInt(args[1]) : EVENTS;
+        final EmbedVaadinServer server = EmbedVaadin.forUI(CountingUI.class).wait(false)
+                .withMinimalContainer(true).start();
+        try {
+            for (int i = 0; i < uis; i++) {
+                // No cookie so that each UI has its own session
+                post(server.getConfig().getDeployUrl() + "?v-browserDetails=1");
+            }
+            // Warm up
+            run("warm-up", false, events / 10);
+            run("per event", false, events);
+            run("batched", true, events);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(String mode, boolean batched, int events) throws InterruptedException {
+        final Broadcaster<Long> broadcaster = (batched ? new Broadcaster<Long>() : null);
+        for (CountingUI ui : CountingUI.UIS) {
+            ui.received.set(0);
+            if (broadcaster != null) {
+                ui.register(broadcaster);
+            }
+        }
+        final AtomicLong accesses = new AtomicLong();
+        final long cpuStart = getProcessCpuTime();
+        final long start = System.nanoTime();
+        for (long i = 0; i < events; i++) {
+            if (broadcaster != null) {
+                broadcaster.broadcast(i);
+            } else {
+                for (final CountingUI ui : CountingUI.UIS) {
+                    final long event = i;
+                    accesses.incrementAndGet();
+                    ui.access(new Runnable() {
+                        public void run() {
+                            ui.onEvent(event);
+                        }
+                    });
+                }
+            }
+            Thread.sleep(1);
+        }
+        for (CountingUI ui : CountingUI.UIS) {
+            while (ui.received.get() < events) {
+                Thread.sleep(1);
+            }
+        }
+        final long elapsed = (System.nanoTime() - start) / 1000000;
+        final long cpu = (getProcessCpuTime() - cpuStart) / 1000000;
+        if (broadcaster != null) {
+            accesses.set(broadcaster.getAccessCount());
+            broadcaster.shutdown();
+        }
+        report("%-10s %4d UIs, %5d events, %8d accesses, delivered in %6d ms, cpu: %6d ms", mode,
+                CountingUI.UIS.size(), events, accesses.get(), elapsed, cpu);
+    }
+
+    private static long getProcessCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    /**
+     * A UI that counts the events it receives.
+     */
+    @SuppressWarnings("serial")
+    public static class CountingUI extends UI {
+
+        private static final List<CountingUI> UIS = new CopyOnWriteArrayList<CountingUI>();
+
+        private final Label label = new Label();
+
+        private final AtomicLong received = new AtomicLong();
+
+        @Override
+        protected void init(VaadinRequest request) {
+            setContent(label);
+            UIS.add(this);
+        }
+
+        void register(Broadcaster<Long> broadcaster) {
+            broadcaster.register(this, new Broadcaster.BroadcastListener<Long>() {
+                public void onBroadcast(List<Long> events) {
+                    for (Long event : events) {
+                        onEvent(event);
+                    }
+                }
+            });
+        }
+
+        void onEvent(long event) {
+            label.setValue("event-" + event);
+            received.incrementAndGet();
+        }
+    }
+}
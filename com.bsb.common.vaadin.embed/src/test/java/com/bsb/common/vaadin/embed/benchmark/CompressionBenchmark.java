@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.component.ComponentFactory;
+import com.bsb.common.vaadin.embed.component.EmbedVaadinComponent;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Table;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the bytes saved and the CPU cost of compressing the responses of the
+ * vaadin servlet. Each request loads the bootstrap page and the initial UIDL
+ * response of a new UI holding a large table, with and without gzip and for
+ * several compression levels.
+ * <p/>
+ * The CPU cost is the CPU time of the whole process, including the clients, per
+ * request so only the difference between two runs is relevant.
+ * <p/>
+ * Arguments: the number of concurrent clients and the number of requests per client.
+ *
+ * @author Stephane Nicoll
+ */
+public class CompressionBenchmark extends AbstractBenchmark {
+
+    private static final int THREADS = 4;
+
+    private static final int REQUESTS_PER_THREAD = 200;
+
+    private static final int ROWS = 300;
+
+    public static void main(String[] args) {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : THREADS;
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : REQUESTS_PER_THREAD;
+        // Warms up both code paths so that the first measured run is not penalized
+        run("warm-up", 6, threads, requests);
+        run("no compression", 0, threads, requests);
+        run("gzip level 1", 1, threads, requests);
+        run("gzip level 6", 6, threads, requests);
+        run("gzip level 9", 9, threads, requests);
+    }
+
+    private static void run(String mode, int level, int threads, int requests) {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(new TableFactory()).wait(false)
+                .withMinimalContainer(true);
+        if (level > 0) {
+            embed.withCompression(2048, level, "text/html", "application/json");
+        }
+        final EmbedVaadinServer server = embed.start();
+        try {
+            final String bootstrapUrl = server.getConfig().getDeployUrl();
+            final String uidlUrl = bootstrapUrl + "?v-browserDetails=1&theme=reindeer";
+            final AtomicLong bootstrapBytes = new AtomicLong();
+            final AtomicLong uidlBytes = new AtomicLong();
+            final Runnable request = new Runnable() {
+                public void run() {
+                    bootstrapBytes.addAndGet(get(bootstrapUrl, true));
+                    uidlBytes.addAndGet(post(uidlUrl, true));
+                }
+            };
+            // Warm up
+            load(request, threads, Math.max(1, requests / 5));
+            bootstrapBytes.set(0);
+            uidlBytes.set(0);
+            final long cpuStart = getProcessCpuTime();
+            final LoadResult result = load(request, threads, requests);
+            final long total = threads * requests;
+            report("%-15s %5d req/s, p50: %6d us, p99: %6d us, bootstrap: %6d B, uidl: %7d B, cpu: %5d us/req",
+                    mode, result.getThroughput(), result.getLatency(50), result.getLatency(99),
+                    bootstrapBytes.get() / total, uidlBytes.get() / total,
+                    (getProcessCpuTime() - cpuStart) / total / 1000);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long getProcessCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    @SuppressWarnings("serial")
+    private static final class TableFactory implements ComponentFactory {
+        public Component createComponent() {
+            final Table table = new Table("Orders");
+            table.addContainerProperty("id", Integer.class, null);
+            table.addContainerProperty("customer", String.class, null);
+            table.addContainerProperty("product", String.class, null);
+            table.addContainerProperty("amount", Double.class, null);
+            for (int i = 0; i < ROWS; i++) {
+                table.addItem(new Object[]{i, "Customer " + (i % 37), "Product " + (i % 11), i * 1.5d}, i);
+            }
+            table.setPageLength(0);
+            return table;
+        }
+    }
+}
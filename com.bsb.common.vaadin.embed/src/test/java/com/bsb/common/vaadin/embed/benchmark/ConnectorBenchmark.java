@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.ConnectorProtocol;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+
+/**
+ * Compares the throughput and the latency of the available
+ * {@link ConnectorProtocol connector protocols} serving a static resource
+ * to a number of concurrent clients.
+ * <p/>
+ * Arguments: the number of concurrent clients and the number of requests per client.
+ *
+ * @author Stephane Nicoll
+ */
+public class ConnectorBenchmark extends AbstractBenchmark {
+
+    private static final String RESOURCE_PATH = "VAADIN/vaadinBootstrap.js";
+
+    private static final int THREADS = 16;
+
+    private static final int REQUESTS_PER_THREAD = 500;
+
+    public static void main(String[] args) {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : THREADS;
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : REQUESTS_PER_THREAD;
+        for (ConnectorProtocol protocol : ConnectorProtocol.values()) {
+            if (!protocol.isAvailable()) {
+                report("%-5s not available", protocol);
+                continue;
+            }
+            final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                    .withMinimalContainer(true).withConnectorProtocol(protocol)
+                    .withThreads(threads, threads).start();
+            try {
+                final String url = server.getConfig().getDeployUrl() + RESOURCE_PATH;
+                // Warm up
+                load(url, threads, requests / 5);
+                final LoadResult result = load(url, threads, requests);
+                report("%-5s throughput: %6d req/s, p50: %6d us, p99: %6d us (%d clients)", protocol,
+                        result.getThroughput(), result.getLatency(50), result.getLatency(99), threads);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+
+import java.util.Map;
+
+/**
+ * Measures the latency of a scrape of the metrics servlet and the heap that the
+ * server allocates for it, compared to a request for the bootstrap page that goes
+ * through the vaadin servlet.
+ * <p/>
+ * Arguments: the number of concurrent clients and the number of requests per client.
+ *
+ * @author Stephane Nicoll
+ */
+public class MetricsBenchmark extends AbstractBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                .withMinimalContainer(true).withMetricsServlet(true).start();
+        try {
+            final String url = server.getConfig().getDeployUrl();
+            // Warm up
+            run("warm-up", url + "metrics", threads, requests);
+            run("metrics", url + "metrics", threads, requests);
+            run("bootstrap", url, threads, requests);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(String name, String url, int threads, int requests) {
+        final Map<Long, Long> allocatedBytes = getConnectorAllocatedBytes();
+        final LoadResult result = load(url, threads, requests);
+        final long allocated = getAllocatedBytesSince(allocatedBytes);
+        report("%-10s %6d req/s, p50: %6d us, p99: %6d us, server heap allocation: %6d bytes per request",
+                name, result.getThroughput(), result.getLatency(50), result.getLatency(99),
+                allocated / (threads * requests));
+    }
+}
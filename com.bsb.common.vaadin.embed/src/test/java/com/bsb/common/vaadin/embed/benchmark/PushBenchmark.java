@@ -0,0 +1,270 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.push.PushUtils;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.shared.ui.ui.Transport;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the request rate and the update latency of polling and server push for the
+ * same update frequency. A background task updates a label of every UI periodically.
+ * Polling clients poll at that frequency, push clients keep a streaming connection open.
+ * <p/>
+ * The latency is the time between an update on the server and its reception by the
+ * client. Push is measured in both automatic and manual modes, the latter pushing once
+ * the update has been applied. The streaming transport is used as it only requires a
+ * plain HTTP client. The benchmark fails if the <tt>vaadin-push</tt> module is not on
+ * the classpath.
+ * <p/>
+ * Arguments: the number of clients, the update interval in milliseconds and the
+ * duration of each run in seconds.
+ *
+ * @author Stephane Nicoll
+ */
+public class PushBenchmark extends AbstractBenchmark {
+
+    private static final int CLIENTS = 20;
+
+    private static final int UPDATE_INTERVAL = 200;
+
+    private static final int DURATION = 10;
+
+    private static final Pattern SECURITY_KEY = Pattern.compile("Vaadin-Security-Key\\\\?\":\\\\?\"([^\"\\\\]+)");
+
+    private static final Pattern UPDATE = Pattern.compile("update-(\\d+)");
+
+    private static final String POLL_RPC = "[[\"0\",\"com.vaadin.shared.ui.ui.UIServerRpc\",\"poll\",[]]]";
+
+    public static void main(String[] args) throws Exception {
+        final int clients = args.length > 0 ? Integer.parseInt(args[0]) : CLIENTS;
+        final int updateInterval = args.length > 1 ? Integer.parseInt(args[1]) : UPDATE_INTERVAL;
+        final int duration = args.length > 2 ? Integer.parseInt(args[2]) : DURATION;
+        if (!PushUtils.isPushAvailable()) {
+            throw new IllegalStateException("Push requires the vaadin-push module on the classpath");
+        }
+        run("polling", PushMode.DISABLED, clients, updateInterval, duration);
+        run("push automatic", PushMode.AUTOMATIC, clients, updateInterval, duration);
+        run("push manual", PushMode.MANUAL, clients, updateInterval, duration);
+    }
+
+    private static void run(String mode, PushMode pushMode, int clients, final int updateInterval,
+                            int duration) throws Exception {
+        final boolean push = pushMode.isEnabled();
+        final EmbedVaadinServer server = EmbedVaadin.forUI(UpdatedUI.class).wait(false).withMinimalContainer(true)
+                .withPush(pushMode, push ? Transport.STREAMING : null).start();
+        final ScheduledExecutorService updater = Executors.newSingleThreadScheduledExecutor();
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            updater.scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    UpdatedUI.updateAll();
+                }
+            }, updateInterval, updateInterval, TimeUnit.MILLISECONDS);
+
+            final String baseUrl = server.getConfig().getDeployUrl();
+            final long deadline = System.currentTimeMillis() + duration * 1000L;
+            final List<Future<ClientResult>> futures = new ArrayList<Future<ClientResult>>();
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(new Callable<ClientResult>() {
+                    public ClientResult call() throws Exception {
+                        final Client client = new Client(baseUrl);
+                        return push ? client.stream(deadline) : client.poll(updateInterval, deadline);
+                    }
+                }));
+            }
+            long requests = 0;
+            final List<Long> latencies = new ArrayList<Long>();
+            for (Future<ClientResult> future : futures) {
+                final ClientResult result = future.get();
+                requests += result.requests;
+                latencies.addAll(result.latencies);
+            }
+            report("%-15s %6d req/s, %6d updates received, latency p50: %6d us, p99: %6d us", mode,
+                    requests / duration, latencies.size(), percentile(latencies, 50), percentile(latencies, 99));
+        } finally {
+            updater.shutdownNow();
+            executor.shutdownNow();
+            UpdatedUI.UIS.clear();
+            server.stop();
+        }
+    }
+
+    /**
+     * A UI holding a label that is updated with the timestamp of the update.
+     */
+    @SuppressWarnings("serial")
+    public static class UpdatedUI extends UI {
+
+        private static final Set<UpdatedUI> UIS = new CopyOnWriteArraySet<UpdatedUI>();
+
+        private final Label label = new Label();
+
+        static void updateAll() {
+            for (final UpdatedUI ui : UIS) {
+                ui.access(new Runnable() {
+                    public void run() {
+                        ui.label.setValue("update-" + System.nanoTime());
+                        if (ui.getPushConfiguration().getPushMode() == PushMode.MANUAL) {
+                            ui.push();
+                        }
+                    }
+                });
+            }
+        }
+
+        @Override
+        protected void init(VaadinRequest request) {
+            setContent(label);
+            UIS.add(this);
+        }
+    }
+
+    private static final class ClientResult {
+        private long requests;
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+        private long lastUpdate;
+
+        private void record(String content, long receivedAt) {
+            final Matcher matcher = UPDATE.matcher(content);
+            while (matcher.find()) {
+                final long update = Long.parseLong(matcher.group(1));
+                if (update > lastUpdate) {
+                    lastUpdate = update;
+                    latencies.add((receivedAt - update) / 1000);
+                }
+            }
+        }
+    }
+
+    /**
+     * A minimal client of the vaadin protocol.
+     */
+    private static final class Client {
+        private final String baseUrl;
+        private String cookie;
+        private String securityKey;
+
+        private Client(String baseUrl) throws IOException {
+            this.baseUrl = baseUrl;
+            init();
+        }
+
+        private void init() throws IOException {
+            final HttpURLConnection connection = open(baseUrl + "?v-browserDetails=1&theme=reindeer");
+            connection.setRequestMethod("POST");
+            final String content = readAll(connection);
+            final String setCookie = connection.getHeaderField("Set-Cookie");
+            cookie = setCookie.substring(0, setCookie.indexOf(';'));
+            final Matcher matcher = SECURITY_KEY.matcher(content);
+            if (!matcher.find()) {
+                throw new IllegalStateException("No security key in " + content);
+            }
+            securityKey = matcher.group(1);
+        }
+
+        private ClientResult poll(int interval, long deadline) throws IOException, InterruptedException {
+            final ClientResult result = new ClientResult();
+            final byte[] body = (securityKey + '\u001d' + POLL_RPC).getBytes("UTF-8");
+            // Clients that are not in phase with the updates, like browsers
+            Thread.sleep((long) (Math.random() * interval));
+            while (System.currentTimeMillis() < deadline) {
+                final long start = System.currentTimeMillis();
+                final HttpURLConnection connection = open(baseUrl + "UIDL/?v-uiId=0");
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "text/plain;charset=utf-8");
+                final OutputStream out = connection.getOutputStream();
+                out.write(body);
+                out.close();
+                final String content = readAll(connection);
+                result.requests++;
+                result.record(content, System.nanoTime());
+                Thread.sleep(Math.max(0, interval - (System.currentTimeMillis() - start)));
+            }
+            return result;
+        }
+
+        private ClientResult stream(long deadline) throws IOException {
+            final ClientResult result = new ClientResult();
+            final HttpURLConnection connection = open(baseUrl + "PUSH/?v-uiId=0&v-csrfToken=" + securityKey
+                    + "&X-Atmosphere-tracking-id=0&X-Atmosphere-Framework=1.0"
+                    + "&X-Atmosphere-Transport=streaming&X-Atmosphere-TrackMessageSize=true");
+            connection.setReadTimeout((int) Math.max(1, deadline - System.currentTimeMillis()));
+            result.requests++;
+            final InputStream in = connection.getInputStream();
+            try {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while (System.currentTimeMillis() < deadline && (read = in.read(buffer)) != -1) {
+                    result.record(new String(buffer, 0, read, "UTF-8"), System.nanoTime());
+                }
+            } catch (IOException e) {
+                // Read timeout at the end of the run
+            } finally {
+                connection.disconnect();
+            }
+            return result;
+        }
+
+        private HttpURLConnection open(String url) throws IOException {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            if (cookie != null) {
+                connection.setRequestProperty("Cookie", cookie);
+            }
+            return connection;
+        }
+
+        private static String readAll(HttpURLConnection connection) throws IOException {
+            final InputStream in = connection.getInputStream();
+            try {
+                final StringBuilder sb = new StringBuilder();
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    sb.append(new String(buffer, 0, read, "UTF-8"));
+                }
+                return sb.toString();
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.metrics.LatencyHistogram;
+import com.bsb.common.vaadin.embed.metrics.RequestType;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of recording a latency in a {@link LatencyHistogram}, alone and
+ * with concurrent recorders, compared to a histogram guarded by a lock. Then loads
+ * the bootstrap page and compares the latencies recorded by the server to the ones
+ * measured by the clients.
+ * <p/>
+ * Arguments: the number of recording threads and the number of requests per client.
+ *
+ * @author Stephane Nicoll
+ */
+public class RequestMetricsBenchmark extends AbstractBenchmark {
+
+    private static final int RECORDS = 5000000;
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        // Warm up
+        record(1, false);
+        record(1, true);
+        report("%-12s %8s %12s", "recorder", "threads", "ns/record");
+        for (int count : new int[]{1, threads}) {
+            report("%-12s %8d %12.1f", "lock-free", count, record(count, false));
+            report("%-12s %8d %12.1f", "locked", count, record(count, true));
+        }
+
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                .withMinimalContainer(true).start();
+        try {
+            final String url = server.getConfig().getDeployUrl();
+            load(url, threads, requests / 5);
+            final LatencyHistogram histogram = server.getRequestMetrics().getHistogram(RequestType.BOOTSTRAP);
+            final long before = histogram.getCount();
+            final LoadResult result = load(url, threads, requests);
+            report("%nbootstrap requests: %d", histogram.getCount() - before);
+            report("%-8s %10s %10s", "", "p50 (us)", "p99 (us)");
+            report("%-8s %10d %10d", "client", result.getLatency(50), result.getLatency(99));
+            report("%-8s %10d %10d", "server", histogram.getP50(), histogram.getP99());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static double record(int threads, final boolean locked) throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < RECORDS; j++) {
+                        final long value = (j & 0xFFFF) * 1000L;
+                        if (locked) {
+                            synchronized (histogram) {
+                                histogram.record(value, TimeUnit.NANOSECONDS);
+                            }
+                        } else {
+                            histogram.record(value, TimeUnit.NANOSECONDS);
+                        }
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        return (double) (System.nanoTime() - start) / RECORDS;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.metrics.ResourceAccounting;
+import com.bsb.common.vaadin.embed.metrics.ResourceUsage;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the overhead of the {@link ResourceAccounting}: first the cost of reading
+ * the counters of the current thread, then the throughput of UIDL polls with the
+ * accounting switched off and on, alternately, while the server runs.
+ * <p/>
+ * Arguments: the number of requests per round.
+ *
+ * @author Stephane Nicoll
+ */
+public class ResourceAccountingBenchmark extends AbstractBenchmark {
+
+    private static final Pattern SECURITY_KEY = Pattern.compile("Vaadin-Security-Key\\\\?\":\\\\?\"([^\"\\\\]+)");
+
+    private static final String POLL_RPC = "[[\"0\",\"com.vaadin.shared.ui.ui.UIServerRpc\",\"poll\",[]]]";
+
+    private static final int ITERATIONS = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        final int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        measureCounters();
+
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                .withMinimalContainer(true).start();
+        try {
+            final String url = server.getConfig().getDeployUrl();
+            final HttpURLConnection init = (HttpURLConnection) new URL(url + "?v-browserDetails=1").openConnection();
+            init.setRequestMethod("POST");
+            final String content = readAll(init);
+            final String setCookie = init.getHeaderField("Set-Cookie");
+            final String cookie = setCookie.substring(0, setCookie.indexOf(';'));
+            final Matcher matcher = SECURITY_KEY.matcher(content);
+            if (!matcher.find()) {
+                throw new IllegalStateException("No security key in " + content);
+            }
+            final Runnable poll = createPoll(url, cookie, (matcher.group(1) + '\u001d' + POLL_RPC).getBytes("UTF-8"));
+            final ResourceAccounting accounting = server.getResourceAccounting();
+
+            load(poll, 1, requests); // warm up
+            report("%-10s %12s %10s %10s", "accounting", "throughput", "p50", "p99");
+            for (int round = 0; round < 3; round++) {
+                for (boolean enabled : new boolean[]{false, true}) {
+                    accounting.setEnabled(enabled);
+                    final LoadResult result = load(poll, 1, requests);
+                    report("%-10s %8d r/s %7d us %7d us", enabled ? "on" : "off", result.getThroughput(),
+                            result.getLatency(50), result.getLatency(99));
+                }
+            }
+            final ResourceUsage usage = accounting.getTopByCpuTime(1).get(0);
+            report("Charged to %s: %d us of CPU and %d KB per request", usage.getName(),
+                    usage.getCpuTimePerRequest() / 1000, usage.getAllocatedBytesPerRequest() / 1024);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void measureCounters() {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long id = Thread.currentThread().getId();
+        long sink = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += threads.getCurrentThreadCpuTime();
+            }
+            final long cpuTime = (System.nanoTime() - start) / ITERATIONS;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += threads.getThreadAllocatedBytes(id);
+            }
+            final long allocatedBytes = (System.nanoTime() - start) / ITERATIONS;
+            report("getCurrentThreadCpuTime: %d ns, getThreadAllocatedBytes: %d ns", cpuTime, allocatedBytes);
+        }
+        if (sink == 42) {
+            report("");
+        }
+    }
+
+    private static Runnable createPoll(final String url, final String cookie, final byte[] body) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    final HttpURLConnection connection = (HttpURLConnection)
+                            new URL(url + "UIDL/?v-uiId=0").openConnection();
+                    connection.setRequestMethod("POST");
+                    connection.setDoOutput(true);
+                    connection.setRequestProperty("Cookie", cookie);
+                    connection.setRequestProperty("Content-Type", "text/plain;charset=utf-8");
+                    final OutputStream out = connection.getOutputStream();
+                    out.write(body);
+                    out.close();
+                    readAll(connection);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to poll", e);
+                }
+            }
+        };
+    }
+
+    private static String readAll(HttpURLConnection connection) throws IOException {
+        final InputStream in = connection.getInputStream();
+        try {
+            final StringBuilder sb = new StringBuilder();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                sb.append(new String(buffer, 0, read, "UTF-8"));
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+}
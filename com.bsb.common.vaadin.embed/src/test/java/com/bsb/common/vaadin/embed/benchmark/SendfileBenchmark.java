@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.ConnectorProtocol;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput and the heap allocation of the threads of the connector when
+ * large files of the root directory are served by copying their content through heap
+ * buffers, with <tt>transferTo</tt> and with <tt>sendfile</tt>.
+ * <p/>
+ * Arguments: the size of the file in MB, the number of concurrent clients and the
+ * number of downloads per client.
+ *
+ * @author Stephane Nicoll
+ */
+public class SendfileBenchmark extends AbstractBenchmark {
+
+    private static final int FILE_SIZE_MB = 16;
+
+    private static final int THREADS = 4;
+
+    private static final int DOWNLOADS_PER_THREAD = 25;
+
+    private static final String FILE_PATH = "VAADIN/files/large.bin";
+
+    public static void main(String[] args) throws IOException {
+        final int fileSize = args.length > 0 ? Integer.parseInt(args[0]) : FILE_SIZE_MB;
+        final int threads = args.length > 1 ? Integer.parseInt(args[1]) : THREADS;
+        final int downloads = args.length > 2 ? Integer.parseInt(args[2]) : DOWNLOADS_PER_THREAD;
+
+        final File rootDirectory = Files.createTempDir();
+        final File file = new File(rootDirectory, FILE_PATH);
+        Files.createParentDirs(file);
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(fileSize * 1024L * 1024L);
+        } finally {
+            raf.close();
+        }
+        run("bio copy", ConnectorProtocol.BIO, 0, rootDirectory, threads, downloads);
+        run("bio transferTo", ConnectorProtocol.BIO, 1024 * 1024, rootDirectory, threads, downloads);
+        run("nio copy", ConnectorProtocol.NIO, 0, rootDirectory, threads, downloads);
+        run("nio sendfile", ConnectorProtocol.NIO, 1024 * 1024, rootDirectory, threads, downloads);
+    }
+
+    private static void run(String mode, ConnectorProtocol protocol, int sendfileThreshold, File rootDirectory,
+                            int threads, int downloads) {
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false).withMinimalContainer(true)
+                .withContextRootDirectory(rootDirectory).withConnectorProtocol(protocol)
+                .withStaticResourceServlet(true).withStaticResourceCacheSize(0)
+                .withSendfileThreshold(sendfileThreshold).start();
+        try {
+            final String url = server.getConfig().getDeployUrl() + FILE_PATH;
+            final AtomicLong bytes = new AtomicLong();
+            final Runnable download = new Runnable() {
+                public void run() {
+                    bytes.addAndGet(get(url));
+                }
+            };
+            // Warm up
+            load(download, threads, Math.max(1, downloads / 5));
+            bytes.set(0);
+            final Map<Long, Long> allocatedBytes = getConnectorAllocatedBytes();
+            final LoadResult result = load(download, threads, downloads);
+            final long allocated = getAllocatedBytesSince(allocatedBytes);
+            final long total = threads * downloads;
+            report("%-15s %6d MB/s, p50: %7d us, p99: %7d us, server heap allocation: %8d KB per download",
+                    mode, result.getThroughput() * bytes.get() / total / (1024 * 1024), result.getLatency(50),
+                    result.getLatency(99), allocated / total / 1024);
+        } finally {
+            server.stop();
+        }
+    }
+}
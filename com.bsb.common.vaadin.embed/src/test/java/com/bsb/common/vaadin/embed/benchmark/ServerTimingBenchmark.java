@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.metrics.ServerTiming;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Polls the same UI from several clients sharing a session and reports the mean of
+ * each phase of the <tt>Server-Timing</tt> header. As the requests of a session are
+ * serialized by its lock, the time spent waiting for the lock grows with the number
+ * of clients.
+ * <p/>
+ * Arguments: the number of requests per client.
+ *
+ * @author Stephane Nicoll
+ */
+public class ServerTimingBenchmark extends AbstractBenchmark {
+
+    private static final Pattern SECURITY_KEY = Pattern.compile("Vaadin-Security-Key\\\\?\":\\\\?\"([^\"\\\\]+)");
+
+    private static final Pattern PHASE = Pattern.compile("([a-z]+);dur=([0-9.]+)");
+
+    private static final String POLL_RPC = "[[\"0\",\"com.vaadin.shared.ui.ui.UIServerRpc\",\"poll\",[]]]";
+
+    private static final String[] PHASES = {"queue", "lock", "app", "serialize", "total"};
+
+    public static void main(String[] args) throws Exception {
+        final int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                .withMinimalContainer(true).withServerTiming(true).start();
+        try {
+            final String url = server.getConfig().getDeployUrl();
+            final HttpURLConnection init = (HttpURLConnection) new URL(url + "?v-browserDetails=1").openConnection();
+            init.setRequestMethod("POST");
+            final String content = readAll(init);
+            final String setCookie = init.getHeaderField("Set-Cookie");
+            final String cookie = setCookie.substring(0, setCookie.indexOf(';'));
+            final Matcher matcher = SECURITY_KEY.matcher(content);
+            if (!matcher.find()) {
+                throw new IllegalStateException("No security key in " + content);
+            }
+            final byte[] body = (matcher.group(1) + '\u001d' + POLL_RPC).getBytes("UTF-8");
+
+            run(url, cookie, body, 1, requests / 2);
+            report("%-8s %10s %10s %10s %10s %10s %10s", "clients", "client p50", "queue", "lock", "app",
+                    "serialize", "total");
+            for (int clients : new int[]{1, 2, 4, 8}) {
+                final Map<String, AtomicLong> phases = new LinkedHashMap<String, AtomicLong>();
+                for (String phase : PHASES) {
+                    phases.put(phase, new AtomicLong());
+                }
+                final LoadResult result = load(createPoll(url, cookie, body, phases), clients, requests / clients);
+                report("%-8d %7d us %7d us %7d us %7d us %7d us %7d us", clients, result.getLatency(50),
+                        mean(phases, "queue", requests), mean(phases, "lock", requests),
+                        mean(phases, "app", requests), mean(phases, "serialize", requests),
+                        mean(phases, "total", requests));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(String url, String cookie, byte[] body, int clients, int requests) {
+        load(createPoll(url, cookie, body, null), clients, requests);
+    }
+
+    private static Runnable createPoll(final String url, final String cookie, final byte[] body,
+                                       final Map<String, AtomicLong> phases) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    final HttpURLConnection connection = (HttpURLConnection)
+                            new URL(url + "UIDL/?v-uiId=0").openConnection();
+                    connection.setRequestMethod("POST");
+                    connection.setDoOutput(true);
+                    connection.setRequestProperty("Cookie", cookie);
+                    connection.setRequestProperty("Content-Type", "text/plain;charset=utf-8");
+                    final OutputStream out = connection.getOutputStream();
+                    out.write(body);
+                    out.close();
+                    readAll(connection);
+                    final String header = connection.getHeaderField(ServerTiming.HEADER_NAME);
+                    if (phases != null && header != null) {
+                        final Matcher matcher = PHASE.matcher(header);
+                        while (matcher.find()) {
+                            phases.get(matcher.group(1)).addAndGet(
+                                    (long) (Double.parseDouble(matcher.group(2)) * 1000));
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to poll", e);
+                }
+            }
+        };
+    }
+
+    private static long mean(Map<String, AtomicLong> phases, String phase, int requests) {
+        return phases.get(phase).get() / requests;
+    }
+
+    private static String readAll(HttpURLConnection connection) throws IOException {
+        final InputStream in = connection.getInputStream();
+        try {
+            final StringBuilder sb = new StringBuilder();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                sb.append(new String(buffer, 0, read, "UTF-8"));
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.component.ComponentFactory;
+import com.bsb.common.vaadin.embed.metrics.SessionFootprintSampler;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.VerticalLayout;
+
+/**
+ * Compares the footprint of the sessions estimated by the {@link SessionFootprintSampler}
+ * with the growth of the heap. Opens sessions holding a UI of a given number of labels,
+ * then measures the used heap after a full collection and samples the sessions.
+ * <p/>
+ * Arguments: the number of sessions.
+ *
+ * @author Stephane Nicoll
+ */
+public class SessionFootprintBenchmark extends AbstractBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        report("%-7s %14s %16s %12s", "labels", "heap/session", "serialized mean", "sample time");
+        for (int labels : new int[]{10, 100, 1000}) {
+            run(sessions, labels);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static void run(int sessions, final int labels) {
+        final EmbedVaadinServer server = EmbedVaadin.forComponent(new ComponentFactory() {
+            public Component createComponent() {
+                final VerticalLayout layout = new VerticalLayout();
+                for (int i = 0; i < labels; i++) {
+                    layout.addComponent(new Label("Label number " + i));
+                }
+                return layout;
+            }
+        }).wait(false).withMinimalContainer(true).start();
+        try {
+            final String url = server.getConfig().getDeployUrl() + "?v-browserDetails=1";
+            post(url); // warm up
+            final long before = usedHeap();
+            // Each request without a cookie opens a new session
+            for (int i = 0; i < sessions; i++) {
+                post(url);
+            }
+            final long heapPerSession = (usedHeap() - before) / sessions;
+
+            final SessionFootprintSampler sampler = new SessionFootprintSampler(sessions + 1);
+            sampler.sample(server.getStatistics().getVaadinSessions());
+            report("%-7d %11d KB %13d KB %9d ms", labels, heapPerSession / 1024,
+                    sampler.getHistogram().getMean() / 1024, sampler.getLastSampleDuration() / 1000000);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.ServerStatistics;
+import com.bsb.common.vaadin.embed.component.ComponentFactory;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.VerticalLayout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap that is reclaimed when idle sessions are passivated and the latency
+ * of swapping them back in. Opens sessions holding a UI of 100 labels, waits for the
+ * background processor of the container to swap them out, then accesses each session
+ * again.
+ * <p/>
+ * Arguments: the number of sessions.
+ *
+ * @author Stephane Nicoll
+ */
+public class SessionPassivationBenchmark extends AbstractBenchmark {
+
+    private static final int IDLE_TIME = 1;
+
+    @SuppressWarnings("serial")
+    public static void main(String[] args) throws Exception {
+        final int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        final EmbedVaadinServer server = EmbedVaadin.forComponent(new ComponentFactory() {
+            public Component createComponent() {
+                final VerticalLayout layout = new VerticalLayout();
+                for (int i = 0; i < 100; i++) {
+                    layout.addComponent(new Label("Label number " + i));
+                }
+                return layout;
+            }
+        }).wait(false).withMinimalContainer(true).withSessionPassivation(IDLE_TIME).start();
+        try {
+            final ServerStatistics statistics = server.getStatistics();
+            final String url = server.getConfig().getDeployUrl() + "?v-browserDetails=1";
+            final long before = usedHeap();
+            for (int i = 0; i < sessions; i++) {
+                post(url);
+            }
+            final List<String> sessionIds = new ArrayList<String>();
+            for (VaadinSession session : statistics.getVaadinSessions()) {
+                sessionIds.add(session.getSession().getId());
+            }
+            final long active = usedHeap() - before;
+            report("%-10s %8d sessions, heap %7d KB", "active", statistics.getActiveSessions(), active / 1024);
+
+            // The background processor runs every ten seconds
+            final long timeout = System.currentTimeMillis() + 30000;
+            while (statistics.getActiveSessions() > 0 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(500);
+            }
+            final long passivated = usedHeap() - before;
+            report("%-10s %8d sessions, heap %7d KB (%d KB reclaimed)", "passivated",
+                    statistics.getPassivatedSessions(), passivated / 1024, (active - passivated) / 1024);
+
+            final long start = System.nanoTime();
+            for (String sessionId : sessionIds) {
+                get(server.getConfig().getDeployUrl(), sessionId);
+            }
+            report("%-10s %8d sessions in %d ms, swap in p99=%d us", "restored", statistics.getSessionSwapInCount(),
+                    (System.nanoTime() - start) / 1000000, statistics.getSessionSwapInP99());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void get(String url, String sessionId) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Cookie", "JSESSIONID=" + sessionId);
+        final InputStream in = connection.getInputStream();
+        try {
+            final byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // drain the response
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.component.ComponentFactory;
+import com.bsb.common.vaadin.embed.component.EmbedVaadinComponent;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.VerticalLayout;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap that is reclaimed from abandoned pages according to the session
+ * settings. Opens sessions holding a UI of 100 labels whose page keeps sending
+ * heartbeats, as an abandoned tab would do, then measures the used heap after a
+ * full collection once the session timeout has elapsed.
+ * <p/>
+ * Arguments: the number of sessions.
+ *
+ * @author Stephane Nicoll
+ */
+public class SessionTimeoutBenchmark extends AbstractBenchmark {
+
+    private static final int TIMEOUT = 5;
+
+    private static final int HEARTBEAT_INTERVAL = 1;
+
+    // Leaves time to the background processor, which runs every ten seconds
+    private static final long IDLE_TIME = (TIMEOUT + 12) * 1000;
+
+    public static void main(String[] args) throws Exception {
+        final int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        report("%-22s %8s %8s %11s %11s %11s", "mode", "before", "after", "heap before", "heap after",
+                "reclaimed");
+        run("defaults", sessions, createServer());
+        run("timeout", sessions, createServer().withSessionTimeout(TIMEOUT)
+                .withHeartbeatInterval(HEARTBEAT_INTERVAL));
+        run("timeout + close idle", sessions, createServer().withSessionTimeout(TIMEOUT)
+                .withHeartbeatInterval(HEARTBEAT_INTERVAL).withCloseIdleSessions(true));
+    }
+
+    @SuppressWarnings("serial")
+    private static EmbedVaadinComponent createServer() {
+        return EmbedVaadin.forComponent(new ComponentFactory() {
+            public Component createComponent() {
+                final VerticalLayout layout = new VerticalLayout();
+                for (int i = 0; i < 100; i++) {
+                    layout.addComponent(new Label("Label number " + i));
+                }
+                return layout;
+            }
+        }).wait(false).withMinimalContainer(true);
+    }
+
+    private static void run(String mode, int sessions, EmbedVaadinComponent builder) throws Exception {
+        final EmbedVaadinServer server = builder.start();
+        try {
+            final String url = server.getConfig().getDeployUrl();
+            post(url + "?v-browserDetails=1"); // warm up
+            final long base = usedHeap();
+            for (int i = 0; i < sessions; i++) {
+                post(url + "?v-browserDetails=1");
+            }
+            final List<String> sessionIds = new ArrayList<String>();
+            for (VaadinSession session : server.getStatistics().getVaadinSessions()) {
+                sessionIds.add(session.getSession().getId());
+            }
+            final long before = usedHeap() - base;
+
+            // The abandoned pages keep sending heartbeats
+            final long end = System.currentTimeMillis() + IDLE_TIME;
+            while (System.currentTimeMillis() < end) {
+                for (String sessionId : sessionIds) {
+                    heartbeat(url, sessionId);
+                }
+                Thread.sleep(HEARTBEAT_INTERVAL * 1000);
+            }
+            final long after = usedHeap() - base;
+            report("%-22s %8d %8d %8d KB %8d KB %8d KB", mode, sessionIds.size(),
+                    server.getStatistics().getVaadinSessions().size(), before / 1024, after / 1024,
+                    (before - after) / 1024);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void heartbeat(String url, String sessionId) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url + "HEARTBEAT/?v-uiId=0")
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Cookie", "JSESSIONID=" + sessionId);
+        // The session may have been closed already
+        connection.getResponseCode();
+        connection.disconnect();
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
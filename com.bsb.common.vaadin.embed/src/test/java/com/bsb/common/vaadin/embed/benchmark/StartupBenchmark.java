@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.StartupReport;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time it takes for a server to be ready with a standard and a
+ * {@link com.bsb.common.vaadin.embed.EmbedVaadinConfig#isMinimalContainer() minimal}
+ * container. Uses the test classpath of this module, that is tomcat, jasper, vaadin
+ * and its dependencies.
+ * <p/>
+ * Runs alternate so that both modes benefit equally from the warm up of the VM.
+ *
+ * @author Stephane Nicoll
+ */
+public class StartupBenchmark extends AbstractBenchmark {
+
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ITERATIONS;
+        report("Classpath holds %d entries", System.getProperty("java.class.path").split(
+                System.getProperty("path.separator")).length);
+
+        final Measure standard = new Measure();
+        final Measure minimal = new Measure();
+        for (int i = 0; i < iterations; i++) {
+            standard.run(false);
+            minimal.run(true);
+        }
+        standard.report("standard");
+        minimal.report("minimal");
+    }
+
+    private static final class Measure {
+        private final List<Long> tomcatStart = new ArrayList<Long>();
+        private final List<Long> startup = new ArrayList<Long>();
+        private final List<Long> firstByte = new ArrayList<Long>();
+
+        private void run(boolean minimalContainer) {
+            final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                    .withMinimalContainer(minimalContainer).start();
+            try {
+                get(server.getConfig().getDeployUrl());
+                final StartupReport report = server.getStartupReport();
+                tomcatStart.add(report.getDuration(StartupReport.TOMCAT_START));
+                startup.add(report.getStartupTime());
+                final Long firstByteTime = report.getDuration(StartupReport.FIRST_BYTE);
+                if (firstByteTime != null) {
+                    firstByte.add(firstByteTime);
+                }
+            } finally {
+                server.stop();
+            }
+        }
+
+        private void report(String mode) {
+            AbstractBenchmark.report("%-8s tomcat start: %4d ms, startup: %4d ms, first byte: %4d ms (median of %d)",
+                    mode, median(tomcatStart), median(startup), median(firstByte), startup.size());
+        }
+    }
+}
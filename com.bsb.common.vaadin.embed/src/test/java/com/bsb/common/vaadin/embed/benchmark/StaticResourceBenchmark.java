@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures repeated first loads of the static resources of a page, that is without
+ * any conditional header, when they are served by the vaadin servlet, by the static
+ * resource servlet without a cache and by the static resource servlet with a cache,
+ * with and without gzip.
+ * <p/>
+ * Arguments: the number of concurrent clients and the number of page loads per client.
+ *
+ * @author Stephane Nicoll
+ */
+public class StaticResourceBenchmark extends AbstractBenchmark {
+
+    private static final String[] PAGE_RESOURCES = new String[]{
+            "VAADIN/vaadinBootstrap.js",
+            "VAADIN/widgetsets/com.vaadin.DefaultWidgetSet/com.vaadin.DefaultWidgetSet.nocache.js",
+            "VAADIN/widgetsets/com.vaadin.DefaultWidgetSet/FC14AE57E6E21B8995AE9DA8E418484C.cache.js",
+            "VAADIN/themes/reindeer/styles.css",
+            "VAADIN/themes/reindeer/favicon.ico"};
+
+    private static final int THREADS = 4;
+
+    private static final int PAGE_LOADS_PER_THREAD = 50;
+
+    public static void main(String[] args) {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : THREADS;
+        final int pageLoads = args.length > 1 ? Integer.parseInt(args[1]) : PAGE_LOADS_PER_THREAD;
+        run("vaadin servlet", false, 0, false, threads, pageLoads);
+        run("static servlet", true, 0, false, threads, pageLoads);
+        run("static cache", true, 16 * 1024 * 1024, false, threads, pageLoads);
+        run("static cache gzip", true, 16 * 1024 * 1024, true, threads, pageLoads);
+    }
+
+    private static void run(String mode, boolean staticResourceServlet, int cacheSize, final boolean gzip,
+                            int threads, int pageLoads) {
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false).withMinimalContainer(true)
+                .withStaticResourceServlet(staticResourceServlet).withStaticResourceCacheSize(cacheSize).start();
+        try {
+            final String baseUrl = server.getConfig().getDeployUrl();
+            final AtomicLong bytes = new AtomicLong();
+            final Runnable pageLoad = new Runnable() {
+                public void run() {
+                    for (String resource : PAGE_RESOURCES) {
+                        bytes.addAndGet(get(baseUrl + resource, gzip));
+                    }
+                }
+            };
+            // Warm up
+            load(pageLoad, threads, Math.max(1, pageLoads / 5));
+            bytes.set(0);
+            final LoadResult result = load(pageLoad, threads, pageLoads);
+            report("%-18s %5d page loads/s, p50: %6d us, p99: %6d us, %5d KB per page load", mode,
+                    result.getThroughput(), result.getLatency(50), result.getLatency(99),
+                    bytes.get() / (threads * pageLoads) / 1024);
+        } finally {
+            server.stop();
+        }
+    }
+}
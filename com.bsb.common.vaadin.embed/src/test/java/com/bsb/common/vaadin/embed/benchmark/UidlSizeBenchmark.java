@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.metrics.UidlPayload;
+import com.bsb.common.vaadin.embed.metrics.UidlSizeMetrics;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.VerticalLayout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the cost of recording the size of the UIDL responses. Repaints a UI of a
+ * hundred labels: the first responses of a server are analyzed as they are among the
+ * largest ones, the following ones of the same size are only counted.
+ * <p/>
+ * Arguments: the number of requests.
+ *
+ * @author Stephane Nicoll
+ */
+public class UidlSizeBenchmark extends AbstractBenchmark {
+
+    private static final Pattern SECURITY_KEY = Pattern.compile("Vaadin-Security-Key\\\\?\":\\\\?\"([^\"\\\\]+)");
+
+    private static final String POLL_RPC = "[[\"0\",\"com.vaadin.shared.ui.ui.UIServerRpc\",\"poll\",[]]]";
+
+    public static void main(String[] args) throws Exception {
+        final int requests = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        run(requests, false); // warm up
+        run(requests, true);
+    }
+
+    private static void run(int requests, boolean print) throws IOException {
+        final VerticalLayout layout = new VerticalLayout();
+        for (int i = 0; i < 100; i++) {
+            layout.addComponent(new Label("Label number " + i + " with a description of a reasonable length"));
+        }
+        final EmbedVaadinServer server = EmbedVaadin.forComponent(layout).wait(false)
+                .withMinimalContainer(true).start();
+        try {
+            final String url = server.getConfig().getDeployUrl();
+            final HttpURLConnection init = (HttpURLConnection) new URL(url + "?v-browserDetails=1").openConnection();
+            init.setRequestMethod("POST");
+            final String content = readAll(init);
+            final String setCookie = init.getHeaderField("Set-Cookie");
+            final String cookie = setCookie.substring(0, setCookie.indexOf(';'));
+            final Matcher matcher = SECURITY_KEY.matcher(content);
+            if (!matcher.find()) {
+                throw new IllegalStateException("No security key in " + content);
+            }
+            final byte[] body = (matcher.group(1) + '\u001d' + POLL_RPC).getBytes("UTF-8");
+
+            final List<Long> analyzed = new ArrayList<Long>();
+            final List<Long> counted = new ArrayList<Long>();
+            for (int i = 0; i < requests; i++) {
+                final long start = System.nanoTime();
+                repaint(url, cookie, body);
+                final long latency = (System.nanoTime() - start) / 1000;
+                (i < UidlSizeMetrics.DEFAULT_LARGEST_RESPONSES ? analyzed : counted).add(latency);
+            }
+            if (print) {
+                final UidlSizeMetrics uidlSizes = server.getRequestMetrics().getUidlSizes();
+                final UidlPayload largest = uidlSizes.getLargestResponses().get(0);
+                report("Response: %d bytes, %d contributors, largest section %s",
+                        largest.getSize(), largest.getContributors().size(),
+                        largest.getSections().keySet().iterator().next());
+                report("Analyzed: p50 %d us", median(analyzed));
+                report("Counted:  p50 %d us", median(counted));
+                report("Histogram: %s", uidlSizes.getHistogram());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void repaint(String url, String cookie, byte[] body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection)
+                new URL(url + "UIDL/?v-uiId=0&repaintAll=1").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Cookie", cookie);
+        connection.setRequestProperty("Content-Type", "text/plain;charset=utf-8");
+        final OutputStream out = connection.getOutputStream();
+        out.write(body);
+        out.close();
+        readAll(connection);
+    }
+
+    private static String readAll(HttpURLConnection connection) throws IOException {
+        final InputStream in = connection.getInputStream();
+        try {
+            final StringBuilder sb = new StringBuilder();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                sb.append(new String(buffer, 0, read, "UTF-8"));
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.benchmark;
+
+import com.bsb.common.vaadin.embed.ConnectorProtocol;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.component.ComponentFactory;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+
+/**
+ * Compares how the thread pool of the connector and virtual threads scale with the
+ * number of concurrent sessions. Each session is initialized by a request that blocks
+ * for a while, as if the component was loading data from a remote service.
+ * <p/>
+ * Must be run on Java 24 or later for the comparison to be meaningful, both modes
+ * use the thread pool otherwise.
+ * <p/>
+ * Arguments: the maximum number of threads of the pool, the blocking time, in ms, and
+ * the {@link ConnectorProtocol protocol} of the connector.
+ *
+ * @author Stephane Nicoll
+ */
+public class VirtualThreadBenchmark extends AbstractBenchmark {
+
+    private static final int MAX_THREADS = 50;
+
+    private static final long BLOCKING_TIME = 100;
+
+    private static final int[] CONCURRENT_SESSIONS = new int[]{25, 50, 100, 200};
+
+    private static final int SESSIONS_PER_CLIENT = 5;
+
+    private static final ConnectorProtocol PROTOCOL = ConnectorProtocol.NIO;
+
+    public static void main(String[] args) {
+        final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : MAX_THREADS;
+        final long blockingTime = args.length > 1 ? Long.parseLong(args[1]) : BLOCKING_TIME;
+        final ConnectorProtocol protocol = args.length > 2 ? ConnectorProtocol.fromName(args[2]) : PROTOCOL;
+        report("Java %s, %s connector, pool of %d threads, %d ms blocking time",
+                System.getProperty("java.version"), protocol, maxThreads, blockingTime);
+        for (int sessions : CONCURRENT_SESSIONS) {
+            run("pool", false, protocol, maxThreads, blockingTime, sessions);
+            run("virtual", true, protocol, maxThreads, blockingTime, sessions);
+        }
+    }
+
+    private static void run(String mode, boolean virtualThreads, ConnectorProtocol protocol, int maxThreads,
+                            long blockingTime, int sessions) {
+        final EmbedVaadinServer server = EmbedVaadin.forComponent(new BlockingComponentFactory(blockingTime))
+                .wait(false).withMinimalContainer(true).withConnectorProtocol(protocol)
+                .withThreads(maxThreads, 10).withVirtualThreads(virtualThreads).start();
+        try {
+            final String url = server.getConfig().getDeployUrl() + "?v-browserDetails=1";
+            final LoadResult result = load(new Runnable() {
+                public void run() {
+                    post(url);
+                }
+            }, sessions, SESSIONS_PER_CLIENT);
+            report("%-8s %4d sessions, throughput: %5d sessions/s, p50: %5d ms, p99: %5d ms", mode, sessions,
+                    result.getThroughput(), result.getLatency(50) / 1000, result.getLatency(99) / 1000);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class BlockingComponentFactory implements ComponentFactory {
+
+        private final long blockingTime;
+
+        private BlockingComponentFactory(long blockingTime) {
+            this.blockingTime = blockingTime;
+        }
+
+        public Component createComponent() {
+            try {
+                Thread.sleep(blockingTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Label("Hello");
+        }
+    }
+}
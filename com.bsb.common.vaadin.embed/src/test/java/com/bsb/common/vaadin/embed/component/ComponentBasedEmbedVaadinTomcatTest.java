@@ -18,17 +18,46 @@ package com.bsb.common.vaadin.embed.component;
 import com.bsb.common.vaadin.embed.AbstractEmbedTest;
 import com.bsb.common.vaadin.embed.EmbedVaadinServer;
 import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.server.VaadinSession;
 import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.UI;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 /**
  * @author Stephane Nicoll
  */
 public class ComponentBasedEmbedVaadinTomcatTest extends AbstractEmbedTest {
 
+    private static final Logger logger = LoggerFactory.getLogger(ComponentBasedEmbedVaadinTomcatTest.class);
+
+    private static final int SESSIONS = 40;
+
+    private static final int THREADS = 8;
+
+    // Keeps track of the components created by the factory
+    private static final Set<Component> createdComponents =
+            Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>()));
+
     @Test
     public void startWithDefaultSettings() {
         final EmbedVaadinServer server = EmbedVaadin.forComponent(new Button("Hello"))
@@ -78,4 +107,116 @@ public class ComponentBasedEmbedVaadinTomcatTest extends AbstractEmbedTest {
         server.stop();
     }
 
+    @Test
+    public void startWithComponentFactoryHandlesConcurrentSessions() throws Exception {
+        createdComponents.clear();
+        final EmbedVaadinServer server = EmbedVaadin.forComponent(new TestComponentFactory())
+                .wait(false).start();
+        try {
+            final int port = server.getConfig().getPort();
+            // Warm up the server so that the first measure is not penalized
+            initSessions(port, 1, 1);
+            createdComponents.clear();
+
+            final long sequentialTime = initSessions(port, SESSIONS, 1);
+            assertEquals("A component should have been created for each session", SESSIONS, createdComponents.size());
+            assertDistinctUIs();
+            createdComponents.clear();
+
+            final long concurrentTime = initSessions(port, SESSIONS, THREADS);
+            assertEquals("A component should have been created for each concurrent session",
+                    SESSIONS, createdComponents.size());
+            assertDistinctUIs();
+
+            final String times = SESSIONS + " sessions initialized in " + sequentialTime
+                    + " ms with a single thread, " + concurrentTime + " ms with " + THREADS + " threads";
+            logger.info(times);
+            // Initializing a session mostly waits for I/O so even a single core shows a speedup
+            assertTrue("Concurrent sessions should not be initialized one after the other: " + times,
+                    concurrentTime <= sequentialTime);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void startWithComponentFactoryAndWarmUp() throws Exception {
+        createdComponents.clear();
+        final EmbedVaadinServer server = EmbedVaadin.forComponent(new TestComponentFactory())
+                .withWarmUp(true).wait(false).start();
+        try {
+            final long timeout = System.currentTimeMillis() + 5000;
+            while (createdComponents.isEmpty() && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            assertEquals("A component should have been created in the background", 1, createdComponents.size());
+
+            initSessions(server.getConfig().getPort(), 1, 1);
+            assertEquals("First UI should have used the component created in the background",
+                    1, createdComponents.size());
+
+            initSessions(server.getConfig().getPort(), 1, 1);
+            assertEquals("A new component should have been created for the second UI", 2, createdComponents.size());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Asserts that each created component belongs to its own UI, and each UI to its
+     * own session.
+     */
+    private void assertDistinctUIs() {
+        final Set<UI> uis = Collections.newSetFromMap(new IdentityHashMap<UI, Boolean>());
+        final Set<VaadinSession> sessions = Collections.newSetFromMap(new IdentityHashMap<VaadinSession, Boolean>());
+        for (Component component : new ArrayList<Component>(createdComponents)) {
+            final UI ui = component.getUI();
+            assertNotNull("Component should be attached to a UI", ui);
+            uis.add(ui);
+            sessions.add(ui.getSession());
+        }
+        assertEquals("Each session should have its own UI", createdComponents.size(), uis.size());
+        assertEquals("Each UI should belong to its own session", createdComponents.size(), sessions.size());
+    }
+
+    /**
+     * Initializes the specified number of sessions using the specified number of threads. Each
+     * session uses its own client and initializes a single UI.
+     *
+     * @return the time it took to initialize all sessions, in milliseconds
+     */
+    private long initSessions(final int port, int sessions, int threads) throws Exception {
+        final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.getParams().setDefaultMaxConnectionsPerHost(threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+            for (int i = 0; i < sessions; i++) {
+                tasks.add(new Callable<String>() {
+                    public String call() throws Exception {
+                        return initVaadinUI(new HttpClient(connectionManager), port, "");
+                    }
+                });
+            }
+            final long start = System.nanoTime();
+            final List<Future<String>> results = executor.invokeAll(tasks);
+            for (Future<String> result : results) {
+                assertTrue("Initial UIDL was expected", result.get().contains("uidl"));
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            executor.shutdown();
+            connectionManager.shutdown();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class TestComponentFactory implements ComponentFactory {
+
+        public Component createComponent() {
+            final Button button = new Button("Hello");
+            createdComponents.add(button);
+            return button;
+        }
+    }
 }
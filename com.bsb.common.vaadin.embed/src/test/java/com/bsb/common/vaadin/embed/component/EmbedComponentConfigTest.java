@@ -32,7 +32,7 @@ public class EmbedComponentConfigTest extends AbstractEmbedTest {
         assertServerConfig(config, EmbedVaadinConfig.DEFAULT_PORT, EmbedVaadinConfig.DEFAULT_CONTEXT_PATH,
                 EmbedVaadinConfig.DEFAULT_WAITING);
         assertComponentConfig(config, EmbedComponentConfig.DEFAULT_THEME,
-                EmbedComponentConfig.DEFAULT_DEVELOPMENT_HEADER);
+                EmbedComponentConfig.DEFAULT_DEVELOPMENT_HEADER, EmbedComponentConfig.DEFAULT_WARM_UP);
         assertVaadinConfig(config, null, EmbedComponentConfig.DEFAULT_PRODUCTION_MODE);
         assertBrowserConfig(config, EmbedVaadinConfig.DEFAULT_OPEN_BROWSER, null);
     }
@@ -43,7 +43,7 @@ public class EmbedComponentConfigTest extends AbstractEmbedTest {
                 EmbedVaadinConfig.loadProperties("/config/simple-embed-vaadin.properties"));
         assertServerConfig(config, 12345, "/foo", false);
         assertVaadinConfig(config, "com.bsb.foo.MyWidgetSet", true);
-        assertComponentConfig(config, "myTheme", true);
+        assertComponentConfig(config, "myTheme", true, true);
         assertBrowserConfig(config, true, "/foo/bar");
     }
 
@@ -55,15 +55,18 @@ public class EmbedComponentConfigTest extends AbstractEmbedTest {
         // Change stuff
         config.setTheme("fooBarTheme");
         config.setDevelopmentHeader(true);
+        config.setWarmUp(true);
 
         // Now validate the clone has not changed
         assertComponentConfig(clone, EmbedComponentConfig.DEFAULT_THEME,
-                EmbedComponentConfig.DEFAULT_DEVELOPMENT_HEADER);
+                EmbedComponentConfig.DEFAULT_DEVELOPMENT_HEADER, EmbedComponentConfig.DEFAULT_WARM_UP);
     }
 
-    protected void assertComponentConfig(EmbedComponentConfig config, String theme, boolean developmentHeader) {
+    protected void assertComponentConfig(EmbedComponentConfig config, String theme, boolean developmentHeader,
+                                         boolean warmUp) {
         assertConfigIsNotNull(config);
         assertEquals("Wrong theme", theme, config.getTheme());
         assertEquals("Wrong development header flag", developmentHeader, config.isDevelopmentHeader());
+        assertEquals("Wrong warm up flag", warmUp, config.isWarmUp());
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.compression;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class GzipFilterTest extends AbstractEmbedTest {
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void compressBootstrapPage() throws IOException {
+        startServer(256);
+        final String plain = execute(new GetMethod(getUrl("")), false);
+        final GetMethod method = new GetMethod(getUrl(""));
+        final String content = execute(method, true);
+        assertEquals("Wrong content encoding", "gzip", method.getResponseHeader("Content-Encoding").getValue());
+        assertEquals("Wrong vary header", "Accept-Encoding", method.getResponseHeader("Vary").getValue());
+        assertEquals("Wrong content", plain, content);
+        assertTrue("Compressed content should be smaller", method.getResponseBody().length < plain.length());
+    }
+
+    @Test
+    public void compressUidlResponse() throws IOException {
+        startServer(256);
+        final PostMethod method = new PostMethod(getUrl("?v-browserDetails=1&theme=reindeer"));
+        final String content = execute(method, true);
+        assertEquals("Wrong content encoding", "gzip", method.getResponseHeader("Content-Encoding").getValue());
+        assertTrue("Wrong content " + content, content.contains("\"v-uiId\""));
+    }
+
+    @Test
+    public void noCompressionWithoutAcceptEncoding() throws IOException {
+        startServer(256);
+        final GetMethod method = new GetMethod(getUrl(""));
+        execute(method, false);
+        assertNull("Response should not be compressed", method.getResponseHeader("Content-Encoding"));
+        assertEquals("Wrong vary header", "Accept-Encoding", method.getResponseHeader("Vary").getValue());
+    }
+
+    @Test
+    public void noCompressionBelowThreshold() throws IOException {
+        startServer(1024 * 1024);
+        final GetMethod method = new GetMethod(getUrl(""));
+        final String content = execute(method, true);
+        assertNull("Response should not be compressed", method.getResponseHeader("Content-Encoding"));
+        assertEquals("Wrong vary header", "Accept-Encoding", method.getResponseHeader("Vary").getValue());
+        assertEquals("Wrong content length", String.valueOf(content.getBytes("UTF-8").length),
+                method.getResponseHeader("Content-Length").getValue());
+    }
+
+    @Test
+    public void noVaryHeaderIfNotCompressible() throws IOException {
+        startServer(256);
+        final GetMethod method = new GetMethod(getUrl("VAADIN/themes/reindeer/favicon.ico"));
+        execute(method, true);
+        assertNull("Response should not be compressed", method.getResponseHeader("Content-Encoding"));
+        assertNull("No vary header expected", method.getResponseHeader("Vary"));
+    }
+
+    @Test
+    public void isCompressible() {
+        final GzipFilter filter = new GzipFilter(0, 6, Arrays.asList("text/html", "application/json"));
+        assertTrue(filter.isCompressible("text/html"));
+        assertTrue(filter.isCompressible("application/json; charset=UTF-8"));
+        assertFalse(filter.isCompressible("image/png"));
+        assertFalse(filter.isCompressible(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLevel() {
+        new GzipFilter(0, 10, Arrays.asList("text/html"));
+    }
+
+    private void startServer(int minSize) {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                .withCompression(minSize, 6, "text/html", "application/json").start();
+    }
+
+    private String getUrl(String path) {
+        return server.getConfig().getDeployUrl() + path;
+    }
+
+    private String execute(HttpMethod method, boolean gzip) throws IOException {
+        if (gzip) {
+            method.setRequestHeader("Accept-Encoding", "gzip, deflate");
+        }
+        try {
+            assertEquals("Wrong status", HttpStatus.SC_OK, client.executeMethod(method));
+            final byte[] body = method.getResponseBody();
+            final boolean compressed = method.getResponseHeader("Content-Encoding") != null;
+            final byte[] content = (compressed ? ByteStreams.toByteArray(
+                    new GZIPInputStream(new ByteArrayInputStream(body))) : body);
+            return new String(content, "UTF-8");
+        } finally {
+            method.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.VerticalLayout;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class ComponentTreeProfilerTest extends AbstractEmbedTest {
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void disabledByDefault() {
+        final ComponentTreeProfiler profiler = new ComponentTreeProfiler();
+        assertFalse("Should be disabled by default", profiler.isEnabled());
+        profiler.profile(Collections.<VaadinSession>emptyList());
+        assertTrue("No UI expected", profiler.getProfiles().isEmpty());
+        assertTrue("Wrong report " + profiler.getReport(), profiler.getReport().contains("(none)"));
+    }
+
+    @Test
+    public void profileWrappedComponent() throws IOException {
+        final HorizontalLayout row = new HorizontalLayout();
+        for (int i = 0; i < 3; i++) {
+            row.addComponent(new Label("Label " + i));
+        }
+        final VerticalLayout layout = new VerticalLayout();
+        layout.addComponent(row);
+        server = EmbedVaadin.forComponent(layout).wait(false).withComponentProfileInterval(3600).start();
+        final ComponentTreeProfiler profiler = server.getRequestMetrics().getComponentTrees();
+        assertTrue("Round trips should be recorded", profiler.isEnabled());
+
+        final String initialUidl = initVaadinUI(client, server.getConfig().getPort(),
+                server.getConfig().getContextPath());
+        final PostMethod poll = createPollRequest(server.getConfig().getDeployUrl(), initialUidl);
+        poll.setQueryString("v-uiId=0&repaintAll=1");
+        try {
+            assertEquals("Wrong status", HttpStatus.SC_OK, client.executeMethod(poll));
+            poll.getResponseBody();
+        } finally {
+            poll.releaseConnection();
+        }
+
+        final String report = server.getStatistics().profileComponentTrees();
+        final List<UiProfile> profiles = profiler.getProfiles();
+        assertEquals("Wrong number of UI classes " + profiles, 1, profiles.size());
+        final UiProfile profile = profiles.get(0);
+        assertTrue("Wrong report " + report, report.contains(profile.getUiClass()));
+        assertEquals("Wrong number of UIs", 1, profile.getUiCount());
+        // UI, layout, row and its labels
+        assertTrue("Wrong number of connectors " + profile, profile.getConnectorCount() >= 6);
+        assertEquals("Wrong max connectors", profile.getConnectorCount(), profile.getMaxConnectorCount());
+        assertEquals("Wrong depth " + profile, 4, profile.getMaxDepth());
+        assertTrue("Wrong state size " + profile, profile.getStateSize() > 0);
+        assertEquals("Wrong round trips " + profile, 1, profile.getRoundTripCount());
+        assertTrue("Wrong dirty connectors " + profile, profile.getMaxDirtyConnectorCount() >= 6);
+        assertTrue("Walk should have been timed", profiler.getLastWalkDuration() > 0);
+
+        profiler.reset();
+        assertTrue("Profiles should have been reset", profiler.getProfiles().isEmpty());
+    }
+}
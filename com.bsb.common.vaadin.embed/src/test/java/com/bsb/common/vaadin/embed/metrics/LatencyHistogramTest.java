@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void emptyHistogram() {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getP99());
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i, TimeUnit.MICROSECONDS);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(5, histogram.getP50());
+        assertEquals(10, histogram.getP99());
+        assertEquals(10, histogram.getMax());
+        assertEquals(5, histogram.getMean());
+    }
+
+    @Test
+    public void percentilesWithinPrecision() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            histogram.record(1000 + random.nextInt(99000), TimeUnit.MICROSECONDS);
+        }
+        assertWithinPrecision(50500, histogram.getP50());
+        assertWithinPrecision(99010, histogram.getP99());
+        assertTrue("Wrong max " + histogram.getMax(), histogram.getMax() < 100000);
+    }
+
+    @Test
+    public void maxIsExact() {
+        histogram.record(10, TimeUnit.MILLISECONDS);
+        histogram.record(123456789, TimeUnit.NANOSECONDS);
+        assertEquals(123456, histogram.getMax());
+        assertEquals(123456, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void hugeValueIsRecorded() {
+        histogram.record(Long.MAX_VALUE / 2, TimeUnit.NANOSECONDS);
+        assertEquals(1, histogram.getCount());
+        assertEquals(TimeUnit.NANOSECONDS.toMicros(Long.MAX_VALUE / 2), histogram.getP50());
+    }
+
+    @Test
+    public void bucketBounds() {
+        for (int i = 0; i < 400; i++) {
+            final int index = LatencyHistogram.indexOf(i);
+            assertTrue("Value " + i + " above bucket " + index, i <= LatencyHistogram.upperBoundOf(index));
+            if (index > 0) {
+                assertTrue("Value " + i + " within bucket " + (index - 1),
+                        i > LatencyHistogram.upperBoundOf(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final int threads = 4;
+        final int iterations = 50000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            final int offset = i;
+            new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < iterations; j++) {
+                        histogram.record(j + offset, TimeUnit.MICROSECONDS);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        assertTrue("Recording took too long", latch.await(10, TimeUnit.SECONDS));
+        assertEquals(threads * iterations, histogram.getCount());
+        assertEquals(iterations - 1 + threads - 1, histogram.getMax());
+    }
+
+    private void assertWithinPrecision(long expected, long actual) {
+        assertTrue("Expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 8);
+    }
+}
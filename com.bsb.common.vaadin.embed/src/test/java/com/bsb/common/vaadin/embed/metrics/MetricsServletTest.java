@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class MetricsServletTest extends AbstractEmbedTest {
+
+    // A sample is a name, optional labels and a value
+    private static final Pattern SAMPLE = Pattern.compile("[a-z_]+(\\{[a-z_]+=\"[^\"]+\"(,[a-z_]+=\"[^\"]+\")*\\})? "
+            + "-?[0-9]+(\\.[0-9]+)?");
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void scrapeMetrics() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withMetricsServlet(true).start();
+        get("", HttpStatus.SC_OK);
+        final String content = get("metrics", HttpStatus.SC_OK);
+        assertTrue("Wrong content " + content, content.contains("# TYPE vaadin_requests_total counter\n"));
+        assertTrue("Wrong content " + content,
+                content.contains("vaadin_request_duration_seconds{type=\"bootstrap\",quantile=\"0.99\"} "));
+        assertTrue("Wrong content " + content,
+                content.contains("vaadin_request_duration_seconds_count{type=\"bootstrap\"} 1\n"));
+        assertTrue("Wrong content " + content, content.contains("\nvaadin_uidl_response_bytes_count 0\n"));
+        assertTrue("Wrong content " + content, content.contains("vaadin_sessions_active 1\n"));
+        assertTrue("Wrong content " + content, content.contains("\nvaadin_uis_active 0\n"));
+        assertTrue("Wrong content " + content, content.contains("\nvaadin_sessions_evicted_total 0\n"));
+        assertTrue("Wrong content " + content, content.contains("\ntomcat_threads_max 200\n"));
+        assertTrue("Wrong content " + content, content.contains("\njvm_memory_heap_used_bytes "));
+        for (String line : content.split("\n")) {
+            assertTrue("Invalid line [" + line + "]", line.startsWith("# ") || SAMPLE.matcher(line).matches());
+        }
+    }
+
+    @Test
+    public void scrapeDoesNotGoThroughVaadin() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withMetricsServlet(true).start();
+        get("metrics", HttpStatus.SC_OK);
+        final String content = get("metrics", HttpStatus.SC_OK);
+        for (RequestType type : RequestType.values()) {
+            assertEquals("No request expected for " + type, 0,
+                    server.getRequestMetrics().getHistogram(type).getCount());
+        }
+        assertTrue("Wrong content " + content, content.contains("vaadin_sessions_active 0\n"));
+        final Matcher matcher = Pattern.compile("vaadin_requests_total ([0-9]+)").matcher(content);
+        assertTrue("Wrong content " + content, matcher.find());
+        assertEquals("Wrong request count", "1", matcher.group(1));
+    }
+
+    @Test
+    public void healthCheck() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withMetricsServlet("/admin/metrics").start();
+        assertEquals("Wrong health", "UP\n", get("admin/metrics/health", HttpStatus.SC_OK));
+        assertTrue(get("admin/metrics", HttpStatus.SC_OK).contains("vaadin_requests_total"));
+    }
+
+    @Test
+    public void metricsDisabledByDefault() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final String content = get("metrics", HttpStatus.SC_OK);
+        assertFalse("Metrics should not be exposed", content.contains("vaadin_requests_total"));
+    }
+
+    private String get(String path, int expectedStatus) throws IOException {
+        final GetMethod method = new GetMethod(server.getConfig().getDeployUrl() + path);
+        try {
+            assertEquals("Wrong status for " + path, expectedStatus, client.executeMethod(method));
+            return method.getResponseBodyAsString();
+        } finally {
+            method.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.vaadin.ui.Button;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class RequestMetricsTest extends AbstractEmbedTest {
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void recordApplicationRequests() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final RequestMetrics metrics = server.getRequestMetrics();
+        final long bootstrap = metrics.getHistogram(RequestType.BOOTSTRAP).getCount(); // startup probe
+
+        execute(new GetMethod(getUrl("")));
+        initVaadinUI(client, server.getConfig().getPort(), server.getConfig().getContextPath());
+        execute(new PostMethod(getUrl("HEARTBEAT/?v-uiId=0")));
+        execute(new GetMethod(getUrl("VAADIN/vaadinBootstrap.js")));
+
+        assertCount("Wrong bootstrap count", bootstrap + 2, metrics.getHistogram(RequestType.BOOTSTRAP));
+        assertCount("Wrong heartbeat count", 1, metrics.getHistogram(RequestType.HEARTBEAT));
+        assertCount("Wrong static count", 1, metrics.getHistogram(RequestType.STATIC));
+        assertEquals("Wrong uidl count", 0, metrics.getHistogram(RequestType.UIDL).getCount());
+        final LatencyHistogram histogram = metrics.getHistogram(RequestType.BOOTSTRAP);
+        assertTrue("Wrong max " + histogram, histogram.getMax() > 0 && histogram.getMax() >= histogram.getP50());
+        assertTrue("Wrong description " + metrics, metrics.toString().contains("BOOTSTRAP[count="));
+    }
+
+    @Test
+    public void recordComponentRequests() throws IOException {
+        server = EmbedVaadin.forComponent(new Button("Hello")).wait(false).start();
+        final long bootstrap = server.getRequestMetrics().getHistogram(RequestType.BOOTSTRAP).getCount();
+        execute(new GetMethod(getUrl("")));
+        assertCount("Wrong bootstrap count", bootstrap + 1,
+                server.getRequestMetrics().getHistogram(RequestType.BOOTSTRAP));
+    }
+
+    // The response may be received before the duration of the request is recorded
+    private void assertCount(String message, long expected, LatencyHistogram histogram) {
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (histogram.getCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertEquals(message, expected, histogram.getCount());
+    }
+
+    private String getUrl(String path) {
+        return server.getConfig().getDeployUrl() + path;
+    }
+
+    private void execute(HttpMethod method) throws IOException {
+        try {
+            assertEquals("Wrong status for " + method.getPath(), HttpStatus.SC_OK, client.executeMethod(method));
+            method.getResponseBody();
+        } finally {
+            method.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class ResourceAccountingTest extends AbstractEmbedTest {
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void disabledByDefault() {
+        final ResourceAccounting accounting = new ResourceAccounting();
+        assertFalse("Should be disabled by default", accounting.isEnabled());
+        assertNull("Nothing to account when disabled", accounting.start());
+    }
+
+    @Test
+    public void chargeRequests() {
+        final ResourceAccounting accounting = createAccounting(60, TimeUnit.SECONDS);
+        charge(accounting, "session1", "com.acme.MainUI", RequestType.UIDL, 200000);
+        charge(accounting, "session1", "com.acme.MainUI", RequestType.UIDL, 200000);
+        charge(accounting, "session2", null, RequestType.BOOTSTRAP, 0);
+
+        final List<ResourceUsage> requests = accounting.getTopByAllocatedBytes(10);
+        assertEquals("Wrong number of entries " + requests, 2, requests.size());
+        final ResourceUsage uidl = requests.get(0);
+        assertEquals("Wrong name", "com.acme.MainUI UIDL", uidl.getName());
+        assertEquals("Wrong request count", 2, uidl.getRequestCount());
+        assertTrue("Wrong allocated bytes " + uidl, uidl.getAllocatedBytes() >= 400000);
+        assertTrue("Wrong cpu time " + uidl, uidl.getCpuTime() >= 0);
+        assertEquals("Wrong name", "none BOOTSTRAP", requests.get(1).getName());
+
+        final List<ResourceUsage> sessions = accounting.getTopSessions(1);
+        assertEquals("Wrong number of sessions " + sessions, 1, sessions.size());
+        assertEquals("Wrong request count", 2, find(accounting.getTopSessions(10), "session1").getRequestCount());
+        assertEquals("Wrong request count", 1, find(accounting.getTopSessions(10), "session2").getRequestCount());
+
+        final String report = accounting.getReport(5);
+        assertTrue("Wrong report " + report, report.contains("Top requests by CPU time:\n  "));
+        assertTrue("Wrong report " + report, report.contains("com.acme.MainUI UIDL: 2 requests"));
+        assertTrue("Wrong report " + report, report.contains("Top sessions by CPU time:\n  "));
+    }
+
+    @Test
+    public void rollingWindow() throws InterruptedException {
+        final ResourceAccounting accounting = createAccounting(50, TimeUnit.MILLISECONDS);
+        charge(accounting, "session1", "com.acme.MainUI", RequestType.UIDL, 0);
+        Thread.sleep(60);
+        charge(accounting, "session1", "com.acme.MainUI", RequestType.UIDL, 0);
+        assertEquals("Previous window should be kept", 2, accounting.getTopByCpuTime(1).get(0).getRequestCount());
+        Thread.sleep(120);
+        assertTrue("Usage should have expired", accounting.getTopByCpuTime(1).isEmpty());
+        assertTrue("Usage should have expired", accounting.getTopSessions(1).isEmpty());
+    }
+
+    @Test
+    public void reset() {
+        final ResourceAccounting accounting = createAccounting(60, TimeUnit.SECONDS);
+        charge(accounting, "session1", "com.acme.MainUI", RequestType.UIDL, 0);
+        accounting.reset();
+        assertTrue("Usage should have been reset", accounting.getTopByCpuTime(1).isEmpty());
+    }
+
+    @Test
+    public void switchAtRuntime() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final ResourceAccounting accounting = server.getResourceAccounting();
+        assertFalse("Should be disabled by default", accounting.isEnabled());
+        final String initialUidl = initVaadinUI(client, server.getConfig().getPort(),
+                server.getConfig().getContextPath());
+        assertTrue("Nothing should have been charged", accounting.getTopByCpuTime(10).isEmpty());
+
+        accounting.setEnabled(true);
+        execute(createPollRequest(getUrl(""), initialUidl));
+        final String name = TestUI.class.getName() + " UIDL";
+        awaitRequestCount(accounting, name, 1);
+        final List<ResourceUsage> sessions = accounting.getTopSessions(10);
+        assertEquals("Wrong sessions " + sessions, 1, sessions.size());
+        assertFalse("Request should be charged to its session", "none".equals(sessions.get(0).getName()));
+
+        accounting.setEnabled(false);
+        execute(createPollRequest(getUrl(""), initialUidl));
+        assertEquals("Request should not be charged", 1, find(accounting.getTopByCpuTime(10), name).getRequestCount());
+    }
+
+    @Test
+    public void enabledFromConfigAndJmx() {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withResourceAccounting(true).start();
+        assertTrue("Should be enabled from startup", server.getResourceAccounting().isEnabled());
+        assertTrue("Should be exposed through JMX", server.getStatistics().isResourceAccounting());
+        server.getStatistics().setResourceAccounting(false);
+        assertFalse("Should be switched through JMX", server.getResourceAccounting().isEnabled());
+        assertTrue("Wrong report", server.getStatistics().getResourceReport().startsWith("Top requests"));
+    }
+
+    private ResourceAccounting createAccounting(long window, TimeUnit unit) {
+        final ResourceAccounting accounting = new ResourceAccounting(window, unit);
+        accounting.setEnabled(true);
+        assertTrue("Accounting not supported", accounting.isEnabled());
+        return accounting;
+    }
+
+    private byte[] charge(ResourceAccounting accounting, String sessionId, String uiClass, RequestType type,
+                          int allocation) {
+        final long[] counters = accounting.start();
+        assertNotNull("Accounting should be enabled", counters);
+        final byte[] allocated = new byte[allocation];
+        accounting.charge(counters, sessionId, uiClass, type);
+        return allocated;
+    }
+
+    private ResourceUsage find(List<ResourceUsage> usages, String name) {
+        for (ResourceUsage usage : usages) {
+            if (usage.getName().equals(name)) {
+                return usage;
+            }
+        }
+        throw new AssertionError("No usage for [" + name + "] in " + usages);
+    }
+
+    // The response may be received before the request is charged
+    private void awaitRequestCount(ResourceAccounting accounting, String name, long expected) {
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (System.currentTimeMillis() < deadline) {
+            for (ResourceUsage usage : accounting.getTopByCpuTime(10)) {
+                if (usage.getName().equals(name) && usage.getRequestCount() >= expected) {
+                    return;
+                }
+            }
+            Thread.yield();
+        }
+        assertEquals("Wrong request count", expected, find(accounting.getTopByCpuTime(10), name).getRequestCount());
+    }
+
+    private String getUrl(String path) {
+        return server.getConfig().getDeployUrl() + path;
+    }
+
+    private void execute(HttpMethod method) throws IOException {
+        try {
+            assertEquals("Wrong status for " + method.getPath(), HttpStatus.SC_OK, client.executeMethod(method));
+            method.getResponseBody();
+        } finally {
+            method.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.vaadin.ui.Button;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class ServerTimingTest extends AbstractEmbedTest {
+
+    private static final Pattern METRIC = Pattern.compile("[a-z]+;dur=[0-9]+\\.[0-9]{3}");
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void headerValue() {
+        final ServerTiming serverTiming = new ServerTiming(System.currentTimeMillis() - 5);
+        serverTiming.lockAcquired(TimeUnit.MICROSECONDS.toNanos(12345));
+        serverTiming.serializationStarted();
+        final String value = serverTiming.toHeaderValue();
+        assertTrue("Wrong value " + value, value.matches("queue;dur=[0-9]+\\.000, lock;dur=12\\.345, "
+                + "app;dur=[0-9.]+, serialize;dur=[0-9.]+, total;dur=[0-9.]+"));
+    }
+
+    @Test
+    public void headerValueWithoutLock() {
+        final ServerTiming serverTiming = new ServerTiming(null);
+        serverTiming.serializationStarted();
+        final String value = serverTiming.toHeaderValue();
+        assertTrue("Wrong value " + value, value.matches("total;dur=[0-9]+\\.[0-9]{3}"));
+    }
+
+    @Test
+    public void uidlRequest() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withServerTiming(true).start();
+        final PostMethod init = new PostMethod(getUrl("?v-browserDetails=1"));
+        final String initialUidl = execute(init);
+        assertPhases(init, "queue", "lock", "app", "serialize", "total");
+
+        final PostMethod poll = createPollRequest(getUrl(""), initialUidl);
+        execute(poll);
+        assertPhases(poll, "queue", "lock", "app", "serialize", "total");
+    }
+
+    @Test
+    public void heartbeatRequest() throws IOException {
+        server = EmbedVaadin.forComponent(new Button("Hello")).wait(false).withServerTiming(true).start();
+        initVaadinUI(client, server.getConfig().getPort(), server.getConfig().getContextPath());
+        final PostMethod heartbeat = new PostMethod(getUrl("HEARTBEAT/?v-uiId=0"));
+        execute(heartbeat);
+        assertPhases(heartbeat, "queue", "lock", "app", "total");
+    }
+
+    @Test
+    public void bootstrapRequest() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withServerTiming(true).start();
+        final GetMethod method = new GetMethod(getUrl(""));
+        execute(method);
+        assertPhases(method, "queue", "lock", "app", "total");
+    }
+
+    @Test
+    public void noHeaderByDefault() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final GetMethod method = new GetMethod(getUrl(""));
+        execute(method);
+        assertNull("No header expected", method.getResponseHeader(ServerTiming.HEADER_NAME));
+    }
+
+    @Test
+    public void noHeaderForStaticResources() throws IOException {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withServerTiming(true).start();
+        final GetMethod method = new GetMethod(getUrl("VAADIN/vaadinBootstrap.js"));
+        execute(method);
+        assertNull("No header expected", method.getResponseHeader(ServerTiming.HEADER_NAME));
+    }
+
+    private void assertPhases(HttpMethod method, String... phases) {
+        final Header header = method.getResponseHeader(ServerTiming.HEADER_NAME);
+        assertNotNull("No Server-Timing header for " + method.getPath(), header);
+        final String[] metrics = header.getValue().split(", ");
+        assertEquals("Wrong phases " + header.getValue(), phases.length, metrics.length);
+        for (int i = 0; i < phases.length; i++) {
+            assertTrue("Wrong metric " + metrics[i], METRIC.matcher(metrics[i]).matches());
+            assertTrue("Wrong phase " + metrics[i], metrics[i].startsWith(phases[i] + ";"));
+        }
+        assertFalse("Wrong value " + header.getValue(), header.getValue().contains("-"));
+    }
+
+    private String getUrl(String path) {
+        return server.getConfig().getDeployUrl() + path;
+    }
+
+    private String execute(HttpMethod method) throws IOException {
+        try {
+            assertEquals("Wrong status for " + method.getPath(), HttpStatus.SC_OK, client.executeMethod(method));
+            return method.getResponseBodyAsString();
+        } finally {
+            method.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.vaadin.server.VaadinSession;
+import org.apache.commons.httpclient.HttpClient;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class SessionFootprintSamplerTest extends AbstractEmbedTest {
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void emptySample() {
+        final SessionFootprintSampler sampler = new SessionFootprintSampler();
+        sampler.sample(Collections.<VaadinSession>emptyList());
+        assertEquals("No session expected", 0, sampler.getSessionCount());
+        assertEquals("No size expected", 0, sampler.getEstimatedTotalSize());
+        assertTrue("Wrong report " + sampler.getReport(), sampler.getReport().contains("(none)"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxSampledSessions() {
+        new SessionFootprintSampler(0);
+    }
+
+    @Test
+    public void sampleSessionsPerUiClass() {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        final int port = server.getConfig().getPort();
+        final String contextPath = server.getConfig().getContextPath();
+        final HttpClient first = new HttpClient();
+        initVaadinUI(first, port, contextPath);
+        initVaadinUI(first, port, contextPath);
+        initVaadinUI(new HttpClient(), port, contextPath);
+
+        final String report = server.getStatistics().sampleSessionFootprints();
+        final SessionFootprintSampler sampler = server.getRequestMetrics().getSessionFootprints();
+        assertTrue("Wrong report " + report, report.contains(TestUI.class.getName()));
+        assertEquals("Wrong number of sessions", 2, sampler.getSessionCount());
+        assertEquals("No failure expected", 0, sampler.getFailureCount());
+
+        final Map<String, SizeHistogram> histograms = sampler.getHistograms();
+        assertEquals("Wrong UI classes " + histograms, Collections.singleton(TestUI.class.getName()),
+                histograms.keySet());
+        final SizeHistogram histogram = histograms.get(TestUI.class.getName());
+        assertEquals("Wrong number of sessions", 2, histogram.getCount());
+        // The session holding two UIs is the largest one
+        assertTrue("Wrong sizes " + histogram, histogram.getMax() > histogram.getMean());
+        assertEquals("Wrong estimated total", sampler.getHistogram().getMean() * 2,
+                sampler.getEstimatedTotalSize());
+        assertEquals("Wrong max", histogram.getMax(), server.getStatistics().getSessionSizeMax());
+    }
+
+    @Test
+    public void sampleAtMostMaxSessions() {
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).start();
+        for (int i = 0; i < 3; i++) {
+            initVaadinUI(new HttpClient(), server.getConfig().getPort(), server.getConfig().getContextPath());
+        }
+        final SessionFootprintSampler sampler = new SessionFootprintSampler(2);
+        sampler.sample(server.getStatistics().getVaadinSessions());
+        assertEquals("Wrong number of sessions", 3, sampler.getSessionCount());
+        assertEquals("Wrong number of sampled sessions", 2, sampler.getHistogram().getCount());
+    }
+}
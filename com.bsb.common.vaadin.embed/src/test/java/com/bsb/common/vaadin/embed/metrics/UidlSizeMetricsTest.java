@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.metrics;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.ui.Label;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class UidlSizeMetricsTest extends AbstractEmbedTest {
+
+    private static final String UIDL = "for(;;);[{\"changes\":[[\"change\",{\"pid\":\"3\"},[\"0\",{\"id\":\"3\"}]]],"
+            + "\"state\":{\"1\":{\"caption\":\"A rather long caption\"},\"2\":{}},"
+            + "\"rpc\":[[\"2\",\"com.acme.ClientRpc\",\"update\",[]]],\"meta\":{}}]";
+
+    private final HttpClient client = new HttpClient();
+
+    private EmbedVaadinServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void analyzeUidl() {
+        final UidlPayload payload = UidlPayload.analyze(UIDL, 4242, null);
+        assertEquals("Wrong size", 4242, payload.getSize());
+        assertNull("No UI", payload.getUiClass());
+        final Map<String, Integer> sections = payload.getSections();
+        assertEquals("Wrong sections " + sections, "[state, changes, rpc, meta]", sections.keySet().toString());
+        assertEquals("Wrong meta size", Integer.valueOf(2), sections.get("meta"));
+
+        final List<UidlPayload.Contributor> contributors = payload.getContributors();
+        assertEquals("Wrong contributors " + contributors, 3, contributors.size());
+        assertEquals("Wrong largest contributor", "2", contributors.get(0).getConnectorId());
+        assertEquals("Wrong size", 2 + "[\"2\",\"com.acme.ClientRpc\",\"update\",[]]".length(),
+                contributors.get(0).getSize());
+        assertEquals("Wrong contributor", "3", contributors.get(1).getConnectorId());
+        assertEquals("Wrong contributor", "1", contributors.get(2).getConnectorId());
+        assertNull("Type unknown without UI", contributors.get(0).getType());
+    }
+
+    @Test
+    public void analyzeInvalidUidl() {
+        final UidlPayload payload = UidlPayload.analyze("{\"not\":\"uidl\"", 13, null);
+        assertEquals("Wrong size", 13, payload.getSize());
+        assertTrue("No sections expected", payload.getSections().isEmpty());
+        assertTrue("No contributors expected", payload.getContributors().isEmpty());
+    }
+
+    @Test
+    public void keepLargestResponses() {
+        final UidlSizeMetrics metrics = new UidlSizeMetrics(2);
+        assertFalse("Small responses are not analyzed", metrics.isLargest(UidlSizeMetrics.MIN_ANALYZED_SIZE - 1));
+        metrics.offer(createPayload(2000));
+        metrics.offer(createPayload(5000));
+        metrics.offer(createPayload(3000));
+        final List<UidlPayload> largest = metrics.getLargestResponses();
+        assertEquals("Wrong number of responses", 2, largest.size());
+        assertEquals("Wrong largest response", 5000, largest.get(0).getSize());
+        assertEquals("Wrong second response", 3000, largest.get(1).getSize());
+        assertFalse("Smaller responses are not analyzed anymore", metrics.isLargest(3000));
+        assertTrue("Larger responses should be analyzed", metrics.isLargest(3001));
+    }
+
+    @Test
+    public void recordUidlResponses() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("Lorem ipsum ");
+        }
+        server = EmbedVaadin.forComponent(new Label(text.toString())).wait(false).start();
+        final UidlSizeMetrics metrics = server.getRequestMetrics().getUidlSizes();
+        final String initialUidl = initVaadinUI(client, server.getConfig().getPort(),
+                server.getConfig().getContextPath());
+        assertEquals("Only UIDL requests are recorded", 0, metrics.getHistogram().getCount());
+
+        final PostMethod poll = createPollRequest(server.getConfig().getDeployUrl(), initialUidl);
+        poll.setQueryString("v-uiId=0&repaintAll=1");
+        try {
+            assertEquals("Wrong status", HttpStatus.SC_OK, client.executeMethod(poll));
+            poll.getResponseBody();
+        } finally {
+            poll.releaseConnection();
+        }
+
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (metrics.getLargestResponses().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertEquals("Wrong count", 1, metrics.getHistogram().getCount());
+        assertTrue("Wrong size " + metrics.getHistogram(), metrics.getHistogram().getMax() > text.length());
+        final List<UidlPayload> largest = metrics.getLargestResponses();
+        assertEquals("Wrong number of responses", 1, largest.size());
+        final UidlPayload.Contributor contributor = largest.get(0).getContributors().get(0);
+        assertEquals("Wrong largest contributor " + largest, Label.class.getName(), contributor.getType());
+        assertTrue("Wrong contribution " + contributor, contributor.getSize() > text.length());
+        assertTrue("Wrong report", server.getStatistics().getUidlSizeReport().contains(Label.class.getName()));
+        assertEquals("Wrong max", metrics.getHistogram().getMax(), server.getStatistics().getUidlSizeMax());
+    }
+
+    private UidlPayload createPayload(long size) {
+        return new UidlPayload(size, System.currentTimeMillis(), null, Collections.<String, Integer>emptyMap(),
+                Collections.<UidlPayload.Contributor>emptyList());
+    }
+}
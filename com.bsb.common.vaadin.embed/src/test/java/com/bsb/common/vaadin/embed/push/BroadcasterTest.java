@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.push;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class BroadcasterTest extends AbstractEmbedTest {
+
+    private static Broadcaster<String> broadcaster;
+
+    private static final List<List<String>> batches = new CopyOnWriteArrayList<List<String>>();
+
+    private static volatile CountDownLatch deliveries;
+
+    private EmbedVaadinServer server;
+
+    @Before
+    public void startServer() {
+        broadcaster = new Broadcaster<String>(200, 2, 10);
+        batches.clear();
+        server = EmbedVaadin.forUI(BroadcastUI.class).wait(false).start();
+    }
+
+    @After
+    public void stopServer() {
+        broadcaster.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void eventsAreCoalesced() throws Exception {
+        createUIs(3);
+        assertEquals("Wrong number of registered UIs", 3, broadcaster.getUICount());
+        deliveries = new CountDownLatch(3);
+        broadcaster.broadcast("a");
+        broadcaster.broadcast("b");
+        broadcaster.broadcast("c");
+        assertTrue("Events were not delivered", deliveries.await(5, TimeUnit.SECONDS));
+        for (List<String> batch : batches) {
+            assertEquals("Wrong batch", Arrays.asList("a", "b", "c"), batch);
+        }
+        assertEquals("Wrong number of events", 3, broadcaster.getEventCount());
+        assertEquals("Wrong number of batches", 1, broadcaster.getBatchCount());
+        assertEquals("One access per UI was expected", 3, broadcaster.getAccessCount());
+    }
+
+    @Test
+    public void eventsOfDistinctWindowsAreDeliveredSeparately() throws Exception {
+        createUIs(1);
+        deliveries = new CountDownLatch(1);
+        broadcaster.broadcast("a");
+        assertTrue("Events were not delivered", deliveries.await(5, TimeUnit.SECONDS));
+        deliveries = new CountDownLatch(1);
+        broadcaster.broadcast("b");
+        assertTrue("Events were not delivered", deliveries.await(5, TimeUnit.SECONDS));
+        assertEquals("Wrong batches", Arrays.asList(Arrays.asList("a"), Arrays.asList("b")), batches);
+    }
+
+    @Test
+    public void oldestEventsAreDroppedWhenBufferIsFull() throws Exception {
+        broadcaster.shutdown();
+        broadcaster = new Broadcaster<String>(500, 2, 10, 3);
+        createUIs(1);
+        deliveries = new CountDownLatch(1);
+        for (String event : Arrays.asList("a", "b", "c", "d", "e")) {
+            broadcaster.broadcast(event);
+        }
+        assertTrue("Events were not delivered", deliveries.await(5, TimeUnit.SECONDS));
+        assertEquals("Wrong batches", Arrays.asList(Arrays.asList("c", "d", "e")), batches);
+        assertEquals("Wrong number of events", 5, broadcaster.getEventCount());
+        assertEquals("Wrong number of dropped events", 2, broadcaster.getDroppedEventCount());
+    }
+
+    @Test
+    public void lockedUIDoesNotStallOtherUIs() throws Exception {
+        broadcaster.shutdown();
+        broadcaster = new Broadcaster<String>(50, 1, 10);
+        createUIs(1);
+        final UI lockedUI = BroadcastUI.lastUI;
+        createUIs(1);
+        final VaadinSession lockedSession = lockedUI.getSession();
+        lockedSession.lock();
+        try {
+            deliveries = new CountDownLatch(1);
+            broadcaster.broadcast("a");
+            assertTrue("Events were not delivered", deliveries.await(5, TimeUnit.SECONDS));
+            deliveries = new CountDownLatch(1);
+            broadcaster.broadcast("b");
+            assertTrue("Events were not delivered", deliveries.await(5, TimeUnit.SECONDS));
+            assertEquals("Wrong batches", Arrays.asList(Arrays.asList("a"), Arrays.asList("b")), batches);
+            batches.clear();
+            deliveries = new CountDownLatch(1);
+        } finally {
+            // Runs the pending access of the locked UI
+            lockedSession.unlock();
+        }
+        assertTrue("Events were not delivered", deliveries.await(5, TimeUnit.SECONDS));
+        assertEquals("Batches should have been merged", Arrays.asList(Arrays.asList("a", "b")), batches);
+        assertEquals("One access per UI and per window was expected", 3, broadcaster.getAccessCount());
+    }
+
+    @Test
+    public void unregister() throws Exception {
+        createUIs(1);
+        final UI ui = BroadcastUI.lastUI;
+        broadcaster.unregister(ui);
+        assertEquals("Wrong number of registered UIs", 0, broadcaster.getUICount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidWindow() {
+        new Broadcaster<String>(0, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxPendingEvents() {
+        new Broadcaster<String>(100, 1, 1, 0);
+    }
+
+    private void createUIs(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            // A new client so that each UI has its own session
+            final PostMethod method = new PostMethod(server.getConfig().getDeployUrl() + "?v-browserDetails=1");
+            try {
+                assertEquals("Wrong status", HttpStatus.SC_OK, new HttpClient().executeMethod(method));
+            } finally {
+                method.releaseConnection();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    public static class BroadcastUI extends UI {
+
+        private static volatile UI lastUI;
+
+        @Override
+        protected void init(VaadinRequest request) {
+            final Label label = new Label();
+            setContent(label);
+            broadcaster.register(this, new Broadcaster.BroadcastListener<String>() {
+                public void onBroadcast(List<String> events) {
+                    label.setValue(events.toString());
+                    batches.add(events);
+                    deliveries.countDown();
+                }
+            });
+            lastUI = this;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.push;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.shared.ui.ui.Transport;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class PushUtilsTest extends AbstractEmbedTest {
+
+    private static final Pattern SECURITY_KEY = Pattern.compile("Vaadin-Security-Key\\\\?\":\\\\?\"([^\"\\\\]+)");
+
+    @Test
+    public void getTransportByIdentifier() {
+        assertEquals(Transport.WEBSOCKET, PushUtils.getTransport("websocket"));
+        assertEquals(Transport.STREAMING, PushUtils.getTransport(" Streaming "));
+    }
+
+    @Test
+    public void getTransportByName() {
+        assertEquals(Transport.STREAMING, PushUtils.getTransport("STREAMING"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getUnknownTransport() {
+        PushUtils.getTransport("carrier-pigeon");
+    }
+
+    @Test
+    public void getPushMode() {
+        assertEquals(PushMode.AUTOMATIC, PushUtils.getPushMode(" Automatic "));
+        assertEquals(PushMode.MANUAL, PushUtils.getPushMode("MANUAL"));
+    }
+
+    @Test
+    public void getUnknownPushMode() {
+        try {
+            PushUtils.getPushMode("always");
+            fail("Unknown push mode should have been rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Wrong message " + e.getMessage(), e.getMessage().contains("[always]")
+                    && e.getMessage().contains(Arrays.asList(PushMode.values()).toString()));
+        }
+    }
+
+    @Test
+    public void pushIsAvailableWithVaadinPush() {
+        assertTrue("vaadin-push is a test dependency of this module", PushUtils.isPushAvailable());
+    }
+
+    @Test
+    public void uiWithAutomaticPush() throws IOException {
+        final EmbedVaadinServer server = EmbedVaadin.forUI(TestUI.class).wait(false)
+                .withPush(PushMode.AUTOMATIC, Transport.STREAMING).start();
+        try {
+            assertUiInit(server);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void componentWithManualPush() throws IOException {
+        final EmbedVaadinServer server = EmbedVaadin.forComponent(new Button("Hello")).wait(false)
+                .withPushMode(PushMode.MANUAL).start();
+        try {
+            assertUiInit(server);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void automaticPushSendsChanges() throws Exception {
+        assertChangesArePushed(PushMode.AUTOMATIC);
+    }
+
+    @Test
+    public void manualPushSendsChanges() throws Exception {
+        assertChangesArePushed(PushMode.MANUAL);
+    }
+
+    private void assertChangesArePushed(final PushMode pushMode) throws Exception {
+        final EmbedVaadinServer server = EmbedVaadin.forUI(PushedUI.class).wait(false)
+                .withPush(pushMode, Transport.STREAMING).start();
+        final HttpClient client = new HttpClient();
+        client.getParams().setSoTimeout(5000);
+        GetMethod stream = null;
+        try {
+            final String deployUrl = server.getConfig().getDeployUrl();
+            final PostMethod init = new PostMethod(deployUrl + "?v-browserDetails=1");
+            final String securityKey;
+            try {
+                assertEquals("Wrong status", HttpStatus.SC_OK, client.executeMethod(init));
+                final Matcher matcher = SECURITY_KEY.matcher(init.getResponseBodyAsString());
+                assertTrue("No security key", matcher.find());
+                securityKey = matcher.group(1);
+            } finally {
+                init.releaseConnection();
+            }
+            final PushedUI ui = PushedUI.lastUI;
+            stream = new GetMethod(deployUrl + "PUSH/?v-uiId=" + ui.getUIId() + "&v-csrfToken=" + securityKey
+                    + "&X-Atmosphere-tracking-id=0&X-Atmosphere-Framework=1.0"
+                    + "&X-Atmosphere-Transport=streaming&X-Atmosphere-TrackMessageSize=true");
+            assertEquals("Wrong status", HttpStatus.SC_OK, client.executeMethod(stream));
+
+            ui.access(new Runnable() {
+                public void run() {
+                    ui.label.setValue("pushed-" + pushMode);
+                    if (pushMode == PushMode.MANUAL) {
+                        ui.push();
+                    }
+                }
+            });
+            final InputStream in = stream.getResponseBodyAsStream();
+            final StringBuilder content = new StringBuilder();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while (content.indexOf("pushed-" + pushMode) == -1 && (read = in.read(buffer)) != -1) {
+                content.append(new String(buffer, 0, read, "UTF-8"));
+            }
+            assertTrue("Change was not pushed " + content, content.indexOf("pushed-" + pushMode) != -1);
+        } finally {
+            if (stream != null) {
+                stream.abort();
+            }
+            server.stop();
+        }
+    }
+
+    private void assertUiInit(EmbedVaadinServer server) throws IOException {
+        final PostMethod method = new PostMethod(server.getConfig().getDeployUrl() + "?v-browserDetails=1");
+        try {
+            assertEquals("Wrong status", HttpStatus.SC_OK, new HttpClient().executeMethod(method));
+            final String content = method.getResponseBodyAsString();
+            assertTrue("UI was not initialized " + content, content.contains("\"v-uiId\""));
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    public static class PushedUI extends UI {
+
+        private static volatile PushedUI lastUI;
+
+        private final Label label = new Label();
+
+        @Override
+        protected void init(VaadinRequest request) {
+            setContent(label);
+            lastUI = this;
+        }
+    }
+}
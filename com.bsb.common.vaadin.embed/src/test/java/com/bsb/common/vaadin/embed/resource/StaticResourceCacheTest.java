@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.resource;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class StaticResourceCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = Files.createTempDir();
+    }
+
+    @Test
+    public void missThenHit() throws IOException {
+        final StaticResourceCache cache = new StaticResourceCache(4096);
+        final StaticResource resource = createResource("app.js", 100);
+
+        final CachedResource first = cache.get(resource, false);
+        assertNotNull(first);
+        assertEquals("Wrong miss count", 1, cache.getMissCount());
+        assertEquals("Wrong hit count", 0, cache.getHitCount());
+
+        assertSame("Resource should have been cached", first, cache.get(resource, false));
+        assertEquals("Wrong miss count", 1, cache.getMissCount());
+        assertEquals("Wrong hit count", 1, cache.getHitCount());
+        assertEquals("Wrong size", 100, cache.getSize());
+        assertEquals("Wrong entry count", 1, cache.getEntryCount());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws IOException {
+        final StaticResourceCache cache = new StaticResourceCache(1000);
+        final StaticResource first = createResource("first.js", 200);
+        final StaticResource second = createResource("second.js", 200);
+        cache.get(first, false);
+        cache.get(second, false);
+        for (int i = 0; i < 3; i++) {
+            cache.get(createResource("other" + i + ".js", 200), false);
+        }
+        assertEquals("Nothing should have been evicted yet", 0, cache.getEvictionCount());
+
+        cache.get(first, false); // first is now more recent than second
+        cache.get(createResource("last.js", 200), false);
+        assertEquals("Wrong eviction count", 1, cache.getEvictionCount());
+        assertEquals("Wrong size", 1000, cache.getSize());
+
+        final long hits = cache.getHitCount();
+        cache.get(first, false);
+        assertEquals("first should still be cached", hits + 1, cache.getHitCount());
+        cache.get(second, false);
+        assertEquals("second should have been evicted", hits + 1, cache.getHitCount());
+    }
+
+    @Test
+    public void largeResourceIsNotCached() throws IOException {
+        final StaticResourceCache cache = new StaticResourceCache(1000);
+        final StaticResource resource = createResource("large.js", 251);
+        assertNull("Resource larger than a quarter of the cache should not be cached", cache.get(resource, false));
+        assertEquals("Wrong size", 0, cache.getSize());
+        assertEquals("Wrong miss count", 1, cache.getMissCount());
+    }
+
+    @Test
+    public void gzipVariant() throws IOException {
+        final StaticResourceCache cache = new StaticResourceCache(100000);
+        final StaticResource resource = createResource("styles.css", 4000);
+        final CachedResource cached = cache.get(resource, true);
+        assertTrue("Gzip variant should have been computed", cached.hasGzipContent());
+        assertTrue("Gzip variant should be smaller", cached.getContent(true).length < 4000);
+        assertEquals("Wrong gzip content", new String(cached.getContent(false), Charsets.UTF_8),
+                new String(ByteStreams.toByteArray(new GZIPInputStream(
+                        new ByteArrayInputStream(cached.getContent(true)))), Charsets.UTF_8));
+        assertEquals("Both variants should be accounted", 4000 + cached.getContent(true).length, cache.getSize());
+        assertFalse("Each variant should have its own etag", cached.getETag(true).equals(cached.getETag(false)));
+    }
+
+    @Test
+    public void noGzipVariantForSmallResource() throws IOException {
+        final CachedResource cached = new StaticResourceCache(100000).get(createResource("small.css", 100), true);
+        assertFalse("Small resource should not be compressed", cached.hasGzipContent());
+    }
+
+    @Test
+    public void noGzipVariantIfNotCompressible() throws IOException {
+        final CachedResource cached = new StaticResourceCache(100000).get(createResource("image.png", 4000), false);
+        assertFalse("Resource should not be compressed", cached.hasGzipContent());
+    }
+
+    @Test
+    public void strongETag() throws IOException {
+        final StaticResource resource = createResource("app.js", 100);
+        final String etag = new StaticResourceCache(4096).get(resource, false).getETag(false);
+        assertTrue("ETag should be quoted [" + etag + "]", etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals("Same content should lead to the same etag", etag,
+                new StaticResourceCache(4096).get(resource, false).getETag(false));
+    }
+
+    @Test
+    public void reloadEditedResource() throws IOException {
+        final StaticResourceCache cache = new StaticResourceCache(4096);
+        final StaticResource resource = createResource("app.js", 100);
+        final CachedResource first = cache.get(resource, false);
+
+        final StaticResource edited = createResource("app.js", 150);
+        final CachedResource second = cache.get(edited, false);
+        assertEquals("Edited resource should have been reloaded", 150, second.getContent(false).length);
+        assertFalse("Edited resource should have a new etag", first.getETag(false).equals(second.getETag(false)));
+        assertEquals("Wrong miss count", 2, cache.getMissCount());
+        assertEquals("Wrong size", 150, cache.getSize());
+        assertEquals("Wrong entry count", 1, cache.getEntryCount());
+        assertSame("Reloaded resource should have been cached", second, cache.get(edited, false));
+    }
+
+    private StaticResource createResource(String name, int length) throws IOException {
+        final File file = new File(directory, name);
+        Files.write(Strings.repeat("a", length), file, Charsets.UTF_8);
+        return new StaticResource("/VAADIN/" + name, file.toURI().toURL(), file.length(), file.lastModified());
+    }
+}
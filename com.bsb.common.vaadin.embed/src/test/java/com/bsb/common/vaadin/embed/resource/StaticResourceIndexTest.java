@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.resource;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class StaticResourceIndexTest {
+
+    private File rootDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        rootDirectory = Files.createTempDir();
+        createFile("VAADIN/custom/app.js", "alert('hello');");
+        createFile("VAADIN/themes/reindeer/styles.css", "body {}");
+    }
+
+    @Test
+    public void indexRootDirectory() {
+        final StaticResource resource = buildIndex().get("/VAADIN/custom/app.js");
+        assertNotNull("Resource of the root directory should have been indexed", resource);
+        assertEquals("Wrong path", "/VAADIN/custom/app.js", resource.getPath());
+        assertEquals("Wrong protocol", "file", resource.getUrl().getProtocol());
+        assertEquals("Wrong length", 15, resource.getLength());
+        assertEquals("Milliseconds should have been removed", 0, resource.getLastModified() % 1000);
+    }
+
+    @Test
+    public void indexJar() {
+        final StaticResource resource = buildIndex().get("/VAADIN/themes/reindeer/favicon.ico");
+        assertNotNull("Resource of vaadin-themes should have been indexed", resource);
+        assertEquals("Wrong protocol", "jar", resource.getUrl().getProtocol());
+        assertEquals("Wrong length", 1150, resource.getLength());
+        assertTrue("Last modified should have been set", resource.getLastModified() > 0);
+    }
+
+    @Test
+    public void indexSeveralJars() {
+        final StaticResourceIndex index = buildIndex();
+        assertNotNull("Resource of vaadin-server should have been indexed", index.get("/VAADIN/vaadinBootstrap.js"));
+        assertNotNull("Resource of vaadin-client-compiled should have been indexed",
+                index.get("/VAADIN/widgetsets/com.vaadin.DefaultWidgetSet/com.vaadin.DefaultWidgetSet.nocache.js"));
+    }
+
+    @Test
+    public void rootDirectoryTakesPrecedence() {
+        final StaticResource resource = buildIndex().get("/VAADIN/themes/reindeer/styles.css");
+        assertEquals("Resource of the root directory should have been used", "file", resource.getUrl().getProtocol());
+        assertEquals("Wrong length", 7, resource.getLength());
+    }
+
+    @Test
+    public void directoriesAreNotIndexed() {
+        final StaticResourceIndex index = buildIndex();
+        assertNull(index.get("/VAADIN/themes/reindeer"));
+        assertNull(index.get("/VAADIN/custom"));
+    }
+
+    @Test
+    public void buildWithoutRootDirectory() {
+        final StaticResourceIndex index = StaticResourceIndex.build(null, getClass().getClassLoader());
+        assertNull(index.get("/VAADIN/custom/app.js"));
+        assertEquals("Wrong protocol", "jar", index.get("/VAADIN/themes/reindeer/styles.css").getUrl().getProtocol());
+    }
+
+    private StaticResourceIndex buildIndex() {
+        return StaticResourceIndex.build(rootDirectory, getClass().getClassLoader());
+    }
+
+    private void createFile(String path, String content) throws IOException {
+        final File file = new File(rootDirectory, path);
+        Files.createParentDirs(file);
+        Files.write(content, file, Charsets.UTF_8);
+    }
+}
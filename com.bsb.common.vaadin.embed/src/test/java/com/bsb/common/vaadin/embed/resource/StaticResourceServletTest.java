@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bsb.common.vaadin.embed.resource;
+
+import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.ConnectorProtocol;
+import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.StartupReport;
+import com.bsb.common.vaadin.embed.support.EmbedVaadin;
+import com.bsb.common.vaadin.embed.test.TestUI;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.HeadMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Stephane Nicoll
+ */
+public class StaticResourceServletTest extends AbstractEmbedTest {
+
+    private final HttpClient client = new HttpClient();
+
+    private static final int LARGE_FILE_SIZE = 256 * 1024;
+
+    private File rootDirectory;
+
+    private EmbedVaadinServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        rootDirectory = Files.createTempDir();
+        final File file = new File(rootDirectory, "VAADIN/custom/app.js");
+        Files.createParentDirs(file);
+        Files.write("alert('hello');", file, Charsets.UTF_8);
+        Files.write(createLargeContent(), new File(rootDirectory, "VAADIN/custom/large.bin"));
+
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withContextRootDirectory(rootDirectory)
+                .withStaticResourceServlet(true).withSendfileThreshold(LARGE_FILE_SIZE / 2).start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void serveJarResource() throws IOException {
+        final GetMethod method = get("VAADIN/themes/reindeer/favicon.ico", null);
+        assertEquals("Wrong status", HttpStatus.SC_OK, method.getStatusCode());
+        assertEquals("Wrong content length", 1150, method.getResponseBody().length);
+        assertEquals("Wrong cache control", "max-age=3600", method.getResponseHeader("Cache-Control").getValue());
+        assertNotNull("Last-Modified should be set", method.getResponseHeader("Last-Modified"));
+        assertNull("Vaadin servlet should not have been involved",
+                server.getStartupReport().getDuration(StartupReport.SERVLET_INIT));
+    }
+
+    @Test
+    public void serveRootDirectoryResource() throws IOException {
+        final GetMethod method = get("VAADIN/custom/app.js", null);
+        assertEquals("Wrong status", HttpStatus.SC_OK, method.getStatusCode());
+        assertEquals("Wrong content", "alert('hello');", method.getResponseBodyAsString());
+        assertEquals("Wrong content type", "application/javascript",
+                method.getResponseHeader("Content-Type").getValue());
+    }
+
+    @Test
+    public void noCacheResource() throws IOException {
+        final GetMethod method = get(
+                "VAADIN/widgetsets/com.vaadin.DefaultWidgetSet/com.vaadin.DefaultWidgetSet.nocache.js", null);
+        assertEquals("Wrong status", HttpStatus.SC_OK, method.getStatusCode());
+        assertEquals("Wrong cache control", "public, max-age=0, must-revalidate",
+                method.getResponseHeader("Cache-Control").getValue());
+    }
+
+    @Test
+    public void notModified() throws IOException {
+        final String lastModified = get("VAADIN/themes/reindeer/favicon.ico", null)
+                .getResponseHeader("Last-Modified").getValue();
+        final GetMethod method = get("VAADIN/themes/reindeer/favicon.ico", lastModified);
+        assertEquals("Wrong status", HttpStatus.SC_NOT_MODIFIED, method.getStatusCode());
+    }
+
+    @Test
+    public void notModifiedWithETag() throws IOException {
+        final GetMethod first = get("VAADIN/themes/reindeer/favicon.ico", null);
+        final String etag = first.getResponseHeader("ETag").getValue();
+        final GetMethod method = createMethod("VAADIN/themes/reindeer/favicon.ico");
+        method.setRequestHeader("If-None-Match", etag);
+        try {
+            assertEquals("Wrong status", HttpStatus.SC_NOT_MODIFIED, client.executeMethod(method));
+            assertEquals("Wrong etag", etag, method.getResponseHeader("ETag").getValue());
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    @Test
+    public void gzipVariant() throws IOException {
+        final GetMethod plain = get("VAADIN/themes/reindeer/styles.css", null);
+        final GetMethod method = createMethod("VAADIN/themes/reindeer/styles.css");
+        method.setRequestHeader("Accept-Encoding", "gzip, deflate");
+        try {
+            assertEquals("Wrong status", HttpStatus.SC_OK, client.executeMethod(method));
+            assertEquals("Wrong content encoding", "gzip", method.getResponseHeader("Content-Encoding").getValue());
+            assertEquals("Wrong vary header", "Accept-Encoding", method.getResponseHeader("Vary").getValue());
+            final byte[] content = ByteStreams.toByteArray(new GZIPInputStream(method.getResponseBodyAsStream()));
+            assertEquals("Wrong content", plain.getResponseBodyAsString(), new String(content, "UTF-8"));
+            assertFalse("Each variant should have its own etag", plain.getResponseHeader("ETag").getValue()
+                    .equals(method.getResponseHeader("ETag").getValue()));
+        } finally {
+            method.releaseConnection();
+        }
+        assertNull("Gzip variant should only be sent on demand", plain.getResponseHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void serveRootDirectoryResourceEditedAfterStartup() throws IOException {
+        restartWithoutCache();
+        final File file = new File(rootDirectory, "VAADIN/custom/app.js");
+        final String lastModified = get("VAADIN/custom/app.js", null).getResponseHeader("Last-Modified").getValue();
+
+        Files.write("alert('hello world, the file is larger now');", file, Charsets.UTF_8);
+        file.setLastModified(file.lastModified() + 10000);
+        GetMethod method = get("VAADIN/custom/app.js", lastModified);
+        assertEquals("Edited file should not be reported as not modified", HttpStatus.SC_OK, method.getStatusCode());
+        assertEquals("Wrong content", "alert('hello world, the file is larger now');",
+                method.getResponseBodyAsString());
+        assertEquals("Wrong content length", String.valueOf(file.length()),
+                method.getResponseHeader("Content-Length").getValue());
+
+        Files.write("alert(1);", file, Charsets.UTF_8);
+        method = get("VAADIN/custom/app.js", null);
+        assertEquals("Wrong content", "alert(1);", method.getResponseBodyAsString());
+        assertEquals("Wrong content length", "9", method.getResponseHeader("Content-Length").getValue());
+    }
+
+    @Test
+    public void cachedRootDirectoryResourceEditedAfterStartup() throws IOException {
+        final File file = new File(rootDirectory, "VAADIN/custom/app.js");
+        final String etag = get("VAADIN/custom/app.js", null).getResponseHeader("ETag").getValue();
+
+        Files.write("alert('bye');", file, Charsets.UTF_8);
+        file.setLastModified(file.lastModified() + 10000);
+        final GetMethod method = createMethod("VAADIN/custom/app.js");
+        method.setRequestHeader("If-None-Match", etag);
+        try {
+            assertEquals("Wrong status", HttpStatus.SC_OK, client.executeMethod(method));
+            assertEquals("Wrong content", "alert('bye');", method.getResponseBodyAsString());
+            assertFalse("Edited resource should have a new etag",
+                    etag.equals(method.getResponseHeader("ETag").getValue()));
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    @Test
+    public void deletedRootDirectoryResourceIsForwardedToVaadinServlet() throws IOException {
+        restartWithoutCache();
+        assertTrue("Could not delete file", new File(rootDirectory, "VAADIN/custom/app.js").delete());
+        final GetMethod method = get("VAADIN/custom/app.js", null);
+        assertEquals("Wrong status", HttpStatus.SC_NOT_FOUND, method.getStatusCode());
+    }
+
+    @Test
+    public void serveLargeFileWithTransferTo() throws IOException {
+        final GetMethod method = get("VAADIN/custom/large.bin", null);
+        assertEquals("Wrong status", HttpStatus.SC_OK, method.getStatusCode());
+        assertArrayEquals("Wrong content", createLargeContent(), method.getResponseBody());
+        assertNull("Large file should not be cached", method.getResponseHeader("ETag"));
+    }
+
+    @Test
+    public void serveLargeFileWithSendfile() throws IOException {
+        server.stop();
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withContextRootDirectory(rootDirectory)
+                .withConnectorProtocol(ConnectorProtocol.NIO).withStaticResourceServlet(true)
+                .withSendfileThreshold(LARGE_FILE_SIZE / 2).start();
+        final GetMethod method = get("VAADIN/custom/large.bin", null);
+        assertEquals("Wrong status", HttpStatus.SC_OK, method.getStatusCode());
+        assertArrayEquals("Wrong content", createLargeContent(), method.getResponseBody());
+        assertEquals("Wrong content length", String.valueOf(LARGE_FILE_SIZE),
+                method.getResponseHeader("Content-Length").getValue());
+    }
+
+    @Test
+    public void headLargeFile() throws IOException {
+        final HeadMethod method = new HeadMethod(server.getConfig().getDeployUrl() + "VAADIN/custom/large.bin");
+        try {
+            assertEquals("Wrong status", HttpStatus.SC_OK, client.executeMethod(method));
+            assertEquals("Wrong content length", String.valueOf(LARGE_FILE_SIZE),
+                    method.getResponseHeader("Content-Length").getValue());
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    @Test
+    public void unknownResourceIsForwardedToVaadinServlet() throws IOException {
+        final GetMethod method = get("VAADIN/does-not-exist.js", null);
+        assertEquals("Wrong status", HttpStatus.SC_NOT_FOUND, method.getStatusCode());
+    }
+
+    @Test
+    public void otherRequestsAreHandledByVaadinServlet() {
+        checkVaadinIsDeployed(server.getConfig().getPort(), "");
+    }
+
+    private void restartWithoutCache() {
+        server.stop();
+        server = EmbedVaadin.forUI(TestUI.class).wait(false).withContextRootDirectory(rootDirectory)
+                .withStaticResourceServlet(true).withStaticResourceCacheSize(0).start();
+    }
+
+    private GetMethod get(String path, String ifModifiedSince) throws IOException {
+        final GetMethod method = createMethod(path);
+        if (ifModifiedSince != null) {
+            method.setRequestHeader("If-Modified-Since", ifModifiedSince);
+        }
+        try {
+            client.executeMethod(method);
+            method.getResponseBody();
+            return method;
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    private static byte[] createLargeContent() {
+        final byte[] content = new byte[LARGE_FILE_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        return content;
+    }
+
+    private GetMethod createMethod(String path) {
+        return new GetMethod(server.getConfig().getDeployUrl() + path);
+    }
+}
@@ -16,15 +16,22 @@
 package com.bsb.common.vaadin.embed.support;
 
 import com.bsb.common.vaadin.embed.AbstractEmbedTest;
+import com.bsb.common.vaadin.embed.ConnectorProtocol;
+import com.bsb.common.vaadin.embed.EmbedVaadinConfig;
 import com.bsb.common.vaadin.embed.EmbedVaadinServer;
+import com.bsb.common.vaadin.embed.component.ComponentFactory;
 import com.bsb.common.vaadin.embed.component.EmbedComponentConfig;
 import com.bsb.common.vaadin.embed.component.EmbedVaadinComponent;
 import com.google.common.io.Files;
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.shared.ui.ui.Transport;
 import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
@@ -36,6 +43,22 @@ public class EmbedVaadinTest extends AbstractEmbedTest {
 
     private final Button component = new Button("Test");
 
+    @Test(expected = IllegalArgumentException.class)
+    public void withNullComponentFactory() {
+        EmbedVaadin.forComponent((ComponentFactory) null);
+    }
+
+    @Test
+    public void withComponentFactoryDoesNotCreateComponent() {
+        final ComponentFactory factory = new ComponentFactory() {
+            public Component createComponent() {
+                throw new IllegalStateException("Component should not be created by the builder");
+            }
+        };
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(factory).withHttpPort(8080);
+        assertEquals("was not detected as expected", 8080, embed.build().getConfig().getPort());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void withNullContextPath() {
         EmbedVaadin.forComponent(component).withContextPath(null);
@@ -163,6 +186,259 @@ public class EmbedVaadinTest extends AbstractEmbedTest {
                 server.getConfig().shouldOpenBrowser());
     }
 
+    @Test
+    public void withMinimalContainer() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withMinimalContainer(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isMinimalContainer());
+    }
+
+    @Test
+    public void withConnectorProtocol() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component)
+                .withConnectorProtocol(ConnectorProtocol.NIO);
+        assertEquals("was not detected as expected", ConnectorProtocol.NIO,
+                embed.build().getConfig().getConnectorProtocol());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNullConnectorProtocol() {
+        EmbedVaadin.forComponent(component).withConnectorProtocol(null);
+    }
+
+    @Test
+    public void withConnectorSettings() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withThreads(50, 5)
+                .withConnections(500, 20).withKeepAlive(3000, 25).withTcpNoDelay(false)
+                .withSocketBufferSizes(16384, 32768);
+        final EmbedComponentConfig config = embed.build().getConfig();
+        assertEquals("Wrong max threads", Integer.valueOf(50), config.getMaxThreads());
+        assertEquals("Wrong min spare threads", Integer.valueOf(5), config.getMinSpareThreads());
+        assertEquals("Wrong max connections", Integer.valueOf(500), config.getMaxConnections());
+        assertEquals("Wrong accept count", Integer.valueOf(20), config.getAcceptCount());
+        assertEquals("Wrong keep alive timeout", Integer.valueOf(3000), config.getKeepAliveTimeout());
+        assertEquals("Wrong max keep alive requests", Integer.valueOf(25), config.getMaxKeepAliveRequests());
+        assertEquals("Wrong tcp no delay flag", Boolean.FALSE, config.getTcpNoDelay());
+        assertEquals("Wrong socket receive buffer size", Integer.valueOf(16384),
+                config.getSocketReceiveBufferSize());
+        assertEquals("Wrong socket send buffer size", Integer.valueOf(32768), config.getSocketSendBufferSize());
+    }
+
+    @Test
+    public void withVirtualThreads() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withVirtualThreads(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isVirtualThreads());
+    }
+
+    @Test
+    public void withStaticResourceServlet() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withStaticResourceServlet(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isStaticResourceServlet());
+    }
+
+    @Test
+    public void withStaticResourceCacheSize() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withStaticResourceCacheSize(2048);
+        assertEquals("was not detected as expected", 2048, embed.build().getConfig().getStaticResourceCacheSize());
+    }
+
+    @Test
+    public void withSendfileThreshold() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withSendfileThreshold(4096);
+        assertEquals("was not detected as expected", 4096, embed.build().getConfig().getSendfileThreshold());
+    }
+
+    @Test
+    public void withCompression() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withCompression(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isCompression());
+    }
+
+    @Test
+    public void withCompressionSettings() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component)
+                .withCompression(512, 1, "application/json");
+        final EmbedVaadinConfig config = embed.build().getConfig();
+        assertEquals("Compression should have been enabled", true, config.isCompression());
+        assertEquals("Wrong min size", 512, config.getCompressionMinSize());
+        assertEquals("Wrong level", 1, config.getCompressionLevel());
+        assertEquals("Wrong mime types", Arrays.asList("application/json"), config.getCompressionMimeTypes());
+    }
+
+    @Test
+    public void withPushMode() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withPushMode(PushMode.MANUAL);
+        assertEquals("was not detected as expected", PushMode.MANUAL, embed.build().getConfig().getPushMode());
+    }
+
+    @Test
+    public void withPush() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component)
+                .withPush(PushMode.AUTOMATIC, Transport.STREAMING);
+        final EmbedVaadinConfig config = embed.build().getConfig();
+        assertEquals("Wrong push mode", PushMode.AUTOMATIC, config.getPushMode());
+        assertEquals("Wrong push transport", Transport.STREAMING, config.getPushTransport());
+    }
+
+    @Test
+    public void withMetricsServlet() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withMetricsServlet(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isMetrics());
+    }
+
+    @Test
+    public void withMetricsServletPath() {
+        final EmbedVaadinConfig config = EmbedVaadin.forComponent(component)
+                .withMetricsServlet("/stats").build().getConfig();
+        assertEquals("Metrics should have been enabled", true, config.isMetrics());
+        assertEquals("Wrong metrics path", "/stats", config.getMetricsPath());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withInvalidMetricsServletPath() {
+        EmbedVaadin.forComponent(component).withMetricsServlet("stats");
+    }
+
+    @Test
+    public void withServerTiming() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withServerTiming(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isServerTiming());
+    }
+
+    @Test
+    public void withResourceAccounting() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withResourceAccounting(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isResourceAccounting());
+    }
+
+    @Test
+    public void withUidlSummaryInterval() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withUidlSummaryInterval(30);
+        assertEquals("was not detected as expected", 30, embed.build().getConfig().getUidlSummaryInterval());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNegativeUidlSummaryInterval() {
+        EmbedVaadin.forComponent(component).withUidlSummaryInterval(-1);
+    }
+
+    @Test
+    public void withComponentProfileInterval() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withComponentProfileInterval(30);
+        assertEquals("was not detected as expected", 30, embed.build().getConfig().getComponentProfileInterval());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNegativeComponentProfileInterval() {
+        EmbedVaadin.forComponent(component).withComponentProfileInterval(-1);
+    }
+
+    @Test
+    public void withSessionFootprintInterval() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withSessionFootprintInterval(30);
+        assertEquals("was not detected as expected", 30, embed.build().getConfig().getSessionFootprintInterval());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNegativeSessionFootprintInterval() {
+        EmbedVaadin.forComponent(component).withSessionFootprintInterval(-1);
+    }
+
+    @Test
+    public void withSessionPassivation() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withSessionPassivation(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isSessionPassivation());
+    }
+
+    @Test
+    public void withSessionPassivationIdleTime() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withSessionPassivation(30);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isSessionPassivation());
+        assertEquals("was not detected as expected", 30, embed.build().getConfig().getSessionPassivationIdleTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNegativeSessionPassivationIdleTime() {
+        EmbedVaadin.forComponent(component).withSessionPassivation(-1);
+    }
+
+    @Test
+    public void withSessionPersistent() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withSessionPersistent(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isSessionPersistent());
+    }
+
+    @Test
+    public void withSessionTimeout() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withSessionTimeout(300);
+        assertEquals("was not detected as expected", Integer.valueOf(300),
+                embed.build().getConfig().getSessionTimeout());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNegativeSessionTimeout() {
+        EmbedVaadin.forComponent(component).withSessionTimeout(-1);
+    }
+
+    @Test
+    public void withMaxActiveSessions() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withMaxActiveSessions(500);
+        assertEquals("was not detected as expected", Integer.valueOf(500),
+                embed.build().getConfig().getMaxActiveSessions());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNoMaxActiveSessions() {
+        EmbedVaadin.forComponent(component).withMaxActiveSessions(0);
+    }
+
+    @Test
+    public void withSessionEviction() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withSessionEviction(80);
+        assertEquals("was not detected as expected", 80, embed.build().getConfig().getSessionEvictionThreshold());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNegativeSessionEviction() {
+        EmbedVaadin.forComponent(component).withSessionEviction(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withSessionEvictionAboveHundred() {
+        EmbedVaadin.forComponent(component).withSessionEviction(101);
+    }
+
+    @Test
+    public void withHeartbeatInterval() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withHeartbeatInterval(30);
+        assertEquals("was not detected as expected", Integer.valueOf(30),
+                embed.build().getConfig().getHeartbeatInterval());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withNegativeHeartbeatInterval() {
+        EmbedVaadin.forComponent(component).withHeartbeatInterval(-1);
+    }
+
+    @Test
+    public void withCloseIdleSessions() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withCloseIdleSessions(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isCloseIdleSessions());
+    }
+
+    @Test
+    public void withWorkDirectory() {
+        final File directory = new File("target/work");
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withWorkDirectory(directory);
+        assertEquals("was not detected as expected", directory, embed.build().getConfig().getWorkDirectory());
+    }
+
+    @Test
+    public void withStartupReportFile() {
+        final File file = new File("target/startup.json");
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withStartupReportFile(file);
+        assertEquals("was not detected as expected", file, embed.build().getConfig().getStartupReportFile());
+    }
+
     @Test
     public void withCustomConfig() {
         final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component)
@@ -173,6 +449,12 @@ public class EmbedVaadinTest extends AbstractEmbedTest {
         assertVaadinConfig(config, "com.bsb.foo.MyWidgetSet", true);
     }
 
+    @Test
+    public void withWarmUp() {
+        final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withWarmUp(true);
+        assertEquals("was not detected as expected", true, embed.build().getConfig().isWarmUp());
+    }
+
     @Test
     public void withDevelopmentHeader() {
         final EmbedVaadinComponent embed = EmbedVaadin.forComponent(component).withDevelopmentHeader(true);
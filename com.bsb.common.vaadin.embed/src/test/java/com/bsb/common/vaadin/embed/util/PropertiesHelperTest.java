@@ -17,9 +17,11 @@ package com.bsb.common.vaadin.embed.util;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author Stephane Nicoll
@@ -63,6 +65,52 @@ public class PropertiesHelperTest {
                 createInstance(properties).getIntProperty("key", 23));
     }
 
+    @Test
+    public void getOptionalBooleanNoMatch() {
+        final Properties properties = new Properties();
+        properties.put("key", "true");
+        assertNull("No match so null should be returned",
+                createInstance(properties).getBooleanProperty("anotherKey"));
+    }
+
+    @Test
+    public void getOptionalBooleanWithMatch() {
+        final Properties properties = new Properties();
+        properties.put("key", "true");
+        assertEquals("Match so value should be used", Boolean.TRUE,
+                createInstance(properties).getBooleanProperty("key"));
+    }
+
+    @Test
+    public void getOptionalIntNoMatch() {
+        final Properties properties = new Properties();
+        properties.put("key", "4");
+        assertNull("No match so null should be returned",
+                createInstance(properties).getIntProperty("anotherKey"));
+    }
+
+    @Test
+    public void getOptionalIntWithMatch() {
+        final Properties properties = new Properties();
+        properties.put("key", "4");
+        assertEquals("Match so value should be used", Integer.valueOf(4),
+                createInstance(properties).getIntProperty("key"));
+    }
+
+    @Test
+    public void getListNoMatch() {
+        assertEquals("No match so default value should be used", Arrays.asList("a", "b"),
+                createInstance(new Properties()).getListProperty("key", "a,b"));
+    }
+
+    @Test
+    public void getListWithMatch() {
+        final Properties properties = new Properties();
+        properties.put("key", " a, b ,,c ");
+        assertEquals("Values should have been trimmed", Arrays.asList("a", "b", "c"),
+                createInstance(properties).getListProperty("key", "d"));
+    }
+
     private PropertiesHelper createInstance(Properties properties) {
         return new PropertiesHelper(properties);
     }